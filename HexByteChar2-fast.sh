@@ -0,0 +1,145 @@
+#!/bin/bash
+#
+#  Hexadecimal Byte Character #2 - Fast-Start Packaging and Startup Benchmark
+#  Written by: Keith Fenske, http://kwfenske.github.io/
+#  Copyright (c) 2022 by Keith Fenske.  Apache License or GNU GPL.
+#
+#  Build HexByteChar2 in a "build" folder as a plain JAR file, with an AppCDS
+#  archive (class data sharing: classes already parsed and verified), and as a
+#  GraalVM native image if "native-image" is installed.  Then compare how fast
+#  each one starts for the console (headless) options used by scripts:
+#
+#      ./HexByteChar2-fast.sh  build
+#      ./HexByteChar2-fast.sh  bench  [runs]
+#
+#  The benchmark reports the median time to the first line of output, the
+#  median total time, and the peak resident memory (RSS) for each packaging.
+#  Use the same way in scripts:
+#
+#      java -XX:SharedArchiveFile=build/HexByteChar2.jsa -XX:TieredStopAtLevel=1
+#        -Djava.awt.headless=true -jar build/HexByteChar2.jar -hash file.bin
+#      build/hexbytechar2 -hash file.bin
+#
+#  The native image is only for console options.  It is built headless, so
+#  the graphical interface is not expected to work.  The native image step has
+#  not been tried yet (no GraalVM where this script was written), so treat its
+#  row in the benchmark as a first measurement.  AppCDS needs Java 10 or later.
+#  The archive must be built again after any change to the JAR file.
+#
+#  Classes are compiled for Java 7 (the program's minimum), so the JAR can be
+#  copied to the top folder as the released HexByteChar2.jar.  Compilers after
+#  Java 19 no longer accept --release 7; run as "RELEASE=8 ./...build" there.
+#
+#  The GUI always loads Swing.  Console options don't create any AWT or Swing
+#  objects, so the native image doesn't need their native libraries at run time.
+
+set -e
+cd "$(dirname "$0")"
+BUILD=build
+JAR=$BUILD/HexByteChar2.jar
+JSA=$BUILD/HexByteChar2.jsa
+NATIVE=$BUILD/hexbytechar2
+SAMPLE=$BUILD/sample.bin
+
+build()
+{
+  rm -rf $BUILD/classes
+  mkdir -p $BUILD/classes
+  javac --release ${RELEASE:-7} -Xlint:all -Xlint:-options \
+    -d $BUILD/classes HexByteChar2.java  # -options: "release 7 is obsolete"
+  jar cfm $JAR HexByteChar2.manifest -C $BUILD/classes .
+  head -c 65536 /dev/urandom > $SAMPLE     # small, so startup dominates
+
+  # Training runs for the console options, each listing the classes it loads.
+  # The lists are merged into one static archive.
+
+  rm -f $BUILD/*.classlist
+  java -Xshare:off -XX:DumpLoadedClassList=$BUILD/hash.classlist \
+    -Djava.awt.headless=true -jar $JAR -hash $SAMPLE > /dev/null
+  java -Xshare:off -XX:DumpLoadedClassList=$BUILD/check.classlist \
+    -Djava.awt.headless=true -jar $JAR -check -eUTF-8 $SAMPLE > /dev/null \
+    || true                      # random bytes aren't UTF-8, so this "fails"
+  java -Xshare:off -XX:DumpLoadedClassList=$BUILD/selftest.classlist \
+    -Djava.awt.headless=true -jar $JAR "-selftest(0)" > /dev/null
+  sort -u $BUILD/*.classlist | grep -v '^#' > $BUILD/all.list
+  java -Xshare:dump -XX:SharedClassListFile=$BUILD/all.list \
+    -XX:SharedArchiveFile=$JSA -cp $JAR > /dev/null
+  echo "Built $JAR and $JSA"
+
+  if command -v native-image > /dev/null
+  then
+    native-image --no-fallback -Djava.awt.headless=true -H:+AddAllCharsets \
+      -jar $JAR -o $NATIVE
+    echo "Built $NATIVE"
+  else
+    echo "native-image not found; skipping GraalVM native image"
+  fi
+}
+
+# Run one command and print three numbers: milliseconds to the first output,
+# total milliseconds, and peak RSS in kilobytes (sampled from /proc while the
+# process runs, so very short runs may show less than the true peak).
+
+measure()
+{
+  local end=0 first=0 hwm=0 out pid start value
+  out=$(mktemp)
+  start=$(date +%s%N)
+  "$@" > "$out" 2> /dev/null &
+  pid=$!
+  while kill -0 $pid 2> /dev/null
+  do
+    if [ $first -eq 0 ] && [ -s "$out" ]; then first=$(date +%s%N); fi
+    value=$(sed -n 's/^VmHWM:[^0-9]*\([0-9]*\).*/\1/p' /proc/$pid/status \
+      2> /dev/null || true)
+    if [ -n "$value" ]; then hwm=$value; fi
+    sleep 0.01                   # don't compete with process for CPU
+  done
+  end=$(date +%s%N)
+  wait $pid || true
+  if [ $first -eq 0 ]; then first=$end; fi
+  rm -f "$out"
+  echo $(( (first - start) / 1000000 )) $(( (end - start) / 1000000 )) $hwm
+}
+
+# Print the median of the numbers on standard input.
+
+median()
+{
+  sort -n | awk '{ v[NR] = $1 } END { print v[int((NR + 1) / 2)] }'
+}
+
+bench()
+{
+  local i name runs=${1:-11} results
+  if [ ! -f $JAR ]; then build; fi
+  printf "%-28s %12s %10s %10s\n" "packaging ($runs runs)" "first (ms)" \
+    "total (ms)" "RSS (MB)"
+  for name in jar jar-appcds jar-appcds-c1 native
+  do
+    case $name in
+      jar) cmd="java -Djava.awt.headless=true -jar $JAR" ;;
+      jar-appcds) cmd="java -XX:SharedArchiveFile=$JSA -Djava.awt.headless=true -jar $JAR" ;;
+      jar-appcds-c1) cmd="java -XX:SharedArchiveFile=$JSA -XX:TieredStopAtLevel=1 -Djava.awt.headless=true -jar $JAR" ;;
+      native) if [ ! -x $NATIVE ]; then
+          printf "%-28s %12s\n" $name "(not built)"; continue; fi
+        cmd="$NATIVE" ;;
+    esac
+    results=$(mktemp)
+    for ((i = 0; i < runs; i ++))
+    do
+      measure $cmd -hash $SAMPLE >> "$results"
+    done
+    printf "%-28s %12s %10s %10s\n" $name \
+      "$(cut -d' ' -f1 "$results" | median)" \
+      "$(cut -d' ' -f2 "$results" | median)" \
+      "$(( $(cut -d' ' -f3 "$results" | median) / 1024 ))"
+    rm -f "$results"
+  done
+}
+
+case "$1" in
+  build) build ;;
+  bench) shift; bench "$@" ;;
+  *) echo "Usage: $0 build | bench [runs]"; exit 1 ;;
+esac
@@ -5,7 +5,7 @@
   Java class name: HexByteChar2
   Copyright (c) 2022 by Keith Fenske.  Apache License or GNU GPL.
 
-  HexByteChar is a Java 1.4 graphical (GUI) application to convert between
+  HexByteChar is a Java 7 graphical (GUI) application to convert between
   binary data bytes and text characters, in different character sets or
   encodings.  Please refer to the following web page:
 
@@ -27,7 +27,9 @@
   Unicode characters.  (See any "Character Map" application.)  A single button
   to do this would be more convenient but much too specialized.  The strange
   character was often "U+FEFF zero width no-break space" encoded as 0xEF 0xBB
-  0xBF, also known as a byte-order mark.
+  0xBF, also known as a byte-order mark.  The "Check Unicode Text" tool now
+  finds such invisible characters directly, along with bidi controls, letters
+  from another script that look alike, and normalization differences.
 
   Apache License or GNU General Public License
   --------------------------------------------
@@ -50,9 +52,63 @@
 
   The command line has more options than are visible in the graphical
   interface.  An option such as -u16 or -u18 is recommended for the font size.
+  A few options run as a console application, without any graphical interface,
+  such as checksums for files:
+
+      java  HexByteChar2  -hash  file1.bin  file2.bin
+
+  Other tools may convert through a small local web server (HTTP), started with
+  the -serve option.  Requests use POST with the data as the request body, and
+  the result is the response body.  Only the local system may connect:
+
+      /charsets                        list names of character sets
+      /hex/decode                      hex text to binary data bytes
+      /hex/encode                      binary data bytes to hex text
+      /text/decode?charset=name        data bytes to UTF-8 text
+      /text/encode?charset=name        UTF-8 text to data bytes
+      /text/transcode?from=name&to=name  data bytes to other data bytes
+
+  Character set names may be "local" or "raw" for the special choices in the
+  graphical interface.  The -loadtest option runs this server with several
+  clients for a few seconds, and reports requests per second and latency.
+
+  The -selftest option compares each conversion with a simple (slow) reference
+  version for thousands of random inputs, layouts, separators, and all
+  installed character sets, and reports the first difference.  Add a number of
+  seconds for a longer run with a new seed, such as -selftest3600 overnight:
+
+      java  HexByteChar2  -selftest  -n(4,3)  -b,
+
+  The -search option finds hex data bytes (or text:chars in the -e encoding)
+  in every file under a folder, and prints the file name and offset of each
+  copy.  An index of 4-byte sequences is kept in the session folder (below), so
+  only new and changed files are read again; -index only updates the index:
+
+      java  HexByteChar2  -search  logs  CAFEBABE  text:needle
+
+  Console options don't create any AWT or Swing objects.  For scripts that run
+  this program many times, HexByteChar2-fast.sh builds a JAR file with an
+  AppCDS archive (and a GraalVM native image if installed), and compares their
+  startup time and memory.
+
+  Settings and Recent Files
+  -------------------------
+  The window position and size, the selected encoding, the number of hex data
+  bytes per line, and recently read files are saved when the program exits, in
+  a ".hexbytechar2" folder in the user's home directory.  Options on the command
+  line replace saved settings.  The same folder has a cache of hex text and
+  converted text for recent files, so that a big file can be shown again as
+  fast as the cache can be read.  Entries are found by the file's name, size,
+  and date, plus the settings used to format them.  The least recently used
+  entries are deleted when the cache gets too big.  Indexes for searched
+  folders are kept there, too.  Deleting the folder is always safe.
 
   Restrictions and Limitations
   ----------------------------
+  Java 7 or later is required, for the Unicode script of each letter when
+  checking text.  The local web server needs Java 6, and the shared worker
+  threads need Java 5.  Features from newer Java releases are not used.
+
   For copy and paste to another application on Windows, a null character (0x00)
   may terminate a text string, even when it appears in the middle.  Both 0x0A
   and 0x0D are newline characters, whose exact representation depends upon the
@@ -74,12 +130,18 @@
       in a text area.  KF, 2022-10-05.
 */
 
+import com.sun.net.httpserver.*;  // small web server in Java 6 and later
 import java.awt.*;                // older Java GUI support
 import java.awt.event.*;          // older Java GUI event support
 import java.io.*;                 // standard I/O
+import java.nio.*;                // byte and character buffers
+import java.nio.channels.*;       // file channels and mapped files
+import java.nio.charset.*;        // character set encoders and decoders
 import java.util.regex.*;         // regular expressions
 import javax.swing.*;             // newer Java GUI support
 import javax.swing.border.*;      // decorative borders
+import javax.swing.event.*;       // caret and document listeners
+import javax.swing.text.*;        // text documents and highlights
 
 public class HexByteChar2
 {
@@ -92,11 +154,23 @@ public class HexByteChar2
   static final int DEFAULT_LEFT = 50; // default window left position ("x")
   static final int DEFAULT_TOP = 50; // default window top position ("y")
   static final int DEFAULT_WIDTH = -1; // default window width in pixels
+  static final int DUMP_BUFFERS = 4; // direct buffers per gathering write
+  static final int DUMP_BUFFER_SIZE = 0x100000; // bytes per direct buffer
+  static final int DUMP_MAP_SIZE = 0x4000000; // bytes mapped at one time
+  static final int ERROR_COLOR = 0xFFB0B0; // highlight for bad data bytes
+                                  // ... as RGB, so console doesn't load AWT
   static final int EXIT_FAILURE = -1; // incorrect request or errors found
 //static final int EXIT_SUCCESS = 1; // request completed successfully
   static final int EXIT_UNKNOWN = 0; // don't know or nothing really done
+  static final int FOLLOW_DELAY = 500; // milliseconds between checks of file
+  static final int FOLLOW_LIMIT = 0x400000; // most data bytes or characters
+  static final int FOLLOW_WATCHED = 5000; // milliseconds if folder is watched
+                                  // ... kept in text areas while following
   static final char[] HEX_DIGITS = {'0', '1', '2', '3', '4', '5', '6', '7',
     '8', '9', 'A', 'B', 'C', 'D', 'E', 'F'}; // hexadecimal digits
+  static final byte[] HEX_VALUES = makeHexValues(); // what each ASCII char is
+  static final byte HEX_VALUE_BAD = -2; // not a hex digit or punctuation
+  static final byte HEX_VALUE_GAP = -1; // punctuation between data bytes
   static final String LOCAL_ENCODING = "(local default)";
                                   // our special name for local character set
   static final int MIN_FRAME = 200; // minimum window height or width in pixels
@@ -104,35 +178,117 @@ public class HexByteChar2
     "Convert Encoded Data Bytes to Character Text - by: Keith Fenske";
   static final String RAW_ENCODING = "(raw data bytes)";
                                   // our special name for no data encoding
+  static final int SYNC_COLOR = 0xFFE080; // highlight for linked bytes, chars
   static final String SYSTEM_FONT = "Dialog"; // this font is always available
 
   /* class variables */
 
+  static byte[] analyzeInput;     // data bytes given to background thread
+  static HexByteChar2Stats analyzeStats; // results from background thread
+  static JMenuItem analyzeToolItem, checkToolItem, closeToolItem,
+    dumpToolItem, followToolItem, hashToolItem, inspectToolItem, layoutToolItem,
+    newToolItem, patchToolItem, searchToolItem, stringsToolItem,
+    templateToolItem, unicodeToolItem; // menu items for less common tools
+  static byte[] byteData;         // data bytes parsed from hex text, or null
   static JTextArea byteField;     // data bytes displayed in hexadecimal
   static String byteGapString;    // separator between hex data bytes
   static int byteGroupSize;       // number of hex data bytes per group (small)
+  static Object byteHighlight;    // tag for linked highlight in hex data bytes
+  static HexByteChar2History byteHistory; // undo and redo for hex data bytes
   static int byteLineSize;        // number of hex data bytes per line (bigger)
+  static HexByteChar2HexMap byteMap; // where data bytes are in hex, or null
+  static File byteSource;         // unchanged file in hex text, or null
+  static String byteSourceKey;    // how that file was read and formatted
   static JTextArea charField;     // text characters displayed in Unicode
+  static Object charHighlight;    // tag for linked highlight in text characters
+  static HexByteChar2History charHistory; // undo and redo for text characters
+  static volatile boolean checkCancelFlag; // true if user cancelled check
+  static Charset checkCharset;    // encoding for background check
+  static HexByteChar2Document checkDocument; // document being checked
+  static byte[] checkInput;       // data bytes given to background thread
+  static ProgressMonitor checkMonitor; // status and "Cancel" while checking
+  static volatile long checkPosition; // data bytes checked so far
+  static HexByteChar2Validator checkResult; // bad data bytes from thread
   static JButton clearByteButton, clearCharButton, convertByteButton,
     convertCharButton, copyByteButton, copyCharButton, exitButton,
-    pasteByteButton, pasteCharButton, readByteButton, writeByteButton,
-    zorgByteButton;               // buttons
-  static JComboBox encodeDialog;  // user's choice for character set encoding
+    pasteByteButton, pasteCharButton, readByteButton, toolsByteButton,
+    writeByteButton, zorgByteButton; // buttons
+  static HexByteChar2Document currentDocument; // document in selected tab
+  static JTabbedPane documentTabs; // one tab for each document
+  static File dumpInput, dumpOutput; // files for background hex dump
+  static String dumpReport;       // hex dump result from background thread
+  static InputStream dumpStream;  // data bytes for background hex dump
+  static JComboBox<String> encodeDialog;
+                                  // user's choice for character set encoding
+  static java.util.Vector<Object> errorHighlights;
+                                  // tags for bad data bytes in hex
+  static Highlighter.HighlightPainter errorPainter; // draws bad data bytes
   static JFileChooser fileChooser; // asks for input and output file names
+  static boolean followAgainFlag; // true if file changed while reading
+  static boolean followBusyFlag;  // true while background thread reads file
+  static FileChannel followChannel; // file being followed, or null
+  static String followChars;      // new text characters from background
+  static CharsetDecoder followDecoder; // decoder for text, or null
+  static HexByteChar2Document followDocument; // document for followed file
+  static IOException followError; // error from background thread, or null
+  static File followFile;         // file being followed, for messages
+  static int followGroupSize;     // number of followed data bytes per group
+  static String followHex;        // new hex data bytes from background
+  static long followIndex;        // number of data bytes in hex text
+  static ByteBuffer followLeftover; // bytes for decoder not yet decoded
+  static int followLineSize;      // number of followed data bytes per line
+  static long followPosition;     // number of bytes read from file so far
+  static boolean followRawFlag;   // true if text is raw data bytes
+  static boolean followRestartFlag; // true if reading started again
+  static boolean followTextFlag;  // true if we also decode text
+  static javax.swing.Timer followTimer; // checks file for new bytes
+  static java.nio.file.WatchService followWatcher;
+                                  // reports changes in file's folder, or null
   static String groupGapString;   // separator between groups of data bytes
+  static HexByteChar2Document hashDocument; // document for checksums
+  static byte[] hashInput;        // data bytes given to background thread
+  static String hashReport;       // checksum results from background thread
+  static boolean hashSelectFlag;  // true if checksums are for a selection
+  static HexByteChar2Inspector inspector; // numbers for selection, or null
   static JFrame mainFrame;        // this application's window if GUI
   static boolean mswinFlag;       // true if running on Microsoft Windows
+  static JMenu recentMenu;        // sub-menu for recently read files
+  static File searchFolder;       // folder for background search
+  static byte[] searchQuery;      // data bytes for background search
+  static String searchReport;     // search summary from background thread
+  static java.util.Vector<Object> searchResults;
+                                  // files and offsets found, or null
+  static Charset stringsCharset;  // user's encoding for strings, or null
+  static HexByteChar2Document stringsDocument; // document being searched
+  static byte[] stringsInput;     // data bytes given to background thread
+  static int stringsMinimum;      // minimum number of characters in a run
+  static HexByteChar2Strings stringsResult; // runs found by thread
+  static HexByteChar2HexMap syncHexMap; // hex data bytes from last conversion
+  static Highlighter.HighlightPainter syncPainter; // draws linked highlights
+  static HexByteChar2TextMap syncTextMap; // text characters from conversion
+  static String templateText;     // last binary template from user
+  static JPopupMenu toolMenu;     // pop-up menu from the "Tools" button
+  static Charset unicodeCharset;  // user's encoding for Unicode check
+  static HexByteChar2Document unicodeDocument; // document being checked
+  static String unicodeInput;     // text given to background thread
+  static HexByteChar2Unicode unicodeResult; // results from thread
+  static int unicodeStart;        // text position of first character
+  static java.util.concurrent.ExecutorService workerPool;
+                                  // shared threads for background tools
 
 /*
   main() method
 
-  We run as a graphical application only.  Set the window layout and then let
-  the graphical interface run the show.
+  Options on the command line may run a console tool instead (-check, -hash,
+  -index, -search, -selftest) or the local web server (-serve, -loadtest), and
+  those exit without a window.  Otherwise, we run as a graphical application:
+  set the window layout and then let the graphical interface run the show.
 */
   public static void main(String[] args)
   {
-    ActionListener action;        // our shared action listener
+    HexByteChar2User action;      // our shared action and caret listener
     Font byteFont;                // font for hexadecimal data bytes only
+    boolean checkFlag;            // true if we check encoding of files
     String byteFontName;          // preferred font name for hex data bytes
     int byteFontSize;             // normal font size or chosen by user
     boolean byteWrapFlag;         // true if we wrap lines for hex data bytes
@@ -141,13 +297,24 @@ public class HexByteChar2
     int commonFontSize;           // normal font size or chosen by user
     Border emptyBorder;           // remove borders around text areas
     String encodeName;            // select name of character set encoding
-    int i;                        // index variable
+    java.util.Vector<String> fileList; // file names given on command line
+    boolean hashFlag;             // true if we print checksums for files
+    boolean indexFlag;            // true if we index folders
+    int loadSeconds;              // seconds for load test, or zero
+    boolean searchFlag;           // true if we search an indexed folder
+    long selfRounds;              // rounds for self-test, or zero
+    int selfSeconds;              // seconds for self-test, or zero
+    long selfSeed;                // first seed for self-test
+    int servePort;                // port number for web server, or zero
+    boolean sizeFlag;             // true if -n option sets bytes per line
+    int i, k;                     // index variables
     boolean maximizeFlag;         // true if we maximize our main window
     Font outputFont;              // font for text characters only
     String outputFontName;        // preferred font name for text characters
     int outputFontSize;           // normal font size or chosen by user
     int windowHeight, windowLeft, windowTop, windowWidth;
                                   // position and size for <mainFrame>
+    boolean windowFlag;           // true if -w option sets window position
     String word;                  // one parameter from command line
     boolean zorgEnableFlag;       // true if we show the dreaded "Zorg" button
 
@@ -159,19 +326,32 @@ public class HexByteChar2
     byteGroupSize = 1440;         // optional grouping of hex data bytes
     byteLineSize = 1440;          // should be multiple of <byteGroupSize>
     byteWrapFlag = true;          // by default, wrap lines for hex data bytes
+    checkFlag = false;            // by default, run as a graphical application
     commonFontName = SYSTEM_FONT; // default to normal font on local system
     commonFontSize = 18;          // preferred font size (user may change)
-    encodeName = "UTF-8";         // most common character set in the world
+    encodeName = null;            // default encoding depends on session
+    fileList = new java.util.Vector<String>(); // no file names given yet
     groupGapString = "  ";        // default separator between groups of bytes
+    hashFlag = false;             // by default, run as a graphical application
+    indexFlag = false;            // by default, run as a graphical application
+    loadSeconds = 0;              // by default, no load test for web server
     mainFrame = null;             // during setup, there is no GUI window
     maximizeFlag = false;         // by default, don't maximize our main window
     mswinFlag = System.getProperty("os.name").startsWith("Windows");
+    searchFlag = false;           // by default, run as a graphical application
+    selfRounds = selfSeed = 0;    // by default, no self-test
+    selfSeconds = 0;
+    servePort = 0;                // by default, no local web server
+    sizeFlag = false;             // by default, bytes per line from session
     outputFontName = "Arial Unicode MS"; // big but may not be installed
     outputFontSize = 19;          // slight increase from common font size
     windowHeight = DEFAULT_HEIGHT; // default window position and size
     windowLeft = DEFAULT_LEFT;
     windowTop = DEFAULT_TOP;
     windowWidth = DEFAULT_WIDTH;
+    windowFlag = false;           // by default, window position from session
+    workerPool = java.util.concurrent.Executors.newFixedThreadPool(Math.max(2,
+      Runtime.getRuntime().availableProcessors())); // threads made as needed
     zorgEnableFlag = false;       // by default, don't show the "Zorg" button
 
     /* Check command-line parameters for options. */
@@ -196,6 +376,9 @@ public class HexByteChar2
       else if (word.startsWith("-b") || (mswinFlag && word.startsWith("/b")))
         byteGapString = args[i].substring(2); // accept anything for separator
 
+      else if (word.equals("-check") || (mswinFlag && word.equals("/check")))
+        checkFlag = true;         // check encoding of files, no GUI
+
       else if (word.startsWith("-e") || (mswinFlag && word.startsWith("/e")))
         encodeName = args[i].substring(2); // accept anything for encoding
 
@@ -205,13 +388,44 @@ public class HexByteChar2
       else if (word.startsWith("-g") || (mswinFlag && word.startsWith("/g")))
         groupGapString = args[i].substring(2); // accept anything for separator
 
+      else if (word.equals("-hash") || (mswinFlag && word.equals("/hash")))
+        hashFlag = true;          // print checksums for files, no GUI
+
+      else if (word.equals("-index") || (mswinFlag && word.equals("/index")))
+        indexFlag = true;         // index folders for searching, no GUI
+
+      else if (word.startsWith("-loadtest")
+        || (mswinFlag && word.startsWith("/loadtest")))
+      {
+        /* This option may be followed by a number of seconds for the load
+        test.  The default is ten seconds. */
+
+        try                       // try to parse remainder as an integer
+        {
+          loadSeconds = (word.length() > 9) ? Integer.parseInt(word.substring(9))
+            : 10;
+        }
+        catch (NumberFormatException nfe) // if not a number or bad syntax
+        {
+          loadSeconds = -1;       // set result to an illegal value
+        }
+        if ((loadSeconds < 1) || (loadSeconds > 3600))
+        {
+          System.err.println("Load test seconds must be from 1 to 3600: "
+            + args[i]);
+          showHelp();             // show help summary
+          System.exit(EXIT_FAILURE); // exit application after printing help
+        }
+      }
+
       else if (word.startsWith("-n") || (mswinFlag && word.startsWith("/n")))
       {
         /* This option is followed by the number of hex data bytes per line,
         which may also be a number of bytes per group and a number of groups
         per line.  The expected way to disable grouping is to set the group
         size to the same value as the line size.  The line size should always
-        be a multiple of the group size. */
+        be a multiple of the group size.  Zero goes back to wrapping lines,
+        in case a saved setting is no longer wanted. */
 
         Pattern pattern = Pattern.compile(
           "(\\d{1,5})|(?:\\((\\d{1,5}),(\\d{1,5})\\))");
@@ -236,6 +450,8 @@ public class HexByteChar2
           else
             byteLineSize *= byteGroupSize; // calculate total bytes per line
         }
+        if (word.equals("-n0") || (mswinFlag && word.equals("/n0")))
+          byteGroupSize = byteLineSize = 1440; // default grouping and wrap
         if ((byteGroupSize <= 0) || (byteLineSize <= 0)) // any errors flagged?
         {
           System.err.println("Invalid number of hex data bytes per line: "
@@ -243,7 +459,74 @@ public class HexByteChar2
           showHelp();             // show help summary
           System.exit(EXIT_FAILURE); // exit application after printing help
         }
-        byteWrapFlag = false;     // don't wrap once user chooses a size
+        byteWrapFlag = word.equals("-n0") || (mswinFlag
+          && word.equals("/n0")); // don't wrap once user chooses a size
+        sizeFlag = true;          // don't replace with saved setting
+      }
+
+      else if (word.equals("-search") || (mswinFlag && word.equals("/search")))
+        searchFlag = true;        // search an indexed folder, no GUI
+
+      else if (word.startsWith("-selftest")
+        || (mswinFlag && word.startsWith("/selftest")))
+      {
+        /* This option may be followed by a number of seconds for random tests
+        with a new seed, or by one seed in parentheses to repeat a round that
+        failed.  Otherwise, a fixed number of rounds is run with the same
+        seeds every time. */
+
+        Pattern pattern = Pattern.compile("(\\d{0,6})|(?:\\((\\d{1,18})\\))");
+        Matcher matcher = pattern.matcher(word.substring(9)); // parse option
+        selfRounds = Long.MAX_VALUE; // until time runs out
+        selfSeconds = -1;         // assume an error
+        if (matcher.matches() == false) { /* bad syntax or too many digits */ }
+        else if (matcher.group(2) != null) // repeat one round
+        {
+          selfRounds = 1;
+          selfSeconds = 0;
+          selfSeed = Long.parseLong(matcher.group(2));
+        }
+        else if (matcher.group(1).length() > 0) // random tests for a time
+        {
+          selfSeconds = Integer.parseInt(matcher.group(1));
+          selfSeed = System.currentTimeMillis() & 0xFFFFFFFFFFL;
+          if (selfSeconds == 0) selfSeconds = -1;
+        }
+        else                      // fixed rounds, same every time
+        {
+          selfRounds = HexByteChar2SelfTest.QUICK_ROUNDS;
+          selfSeconds = 0;
+        }
+        if (selfSeconds < 0)
+        {
+          System.err.println("Invalid self-test seconds or seed: " + args[i]);
+          showHelp();             // show help summary
+          System.exit(EXIT_FAILURE); // exit application after printing help
+        }
+      }
+
+      else if (word.startsWith("-serve")
+        || (mswinFlag && word.startsWith("/serve")))
+      {
+        /* This option may be followed by a port number for the local web
+        server.  The default port is arbitrary and unlikely to be in use. */
+
+        try                       // try to parse remainder as an integer
+        {
+          servePort = (word.length() > 6) ? Integer.parseInt(word.substring(6))
+            : HexByteChar2Server.DEFAULT_PORT;
+        }
+        catch (NumberFormatException nfe) // if not a number or bad syntax
+        {
+          servePort = -1;         // set result to an illegal value
+        }
+        if ((servePort < 1) || (servePort > 65535))
+        {
+          System.err.println("Web server port must be from 1 to 65535: "
+            + args[i]);
+          showHelp();             // show help summary
+          System.exit(EXIT_FAILURE); // exit application after printing help
+        }
       }
 
       else if (word.startsWith("-t") || (mswinFlag && word.startsWith("/t")))
@@ -288,6 +571,7 @@ public class HexByteChar2
           windowTop = Integer.parseInt(matcher.group(2));
           windowWidth = Integer.parseInt(matcher.group(3));
           windowHeight = Integer.parseInt(matcher.group(4));
+          windowFlag = true;      // don't replace with saved setting
         }
         else                      // bad syntax or too many digits
         {
@@ -303,6 +587,12 @@ public class HexByteChar2
       else if (word.equals("-z") || (mswinFlag && word.equals("/z")))
         zorgEnableFlag = true;    // show the dreaded "Zorg" button
 
+      else if ((word.startsWith("-") == false) && ((mswinFlag == false)
+        || (word.startsWith("/") == false)))
+      {
+        fileList.add(args[i]);    // file name for a console command
+      }
+
       else                        // parameter is not a recognized option
       {
         System.err.println("Option not recognized: " + args[i]);
@@ -311,14 +601,113 @@ public class HexByteChar2
       }
     }
 
+    /* Some options run as a console application, without a GUI. */
+
+    if (checkFlag)                // report bad data bytes in files
+      System.exit(checkFiles(fileList, ((encodeName != null) ? encodeName
+        : "UTF-8")));
+    else if (hashFlag)            // print checksums for files
+      System.exit(hashFiles(fileList));
+    else if (indexFlag)           // index folders, print statistics
+      System.exit(indexFolders(fileList));
+    else if (searchFlag)          // search one folder with its index
+      System.exit(searchFolders(fileList, ((encodeName != null) ? encodeName
+        : "UTF-8")));
+    else if (fileList.size() > 0) // file names without a console option
+    {
+      System.err.println(
+        "File names are only allowed with -check, -hash, -index, or -search: "
+        + fileList.get(0));
+      showHelp();                 // show help summary
+      System.exit(EXIT_FAILURE);  // exit application after printing help
+    }
+    else if (selfRounds > 0)      // compare engines with reference versions
+      System.exit(HexByteChar2SelfTest.selfTest(selfSeed, selfRounds,
+        selfSeconds));
+    else if (loadSeconds > 0)     // run web server with test clients
+      System.exit(HexByteChar2LoadTest.loadTest(loadSeconds));
+    else if (servePort > 0)       // run local web server until killed
+    {
+      try { HexByteChar2Server.start(servePort); }
+      catch (IOException ioe)
+      {
+        System.err.println("Can't start web server on port " + servePort
+          + ": " + ioe.getMessage());
+        System.exit(EXIT_FAILURE);
+      }
+      System.err.println("Listening on http://"
+        + HexByteChar2Server.SERVER_HOST + ":" + servePort + "/");
+      return;                     // server threads keep application running
+    }
+
+    /* Settings saved from the last session are used where the command line
+    didn't give an option. */
+
+    HexByteChar2Session.load();   // quietly does nothing if there's no file
+    if (encodeName == null)
+      encodeName = HexByteChar2Session.get("encoding", "UTF-8");
+    if (sizeFlag == false)        // same limits as the -n option
+    {
+      i = HexByteChar2Session.getInt("bytes.group", 0);
+      k = HexByteChar2Session.getInt("bytes.line", 0);
+      if (((i == k) && (k >= 1) && (k <= 999)) || ((i >= 2) && (i <= 99)
+        && ((k % i) == 0) && ((k / i) >= 2) && ((k / i) <= 99)))
+      {
+        byteGroupSize = i;
+        byteLineSize = k;
+        byteWrapFlag = false;     // saved size is from an -n option
+      }                           // else keep the default, 1440 and wrap
+    }
+    if ((windowFlag == false) && (HexByteChar2Session.getInt("window.width",
+      0) > 0))
+    {
+      windowHeight = HexByteChar2Session.getInt("window.height",
+        DEFAULT_HEIGHT);
+      windowLeft = HexByteChar2Session.getInt("window.left", DEFAULT_LEFT);
+      windowTop = HexByteChar2Session.getInt("window.top", DEFAULT_TOP);
+      windowWidth = HexByteChar2Session.getInt("window.width",
+        DEFAULT_WIDTH);
+    }
+    if (maximizeFlag == false)
+      maximizeFlag = HexByteChar2Session.get("window.maximized", "false")
+        .equals("true");
+
     /* Initialize shared graphical objects. */
 
     action = new HexByteChar2User(); // create our shared action listener
+    byteData = null;              // no data bytes parsed from hex text yet
+    byteMap = null;
+    byteSource = null;            // hex text didn't come from a file
+    byteSourceKey = null;
+    byteHighlight = charHighlight = null; // no linked selections highlighted
+    analyzeInput = null;          // no byte analysis yet
+    analyzeStats = null;
+    hashInput = null;             // no checksums calculated yet
+    inspector = null;             // no inspector window yet
     byteFont = new Font(byteFontName, Font.PLAIN, byteFontSize); // hex data
     commonFont = new Font(commonFontName, Font.PLAIN, commonFontSize);
     emptyBorder = BorderFactory.createEmptyBorder(); // for removing borders
+    errorHighlights = new java.util.Vector<Object>(); // no bad data bytes shown
+    errorPainter = new DefaultHighlighter.DefaultHighlightPainter(
+      new Color(ERROR_COLOR));
     fileChooser = new JFileChooser(); // create our shared file chooser
     outputFont = new Font(outputFontName, Font.PLAIN, outputFontSize);
+    followBusyFlag = false;       // not reading any followed file
+    followChannel = null;         // not following any file
+    followWatcher = null;
+    followTimer = new javax.swing.Timer(FOLLOW_DELAY, action);
+    syncHexMap = null;            // no index from bytes to text until converted
+    syncPainter = new DefaultHighlighter.DefaultHighlightPainter(
+      new Color(SYNC_COLOR));
+    syncTextMap = null;
+    templateText = "# One field per line: name type[count] charset\n"
+      + "# Types: u8 i8 u16le u16be i16le i16be u32le u32be i32le i32be\n"
+      + "#   u64le u64be i64le i64be f32le f32be f64le f64be bytes string\n"
+      + "# A count is a number, an earlier integer field, or * for the rest.\n"
+      + "# A record groups fields until \"end\": name record[count]\n\n"
+      + "magic    bytes[4]\nversion  u16le\ncount    u16le\n"
+      + "entries  record[count]\n  id     u32le\n  length u8\n"
+      + "  name   string[length] UTF-8\nend\n";
 
     /* Create the graphical interface as a series of smaller panels inside
     bigger panels.  The intermediate panel names are of no lasting importance
@@ -342,7 +731,7 @@ public class HexByteChar2
     panel31.add(convertByteButton);
     panel31.add(Box.createHorizontalStrut(40));
 
-    encodeDialog = new JComboBox();
+    encodeDialog = new JComboBox<String>();
     encodeDialog.addItem(LOCAL_ENCODING); // start with our special names
     encodeDialog.addItem(RAW_ENCODING);
     Object[] list32 = java.nio.charset.Charset.availableCharsets().keySet()
@@ -394,6 +783,7 @@ public class HexByteChar2
     byteField.setLineWrap(byteWrapFlag); // don't wrap if user set line size
     byteField.setMargin(new Insets(4, 7, 4, 7)); // top, left, bottom, right
     byteField.setWrapStyleWord(true);
+    byteField.addCaretListener(action); // show linked text for selected bytes
     JScrollPane panel52 = new JScrollPane(byteField);
     panel52.setBorder(emptyBorder); // no border necessary here
 
@@ -403,7 +793,7 @@ public class HexByteChar2
     charField.setLineWrap(true);
     charField.setMargin(new Insets(4, 7, 4, 7));
     charField.setWrapStyleWord(true);
-    charField.setText("HexByteChar is a Java 1.4 graphical (GUI) application"
+    charField.setText("HexByteChar is a Java 7 graphical (GUI) application"
       + " to convert between binary data bytes and text characters, in"
       + " different character sets or encodings. Enter hex data on the left,"
       + " select an encoding, and click the \"Convert Bytes to Text\" button"
@@ -413,6 +803,7 @@ public class HexByteChar2
       + "\n\nCopyright (c) 2022 by Keith Fenske. By using this program, you"
       + " agree to terms and conditions of the Apache License and/or GNU"
       + " General Public License.");
+    charField.addCaretListener(action); // show linked bytes for selected text
     JScrollPane panel53 = new JScrollPane(charField);
     panel53.setBorder(emptyBorder);
 
@@ -420,7 +811,10 @@ public class HexByteChar2
       panel53);                   // more flexible than a GridLayout
     panel54.setBorder(emptyBorder);
     panel54.setResizeWeight(0.6); // give more space to data bytes than text
-    panel21.add(panel54, BorderLayout.CENTER);
+    documentTabs = new JTabbedPane();
+    documentTabs.addTab("Untitled", panel54); // more tabs added by user
+    documentTabs.setFont(commonFont);
+    panel21.add(documentTabs, BorderLayout.CENTER);
 
     /* The bottom has labels for the text areas and associated buttons. */
 
@@ -477,6 +871,120 @@ public class HexByteChar2
     writeByteButton.setFont(commonFont);
     writeByteButton.setToolTipText("Write data bytes to file.");
     panel75.add(writeByteButton);
+    panel75.add(Box.createHorizontalStrut(10));
+
+    toolMenu = new JPopupMenu();  // less common tools, for data bytes
+
+    analyzeToolItem = new JMenuItem("Analyze Bytes...");
+    analyzeToolItem.addActionListener(action);
+    analyzeToolItem.setFont(commonFont);
+    analyzeToolItem.setToolTipText(
+      "Byte histogram, entropy, and line endings for all data bytes.");
+    toolMenu.add(analyzeToolItem);
+
+    checkToolItem = new JMenuItem("Check Encoding...");
+    checkToolItem.addActionListener(action);
+    checkToolItem.setFont(commonFont);
+    checkToolItem.setToolTipText(
+      "Find every malformed or unmappable sequence in the data bytes.");
+    toolMenu.add(checkToolItem);
+
+    dumpToolItem = new JMenuItem("Save as Hex Dump...");
+    dumpToolItem.addActionListener(action);
+    dumpToolItem.setFont(commonFont);
+    dumpToolItem.setToolTipText(
+      "Write any size of file as hex text, without reading it into memory.");
+    toolMenu.add(dumpToolItem);
+
+    followToolItem = new JMenuItem("Follow File...");
+    followToolItem.addActionListener(action);
+    followToolItem.setFont(commonFont);
+    followToolItem.setToolTipText(
+      "Show bytes as they are added to a growing file, like \"tail -f\".");
+    toolMenu.add(followToolItem);
+
+    hashToolItem = new JMenuItem("Checksums...");
+    hashToolItem.addActionListener(action);
+    hashToolItem.setFont(commonFont);
+    hashToolItem.setToolTipText(
+      "CRC32, CRC32C, Adler32, MD5, SHA-1, SHA-256 for data bytes.");
+    toolMenu.add(hashToolItem);
+
+    inspectToolItem = new JMenuItem("Inspect Bytes...");
+    inspectToolItem.addActionListener(action);
+    inspectToolItem.setFont(commonFont);
+    inspectToolItem.setToolTipText(
+      "Show selected bytes as integers, floats, varints, bits, and dates.");
+    toolMenu.add(inspectToolItem);
+
+    layoutToolItem = new JMenuItem("Layout View...");
+    layoutToolItem.addActionListener(action);
+    layoutToolItem.setFont(commonFont);
+    layoutToolItem.setToolTipText(
+      "Offsets, hex data bytes, and characters side by side on each line.");
+    toolMenu.add(layoutToolItem);
+
+    patchToolItem = new JMenuItem("Patch File...");
+    patchToolItem.addActionListener(action);
+    patchToolItem.setFont(commonFont);
+    patchToolItem.setToolTipText(
+      "Change bytes in a file of any size, without reading the whole file.");
+    toolMenu.add(patchToolItem);
+
+    searchToolItem = new JMenuItem("Search Folder...");
+    searchToolItem.addActionListener(action);
+    searchToolItem.setFont(commonFont);
+    searchToolItem.setToolTipText(
+      "Find data bytes or text in all files of a folder, with an index.");
+    toolMenu.add(searchToolItem);
+
+    recentMenu = new JMenu("Read Recent File");
+    recentMenu.setFont(commonFont);
+    recentMenu.setToolTipText("Read a file again, maybe from the cache.");
+    toolMenu.add(recentMenu);
+    updateRecentMenu();           // add a menu item for each saved file
+
+    stringsToolItem = new JMenuItem("Find Strings...");
+    stringsToolItem.addActionListener(action);
+    stringsToolItem.setFont(commonFont);
+    stringsToolItem.setToolTipText(
+      "Find readable text embedded in binary data bytes.");
+    toolMenu.add(stringsToolItem);
+
+    templateToolItem = new JMenuItem("Parse with Template...");
+    templateToolItem.addActionListener(action);
+    templateToolItem.setFont(commonFont);
+    templateToolItem.setToolTipText(
+      "Show fields in data bytes from a layout of integers, strings, etc.");
+    toolMenu.add(templateToolItem);
+
+    unicodeToolItem = new JMenuItem("Check Unicode Text...");
+    unicodeToolItem.addActionListener(action);
+    unicodeToolItem.setFont(commonFont);
+    unicodeToolItem.setToolTipText(
+      "Find invisible, bidi, and look-alike characters in the text.");
+    toolMenu.add(unicodeToolItem);
+    toolMenu.addSeparator();
+
+    newToolItem = new JMenuItem("New Tab");
+    newToolItem.addActionListener(action);
+    newToolItem.setFont(commonFont);
+    newToolItem.setToolTipText(
+      "Open another document, with its own data bytes and text.");
+    toolMenu.add(newToolItem);
+
+    closeToolItem = new JMenuItem("Close Tab");
+    closeToolItem.addActionListener(action);
+    closeToolItem.setEnabled(false); // can't close the only document
+    closeToolItem.setFont(commonFont);
+    closeToolItem.setToolTipText("Close the current document.");
+    toolMenu.add(closeToolItem);
+
+    toolsByteButton = new JButton("Tools");
+    toolsByteButton.addActionListener(action);
+    toolsByteButton.setFont(commonFont);
+    toolsByteButton.setToolTipText("More tools for data bytes.");
+    panel75.add(toolsByteButton);
     if (zorgEnableFlag) panel75.add(Box.createHorizontalStrut(10));
 
     zorgByteButton = new JButton("Zorg");
@@ -510,6 +1018,10 @@ public class HexByteChar2
     panel71.add(panel75);
     panel21.add(panel71, BorderLayout.SOUTH);
 
+    currentDocument = new HexByteChar2Document(panel54, byteField,
+      charField);                 // start edit histories, etc
+    currentDocument.load();
+
     /* Create the main window frame for this application.  We use a border
     layout to add margins around a central area for the panels above. */
 
@@ -530,16 +1042,126 @@ public class HexByteChar2
       mainFrame.setSize(windowWidth, windowHeight); // size of normal window
     if (maximizeFlag) mainFrame.setExtendedState(JFrame.MAXIMIZED_BOTH);
     mainFrame.validate();         // recheck application window layout
+    mainFrame.addWindowListener(new HexByteChar2User()); // save session
     mainFrame.setVisible(true);   // and then show application window
 
-    /* Let the graphical interface run the application now. */
+    /* Let the graphical interface run the application now.  Listen for changes
+    to the text areas only after the initial text has been set.  Control-Z is
+    "undo" and Control-Y or Control-Shift-Z is "redo" in both text areas. */
 
+    byteField.getDocument().addDocumentListener(action);
+    charField.getDocument().addDocumentListener(action);
+    documentTabs.addChangeListener(action); // user selects another document
+    addEditKeys(byteField, action);
+    addEditKeys(charField, action);
     convertTextToBytes();         // start by converting explanatory text
+    byteHistory.commit("Convert Text to Bytes", encodeName);
 
   } // end of main() method
 
 // ------------------------------------------------------------------------- //
 
+/*
+  addEditKeys() method
+
+  Control-Z is "undo" and Control-Y or Control-Shift-Z is "redo" in a text area.
+  The same keys are used for the text areas in every document.
+*/
+  static void addEditKeys(JTextArea text, HexByteChar2User action)
+  {
+    text.registerKeyboardAction(action, "undo", KeyStroke.getKeyStroke(
+      KeyEvent.VK_Z, InputEvent.CTRL_DOWN_MASK), JComponent.WHEN_FOCUSED);
+    text.registerKeyboardAction(action, "redo", KeyStroke.getKeyStroke(
+      KeyEvent.VK_Y, InputEvent.CTRL_DOWN_MASK), JComponent.WHEN_FOCUSED);
+    text.registerKeyboardAction(action, "redo", KeyStroke.getKeyStroke(
+      KeyEvent.VK_Z, (InputEvent.CTRL_DOWN_MASK | InputEvent.SHIFT_DOWN_MASK)),
+      JComponent.WHEN_FOCUSED);
+  }
+
+
+/*
+  charsetForName() method
+
+  Find a character set encoding by name.  An unknown or illegal name throws the
+  same exception as the String class, so callers can report errors in one place.
+*/
+  static Charset charsetForName(String code)
+    throws UnsupportedEncodingException
+  {
+    try                           // name for encoding may be invalid
+    {
+      return(Charset.forName(code)); // ask Java for this character set
+    }
+    catch (IllegalArgumentException iae) // illegal name or not supported
+    {
+      throw new UnsupportedEncodingException(code);
+    }
+  } // end of charsetForName() method
+
+
+/*
+  checkFiles() method
+
+  Report every malformed or unmappable sequence in files given on the command
+  line, for one character set encoding, as a console application.  Files of
+  any size are read in blocks and given to one decoder that stops on errors.
+  Return an exit status for the caller.
+*/
+  static int checkFiles(java.util.Vector<String> fileList, String code)
+  {
+    Charset charset;              // character set encoding to check
+    FileChannel channel;          // file being checked
+    HexByteChar2Validator checker; // finds bad data bytes for one file
+    int i, k;                     // index variables
+    String name;                  // one file name from command line
+    int status;                   // exit status for this command
+
+    if (fileList.size() == 0)
+    {
+      System.err.println("No file names given for -check option.");
+      return(EXIT_FAILURE);
+    }
+    try { charset = charsetForName(code); }
+    catch (UnsupportedEncodingException uee)
+    {
+      System.err.println("Unknown or unsupported character set encoding: "
+        + code);
+      return(EXIT_FAILURE);
+    }
+    status = EXIT_UNKNOWN;        // nothing found yet
+    for (i = 0; i < fileList.size(); i ++)
+    {
+      name = fileList.get(i);
+      checker = new HexByteChar2Validator(charset);
+      try                         // not all I/O goes as planned
+      {
+        channel = new FileInputStream(name).getChannel();
+        checker.scanChannel(channel);
+        channel.close();
+      }
+      catch (IOException ioe)
+      {
+        System.err.println("Can't read file " + name + ": "
+          + ioe.getMessage());
+        status = EXIT_FAILURE;
+        continue;
+      }
+      System.out.println(name + ": " + checker.total
+        + ((checker.total == 1) ? " bad sequence" : " bad sequences")
+        + " in " + checker.position + " bytes of " + charset.name());
+      for (k = 0; k < checker.count; k ++)
+        System.out.println("  " + checker.label(k));
+      if (checker.total > checker.count)
+        System.out.println("  (" + (checker.total - checker.count)
+          + " more not shown)");
+      if (checker.total > 0)
+        status = EXIT_FAILURE;
+    }
+    return(status);
+
+  } // end of checkFiles() method
+
+
 /*
   clearTextArea() method
 
@@ -597,20 +1219,29 @@ public class HexByteChar2
   convertBytesToText() method
 
   Convert hexadecimal data bytes to text characters with the user's selected
-  character set encoding.
+  character set encoding.  We remember where each character came from, so that
+  a selection on one side can be highlighted on the other side.
 */
   static void convertBytesToText()
   {
+    Charset charset;              // user's encoding, or null for raw bytes
     String code;                  // user's character set encoding
     byte[] dataBytes;             // encoded (binary) data bytes
     String hexChars;              // characters from user's hex data bytes
+    HexByteChar2HexMap hexMap;    // where each data byte is in the hex text
+    int hexStart;                 // text position of first hex character
     String textChars;             // new characters to user's text area
+    HexByteChar2TextMap textMap;  // which text characters come from each byte
 
     /* First, convert the user's hexadecimal data bytes to binary bytes. */
 
     hexChars = byteField.getSelectedText(); // first look for a selection
+    hexStart = byteField.getSelectionStart(); // where selection begins
     if ((hexChars == null) || (hexChars.length() == 0)) // if no selection
+    {
       hexChars = byteField.getText(); // get all hex data bytes
+      hexStart = 0;               // and they start at the beginning
+    }
     dataBytes = hexDataToBytes(hexChars, false); // try convert to real bytes
     if (dataBytes == null)        // was there an error, did we tell user?
       return;                     // yes, do nothing more
@@ -621,14 +1252,26 @@ public class HexByteChar2
     try                           // name for encoding may be invalid
     {
       if (code.equals(LOCAL_ENCODING)) // use local system's encoding?
-        textChars = new String(dataBytes);
+        charset = localCharset();
       else if (code.equals(RAW_ENCODING)) // use raw bytes as characters?
-        textChars = rawBytesToString(dataBytes);
+        charset = null;
       else                        // user has selected an encoding
-        textChars = new String(dataBytes, code);
+        charset = charsetForName(code);
+      textMap = new HexByteChar2TextMap(dataBytes, charset, 0);
+      textChars = textMap.decode(); // decode while saving checkpoints
+      hexMap = new HexByteChar2HexMap(byteField.getDocument(), hexChars,
+        hexStart);                // where data bytes are in the hex text
 
       charField.setText(textChars); // replace all text
       charField.select(0, 0);     // scroll home, default is end of text
+      syncHexMap = hexMap;        // link both sides after text is replaced
+      syncTextMap = textMap;
+      if ((byteSource != null) && (hexStart == 0)
+        && (hexChars.length() == byteField.getDocument().getLength()))
+      {
+        HexByteChar2Session.writeCache(byteSource, ("text " + byteSourceKey
+          + " " + code), "UTF-8", textChars); // all of an unchanged file
+      }
       charField.requestFocusInWindow(); // give keyboard focus to result
     }
     catch (UnsupportedEncodingException uee)
@@ -644,29 +1287,56 @@ public class HexByteChar2
   convertTextToBytes() method
 
   Convert text characters to hexadecimal data bytes with the user's selected
-  character set encoding.
+  character set encoding.  If the data bytes decode back to exactly the same
+  text, then both sides are linked for highlighting selections.
 */
   static void convertTextToBytes()
   {
+    Charset charset;              // user's encoding, or null for raw bytes
     String code;                  // user's character set encoding
     byte[] dataBytes;             // encoded (binary) data bytes
+    String hexChars;              // new hex data bytes for user's text area
     String textChars;             // characters from user's text area
+    HexByteChar2TextMap textMap;  // which text characters come from each byte
+    int textStart;                // text position of first character
 
     code = (String) encodeDialog.getSelectedItem(); // get name of encoding
     textChars = charField.getSelectedText(); // first look for a selection
+    textStart = charField.getSelectionStart(); // where selection begins
     if ((textChars == null) || (textChars.length() == 0)) // if no selection
+    {
       textChars = charField.getText(); // get all text characters
+      textStart = 0;              // and they start at the beginning
+    }
     try                           // name for encoding may be invalid
     {
       if (code.equals(LOCAL_ENCODING)) // use local system's encoding?
+      {
+        charset = localCharset();
         dataBytes = textChars.getBytes();
+      }
       else if (code.equals(RAW_ENCODING)) // use raw bytes as characters?
+      {
+        charset = null;
         dataBytes = rawStringToBytes(textChars);
+      }
       else                        // user has selected an encoding
+      {
+        charset = charsetForName(code);
         dataBytes = textChars.getBytes(code);
+      }
 
-      byteField.setText(hexDataFromBytes(dataBytes)); // replace all text
+      hexChars = hexDataFromBytes(dataBytes); // convert to hex data bytes
+      byteField.setText(hexChars); // replace all text
       byteField.select(0, 0);     // scroll home, default is end of text
+      rememberDataBytes(dataBytes); // no need to parse this hex text again
+      textMap = new HexByteChar2TextMap(dataBytes, charset, textStart);
+      if (textMap.decode().equals(textChars)) // same text after round trip?
+      {
+        syncHexMap = new HexByteChar2HexMap(byteField.getDocument(),
+          hexChars, 0);           // link both sides after text is replaced
+        syncTextMap = textMap;
+      }
       byteField.requestFocusInWindow(); // give keyboard focus to result
     }
     catch (UnsupportedEncodingException uee)
@@ -684,488 +1354,10782 @@ public class HexByteChar2
 
 
 /*
-  doReadButton() method
+  currentDataBytes() method
 
-  Read a file as bytes, convert those bytes to hexadecimal, and put this into
-  the text area for hex data bytes.  We don't update the the other text area
-  for text characters.  (The user can do that.)
+  Return all hex data bytes as binary bytes.  Parsing a big hex text is slow, so
+  the result is saved until the text area changes.  Return <null> if the hex
+  text has errors.  (A pop-up message will be produced.)
 */
-  static void doReadButton()
+  static byte[] currentDataBytes()
   {
-    byte[] fileBuffer;            // one big buffer to hold entire file
-    int fileLength;               // size of user's file in bytes
-    FileInputStream fileStream;   // read bytes directly, no buffering
-    int i;                        // index variable
-    File userFile;                // Java File object to read
-
-    /* Ask the user for an input file to read. */
+    if (byteData == null)         // do we need to parse the hex text again?
+      byteData = hexDataToBytes(byteField.getText(), false);
+    return(byteData);
+  }
 
-    fileChooser.resetChoosableFileFilters(); // remove any existing filters
-    fileChooser.setDialogTitle("Read File as Bytes...");
-    fileChooser.setFileHidingEnabled(true); // don't show hidden files
-    fileChooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
-    fileChooser.setMultiSelectionEnabled(false); // allow only one file
-    if (fileChooser.showOpenDialog(mainFrame) != JFileChooser.APPROVE_OPTION)
-      return;                     // user cancelled file selection dialog box
-    userFile = fileChooser.getSelectedFile(); // get file selected by user
 
-    /* See if we can read from the user's chosen file. */
+/*
+  currentHexMap() method
 
-    if ((userFile.isFile() == false) || (userFile.canRead() == false))
-    {
-      JOptionPane.showMessageDialog(mainFrame, (userFile.getName()
-        + " does not exist or can't be read."));
-      return;
-    }
+  Return an index for where each data byte is found in the hex text.  The index
+  is saved until the text area changes.
+*/
+  static HexByteChar2HexMap currentHexMap()
+  {
+    if (byteMap == null)          // do we need to scan the hex text again?
+      byteMap = new HexByteChar2HexMap(byteField.getDocument(),
+        byteField.getText(), 0);
+    return(byteMap);
+  }
 
-    /* Check size of user's file and try to read all data bytes at once. */
 
-    fileLength = (int) Math.min(userFile.length(), Integer.MAX_VALUE);
-    if (fileLength < 1)           // can't do much with less than one byte
-    {
-      JOptionPane.showMessageDialog(mainFrame, (userFile.getName()
-        + " is empty (zero bytes)."));
-      return;
-    }
-    try                           // not all I/O goes as planned
-    {
-      fileBuffer = new byte[fileLength]; // one big buffer for entire file
-      fileStream = new FileInputStream(userFile); // read as raw data bytes
-      i = fileStream.read(fileBuffer); // try to read entire file
-      fileStream.close();         // don't need this file anymore
-      if (fileLength != i)        // did we get exactly what we expected?
-      {
-        JOptionPane.showMessageDialog(mainFrame, (userFile.getName()
-          + " size is " + fileLength + " bytes but read length was " + i
-          + " bytes."));
-        return;
-      }
+/*
+  doAnalyzeRunner() method
 
-      /* Convert file binary bytes to hex data bytes, and put into the text
-      area for hex data bytes. */
+  Count all byte values and line endings in a background thread, then show a
+  histogram, entropy for each window of bytes, and a short summary by calling
+  this method again on the GUI thread.
+*/
+  static void doAnalyzeRunner()
+  {
+    double chiSquare;             // difference from uniform random bytes
+    long count;                   // number of times one byte value appears
+    double expected;              // count for each value if uniform random
+    double[] histogram;           // count of each byte value for chart
+    int i;                        // index variable
+    double maximum;               // largest count in histogram
+    long printable;               // number of printable ASCII bytes
+    StringBuffer report;          // text of summary report
+    HexByteChar2Stats stats;      // merged results from parallel pass
+    int unique;                   // number of different byte values found
 
-      byteField.setText(hexDataFromBytes(fileBuffer)); // replace all text
-      byteField.select(0, 0);     // scroll home, default is end of text
-      byteField.requestFocusInWindow(); // give keyboard focus to result
-    }
-    catch (IOException ioe)
+    if (SwingUtilities.isEventDispatchThread() == false) // count everything
     {
-      JOptionPane.showMessageDialog(mainFrame, ("Can't read file "
-        + userFile.getName() + "\n" + ioe.getMessage()));
-      return;
+      analyzeStats = HexByteChar2Stats.analyze(analyzeInput);
+      analyzeInput = null;        // don't keep a reference to data bytes
+      SwingUtilities.invokeLater(new HexByteChar2User("doAnalyzeRunner"));
+      return;                     // show results on GUI thread
     }
-    catch (OutOfMemoryError oome)
+    stats = analyzeStats;         // results from background thread
+    analyzeStats = null;
+    analyzeToolItem.setEnabled(true); // allow another analysis
+
+    /* Summarize the byte histogram. */
+
+    chiSquare = maximum = 0.0;
+    expected = stats.byteCount / 256.0;
+    histogram = new double[256];
+    printable = stats.counts[0x09] + stats.counts[0x0A] + stats.counts[0x0D];
+    unique = 0;
+    for (i = 0; i < 256; i ++)
     {
-      JOptionPane.showMessageDialog(mainFrame, (userFile.getName() + " has "
-        + fileLength + " bytes,\nwhich is too big for this program."));
-      return;
+      count = stats.counts[i];
+      chiSquare += (count - expected) * (count - expected) / expected;
+      histogram[i] = count;
+      maximum = Math.max(maximum, count);
+      if ((i >= 0x20) && (i <= 0x7E)) printable += count;
+      if (count > 0) unique ++;
     }
 
-//  JOptionPane.showMessageDialog(mainFrame, (fileLength + " bytes read."));
+    report = new StringBuffer();
+    report.append(stats.byteCount + " data bytes, " + unique
+      + " different values.\n");
+    report.append("Entropy: " + formatDecimal(HexByteChar2Stats.entropy(
+      stats.counts, stats.byteCount), 4) + " bits per byte (8 is random).\n");
+    report.append("Chi-square: " + formatDecimal(chiSquare, 1)
+      + " (about 255 for random bytes).\n");
+    report.append("Printable ASCII: " + formatDecimal((100.0 * printable
+      / stats.byteCount), 2) + "%, zero bytes: " + stats.counts[0x00]
+      + ", high bytes: " + (stats.byteCount - stats.lowCount) + ".\n");
+    report.append("Line endings: " + stats.crlfCount + " CR+LF, "
+      + stats.lineFeedCount + " LF only, " + stats.returnCount
+      + " CR only.\n");
+    if ((100 * printable) >= (95 * stats.byteCount))
+      report.append("Probably text.");
+    else if ((unique == 256) && (chiSquare < 400.0))
+      report.append("Probably encrypted or random.");
+    else if (HexByteChar2Stats.entropy(stats.counts, stats.byteCount) > 7.5)
+      report.append("Probably compressed.");
+    else
+      report.append("Probably binary data.");
 
-  } // end of doReadButton() method
+    /* Show the summary, histogram, and entropy chart in a dialog box. */
+
+    JPanel panel1 = new JPanel(new BorderLayout(0, 10));
+    JTextArea text2 = new JTextArea(report.toString());
+    text2.setEditable(false);
+    text2.setOpaque(false);
+    panel1.add(text2, BorderLayout.NORTH);
+    panel1.add(new HexByteChar2Chart("Byte values 00 to FF", histogram,
+      maximum, true), BorderLayout.CENTER);
+    panel1.add(new HexByteChar2Chart(("Entropy for each " + stats.windowSize
+      + " bytes, 0 to 8 bits"), stats.entropy, 8.0, false),
+      BorderLayout.SOUTH);
+    JOptionPane.showMessageDialog(mainFrame, panel1, "Analyze Bytes",
+      JOptionPane.PLAIN_MESSAGE);
+
+  } // end of doAnalyzeRunner() method
 
 
 /*
-  doWriteButton() method
+  doAnalyzeTool() method
 
-  Convert hex data bytes to real binary bytes and write those bytes to a file.
+  Help the user decide if unknown data bytes are text, compressed, or
+  encrypted.  The counting is done by a background thread, in parallel.
 */
-  static void doWriteButton()
+  static void doAnalyzeTool()
   {
     byte[] dataBytes;             // encoded (binary) data bytes
-    FileOutputStream fileStream;  // write bytes directly, no buffering
-    String hexChars;              // characters from user's hex data bytes
-    File userFile;                // Java File object to write
-
-    /* Convert user's hexadecimal data bytes to binary bytes. */
 
-    hexChars = byteField.getSelectedText(); // first look for a selection
-    if ((hexChars == null) || (hexChars.length() == 0)) // if no selection
-      hexChars = byteField.getText(); // get all hex data bytes
-    dataBytes = hexDataToBytes(hexChars, false); // try convert to real bytes
+    dataBytes = currentDataBytes(); // get all data bytes, maybe saved
     if (dataBytes == null)        // was there an error, did we tell user?
       return;                     // yes, do nothing more
-    else if (dataBytes.length == 0) // don't create an empty file
+    else if (dataBytes.length == 0) // can't do much with nothing
     {
       JOptionPane.showMessageDialog(mainFrame,
-        "There are no hex data bytes to write.");
+        "There are no hex data bytes to analyze.");
       return;
     }
+    analyzeInput = dataBytes;     // give data bytes to background thread
+    analyzeToolItem.setEnabled(false); // only one analysis at a time
+    workerPool.execute(new HexByteChar2User("doAnalyzeRunner"));
 
-    /* Ask the user for an output file to write. */
+  } // end of doAnalyzeTool() method
 
-    fileChooser.resetChoosableFileFilters(); // remove any existing filters
-    fileChooser.setDialogTitle("Write File as Bytes...");
-    fileChooser.setFileHidingEnabled(true); // don't show hidden files
-    fileChooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
-    fileChooser.setMultiSelectionEnabled(false); // allow only one file
-    if (fileChooser.showOpenDialog(mainFrame) != JFileChooser.APPROVE_OPTION)
-      return;                     // user cancelled file selection dialog box
-    userFile = fileChooser.getSelectedFile(); // get file selected by user
 
-    /* See if we can write to the user's chosen file. */
+/*
+  doCheckProgress() method
 
-    if (userFile.isDirectory())   // can't write to directories or folders
-    {
-      JOptionPane.showMessageDialog(mainFrame, (userFile.getName()
-        + " is a directory or folder.\nPlease select a normal file."));
-      return;
-    }
-    else if (userFile.isHidden()) // won't write to hidden (protected) files
-    {
-      JOptionPane.showMessageDialog(mainFrame, (userFile.getName()
-        + " is a hidden or protected file.\nPlease select a normal file."));
+  Show how many data bytes have been checked, on the GUI thread, and notice if
+  the user clicked the "Cancel" button.
+*/
+  static void doCheckProgress()
+  {
+    if ((checkMonitor == null) || (checkInput == null)) // already finished
       return;
-    }
-    else if (userFile.isFile() == false) // if file doesn't exist
+    checkMonitor.setProgress((int) ((1000L * checkPosition) / Math.max(1,
+      checkInput.length)));
+    if (checkMonitor.isCanceled())
+      checkCancelFlag = true;     // background thread stops after this block
+
+  } // end of doCheckProgress() method
+
+
+/*
+  doCheckRunner() method
+
+  Check the data bytes in a background thread, one block at a time, so that the
+  user sees progress and may cancel.  Then show the results by calling this
+  method again on the GUI thread, in the document that was checked.
+*/
+  static void doCheckRunner()
+  {
+    HexByteChar2Validator checker; // finds bad data bytes
+    byte[] dataBytes;             // encoded (binary) data bytes
+    ByteBuffer input;             // data bytes, one more block each time
+
+    if (SwingUtilities.isEventDispatchThread() == false) // check everything
     {
-      /* Maybe we can create a new file by this name.  Do nothing here. */
+      checker = new HexByteChar2Validator(checkCharset);
+      input = ByteBuffer.wrap(checkInput);
+      input.limit(0);             // incomplete sequences wait for next block
+      while ((checkCancelFlag == false) && (input.limit()
+        < checkInput.length))
+      {
+        input.limit((int) Math.min(checkInput.length, ((long) input.limit()
+          + HexByteChar2Validator.BLOCK_SIZE)));
+        checker.scan(input, (input.limit() == checkInput.length));
+        checkPosition = input.limit();
+        SwingUtilities.invokeLater(new HexByteChar2User("doCheckProgress"));
+      }
+      checkResult = checker;
+      SwingUtilities.invokeLater(new HexByteChar2User("doCheckRunner"));
+      return;                     // show results on GUI thread
     }
-    else if (userFile.canWrite() == false) // file exists, but is read-only
+    checker = checkResult;        // results from background thread
+    dataBytes = checkInput;
+    checkInput = null;            // don't keep a reference to data bytes
+    checkResult = null;
+    checkMonitor.close();
+    checkMonitor = null;
+    checkToolItem.setEnabled(true); // allow another check
+    if (checkCancelFlag || (showDocument(checkDocument) == false))
+      return;                     // user cancelled, or document was closed
+    if (byteData != dataBytes)    // hex text changed while checking
     {
-      JOptionPane.showMessageDialog(mainFrame, (userFile.getName()
-        + " is locked or write protected.\nCan't write to this file."));
+      JOptionPane.showMessageDialog(mainFrame,
+        "The hex data bytes changed while checking.  Please check again.");
       return;
     }
-    else if (JOptionPane.showConfirmDialog(mainFrame, (userFile.getName()
-      + " already exists.\nDo you want to replace this with a new file?"))
-      != JOptionPane.YES_OPTION)
-    {
-      return;                     // user cancelled file replacement dialog
-    }
 
-    /* Write real binary bytes to the user's file. */
-
-    try                           // not all I/O goes as planned
-    {
-      fileStream = new FileOutputStream(userFile); // write as raw data bytes
-      fileStream.write(dataBytes); // try to write entire file
-      fileStream.close();         // don't need this file anymore
-      byteField.requestFocusInWindow(); // give keyboard focus to source
-    }
-    catch (IOException ioe)
+    showErrorHighlights(checker);
+    if (checker.count == 0)
     {
-      JOptionPane.showMessageDialog(mainFrame, ("Can't write file "
-        + userFile.getName() + "\n" + ioe.getMessage()));
+      JOptionPane.showMessageDialog(mainFrame, ("All " + dataBytes.length
+        + " data bytes are valid " + checkCharset.name() + "."));
+      return;
+    }
+    new HexByteChar2RangeList(mainFrame, ("Check Encoding: " + checker.total
+      + " bad in " + checkCharset.name() + ((checker.total > checker.count)
+      ? " (more not shown)" : "")), checker.labels(), checker.starts,
+      checker.ends, checker.count);
+
+  } // end of doCheckRunner() method
+
+
+/*
+  doCheckTool() method
+
+  Check the data bytes with the user's selected encoding, and find every
+  malformed or unmappable sequence, instead of silently replacing them during
+  a conversion.  Bad data bytes are highlighted in the hex text, and a list of
+  offsets lets the user jump from one to the next.  The check is done by a
+  background thread, with a progress dialog for big inputs.
+*/
+  static void doCheckTool()
+  {
+    Charset charset;              // user's encoding
+    String code;                  // user's character set encoding
+    byte[] dataBytes;             // encoded (binary) data bytes
+
+    dataBytes = currentDataBytes(); // get all data bytes, maybe saved
+    if (dataBytes == null)        // was there an error, did we tell user?
+      return;                     // yes, do nothing more
+    code = (String) encodeDialog.getSelectedItem(); // get name of encoding
+    try                           // name for encoding may be invalid
+    {
+      if (code.equals(RAW_ENCODING)) // raw data bytes are never wrong
+      {
+        JOptionPane.showMessageDialog(mainFrame,
+          "All data bytes are valid as raw data bytes.");
+        return;
+      }
+      else if (code.equals(LOCAL_ENCODING)) // use local system's encoding?
+        charset = localCharset();
+      else                        // user has selected an encoding
+        charset = charsetForName(code);
+    }
+    catch (UnsupportedEncodingException uee)
+    {
+      JOptionPane.showMessageDialog(mainFrame,
+        ("Unknown or unsupported character set encoding:\n"
+        + uee.getMessage()));
+      return;
+    }
+
+    checkCancelFlag = false;      // give data bytes to background thread
+    checkCharset = charset;
+    checkDocument = currentDocument; // results are shown in this document
+    checkInput = dataBytes;
+    checkMonitor = new ProgressMonitor(mainFrame, ("Checking "
+      + dataBytes.length + " data bytes as " + charset.name() + "..."), null,
+      0, 1000);                   // shown only if checking takes a while
+    checkPosition = 0;
+    checkToolItem.setEnabled(false); // only one check at a time
+    workerPool.execute(new HexByteChar2User("doCheckRunner"));
+
+  } // end of doCheckTool() method
+
+
+/*
+  doCloseTab() method
+
+  Close the current document.  Its text areas, edit history, and saved data
+  bytes are all forgotten.  The last document can't be closed.
+*/
+  static void doCloseTab()
+  {
+    HexByteChar2Document closing; // document being closed
+
+    if (documentTabs.getTabCount() < 2) // always keep one document
+      return;
+    closing = currentDocument;
+    if (closing == followDocument) // stop following into closed document
+      stopFollowing();
+    documentTabs.remove(closing.panel); // selects another tab, and document
+    closeToolItem.setEnabled(documentTabs.getTabCount() > 1);
+
+  } // end of doCloseTab() method
+
+
+/*
+  doDumpRunner() method
+
+  Write a hex dump in a background thread, then show the result by calling
+  this method again on the GUI thread.
+*/
+  static void doDumpRunner()
+  {
+    long length;                  // number of data bytes in input file
+    long timer;                   // elapsed time in milliseconds
+
+    if (SwingUtilities.isEventDispatchThread()) // called to show results?
+    {
+      JOptionPane.showMessageDialog(mainFrame, dumpReport);
+      dumpToolItem.setEnabled(true); // allow another hex dump
+      return;
+    }
+
+    timer = System.currentTimeMillis();
+    try                           // not all I/O goes as planned
+    {
+      length = writeHexDump(dumpStream, dumpOutput);
+      timer = System.currentTimeMillis() - timer;
+      dumpReport = length + " data bytes from " + dumpInput.getName()
+        + "\nwritten as hex text to " + dumpOutput.getName() + "\nin "
+        + formatDecimal((timer / 1000.0), 3) + " seconds.";
+    }
+    catch (IOException ioe)
+    {
+      dumpReport = "Can't write hex dump " + dumpOutput.getName() + "\n"
+        + ioe.getMessage();
+    }
+    SwingUtilities.invokeLater(new HexByteChar2User("doDumpRunner"));
+                                  // show results on GUI thread
+  } // end of doDumpRunner() method
+
+
+/*
+  doDumpTool() method
+
+  Ask for an input file and an output file, and write the input as hex text
+  with the same layout as the hex data bytes.  The input file is not read into
+  the text area, so it may be any size.  Compressed files may be decompressed
+  first, as for the "Read File" button.
+*/
+  static void doDumpTool()
+  {
+    File inputFile, outputFile;   // Java File objects to read and write
+    InputStream inputStream;      // data bytes, maybe decompressed
+
+    /* Ask the user for an input file to read. */
+
+    fileChooser.resetChoosableFileFilters(); // remove any existing filters
+    fileChooser.setDialogTitle("Read File for Hex Dump...");
+    fileChooser.setFileHidingEnabled(true); // don't show hidden files
+    fileChooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
+    fileChooser.setMultiSelectionEnabled(false); // allow only one file
+    if (fileChooser.showOpenDialog(mainFrame) != JFileChooser.APPROVE_OPTION)
+      return;                     // user cancelled file selection dialog box
+    inputFile = fileChooser.getSelectedFile(); // get file selected by user
+    if ((inputFile.isFile() == false) || (inputFile.canRead() == false))
+    {
+      JOptionPane.showMessageDialog(mainFrame, (inputFile.getName()
+        + " does not exist or can't be read."));
+      return;
+    }
+
+    /* Ask the user for an output file to write. */
+
+    fileChooser.setDialogTitle("Write Hex Dump as Text...");
+    fileChooser.setSelectedFile(new File(inputFile.getPath() + ".txt"));
+    if (fileChooser.showSaveDialog(mainFrame) != JFileChooser.APPROVE_OPTION)
+      return;                     // user cancelled file selection dialog box
+    outputFile = fileChooser.getSelectedFile();
+    if (outputFile.isDirectory()) // can't write to directories or folders
+    {
+      JOptionPane.showMessageDialog(mainFrame, (outputFile.getName()
+        + " is a directory or folder.\nPlease select a normal file."));
+      return;
+    }
+    else if (outputFile.equals(inputFile)) // would destroy its own input
+    {
+      JOptionPane.showMessageDialog(mainFrame,
+        "Input and output must be different files.");
+      return;
+    }
+    else if (outputFile.isFile() && (outputFile.canWrite() == false))
+    {
+      JOptionPane.showMessageDialog(mainFrame, (outputFile.getName()
+        + " is locked or write protected.\nCan't write to this file."));
+      return;
+    }
+    else if (outputFile.isFile() && (JOptionPane.showConfirmDialog(mainFrame,
+      (outputFile.getName()
+      + " already exists.\nDo you want to replace this with a new file?"))
+      != JOptionPane.YES_OPTION))
+    {
+      return;                     // user cancelled file replacement dialog
+    }
+
+    try                           // not all I/O goes as planned
+    {
+      inputStream = openDataStream(inputFile); // maybe compressed
+    }
+    catch (IOException ioe)
+    {
+      JOptionPane.showMessageDialog(mainFrame, ("Can't read file "
+        + inputFile.getName() + "\n" + ioe.getMessage()));
+      return;
+    }
+    if (inputStream == null)      // user cancelled choice for compressed file
+      return;
+
+    dumpInput = inputFile;        // give files to background thread
+    dumpOutput = outputFile;
+    dumpStream = inputStream;
+    dumpToolItem.setEnabled(false); // only one hex dump at a time
+    workerPool.execute(new HexByteChar2User("doDumpRunner"));
+
+  } // end of doDumpTool() method
+
+
+/*
+  doFollowRunner() method
+
+  Read new bytes from the followed file in a background thread, and format them
+  as hex data bytes (and maybe decode text characters).  A file that gets
+  smaller has been replaced or truncated, so we start again from the beginning.
+  The results are appended by calling this method again on the GUI thread.
+  Only the last <FOLLOW_LIMIT> data bytes are kept, as whole lines.  The
+  followed file may be in a document that isn't selected, so we only use that
+  document's text areas, and don't select it.  There is only one read at a
+  time, and the GUI thread doesn't change the follow state during a read.
+*/
+  static void doFollowRunner()
+  {
+    ByteBuffer buffer;            // new data bytes from file
+    JTextArea bytes;              // text area for hex data bytes
+    FileChannel channel;          // file being followed, or null
+    Document document;            // hex data bytes as a document
+    int length;                   // number of new data bytes
+    int lines;                    // number of lines to remove from front
+    long size;                    // current size of file in bytes
+
+    if (SwingUtilities.isEventDispatchThread() == false) // read new bytes
+    {
+      channel = followChannel;    // user may stop following while we read
+      followChars = followHex = ""; // nothing new yet
+      followError = null;
+      followRestartFlag = false;
+      try                         // not all I/O goes as planned
+      {
+        size = (channel == null) ? followPosition : channel.size();
+        if ((size < followPosition) // file is smaller than before
+          || ((size - followPosition) > FOLLOW_LIMIT)) // or too much to show
+        {
+          followPosition = (size <= FOLLOW_LIMIT) ? 0 : (((size - FOLLOW_LIMIT
+            + followLineSize - 1) / followLineSize) * followLineSize);
+                                  // start of whole lines, near the end
+          followIndex = 0;
+          followRestartFlag = true;
+          if (followDecoder != null) followDecoder.reset();
+          followLeftover.clear();
+        }
+        if (size > followPosition) // something new in file
+        {
+          length = (int) (size - followPosition);
+          buffer = ByteBuffer.allocate(length);
+          while (buffer.hasRemaining()
+            && (channel.read(buffer, (followPosition + buffer.position()))
+            > 0))
+          {
+            /* read() does everything */
+          }
+          length = buffer.position(); // file may be truncated while reading
+          followPosition += length;
+          followHex = hexDataFromBytes(buffer.array(), length, followIndex,
+            followLineSize, followGroupSize); // in line with what is there
+          followIndex += length;
+          if (followTextFlag)
+            followChars = followDecode(buffer.array(), length);
+        }
+      }
+      catch (IOException ioe) { followError = ioe; }
+      SwingUtilities.invokeLater(new HexByteChar2User("doFollowRunner"));
+      return;                     // append results on GUI thread
+    }
+
+    followBusyFlag = false;       // allow another read
+    if (followChannel == null)    // user stopped following while we read
+    {
+      followToolItem.setEnabled(true); // allow following again
+      return;
+    }
+    if (followError != null)
+    {
+      stopFollowing();
+      JOptionPane.showMessageDialog(mainFrame, ("Can't read file "
+        + followFile.getName() + "\n" + followError.getMessage()));
+      return;
+    }
+    bytes = followDocument.byteField;
+    document = bytes.getDocument();
+    try                           // document positions should be correct
+    {
+      if (followRestartFlag)      // started again from new position
+      {
+        bytes.setText("");
+        if (followTextFlag) followDocument.charField.setText("");
+      }
+
+      /* Append hex data bytes, and remove whole lines from the front. */
+
+      if (followHex.length() > 0)
+      {
+        document.insertString(document.getLength(), followHex, null);
+        if (followIndex > FOLLOW_LIMIT)
+        {
+          lines = (int) ((followIndex - FOLLOW_LIMIT + followLineSize - 1)
+            / followLineSize);
+          if (lines < document.getDefaultRootElement().getElementCount())
+          {
+            document.remove(0, document.getDefaultRootElement()
+              .getElement(lines).getStartOffset());
+            followIndex -= (long) lines * followLineSize;
+          }
+        }
+        bytes.setCaretPosition(document.getLength()); // scroll to end
+      }
+
+      /* Append text characters, if the user wants them. */
+
+      if (followTextFlag && (followChars.length() > 0))
+        followText(followDocument.charField, followChars);
+    }
+    catch (BadLocationException ble) { /* should never happen */ }
+    followChars = followHex = null; // don't keep a reference to results
+    if (followAgainFlag)          // file changed again while we read
+    {
+      followAgainFlag = false;
+      doFollowTimer();
+    }
+  } // end of doFollowRunner() method
+
+
+/*
+  doFollowTimer() method
+
+  Check if the followed file has grown, when the timer fires or the folder
+  watcher reports a change.  The file is read by a background thread.  A change
+  reported during a read is checked again when that read is done.
+*/
+  static void doFollowTimer()
+  {
+    if (followChannel == null)    // event after we stopped
+      return;
+    if (followBusyFlag)           // already reading
+    {
+      followAgainFlag = true;
+      return;
+    }
+    followBusyFlag = true;
+    workerPool.execute(new HexByteChar2User("doFollowRunner"));
+  }
+
+
+/*
+  doFollowWatcher() method
+
+  Wait for changes in the folder of the followed file, and check the file on
+  the GUI thread when it changes.  This runs on a thread of its own, not the
+  shared worker pool, since it waits for as long as the file is followed.  The
+  thread ends when stopFollowing() closes the watch service.
+*/
+  static void doFollowWatcher()
+  {
+    boolean changed;              // true if followed file changed
+    java.util.List<java.nio.file.WatchEvent<?>> events; // changes in folder
+    int i;                        // index variable
+    java.nio.file.WatchKey key;   // changes reported together
+    java.nio.file.Path name;      // name of followed file, without folder
+    java.nio.file.WatchService watcher; // same as <followWatcher>, or null
+
+    name = followFile.toPath().getFileName();
+    watcher = followWatcher;      // may be closed before we get here
+    if (watcher == null)
+      return;
+    try                           // ends when watch service is closed
+    {
+      while (true)
+      {
+        key = watcher.take();     // wait for changes
+        changed = false;
+        events = key.pollEvents();
+        for (i = 0; i < events.size(); i ++)
+        {
+          if ((events.get(i).kind()
+            == java.nio.file.StandardWatchEventKinds.OVERFLOW) // lost events
+            || name.equals(events.get(i).context()))
+          {
+            changed = true;
+          }
+        }
+        if (changed)
+          SwingUtilities.invokeLater(new HexByteChar2User("doFollowTimer"));
+        key.reset();              // report more changes
+      }
+    }
+    catch (java.nio.file.ClosedWatchServiceException cwse) { /* stopped */ }
+    catch (InterruptedException ie) { /* stopped */ }
+  }
+
+
+/*
+  doFollowTool() method
+
+  Start or stop following a growing file.  The menu item changes to say which.
+  We watch the file's folder for changes, and also poll the file size with a
+  timer: often if the folder can't be watched, and slowly if it can, because
+  some file systems (such as network shares) accept a watch and then don't
+  report changes made by other computers.
+*/
+  static void doFollowTool()
+  {
+    int choice;                   // user's answer to yes-no-cancel dialog
+    String code;                  // name of character set encoding
+    Thread thread;                // waits for changes in file's folder
+    File userFile;                // Java File object to follow
+
+    if (followChannel != null)    // already following, so stop
+    {
+      stopFollowing();
+      return;
+    }
+
+    /* Ask the user for a file to follow. */
+
+    fileChooser.resetChoosableFileFilters(); // remove any existing filters
+    fileChooser.setDialogTitle("Follow File as Bytes...");
+    fileChooser.setFileHidingEnabled(true); // don't show hidden files
+    fileChooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
+    fileChooser.setMultiSelectionEnabled(false); // allow only one file
+    if (fileChooser.showOpenDialog(mainFrame) != JFileChooser.APPROVE_OPTION)
+      return;                     // user cancelled file selection dialog box
+    userFile = fileChooser.getSelectedFile(); // get file selected by user
+    if ((userFile.isFile() == false) || (userFile.canRead() == false))
+    {
+      JOptionPane.showMessageDialog(mainFrame, (userFile.getName()
+        + " does not exist or can't be read."));
+      return;
+    }
+
+    /* Ask if text should also be decoded with the current encoding. */
+
+    code = (String) encodeDialog.getSelectedItem(); // get name of encoding
+    choice = JOptionPane.showConfirmDialog(mainFrame, ("Also show text using "
+      + code + "?"), "Follow File", JOptionPane.YES_NO_CANCEL_OPTION);
+    if ((choice != JOptionPane.YES_OPTION) && (choice != JOptionPane.NO_OPTION))
+      return;                     // user cancelled
+    followTextFlag = (choice == JOptionPane.YES_OPTION);
+    followDecoder = null;
+    followRawFlag = false;
+    try                           // name for encoding may be invalid
+    {
+      if (followTextFlag == false) { /* no decoder needed */ }
+      else if (code.equals(RAW_ENCODING)) // use raw bytes as characters?
+        followRawFlag = true;
+      else
+        followDecoder = ((code.equals(LOCAL_ENCODING)) ? localCharset()
+          : charsetForName(code)).newDecoder()
+          .onMalformedInput(CodingErrorAction.REPLACE)
+          .onUnmappableCharacter(CodingErrorAction.REPLACE);
+      followChannel = new FileInputStream(userFile).getChannel();
+    }
+    catch (UnsupportedEncodingException uee)
+    {
+      JOptionPane.showMessageDialog(mainFrame,
+        ("Unknown or unsupported character set encoding:\n"
+        + uee.getMessage()));
+      return;
+    }
+    catch (IOException ioe)
+    {
+      JOptionPane.showMessageDialog(mainFrame, ("Can't read file "
+        + userFile.getName() + "\n" + ioe.getMessage()));
+      return;
+    }
+
+    /* Start with the end of the file, and check for more bytes later. */
+
+    followAgainFlag = false;
+    followFile = userFile;
+    followGroupSize = byteGroupSize; // keep this layout while following
+    followIndex = 0;
+    followLeftover = ByteBuffer.allocate(16); // longest partial character
+    followLineSize = byteLineSize;
+    followPosition = Long.MAX_VALUE; // force a fresh start on first check
+    byteHistory.suspendFlag = true; // one edit step when following stops
+    if (followTextFlag) charHistory.suspendFlag = true;
+    byteField.setText("");
+    if (followTextFlag) charField.setText("");
+    followToolItem.setText("Stop Following");
+    followDocument = currentDocument; // new bytes go to this document
+    doFollowTimer();              // show what is there now
+
+    /* Watch the file's folder if we can, and poll with the timer. */
+
+    try                           // not all file systems can be watched
+    {
+      followWatcher = java.nio.file.FileSystems.getDefault()
+        .newWatchService();
+      userFile.getAbsoluteFile().getParentFile().toPath().register(
+        followWatcher, java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY);
+      thread = new Thread(new HexByteChar2User("doFollowWatcher"),
+        "HexByteChar2Follow");
+      thread.setDaemon(true);     // don't keep program running
+      thread.start();
+    }
+    catch (IOException ioe) { stopWatching(); }
+    catch (java.nio.file.InvalidPathException ipe) { stopWatching(); }
+    catch (UnsupportedOperationException uoe) { stopWatching(); }
+    followTimer.setDelay((followWatcher == null) ? FOLLOW_DELAY
+      : FOLLOW_WATCHED);
+    followTimer.start();
+
+  } // end of doFollowTool() method
+
+
+/*
+  doHashRunner() method
+
+  Calculate checksums in a background thread, so that the GUI doesn't freeze.
+  If the data bytes only have new bytes added to the end since the last time,
+  then only the new bytes are given to the saved checksums.  The results are
+  shown by calling this method again on the GUI thread.
+*/
+  static void doHashRunner()
+  {
+    byte[] dataBytes;             // encoded (binary) data bytes
+    HexByteChar2Hashes hashes;    // checksums being calculated
+    int i;                        // index variable
+    String[] names, results;      // names and values of checksums
+    int start;                    // index of first data byte to calculate
+    long timer;                   // elapsed time in milliseconds
+
+    if (SwingUtilities.isEventDispatchThread()) // called to show results?
+    {
+      JTextArea text1 = new JTextArea(hashReport);
+      text1.setEditable(false);   // user may select and copy results
+      text1.setFont(new Font("Monospaced", Font.PLAIN,
+        byteField.getFont().getSize()));
+      JOptionPane.showMessageDialog(mainFrame, text1, "Checksums",
+        JOptionPane.PLAIN_MESSAGE);
+      hashToolItem.setEnabled(true); // allow another calculation
+      return;
+    }
+
+    dataBytes = hashInput;        // data bytes given by doHashTool()
+    hashInput = null;
+    timer = System.currentTimeMillis();
+    hashes = hashDocument.hashState; // saved for document, maybe null
+    if ((hashSelectFlag == false) && (hashes != null)
+      && (hashDocument.hashData != null) && (dataBytes.length
+      >= hashes.byteCount) && samePrefix(hashDocument.hashData, dataBytes,
+      (int) hashes.byteCount))
+    {
+      start = (int) hashes.byteCount; // continue with saved checksums
+    }
+    else                          // start new checksums
+    {
+      hashes = new HexByteChar2Hashes();
+      start = 0;
+    }
+    hashes.update(dataBytes, start, (dataBytes.length - start));
+    names = HexByteChar2Hashes.NAMES;
+    results = hashes.results();
+    timer = System.currentTimeMillis() - timer;
+    if (hashSelectFlag == false)  // save checksums for all data bytes
+    {
+      hashDocument.hashData = dataBytes;
+      hashDocument.hashState = hashes;
+    }
+
+    hashReport = (hashSelectFlag ? "Selected" : "All") + " data bytes: "
+      + dataBytes.length + ((start > 0) ? (" (" + (dataBytes.length - start)
+      + " new)") : "") + ", " + timer + " ms\n";
+    for (i = 0; i < names.length; i ++)
+      hashReport += "\n" + (names[i] + "        ").substring(0, 8)
+        + results[i];
+    SwingUtilities.invokeLater(new HexByteChar2User("doHashRunner"));
+                                  // show results on GUI thread
+  } // end of doHashRunner() method
+
+
+/*
+  doHashTool() method
+
+  Calculate checksums for the selected data bytes, or for all data bytes if
+  there is no selection.  The work is done by a background thread.
+*/
+  static void doHashTool()
+  {
+    byte[] dataBytes;             // encoded (binary) data bytes
+    String hexChars;              // characters from user's hex data bytes
+
+    hexChars = byteField.getSelectedText(); // first look for a selection
+    hashSelectFlag = (hexChars != null) && (hexChars.length() > 0);
+    if (hashSelectFlag)           // convert only the selection
+      dataBytes = hexDataToBytes(hexChars, false);
+    else                          // no selection, use all data bytes
+      dataBytes = currentDataBytes();
+    if (dataBytes == null)        // was there an error, did we tell user?
+      return;                     // yes, do nothing more
+
+    hashDocument = currentDocument; // checksums are saved for this document
+    hashInput = dataBytes;        // give data bytes to background thread
+    hashToolItem.setEnabled(false); // only one calculation at a time
+    workerPool.execute(new HexByteChar2User("doHashRunner"));
+
+  } // end of doHashTool() method
+
+
+/*
+  doLayoutTool() method
+
+  Show all data bytes with offsets, hex, and characters in the selected encoding
+  on each line.  Only the visible lines are formatted, so this is quick for any
+  size of hex text.
+*/
+  static void doLayoutTool()
+  {
+    Charset charset;              // user's encoding, or null for raw bytes
+    String code;                  // user's character set encoding
+    byte[] dataBytes;             // encoded (binary) data bytes
+
+    dataBytes = currentDataBytes(); // get all data bytes, maybe saved
+    if (dataBytes == null)        // was there an error, did we tell user?
+      return;                     // yes, do nothing more
+    code = (String) encodeDialog.getSelectedItem(); // get name of encoding
+    try                           // name for encoding may be invalid
+    {
+      if (code.equals(LOCAL_ENCODING)) // use local system's encoding?
+        charset = localCharset();
+      else if (code.equals(RAW_ENCODING)) // use raw bytes as characters?
+        charset = null;
+      else                        // user has selected an encoding
+        charset = charsetForName(code);
+      new HexByteChar2LayoutDialog(mainFrame, dataBytes, charset, code);
+    }
+    catch (UnsupportedEncodingException uee)
+    {
+      JOptionPane.showMessageDialog(mainFrame,
+        ("Unknown or unsupported character set encoding:\n"
+        + uee.getMessage()));
+    }
+  } // end of doLayoutTool() method
+
+
+/*
+  doNewTab() method
+
+  Open another document in a new tab, with empty text areas that look like the
+  current ones.  Each document has its own data bytes, text characters, edit
+  history, encoding, and saved results.  Documents share the same layout of hex
+  data bytes, character set codecs, and background threads.
+*/
+  static void doNewTab()
+  {
+    HexByteChar2User action;      // listener for new text areas
+    JTextArea bytes, chars;       // text areas for new document
+    HexByteChar2Document document; // new document
+    int i;                        // index variable
+    JTextArea text;               // either text area, for keyboard shortcuts
+
+    action = new HexByteChar2User(); // listeners don't have any state
+    bytes = new JTextArea();
+    bytes.setFont(byteField.getFont());
+    bytes.setLineWrap(byteField.getLineWrap());
+    bytes.setMargin(byteField.getMargin());
+    bytes.setWrapStyleWord(true);
+    JScrollPane scroll1 = new JScrollPane(bytes);
+    scroll1.setBorder(BorderFactory.createEmptyBorder());
+
+    chars = new JTextArea();
+    chars.setFont(charField.getFont());
+    chars.setLineWrap(true);
+    chars.setMargin(charField.getMargin());
+    chars.setWrapStyleWord(true);
+    JScrollPane scroll2 = new JScrollPane(chars);
+    scroll2.setBorder(BorderFactory.createEmptyBorder());
+
+    JSplitPane split3 = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, scroll1,
+      scroll2);
+    split3.setBorder(BorderFactory.createEmptyBorder());
+    split3.setResizeWeight(0.6);  // same as first document
+    document = new HexByteChar2Document(split3, bytes, chars);
+
+    for (i = 0; i < 2; i ++)      // same listeners and keys as main()
+    {
+      text = (i == 0) ? bytes : chars;
+      text.addCaretListener(action);
+      text.getDocument().addDocumentListener(action);
+      addEditKeys(text, action);
+    }
+    documentTabs.addTab(("Untitled " + (documentTabs.getTabCount() + 1)),
+      split3);
+    documentTabs.setSelectedComponent(split3); // selects document
+    closeToolItem.setEnabled(true);
+    bytes.requestFocusInWindow();
+
+  } // end of doNewTab() method
+
+
+/*
+  doPatchTool() method
+
+  Ask the user for a file to change in place.  The file is mapped, not read, and
+  only changed bytes are written, so the file may be very big.
+*/
+  static void doPatchTool()
+  {
+    File userFile;                // Java File object to change
+
+    fileChooser.resetChoosableFileFilters(); // remove any existing filters
+    fileChooser.setDialogTitle("Patch File...");
+    fileChooser.setFileHidingEnabled(true); // don't show hidden files
+    fileChooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
+    fileChooser.setMultiSelectionEnabled(false); // allow only one file
+    if (fileChooser.showOpenDialog(mainFrame) != JFileChooser.APPROVE_OPTION)
+      return;                     // user cancelled file selection dialog box
+    userFile = fileChooser.getSelectedFile(); // get file selected by user
+    if ((userFile.isFile() == false) || (userFile.canRead() == false)
+      || (userFile.length() < 1))
+    {
+      JOptionPane.showMessageDialog(mainFrame, (userFile.getName()
+        + " does not exist, is empty, or can't be read."));
+      return;
+    }
+    try                           // not all I/O goes as planned
+    {
+      new HexByteChar2PatchDialog(mainFrame, new HexByteChar2Overlay(
+        userFile));
+    }
+    catch (IOException ioe)
+    {
+      JOptionPane.showMessageDialog(mainFrame, ("Can't read file "
+        + userFile.getName() + "\n" + ioe.getMessage()));
+    }
+  } // end of doPatchTool() method
+
+
+/*
+  doReadButton() method
+
+  Ask the user for a file to read as bytes.  See readFile() for the rest.
+*/
+  static void doReadButton()
+  {
+    fileChooser.resetChoosableFileFilters(); // remove any existing filters
+    fileChooser.setDialogTitle("Read File as Bytes...");
+    fileChooser.setFileHidingEnabled(true); // don't show hidden files
+    fileChooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
+    fileChooser.setMultiSelectionEnabled(false); // allow only one file
+    if (fileChooser.showOpenDialog(mainFrame) != JFileChooser.APPROVE_OPTION)
+      return;                     // user cancelled file selection dialog box
+    readFile(fileChooser.getSelectedFile()); // get file selected by user
+
+  } // end of doReadButton() method
+
+
+/*
+  doUndoRedo() method
+
+  Undo or redo the last change to one of our text areas.  If the restored text
+  came from a conversion, then also select the encoding that was used.
+*/
+  static void doUndoRedo(JTextArea text, boolean redoFlag)
+  {
+    String encoding;              // encoding for restored text, or null
+    HexByteChar2History history;  // edit history for this text area
+
+    history = (text == byteField) ? byteHistory : charHistory;
+    if ((redoFlag ? history.redo() : history.undo()) == false)
+    {
+      Toolkit.getDefaultToolkit().beep(); // nothing to undo or redo
+      return;
+    }
+    encoding = history.currentEncoding(); // encoding for restored text
+    if (encoding != null)
+      encodeDialog.setSelectedItem(encoding);
+    text.requestFocusInWindow(); // give keyboard focus to result
+
+  } // end of doUndoRedo() method
+
+
+/*
+  doUnicodeRunner() method
+
+  Check text characters in a background thread, then show the results by
+  calling this method again on the GUI thread, in the document that was
+  checked.  The first check also builds the tables for all characters.
+*/
+  static void doUnicodeRunner()
+  {
+    long[] ends, starts;          // text positions for each result
+    int i;                        // index variable
+    HexByteChar2RangeList list;   // results, one line each
+    HexByteChar2Unicode scanner;  // finds and saves results
+    JTextArea text1;              // summary above the list of results
+
+    if (SwingUtilities.isEventDispatchThread() == false) // check everything
+    {
+      scanner = new HexByteChar2Unicode(unicodeCharset);
+      scanner.scan(unicodeInput);
+      unicodeInput = null;        // don't keep a reference to the text
+      unicodeResult = scanner;
+      SwingUtilities.invokeLater(new HexByteChar2User("doUnicodeRunner"));
+      return;                     // show results on GUI thread
+    }
+    scanner = unicodeResult;      // results from background thread
+    unicodeResult = null;
+    unicodeToolItem.setEnabled(true); // allow another check
+    if (showDocument(unicodeDocument) == false) // document was closed
+      return;
+    if (scanner.count == 0)
+    {
+      JOptionPane.showMessageDialog(mainFrame, scanner.summary(),
+        "Check Unicode Text", JOptionPane.PLAIN_MESSAGE);
+      return;
+    }
+    ends = new long[scanner.count];
+    starts = new long[scanner.count];
+    for (i = 0; i < scanner.count; i ++)
+    {
+      starts[i] = unicodeStart + scanner.starts[i];
+      ends[i] = unicodeStart + scanner.ends[i];
+    }
+    list = new HexByteChar2RangeList(mainFrame, ("Check Unicode Text: "
+      + scanner.total + " found" + ((scanner.total > scanner.count)
+      ? " (more not shown)" : "")), scanner.labels(), starts, ends,
+      scanner.count, charField);
+    text1 = new JTextArea(scanner.summary());
+    text1.setEditable(false);
+    text1.setOpaque(false);
+    list.getContentPane().add(text1, BorderLayout.NORTH);
+    list.validate();
+
+  } // end of doUnicodeRunner() method
+
+
+/*
+  doUnicodeTool() method
+
+  Check the text characters (or the selection) for characters that may not be
+  what they seem: invisible and bidi control characters, characters changed by
+  normalization, and letters from another script inside a word.  Each result
+  shows the data bytes in the user's encoding and their offset.  Clicking on a
+  result selects that character in the text.  The check is done by a
+  background thread.
+*/
+  static void doUnicodeTool()
+  {
+    Charset charset;              // user's encoding, or null for raw bytes
+    String code;                  // user's character set encoding
+    String textChars;             // characters from user's text area
+    int textStart;                // text position of first character
+
+    code = (String) encodeDialog.getSelectedItem(); // get name of encoding
+    textChars = charField.getSelectedText(); // first look for a selection
+    textStart = charField.getSelectionStart(); // where selection begins
+    if ((textChars == null) || (textChars.length() == 0)) // if no selection
+    {
+      textChars = charField.getText(); // get all text characters
+      textStart = 0;              // and they start at the beginning
+    }
+    if (textChars.length() == 0)  // can't do much with nothing
+    {
+      JOptionPane.showMessageDialog(mainFrame,
+        "There are no text characters to check.");
+      return;
+    }
+    try                           // name for encoding may be invalid
+    {
+      if (code.equals(RAW_ENCODING)) // one data byte per character
+        charset = null;
+      else if (code.equals(LOCAL_ENCODING)) // use local system's encoding?
+        charset = localCharset();
+      else                        // user has selected an encoding
+        charset = charsetForName(code);
+    }
+    catch (UnsupportedEncodingException uee)
+    {
+      JOptionPane.showMessageDialog(mainFrame,
+        ("Unknown or unsupported character set encoding:\n"
+        + uee.getMessage()));
+      return;
+    }
+
+    unicodeCharset = charset;     // give text to background thread
+    unicodeDocument = currentDocument; // results are shown in this document
+    unicodeInput = textChars;
+    unicodeStart = textStart;
+    unicodeToolItem.setEnabled(false); // only one check at a time
+    workerPool.execute(new HexByteChar2User("doUnicodeRunner"));
+
+  } // end of doUnicodeTool() method
+
+
+/*
+  doWriteButton() method
+
+  Convert hex data bytes to real binary bytes and write those bytes to a file.
+*/
+  static void doWriteButton()
+  {
+    byte[] dataBytes;             // encoded (binary) data bytes
+    FileOutputStream fileStream;  // write bytes directly, no buffering
+    String hexChars;              // characters from user's hex data bytes
+    File userFile;                // Java File object to write
+
+    /* Convert user's hexadecimal data bytes to binary bytes. */
+
+    hexChars = byteField.getSelectedText(); // first look for a selection
+    if ((hexChars == null) || (hexChars.length() == 0)) // if no selection
+      hexChars = byteField.getText(); // get all hex data bytes
+    dataBytes = hexDataToBytes(hexChars, false); // try convert to real bytes
+    if (dataBytes == null)        // was there an error, did we tell user?
+      return;                     // yes, do nothing more
+    else if (dataBytes.length == 0) // don't create an empty file
+    {
+      JOptionPane.showMessageDialog(mainFrame,
+        "There are no hex data bytes to write.");
+      return;
+    }
+
+    /* Ask the user for an output file to write. */
+
+    fileChooser.resetChoosableFileFilters(); // remove any existing filters
+    fileChooser.setDialogTitle("Write File as Bytes...");
+    fileChooser.setFileHidingEnabled(true); // don't show hidden files
+    fileChooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
+    fileChooser.setMultiSelectionEnabled(false); // allow only one file
+    if (fileChooser.showOpenDialog(mainFrame) != JFileChooser.APPROVE_OPTION)
+      return;                     // user cancelled file selection dialog box
+    userFile = fileChooser.getSelectedFile(); // get file selected by user
+
+    /* See if we can write to the user's chosen file. */
+
+    if (userFile.isDirectory())   // can't write to directories or folders
+    {
+      JOptionPane.showMessageDialog(mainFrame, (userFile.getName()
+        + " is a directory or folder.\nPlease select a normal file."));
+      return;
+    }
+    else if (userFile.isHidden()) // won't write to hidden (protected) files
+    {
+      JOptionPane.showMessageDialog(mainFrame, (userFile.getName()
+        + " is a hidden or protected file.\nPlease select a normal file."));
+      return;
+    }
+    else if (userFile.isFile() == false) // if file doesn't exist
+    {
+      /* Maybe we can create a new file by this name.  Do nothing here. */
+    }
+    else if (userFile.canWrite() == false) // file exists, but is read-only
+    {
+      JOptionPane.showMessageDialog(mainFrame, (userFile.getName()
+        + " is locked or write protected.\nCan't write to this file."));
+      return;
+    }
+    else if (JOptionPane.showConfirmDialog(mainFrame, (userFile.getName()
+      + " already exists.\nDo you want to replace this with a new file?"))
+      != JOptionPane.YES_OPTION)
+    {
+      return;                     // user cancelled file replacement dialog
+    }
+
+    /* Write real binary bytes to the user's file. */
+
+    try                           // not all I/O goes as planned
+    {
+      fileStream = new FileOutputStream(userFile); // write as raw data bytes
+      fileStream.write(dataBytes); // try to write entire file
+      fileStream.close();         // don't need this file anymore
+      byteField.requestFocusInWindow(); // give keyboard focus to source
+    }
+    catch (IOException ioe)
+    {
+      JOptionPane.showMessageDialog(mainFrame, ("Can't write file "
+        + userFile.getName() + "\n" + ioe.getMessage()));
       return;
     }
 
 //  JOptionPane.showMessageDialog(mainFrame, (dataBytes.length
 //    + " bytes written."));
 
-  } // end of doWriteButton() method
+  } // end of doWriteButton() method
+
+
+/*
+  doSearchRunner() method
+
+  Update the index for a folder and search it in a background thread, then show
+  the results by calling this method again on the GUI thread.
+*/
+  static void doSearchRunner()
+  {
+    int count;                    // number of results
+    File file;                    // file for one result
+    File[] files;                 // file for each result
+    int i;                        // index variable
+    String[] labels;              // one line for each result
+    String prefix;                // folder name removed from results
+    java.util.Vector<HexByteChar2Index> segments; // all segments for folder
+    long[] starts, ends;          // data bytes for each result
+    long timer;                   // elapsed time in milliseconds
+
+    if (SwingUtilities.isEventDispatchThread()) // called to show results?
+    {
+      searchToolItem.setEnabled(true); // allow another search
+      if ((searchResults == null) || (searchResults.size() == 0))
+      {
+        JOptionPane.showMessageDialog(mainFrame, searchReport);
+        return;
+      }
+      count = searchResults.size() / 2;
+      ends = new long[count];
+      files = new File[count];
+      labels = new String[count];
+      prefix = searchFolder.getPath() + File.separator;
+      starts = new long[count];
+      for (i = 0; i < count; i ++)
+      {
+        file = (File) searchResults.get(2 * i);
+        files[i] = file;
+        starts[i] = ((Long) searchResults.get((2 * i) + 1)).longValue();
+        ends[i] = starts[i] + searchQuery.length;
+        labels[i] = file.getPath().substring(prefix.length()) + "  "
+          + starts[i];
+      }
+      new HexByteChar2RangeList(mainFrame, ("Search Folder: " + searchReport),
+        labels, starts, ends, count, files);
+      return;
+    }
+
+    timer = System.currentTimeMillis();
+    searchResults = null;
+    try                           // not all I/O goes as planned
+    {
+      segments = HexByteChar2Index.update(searchFolder);
+      try { searchResults = HexByteChar2Index.search(segments, searchQuery); }
+      finally { HexByteChar2Index.close(segments); }
+      timer = System.currentTimeMillis() - timer;
+      searchReport = (searchResults.size() / 2) + " found"
+        + ((searchResults.size() >= (2 * HexByteChar2Index.MAX_RESULTS))
+        ? " (more not shown)" : "") + " in "
+        + (HexByteChar2Index.indexedCount + HexByteChar2Index.reusedCount)
+        + " files, " + HexByteChar2Index.indexedCount + " indexed, "
+        + formatDecimal((timer / 1000.0), 3) + " seconds";
+    }
+    catch (IOException ioe)
+    {
+      searchReport = "Can't search folder " + searchFolder.getName() + "\n"
+        + ioe.getMessage();
+    }
+    SwingUtilities.invokeLater(new HexByteChar2User("doSearchRunner"));
+                                  // show results on GUI thread
+  } // end of doSearchRunner() method
+
+
+/*
+  doSearchTool() method
+
+  Ask for a folder and for hex data bytes or text, then find every copy in all
+  files under that folder.  An index of each file is kept in the session
+  folder, so only new and changed files are read again.  Clicking on a result
+  reads that file and selects the data bytes.
+*/
+  static void doSearchTool()
+  {
+    String code;                  // user's character set encoding
+    File folder;                  // folder selected by user
+    byte[] query;                 // data bytes to find
+
+    fileChooser.resetChoosableFileFilters(); // remove any existing filters
+    fileChooser.setDialogTitle("Search Folder...");
+    fileChooser.setFileHidingEnabled(true); // don't show hidden files
+    fileChooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+    fileChooser.setMultiSelectionEnabled(false); // allow only one folder
+    if (fileChooser.showOpenDialog(mainFrame) != JFileChooser.APPROVE_OPTION)
+      return;                     // user cancelled file selection dialog box
+    folder = fileChooser.getSelectedFile(); // get folder selected by user
+    if (folder.isDirectory() == false)
+    {
+      JOptionPane.showMessageDialog(mainFrame, (folder.getName()
+        + " is not a folder."));
+      return;
+    }
+
+    /* Ask for hex data bytes, or text in the user's encoding. */
+
+    code = (String) encodeDialog.getSelectedItem(); // get name of encoding
+    JPanel panel1 = new JPanel(new GridLayout(2, 1, 0, 5));
+    JTextField text2 = new JTextField(byteField.getSelectedText());
+    panel1.add(text2);
+    JCheckBox check3 = new JCheckBox("Text in " + code);
+    panel1.add(check3);
+    if (JOptionPane.showConfirmDialog(mainFrame, panel1,
+      "Hex data bytes to find:", JOptionPane.OK_CANCEL_OPTION)
+      != JOptionPane.OK_OPTION)
+    {
+      return;                     // user cancelled our dialog box
+    }
+    try { query = searchBytes(text2.getText(), check3.isSelected(), code); }
+    catch (UnsupportedEncodingException uee)
+    {
+      JOptionPane.showMessageDialog(mainFrame,
+        ("Unknown or unsupported character set encoding:\n"
+        + uee.getMessage()));
+      return;
+    }
+    if (query == null)            // was there an error, did we tell user?
+      return;
+    if (query.length == 0)
+    {
+      JOptionPane.showMessageDialog(mainFrame, "Nothing to find.");
+      return;
+    }
+
+    searchFolder = folder;        // give folder to background thread
+    searchQuery = query;
+    searchToolItem.setEnabled(false); // only one search at a time
+    workerPool.execute(new HexByteChar2User("doSearchRunner"));
+
+  } // end of doSearchTool() method
+
+
+/*
+  doStringsRunner() method
+
+  Find runs of text in a background thread, then show the results by calling
+  this method again on the GUI thread, in the document that was searched.
+*/
+  static void doStringsRunner()
+  {
+    HexByteChar2Strings scanner;  // finds and saves runs of text
+
+    if (SwingUtilities.isEventDispatchThread() == false) // scan everything
+    {
+      scanner = new HexByteChar2Strings(stringsMinimum);
+      scanner.scan(stringsInput, 0, stringsInput.length, 0);
+      scanner.finish();
+      if (stringsCharset != null)
+        scanner.scanCharset(stringsInput, stringsCharset);
+      scanner.sort();
+      stringsInput = null;        // don't keep a reference to data bytes
+      stringsResult = scanner;
+      SwingUtilities.invokeLater(new HexByteChar2User("doStringsRunner"));
+      return;                     // show results on GUI thread
+    }
+    scanner = stringsResult;      // results from background thread
+    stringsResult = null;
+    stringsToolItem.setEnabled(true); // allow another search
+    if (showDocument(stringsDocument) == false) // document was closed
+      return;
+    if (scanner.count == 0)
+    {
+      JOptionPane.showMessageDialog(mainFrame, ("No strings with "
+        + stringsMinimum + " or more characters were found."));
+      return;
+    }
+    new HexByteChar2RangeList(mainFrame, ("Find Strings: " + scanner.count
+      + (scanner.overflowFlag ? " (more not shown)" : "")), scanner.labels(),
+      scanner.starts, scanner.ends, scanner.count);
+
+  } // end of doStringsRunner() method
+
+
+/*
+  doStringsTool() method
+
+  Find runs of readable text in binary data bytes, like the UNIX "strings"
+  command.  ASCII, UTF-8, UTF-16LE, and UTF-16BE are found in one pass.  The
+  user's selected encoding may also be searched, as a second pass.  Clicking on
+  a result selects those data bytes in the hex text.  The search is done by a
+  background thread.
+*/
+  static void doStringsTool()
+  {
+    Charset charset;              // user's encoding, or null if not searched
+    String code;                  // user's character set encoding
+    byte[] dataBytes;             // encoded (binary) data bytes
+    int minimum;                  // minimum number of characters in a run
+
+    dataBytes = currentDataBytes(); // get all data bytes, maybe saved
+    if (dataBytes == null)        // was there an error, did we tell user?
+      return;                     // yes, do nothing more
+
+    /* Ask for the minimum length, and if we also search the user's encoding. */
+
+    code = (String) encodeDialog.getSelectedItem(); // get name of encoding
+    JPanel panel1 = new JPanel(new GridLayout(2, 1, 0, 5));
+    JTextField text2 = new JTextField("6");
+    panel1.add(text2);
+    JCheckBox check3 = new JCheckBox("Also search as " + code);
+    check3.setEnabled(code.equals(RAW_ENCODING) == false);
+    panel1.add(check3);
+    if (JOptionPane.showConfirmDialog(mainFrame, panel1,
+      "Minimum number of characters:", JOptionPane.OK_CANCEL_OPTION)
+      != JOptionPane.OK_OPTION)
+    {
+      return;                     // user cancelled our dialog box
+    }
+    try { minimum = Integer.parseInt(text2.getText().trim()); }
+    catch (NumberFormatException nfe) { minimum = -1; }
+    if ((minimum < 1) || (minimum > 9999))
+    {
+      JOptionPane.showMessageDialog(mainFrame,
+        "Minimum number of characters must be from 1 to 9999.");
+      return;
+    }
+    charset = null;               // assume no search in user's encoding
+    if (check3.isSelected())
+    {
+      try                         // name for encoding may be invalid
+      {
+        if (code.equals(LOCAL_ENCODING)) // use local system's encoding?
+          charset = localCharset();
+        else                      // user has selected an encoding
+          charset = charsetForName(code);
+      }
+      catch (UnsupportedEncodingException uee)
+      {
+        JOptionPane.showMessageDialog(mainFrame,
+          ("Unknown or unsupported character set encoding:\n"
+          + uee.getMessage()));
+        return;
+      }
+    }
+
+    stringsCharset = charset;     // give data bytes to background thread
+    stringsDocument = currentDocument; // results are shown in this document
+    stringsInput = dataBytes;
+    stringsMinimum = minimum;
+    stringsToolItem.setEnabled(false); // only one search at a time
+    workerPool.execute(new HexByteChar2User("doStringsRunner"));
+
+  } // end of doStringsTool() method
+
+
+/*
+  doZorgButton() method
+
+  Clean up the hex data bytes.  Convert to binary bytes while ignoring errors.
+  Convert back again to hex.  Compare to see if something has changed.  Nothing
+  is accomplished most of the time, and this button is usually disabled.
+
+  Named after the character "Jean-Baptiste Emanuel Zorg" (or just "Zorg") in
+  the movie "The Fifth Element" (1997), played by Gary Oldman, who didn't like
+  his own performance but is otherwise terrific in the role.
+*/
+  static void doZorgButton()
+  {
+    byte[] dataBytes;             // encoded (binary) data bytes
+    String newHex;                // updated hex data bytes
+    String oldHex;                // original hex data bytes
+
+    oldHex = byteField.getText(); // get all current hex data bytes
+    dataBytes = hexDataToBytes(oldHex, true); // force convert to real bytes
+    newHex = hexDataFromBytes(dataBytes); // convert back to hex data bytes
+    if (newHex.equals(oldHex))    // has anything really changed?
+      JOptionPane.showMessageDialog(mainFrame,
+        "Zorg accomplishes nothing despite great efforts.");
+    else
+    {
+      byteField.setText(newHex);  // replace all previous hex data bytes
+      byteField.select(0, 0);     // scroll home, default is end of text
+    }
+    byteField.requestFocusInWindow(); // give keyboard focus to result
+
+  } // end of doZorgButton() method
+
+
+/*
+  followDecode() method
+
+  Decode new data bytes from a followed file.  Bytes at the end that are only
+  part of a character are kept for next time.  This is called by a background
+  thread.
+*/
+  static String followDecode(byte[] data, int length)
+  {
+    ByteBuffer bytes;             // leftover bytes plus new bytes
+    CharBuffer chars;             // decoded characters
+    byte[] raw;                   // exact copy of new data bytes
+
+    if (followRawFlag)            // raw data bytes as characters
+    {
+      raw = new byte[length];
+      System.arraycopy(data, 0, raw, 0, length);
+      chars = CharBuffer.wrap(rawBytesToString(raw));
+    }
+    else
+    {
+      bytes = ByteBuffer.allocate(followLeftover.position() + length);
+      followLeftover.flip();
+      bytes.put(followLeftover);
+      bytes.put(data, 0, length);
+      bytes.flip();
+      chars = CharBuffer.allocate((int) (bytes.remaining()
+        * followDecoder.maxCharsPerByte()) + 4);
+      followDecoder.decode(bytes, chars, false); // keep partial characters
+      followLeftover.clear();
+      if (bytes.remaining() <= followLeftover.capacity())
+        followLeftover.put(bytes);
+      chars.flip();
+    }
+    return(chars.toString());
+
+  } // end of followDecode() method
+
+
+/*
+  followText() method
+
+  Append decoded text from a followed file.  Only the last <FOLLOW_LIMIT>
+  characters are kept.
+*/
+  static void followText(JTextArea text, String chars)
+    throws BadLocationException
+  {
+    char ch;                      // first character left after removing
+    Document document;            // text characters as a document
+    int excess;                   // number of characters to remove from front
+
+    document = text.getDocument();
+    document.insertString(document.getLength(), chars, null);
+    excess = document.getLength() - FOLLOW_LIMIT;
+    if (excess > 0)               // remove characters from front
+    {
+      ch = document.getText(excess, 1).charAt(0);
+      if ((ch >= 0xDC00) && (ch <= 0xDFFF)) // don't split a surrogate pair
+        excess ++;
+      document.remove(0, excess);
+    }
+    text.setCaretPosition(document.getLength()); // scroll to end
+
+  } // end of followText() method
+
+
+/*
+  formatDecimal() method
+
+  Format a number with a fixed number of decimal digits.  (The Java 1.4 class
+  DecimalFormat is more than we need here.)
+*/
+  static String formatDecimal(double value, int digits)
+  {
+    java.math.BigDecimal result; // rounds exactly as we want
+
+    result = new java.math.BigDecimal(value);
+    return(result.setScale(digits, java.math.RoundingMode.HALF_UP)
+      .toString());
+  }
+
+
+/*
+  hashFiles() method
+
+  Print checksums for files given on the command line, as a console
+  application.  Each file is read once in big blocks, and each block is given
+  to all checksums at the same time.  Return an exit status for the caller.
+*/
+  static int hashFiles(java.util.Vector<String> fileList)
+  {
+    byte[] buffer;                // one block of data bytes from file
+    FileInputStream fileStream;   // read bytes directly, no buffering
+    HexByteChar2Hashes hashes;    // checksums for one file
+    int i, k;                     // index variables
+    int length;                   // number of bytes read into buffer
+    String name;                  // one file name from command line
+    String[] names, results;      // names and values of checksums
+    int status;                   // exit status for this command
+
+    buffer = new byte[HexByteChar2Hashes.BLOCK_SIZE];
+    names = HexByteChar2Hashes.NAMES;
+    status = EXIT_UNKNOWN;        // nothing done yet
+    if (fileList.size() == 0)
+    {
+      System.err.println("No file names given for -hash option.");
+      return(EXIT_FAILURE);
+    }
+    for (i = 0; i < fileList.size(); i ++)
+    {
+      name = fileList.get(i);
+      hashes = new HexByteChar2Hashes();
+      try                         // not all I/O goes as planned
+      {
+        fileStream = new FileInputStream(name);
+        try
+        {
+          while ((length = fileStream.read(buffer)) > 0)
+            hashes.update(buffer, 0, length); // all checksums, same block
+        }
+        finally { fileStream.close(); } // even if a read fails
+      }
+      catch (IOException ioe)
+      {
+        System.err.println("Can't read file " + name + ": "
+          + ioe.getMessage());
+        status = EXIT_FAILURE;
+        continue;
+      }
+      results = hashes.results();
+      for (k = 0; k < names.length; k ++)
+        System.out.println(names[k] + " (" + name + ") = " + results[k]);
+    }
+    return(status);
+
+  } // end of hashFiles() method
+
+
+/*
+  hexCacheEncoding() method
+
+  Return the encoding for hex text in the cache.  Hex text is plain ASCII, which
+  is fastest to read as ISO-8859-1, unless the user has chosen separators with
+  other characters.
+*/
+  static String hexCacheEncoding()
+  {
+    return(((byteGapString + groupGapString).matches("[\\x00-\\x7F]*"))
+      ? "ISO-8859-1" : "UTF-8");
+  }
+
+
+/*
+  hexCacheKey() method
+
+  Return the settings that change how hex text is formatted, for the cache.
+*/
+  static String hexCacheKey()
+  {
+    return("\"" + byteGapString + "\" \"" + groupGapString + "\" "
+      + byteGroupSize + " " + byteLineSize);
+  }
+
+
+/*
+  hexDataFromBytes() method
+
+  Convert real binary bytes to hexadecimal characters representing those bytes.
+  We insert a space to separate bytes, with an occasional newline character (to
+  help word wrap in JTextArea).  No errors are detected by this method.
+
+  The number of bytes between newline characters may be almost anything up to
+  about 128 KB, after which the speed of JTextArea starts to deteriorate.  The
+  difference can be hours to display instead of seconds!  The current number
+  was chosen to be a multiple of common sizes and will disguise some newlines.
+*/
+  static String hexDataFromBytes(byte[] input)
+  {
+    return(hexDataFromBytes(input, input.length, 0));
+  }
+
+  static String hexDataFromBytes(byte[] input, int length, long index)
+  {
+    return(hexDataFromBytes(input, length, index, byteLineSize,
+      byteGroupSize));
+  }
+
+  static String hexDataFromBytes(byte[] input, int length, long index,
+    int lineSize, int groupSize)
+  {
+    char[] buffer;                // converted characters, exact size
+    char[] byteGap, groupGap;     // separators as character arrays
+    long end;                     // index after last byte in whole text
+    long first;                   // index of first byte after a separator
+    int groups;                   // number of new groups, not lines
+    int i, k;                     // index variables
+    int lines;                    // number of new lines
+    int nextGroup, nextLine;      // index of byte that starts next group, line
+    int used;                     // number of characters in <buffer>
+    int value;                    // one binary data byte as an integer
+
+    if (length == 0)              // nothing to convert
+      return("");
+
+    /* This is called for every conversion and file, so it works directly in a
+    character array of the exact size, with no division or modulo per byte.
+    That is several times faster than StringBuffer.append() per character.
+    <lineSize> is always a multiple of <groupSize>.
+
+    <index> is the number of data bytes already in the text before these, so
+    that more bytes may be appended with the same lines and groups.  The result
+    then starts with a separator. */
+
+    byteGap = byteGapString.toCharArray();
+    groupGap = groupGapString.toCharArray();
+    end = index + length;
+    first = Math.max(index, 1);   // first byte never has a separator
+    lines = (int) (((end - 1) / lineSize) - ((first - 1) / lineSize));
+    groups = (int) (((end - 1) / groupSize) - ((first - 1) / groupSize))
+      - lines;
+    buffer = new char[(length * 2) + lines + (groups * groupGap.length)
+      + ((int) (end - first - lines - groups) * byteGap.length)];
+    nextGroup = (int) ((((first + groupSize - 1) / groupSize)
+      * groupSize) - index); // relative to first byte in <input>
+    nextLine = (int) ((((first + lineSize - 1) / lineSize)
+      * lineSize) - index);
+    used = 0;
+    for (i = 0; i < length; i ++) // for each input byte
+    {
+      if ((i == 0) && (index == 0)) { /* no space at beginning */ }
+      else if (i == nextLine)     // start a new line
+      {
+        buffer[used ++] = '\n';
+        nextGroup += groupSize;
+        nextLine += lineSize;
+      }
+      else if (i == nextGroup)    // start a new group
+      {
+        for (k = 0; k < groupGap.length; k ++)
+          buffer[used ++] = groupGap[k];
+        nextGroup += groupSize;
+      }
+      else if (byteGap.length == 1) // usually a space between bytes
+        buffer[used ++] = byteGap[0];
+      else
+      {
+        for (k = 0; k < byteGap.length; k ++)
+          buffer[used ++] = byteGap[k];
+      }
+      value = input[i] & BYTE_MASK; // get one binary data byte
+      buffer[used ++] = HEX_DIGITS[value >> 4]; // high-order digit
+      buffer[used ++] = HEX_DIGITS[value & 0x0F]; // low-order hex digit
+    }
+    return(new String(buffer));   // give caller our converted string
+
+  } // end of hexDataFromBytes() method
+
+
+/*
+  hexDataToBytes() method
+
+  Convert hexadecimal characters representing data bytes to real binary bytes.
+  Return <null> if the input has errors.  (A pop-up message will be produced,
+  unless we are running without a GUI window, as for the local web server.)
+*/
+  static byte[] hexDataToBytes(String input, boolean ignoreErrorsFlag)
+  {
+    char ch;                      // one character from input string
+    byte[] dataBytes;             // encoded (binary) data bytes
+    int dataLength;               // number of data bytes in <dataBytes>
+    int digitCount;               // number of digits found in current byte
+    int i;                        // index variable
+    char[] inputChars;            // one block of characters from input
+    int inputLength;              // number of characters in <input>
+    int inputUsed;                // number of characters in <inputChars>
+    byte[] result;                // cleaned up result with correct length
+    int start;                    // index of <inputChars> in <input>
+    int value;                    // one binary data byte as an integer
+    int what;                     // hex digit value, or <HEX_VALUE_GAP>, etc
+
+    /* Characters are copied in blocks, which is faster than charAt() for each
+    character, without a second copy of a big input string. */
+
+    dataLength = 0;               // no binary data bytes found
+    digitCount = 0;               // no digits found in current byte
+    inputLength = input.length(); // number of hex digits or spaces, etc
+    dataBytes = new byte[(inputLength + 1) / 2]; // at most one byte for every
+                                  // ... two characters
+    inputChars = new char[Math.min(inputLength, 0x10000)];
+    value = 0;                    // no initial value for this data byte
+    for (start = 0; start < inputLength; start += inputUsed)
+    {
+      inputUsed = Math.min(inputChars.length, (inputLength - start));
+      input.getChars(start, (start + inputUsed), inputChars, 0);
+      for (i = 0; i < inputUsed; i ++)
+      {
+        ch = inputChars[i];       // get one hex digit, punctuation, other
+        what = (ch < HEX_VALUES.length) ? HEX_VALUES[ch] : HEX_VALUE_BAD;
+        if (what >= 0)            // hexadecimal digit, either case
+        {
+          value = (value << 4) + what; // shift old left, add new digit
+          if (++ digitCount >= 2) // new binary byte every two hex digits
+          {
+            dataBytes[dataLength ++] = (byte) value; // save one data byte
+            digitCount = value = 0; // no half data for next digit
+          }
+        }
+        else if (ignoreErrorsFlag || (what == HEX_VALUE_GAP))
+        {
+          if (digitCount > 0)     // accept a single digit
+          {
+            dataBytes[dataLength ++] = (byte) value;
+            digitCount = value = 0;
+          }
+        }
+        else                      // draw the line at obviously bad input
+        {
+          if (mainFrame != null)  // only tell user if there is a GUI
+            JOptionPane.showMessageDialog(mainFrame,
+              ("Data bytes may have hexadecimal digits (0-9 A-F a-f)\nand basic punctuation as separators."));
+          return(null);           // don't bother doing anything more
+        }
+      }
+    }
+    if (digitCount > 0)           // could be a trailing single digit
+    {
+      dataBytes[dataLength ++] = (byte) value;
+    }
+
+    if (dataLength == dataBytes.length) // usually not the correct length
+      return(dataBytes);
+    result = new byte[dataLength]; // truncate array to correct length
+    System.arraycopy(dataBytes, 0, result, 0, dataLength);
+    return(result);               // give caller correct byte array
+
+  } // end of hexDataToBytes() method
+
+
+/*
+  indexFolders() method
+
+  Bring the index up to date for folders given on the command line, and print
+  statistics, as a console application.  Return an exit status for the caller.
+*/
+  static int indexFolders(java.util.Vector<String> fileList)
+  {
+    long blocks, bytes;           // indexed blocks and data bytes
+    int file;                     // file number in segment
+    File folder;                  // one folder from command line
+    int files, live;              // file entries, and files not changed
+    int i, k;                     // index variables
+    long postings;                // bytes of posting lists
+    HexByteChar2Index segment;    // one segment
+    java.util.Vector<HexByteChar2Index> segments; // all segments for folder
+    int status;                   // exit status for this command
+    long timer;                   // elapsed time in milliseconds
+
+    status = EXIT_UNKNOWN;        // nothing done yet
+    if (fileList.size() == 0)
+    {
+      System.err.println("No folder names given for -index option.");
+      return(EXIT_FAILURE);
+    }
+    for (i = 0; i < fileList.size(); i ++)
+    {
+      folder = new File(fileList.get(i));
+      timer = System.currentTimeMillis();
+      try { segments = HexByteChar2Index.update(folder); }
+      catch (IOException ioe)
+      {
+        System.err.println("Can't index folder " + folder.getPath() + ": "
+          + ioe.getMessage());
+        status = EXIT_FAILURE;
+        continue;
+      }
+      timer = System.currentTimeMillis() - timer;
+      blocks = postings = 0;
+      files = live = 0;
+      for (k = 0; k < segments.size(); k ++)
+      {
+        segment = segments.get(k);
+        blocks += segment.firstBlocks[segment.fileCount];
+        files += segment.fileCount;
+        postings += segment.bucketStarts[HexByteChar2Index.BUCKETS];
+        for (file = 0; file < segment.fileCount; file ++)
+          if (segment.liveFlags[file]) live ++;
+      }
+      bytes = HexByteChar2Index.indexedBytes;
+      HexByteChar2Index.close(segments);
+      System.out.println(folder.getPath() + ": " + live + " files, "
+        + HexByteChar2Index.indexedCount + " indexed (" + bytes
+        + " bytes), " + HexByteChar2Index.reusedCount + " not changed, in "
+        + formatDecimal((timer / 1000.0), 3) + " seconds");
+      System.out.println("  " + segments.size() + " segments, " + files
+        + " entries, " + blocks + " blocks, " + postings
+        + " bytes of posting lists");
+    }
+    return(status);
+
+  } // end of indexFolders() method
+
+
+/*
+  makeHexValues() method
+
+  Create a table for hexDataToBytes() with the value of each hex digit, or a
+  negative number for ASCII punctuation (0x00 to 0x2F, 0x3A to 0x40, 0x5B to
+  0x60, 0x7B to 0x7F) and for other characters.  One table lookup is faster
+  than a series of comparisons for each character.
+*/
+  static byte[] makeHexValues()
+  {
+    int i;                        // index variable
+    byte[] result;                // our table, indexed by character
+
+    result = new byte[0x80];      // only ASCII characters are in the table
+    for (i = 0; i < result.length; i ++)
+    {
+      if ((i >= '0') && (i <= '9')) // decimal digit?
+        result[i] = (byte) (i - '0');
+      else if ((i >= 'A') && (i <= 'F')) // uppercase hex digit?
+        result[i] = (byte) (i - 'A' + 10);
+      else if ((i >= 'a') && (i <= 'f')) // lowercase hex digit?
+        result[i] = (byte) (i - 'a' + 10);
+      else if (((i >= 'G') && (i <= 'Z')) || ((i >= 'g') && (i <= 'z')))
+        result[i] = HEX_VALUE_BAD; // letters that aren't hex digits
+      else
+        result[i] = HEX_VALUE_GAP; // everything else is ASCII punctuation
+    }
+    return(result);
+
+  } // end of makeHexValues() method
+
+
+/*
+  localCharset() method
+
+  Return the local system's default character set encoding, the same as used
+  by String.getBytes() and new String() without an encoding name.
+*/
+  static Charset localCharset()
+  {
+    return(Charset.forName(new InputStreamReader(new ByteArrayInputStream(
+      new byte[0])).getEncoding())); // old way to ask for default encoding
+  }
+
+
+/*
+  openDataStream() method
+
+  Open a file for reading data bytes.  If the file is compressed (gzip, zlib,
+  or zip), ask the user if it should be decompressed, and for zip files, which
+  entry to read.  Decompression is done by a separate thread, one block ahead
+  of the caller.  Return a FileInputStream for the raw file, some other input
+  stream for decompressed data, or <null> if the user cancels.
+*/
+  static InputStream openDataStream(File userFile) throws IOException
+  {
+    int choice;                   // user's answer to yes-no-cancel dialog
+    java.util.Enumeration<? extends java.util.zip.ZipEntry> entries;
+                                  // all entries in a zip file
+    Object entry;                 // user's choice of zip entry
+    FileInputStream fileStream;   // read bytes directly, no buffering
+    String format;                // name of compressed format, or null
+    byte[] magic;                 // first few bytes from file
+    int magicLength;              // number of bytes in <magic>
+    java.util.Vector<String> names; // names of entries in zip file
+    java.util.zip.ZipEntry zipEntry; // one entry in zip file
+    java.util.zip.ZipFile zipFile; // zip file opened by name
+
+    fileStream = new FileInputStream(userFile);
+    magic = new byte[4];
+    magicLength = readFully(fileStream, magic);
+    fileStream.close();
+
+    format = null;                // assume file is not compressed
+    if ((magicLength >= 2) && ((magic[0] & BYTE_MASK) == 0x1F)
+      && ((magic[1] & BYTE_MASK) == 0x8B))
+    {
+      format = "gzip";
+    }
+    else if ((magicLength >= 2) && ((magic[0] & BYTE_MASK) == 0x78)
+      && (((magic[1] & BYTE_MASK) == 0x01) || ((magic[1] & BYTE_MASK) == 0x5E)
+      || ((magic[1] & BYTE_MASK) == 0x9C) || ((magic[1] & BYTE_MASK) == 0xDA)))
+    {
+      format = "zlib";            // only the usual compression levels
+    }
+    else if ((magicLength >= 4) && (magic[0] == 'P') && (magic[1] == 'K')
+      && (magic[2] == 3) && (magic[3] == 4))
+    {
+      format = "zip";
+    }
+    if (format == null)           // not compressed, read file as is
+      return(new FileInputStream(userFile));
+
+    if (format.equals("zip"))     // choose one entry in zip file
+    {
+      zipFile = new java.util.zip.ZipFile(userFile);
+      names = new java.util.Vector<String>();
+      names.add(RAW_ENCODING);    // first choice is the zip file itself
+      entries = zipFile.entries();
+      while (entries.hasMoreElements())
+      {
+        zipEntry = entries.nextElement();
+        if (zipEntry.isDirectory() == false) // skip folders
+          names.add(zipEntry.getName());
+      }
+      entry = JOptionPane.showInputDialog(mainFrame, (userFile.getName()
+        + " is a zip file.  Choose an entry to decompress,\nor "
+        + RAW_ENCODING + " for the zip file itself."), "Zip File",
+        JOptionPane.QUESTION_MESSAGE, null, names.toArray(),
+        ((names.size() > 1) ? names.get(1) : names.get(0)));
+      if (entry == null)          // user cancelled
+      {
+        zipFile.close();
+        return(null);
+      }
+      else if (entry.equals(RAW_ENCODING))
+      {
+        zipFile.close();
+        return(new FileInputStream(userFile));
+      }
+      return(new HexByteChar2Prefetch(zipFile.getInputStream(
+        zipFile.getEntry((String) entry)), zipFile));
+    }
+
+    choice = JOptionPane.showConfirmDialog(mainFrame, (userFile.getName()
+      + " is compressed with " + format + ".\nDecompress while reading?"));
+    if (choice == JOptionPane.NO_OPTION) // read compressed bytes as is
+      return(new FileInputStream(userFile));
+    else if (choice != JOptionPane.YES_OPTION) // cancelled
+      return(null);
+    else if (format.equals("gzip"))
+      return(new HexByteChar2Prefetch(new java.util.zip.GZIPInputStream(
+        new FileInputStream(userFile), 0x10000), null));
+    return(new HexByteChar2Prefetch(new java.util.zip.InflaterInputStream(
+      new FileInputStream(userFile), new java.util.zip.Inflater(), 0x10000),
+      null));
+
+  } // end of openDataStream() method
+
+
+/*
+  rawBytesToString() method
+
+  Convert an array of binary data bytes to a string, mapping values from 0x00
+  to 0xFF.  An old method in the String class does this, but is "deprecated"
+  and liable to generate warning messages.
+
+  This method is of questionable validity: 0x7F to 0x9F are control codes in
+  the Unicode standard, not printable characters.
+*/
+  static String rawBytesToString(byte[] input)
+  {
+    StringBuffer buffer;          // faster than String for multiple appends
+    int i;                        // index variable
+
+    buffer = new StringBuffer();  // allocate empty string buffer for result
+    for (i = 0; i < input.length; i ++) // for each input byte
+      buffer.append((char) (input[i] & BYTE_MASK)); // copy as a character
+    return(buffer.toString());    // give caller our converted string
+
+  } // end of rawBytesToString() method
+
+
+/*
+  rawStringToBytes() method
+
+  Convert a string to an array of binary data bytes, mapping values from 0x00
+  to 0xFF.  An old method in the String class does this, but is "deprecated"
+  and liable to generate warning messages.
+
+  This method is of questionable accuracy: characters pasted into a JTextArea
+  may have already been interpreted according to the local system's default
+  character set (encoding).
+*/
+  static byte[] rawStringToBytes(String input)
+  {
+    int i;                        // index variable
+    int length;                   // size of input string in characters
+    byte[] result;                // our converted result
+
+    length = input.length();      // number of characters in caller's string
+    result = new byte[length];    // same number of bytes in resulting array
+    for (i = 0; i < length; i ++) // for each input character
+      result[i] = (byte) (input.charAt(i) & BYTE_MASK); // copy as a byte
+    return(result);               // give caller our converted bytes
+
+  } // end of rawStringToBytes() method
+
+
+/*
+  readFile() method
+
+  Read a file as bytes, convert those bytes to hexadecimal, and put this into
+  the text area for hex data bytes.  We don't convert to text characters.  (The
+  user can do that.)  Compressed files may be decompressed while converting,
+  without all data bytes in memory at once.  Hex text and converted text saved
+  in the cache from an earlier session are used when the file hasn't changed.
+*/
+  static void readFile(File userFile)
+  {
+    boolean cacheFlag;            // true if hex text may be cached
+    byte[] fileBuffer;            // one big buffer to hold entire file
+    int fileLength;               // size of user's file in bytes
+    FileInputStream fileStream;   // read bytes directly, no buffering
+    String hexChars;              // hex data bytes, converted or cached
+    int i;                        // index variable
+    InputStream inputStream;      // data bytes, maybe decompressed
+    String key;                   // how file is read and formatted
+    String textChars;             // converted text from cache, or null
+
+    /* See if we can read from the user's chosen file. */
+
+    if ((userFile.isFile() == false) || (userFile.canRead() == false))
+    {
+      JOptionPane.showMessageDialog(mainFrame, (userFile.getName()
+        + " does not exist or can't be read."));
+      return;
+    }
+
+    /* Check size of user's file and try to read all data bytes at once. */
+
+    fileLength = (int) Math.min(userFile.length(), Integer.MAX_VALUE);
+    if (fileLength < 1)           // can't do much with less than one byte
+    {
+      JOptionPane.showMessageDialog(mainFrame, (userFile.getName()
+        + " is empty (zero bytes)."));
+      return;
+    }
+    try                           // not all I/O goes as planned
+    {
+      inputStream = openDataStream(userFile); // maybe compressed
+      if (inputStream == null)    // user cancelled choice for compressed file
+        return;
+      HexByteChar2Session.rememberFile(userFile); // most recent first
+      updateRecentMenu();
+
+      /* An entry in a zip file isn't part of the cache key, so only plain and
+      decompressed files are cached. */
+
+      cacheFlag = ((inputStream instanceof HexByteChar2Prefetch) == false)
+        || (((HexByteChar2Prefetch) inputStream).zipFile == null);
+      fileBuffer = null;          // no binary data bytes yet
+      key = hexCacheKey() + ((inputStream instanceof FileInputStream)
+        ? " raw" : " decompressed");
+      hexChars = cacheFlag ? HexByteChar2Session.readCache(userFile,
+        ("hex " + key), hexCacheEncoding()) : null;
+      if (hexChars != null)       // found in cache, no need to read file
+        inputStream.close();
+      else if ((inputStream instanceof FileInputStream) == false)
+      {
+        /* Decompress while converting to hex, one block at a time. */
+
+        hexChars = readHexStream(inputStream);
+      }
+      else
+      {
+        fileBuffer = new byte[fileLength]; // one big buffer for entire file
+        fileStream = (FileInputStream) inputStream; // read as raw data bytes
+        i = fileStream.read(fileBuffer); // try to read entire file
+        fileStream.close();       // don't need this file anymore
+        if (fileLength != i)      // did we get exactly what we expected?
+        {
+          JOptionPane.showMessageDialog(mainFrame, (userFile.getName()
+            + " size is " + fileLength + " bytes but read length was " + i
+            + " bytes."));
+          return;
+        }
+        hexChars = hexDataFromBytes(fileBuffer); // convert to hex data bytes
+      }
+      textChars = cacheFlag ? HexByteChar2Session.readCache(userFile,
+        ("text " + key + " " + encodeDialog.getSelectedItem()), "UTF-8")
+        : null;
+
+      /* Put hex data bytes into their text area, and the converted text if it
+      was cached. */
+
+      byteField.setText(hexChars); // replace all text
+      byteField.select(0, 0);     // scroll home, default is end of text
+      if (fileBuffer != null)     // no need to parse this hex text again
+        rememberDataBytes(fileBuffer);
+      if (textChars != null)      // text from earlier conversion
+      {
+        charField.setText(textChars);
+        charField.select(0, 0);
+      }
+      byteSource = cacheFlag ? userFile : null; // hex text is same as file
+      byteSourceKey = key;
+      documentTabs.setTitleAt(documentTabs.getSelectedIndex(),
+        userFile.getName());      // name document after file
+      documentTabs.setToolTipTextAt(documentTabs.getSelectedIndex(),
+        userFile.getPath());
+      if (cacheFlag)              // save in cache if not there already
+        HexByteChar2Session.writeCache(userFile, ("hex " + key),
+          hexCacheEncoding(), hexChars);
+      byteField.requestFocusInWindow(); // give keyboard focus to result
+    }
+    catch (IOException ioe)
+    {
+      JOptionPane.showMessageDialog(mainFrame, ("Can't read file "
+        + userFile.getName() + "\n" + ioe.getMessage()));
+      return;
+    }
+    catch (OutOfMemoryError oome)
+    {
+      JOptionPane.showMessageDialog(mainFrame, (userFile.getName() + " has "
+        + fileLength + " bytes,\nwhich is too big for this program."));
+      return;
+    }
+
+//  JOptionPane.showMessageDialog(mainFrame, (fileLength + " bytes read."));
+
+  } // end of readFile() method
+
+
+/*
+  readFully() method
+
+  Read from an input stream until <length> bytes are in the buffer, or until
+  the end of input.  Return the number of bytes read, which is less than
+  <length> only at the end of input.
+*/
+  static int readFully(InputStream input, byte[] buffer) throws IOException
+  {
+    return(readFully(input, buffer, buffer.length));
+  }
+
+  static int readFully(InputStream input, byte[] buffer, int length)
+    throws IOException
+  {
+    int count;                    // number of bytes from one read
+    int total;                    // total number of bytes read
+
+    total = 0;
+    while ((total < length)
+      && ((count = input.read(buffer, total, (length - total))) > 0))
+    {
+      total += count;
+    }
+    return(total);
+
+  } // end of readFully() method
+
+
+/*
+  readHexStream() method
+
+  Read an input stream and convert the data bytes to hex text, in blocks that
+  are whole lines, so the result is the same as for all bytes together.  The
+  input stream is closed.
+*/
+  static String readHexStream(InputStream input) throws IOException
+  {
+    byte[] block;                 // exact size of a partial block
+    byte[] buffer;                // one block of data bytes
+    int length;                   // number of bytes in <buffer>
+    StringBuffer result;          // hex text for all blocks
+
+    buffer = new byte[Math.max(1, (HexByteChar2Prefetch.BLOCK_SIZE
+      / byteLineSize)) * byteLineSize];
+    result = new StringBuffer();
+    try
+    {
+      while ((length = readFully(input, buffer)) > 0)
+      {
+        if (length < buffer.length) // last block is usually smaller
+        {
+          block = new byte[length];
+          System.arraycopy(buffer, 0, block, 0, length);
+        }
+        else
+          block = buffer;
+        if (result.length() > 0)  // blocks are separated by a newline
+          result.append('\n');
+        result.append(hexDataFromBytes(block));
+      }
+    }
+    finally { input.close(); }
+    return(result.toString());
+
+  } // end of readHexStream() method
+
+
+/*
+  rememberDataBytes() method
+
+  Save binary bytes that were just converted to hex text, so they don't need to
+  be parsed again.  This is only correct when our separators can't be mistaken
+  for hex digits or bad input, which is true for all normal separators.
+*/
+  static void rememberDataBytes(byte[] dataBytes)
+  {
+    char ch;                      // one character from separator strings
+    String gaps;                  // all separator characters together
+    int i;                        // index variable
+
+    gaps = byteGapString + groupGapString;
+    for (i = 0; i < gaps.length(); i ++)
+    {
+      ch = gaps.charAt(i);
+      if ((ch > 0x7F) || ((ch >= '0') && (ch <= '9'))
+        || ((ch >= 'A') && (ch <= 'Z'))
+        || ((ch >= 'a') && (ch <= 'z')))
+      {
+        return;                   // hex text must be parsed when needed
+      }
+    }
+    byteData = dataBytes;         // safe to use these bytes directly
+
+  } // end of rememberDataBytes() method
+
+
+/*
+  runParallel() method
+
+  Run some tasks at the same time on the shared worker threads, and wait for
+  all of them.  The calling thread runs the first task, and any task that no
+  worker has started yet, so this is safe to call from a worker thread even
+  when all workers are busy.
+*/
+  static void runParallel(Runnable[] tasks)
+  {
+    java.util.concurrent.FutureTask<Object>[] futures; // tasks for workers
+    int i;                        // index variable
+
+    if (tasks.length == 0) return; // nothing to do
+    futures = newFutures(tasks.length);
+    for (i = 1; i < tasks.length; i ++)
+    {
+      futures[i] = new java.util.concurrent.FutureTask<Object>(tasks[i], null);
+      workerPool.execute(futures[i]);
+    }
+    tasks[0].run();               // this thread does the first task
+    for (i = 1; i < tasks.length; i ++)
+    {
+      futures[i].run();           // does nothing if a worker started it
+      try { futures[i].get(); }
+      catch (InterruptedException ie) { i --; } // wait again for same task
+      catch (java.util.concurrent.ExecutionException ee)
+      {
+        if (ee.getCause() instanceof Error) throw (Error) ee.getCause();
+        throw new RuntimeException(ee.getCause());
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked") // no arrays of generic types in Java
+  static java.util.concurrent.FutureTask<Object>[] newFutures(int length)
+  {
+    return((java.util.concurrent.FutureTask<Object>[])
+      new java.util.concurrent.FutureTask<?>[length]);
+  }
+
+
+/*
+  saveSession() method
+
+  Save settings and recent files for the next session.  This is called on the
+  GUI thread just before the program exits, when the main window is closed or
+  the "Exit" button is clicked.
+*/
+  static void saveSession()
+  {
+    Rectangle bounds;             // normal window position and size
+
+    HexByteChar2Session.set("encoding", (String) encodeDialog
+      .getSelectedItem());
+    HexByteChar2Session.set("bytes.group", (byteField.getLineWrap() ? null
+      : String.valueOf(byteGroupSize)));
+    HexByteChar2Session.set("bytes.line", (byteField.getLineWrap() ? null
+      : String.valueOf(byteLineSize)));
+    if ((mainFrame.getExtendedState() & JFrame.MAXIMIZED_BOTH)
+      == JFrame.MAXIMIZED_BOTH)   // maximized, keep old normal position
+    {
+      HexByteChar2Session.set("window.maximized", "true");
+    }
+    else
+    {
+      bounds = mainFrame.getBounds();
+      HexByteChar2Session.set("window.height", String.valueOf(bounds.height));
+      HexByteChar2Session.set("window.left", String.valueOf(bounds.x));
+      HexByteChar2Session.set("window.maximized", "false");
+      HexByteChar2Session.set("window.top", String.valueOf(bounds.y));
+      HexByteChar2Session.set("window.width", String.valueOf(bounds.width));
+    }
+    HexByteChar2Session.save();
+
+  } // end of saveSession() method
+
+
+/*
+  samePrefix() method
+
+  Return true if the first <length> bytes of two arrays are the same.  This is
+  much faster than calculating checksums again.
+*/
+  static boolean samePrefix(byte[] first, byte[] second, int length)
+  {
+    int i;                        // index variable
+
+    if ((first.length < length) || (second.length < length))
+      return(false);
+    if (first == second)          // same array is always the same
+      return(true);
+    for (i = 0; i < length; i ++)
+      if (first[i] != second[i])
+        return(false);
+    return(true);
+
+  } // end of samePrefix() method
+
+
+/*
+  scrollToPosition() method
+
+  Scroll a text area so that a text position is visible, without moving the
+  caret or selection.  The replacement for modelToView() needs Java 9.
+*/
+  @SuppressWarnings("deprecation")
+  static void scrollToPosition(JTextArea text, int position)
+    throws BadLocationException
+  {
+    Rectangle view;               // screen area for text position
+
+    view = text.modelToView(position);
+    if (view != null) text.scrollRectToVisible(view);
+  }
+
+
+/*
+  searchBytes() method
+
+  Return the data bytes to find for a search: hex data bytes, or text in an
+  encoding.  Return <null> if hex data bytes have errors.
+*/
+  static byte[] searchBytes(String input, boolean textFlag, String code)
+    throws UnsupportedEncodingException
+  {
+    if (textFlag == false)        // hex data bytes
+      return(hexDataToBytes(input, false));
+    else if (code.equals(RAW_ENCODING)) // characters are data bytes
+      return(rawStringToBytes(input));
+    else if (code.equals(LOCAL_ENCODING)) // local system's encoding
+      return(input.getBytes(localCharset().name()));
+    else
+      return(input.getBytes(charsetForName(code).name()));
+  }
+
+
+/*
+  searchFolders() method
+
+  Search one folder for hex data bytes or text given on the command line, as a
+  console application.  The index is brought up to date first.  Print the file
+  name and offset of each result.  Return an exit status for the caller.
+*/
+  static int searchFolders(java.util.Vector<String> fileList, String code)
+  {
+    File folder;                  // folder from command line
+    int i, k;                     // index variables
+    byte[] query;                 // data bytes to find
+    String word;                  // one query from command line
+    java.util.Vector<Object> results; // files and offsets found
+    java.util.Vector<HexByteChar2Index> segments; // all segments for folder
+    int status;                   // exit status for this command
+    long timer;                   // elapsed time in milliseconds
+
+    if (fileList.size() < 2)
+    {
+      System.err.println("A folder name and a query are needed for -search option.");
+      return(EXIT_FAILURE);
+    }
+    folder = new File(fileList.get(0));
+    timer = System.currentTimeMillis();
+    try { segments = HexByteChar2Index.update(folder); }
+    catch (IOException ioe)
+    {
+      System.err.println("Can't index folder " + folder.getPath() + ": "
+        + ioe.getMessage());
+      return(EXIT_FAILURE);
+    }
+    System.err.println("Index for " + folder.getPath() + ": "
+      + HexByteChar2Index.indexedCount + " files indexed, "
+      + HexByteChar2Index.reusedCount + " not changed, "
+      + (System.currentTimeMillis() - timer) + " ms");
+    status = EXIT_UNKNOWN;        // nothing found yet
+    try
+    {
+      for (i = 1; i < fileList.size(); i ++)
+      {
+        word = fileList.get(i);
+        try
+        {
+          query = word.startsWith("text:") ? searchBytes(word.substring(5),
+            true, code) : searchBytes(word, false, code);
+        }
+        catch (UnsupportedEncodingException uee)
+        {
+          System.err.println("Unknown or unsupported character set encoding: "
+            + code);
+          return(EXIT_FAILURE);
+        }
+        if ((query == null) || (query.length == 0))
+        {
+          System.err.println("Invalid hex data bytes for -search option: "
+            + word);
+          status = EXIT_FAILURE;
+          continue;
+        }
+        timer = System.currentTimeMillis();
+        try { results = HexByteChar2Index.search(segments, query); }
+        catch (IOException ioe)
+        {
+          System.err.println("Can't search folder " + folder.getPath() + ": "
+            + ioe.getMessage());
+          status = EXIT_FAILURE;
+          continue;
+        }
+        for (k = 0; k < results.size(); k += 2)
+          System.out.println(((File) results.get(k)).getPath() + " "
+            + results.get(k + 1));
+        System.err.println(word + ": " + (results.size() / 2) + " found"
+          + ((results.size() >= (2 * HexByteChar2Index.MAX_RESULTS))
+          ? " (more not shown)" : "") + ", "
+          + HexByteChar2Index.candidateCount + " blocks checked, "
+          + (System.currentTimeMillis() - timer) + " ms");
+      }
+    }
+    finally { HexByteChar2Index.close(segments); }
+    return(status);
+
+  } // end of searchFolders() method
+
+
+/*
+  selectDataBytes() method
+
+  Select a range of data bytes in the hex text, as found by one of our tools.
+  The text area gets the keyboard focus, so that the selection is visible.
+*/
+  static void selectDataBytes(int first, int last)
+  {
+    int[] range;                  // text positions for data bytes
+
+    range = currentHexMap().textRange(first, last);
+    if (range == null) return;    // not in current hex text
+    byteField.select(range[0], range[1]); // select and scroll to data bytes
+    byteField.requestFocusInWindow(); // selection is hidden without focus
+  }
+
+
+/*
+  selectDocument() method
+
+  Make a document current.  Each document's state is kept in the same class
+  variables that the rest of this program uses, and is swapped in or out here.
+  This is only called when the user selects a tab (see showDocument()).
+*/
+  static void selectDocument(HexByteChar2Document document)
+  {
+    if ((document == null) || (document == currentDocument))
+      return;                     // nothing to change
+    currentDocument.save();       // keep state of old document
+    document.load();              // and use state of new document
+    currentDocument = document;
+  }
+
+
+/*
+  showDocument() method
+
+  Select the tab for a document, so that a tool window acts on the document it
+  was opened for, not whichever tab the user has selected since.  Return false
+  if the document has been closed.
+*/
+  static boolean showDocument(HexByteChar2Document document)
+  {
+    if (documentTabs.indexOfComponent(document.panel) < 0)
+      return(false);              // document was closed
+    documentTabs.setSelectedComponent(document.panel); // calls userTab()
+    return(true);
+  }
+
+
+/*
+  showErrorHighlights() method
+
+  Highlight bad data bytes found by checking an encoding, after removing any
+  previous highlights.  Give <null> to only remove highlights.  The text area
+  moves highlights as the user edits, but we remove them on the first change,
+  because they are no longer a correct answer.
+*/
+  static void showErrorHighlights(HexByteChar2Validator checker)
+  {
+    Highlighter highlighter;      // highlights for hex text area
+    int i;                        // index variable
+    HexByteChar2HexMap map;       // where data bytes are in the hex text
+    int[] range;                  // text positions for bad data bytes
+
+    highlighter = byteField.getHighlighter();
+    for (i = 0; i < errorHighlights.size(); i ++)
+      highlighter.removeHighlight(errorHighlights.get(i));
+    errorHighlights.clear();
+    if (checker == null) return;  // caller only wants highlights removed
+    map = currentHexMap();
+    for (i = 0; i < checker.count; i ++)
+    {
+      range = map.textRange((int) checker.starts[i], (int) checker.ends[i]);
+      if (range == null) continue; // not in current hex text
+      try                         // positions are checked by text area
+      {
+        errorHighlights.add(highlighter.addHighlight(range[0], range[1],
+          errorPainter));
+      }
+      catch (BadLocationException ble) { /* ignore positions we can't show */ }
+    }
+  } // end of showErrorHighlights() method
+
+
+/*
+  showHelp() method
+
+  Show the help summary.  This is a UNIX standard and is expected for all
+  console applications, even very simple ones.
+*/
+  static void showHelp()
+  {
+    System.err.println();
+    System.err.println(PROGRAM_TITLE);
+    System.err.println();
+    System.err.println("This is a graphical application. You may give options on the command line:");
+    System.err.println();
+    System.err.println("  -? = -help = show summary of command-line syntax");
+    System.err.println("  -check file ... = report every malformed or unmappable sequence in files for");
+    System.err.println("      the -e# encoding, as a console application");
+    System.err.println("  -e# = select name of character set encoding; example: -eUTF-8");
+    System.err.println("  -f# = font name for hex data bytes; example: -f\"Lucida Console\"");
+    System.err.println("  -hash file ... = print CRC32, CRC32C, Adler32, MD5, SHA-1, SHA-256 for files,");
+    System.err.println("      as a console application");
+    System.err.println("  -index folder ... = index all files in folders for -search, print statistics,");
+    System.err.println("      as a console application");
+    System.err.println("  -loadtest# = run web server with test clients for # seconds, report speed");
+    System.err.println("  -n# = number of hex data bytes per line (1-999), no wrap; example: -n12");
+    System.err.println("  -n(#,#) = number of hex data bytes per group (2-99) and number of groups per");
+    System.err.println("      line (2-99), no wrap; example: -n(4,3)");
+    System.err.println("  -n0 = wrap lines of hex data bytes (default), replaces saved setting");
+    System.err.println("  -search folder query ... = print file and offset for each copy of hex data");
+    System.err.println("      bytes, or text:chars in the -e# encoding; updates index first");
+    System.err.println("  -selftest = compare conversions with simple reference versions for random");
+    System.err.println("      inputs, as a console application; -selftest# runs for # seconds with a");
+    System.err.println("      new seed, and -selftest(#) repeats the round with seed #");
+    System.err.println("  -serve# = run local web server for conversions on port #; default port is "
+      + HexByteChar2Server.DEFAULT_PORT);
+    System.err.println("  -t# = font name for text characters; example: -tVerdana");
+    System.err.println("  -u# = font size for buttons, dialogs, etc; example: -u16");
+    System.err.println("  -w(#,#,#,#) = normal window position: left, top, width, height;");
+    System.err.println("      example: -w(50,50,700,500)");
+    System.err.println("  -x = maximize application window; default is normal window");
+    System.err.println();
+    System.err.println(COPYRIGHT_NOTICE);
+//  System.err.println();
+
+  } // end of showHelp() method
+
+
+/*
+  showLinkedHighlight() method
+
+  Replace the highlight for a linked selection in one text area.  Give a <null>
+  range to remove any previous highlight.  Return the new highlight tag.
+*/
+  static Object showLinkedHighlight(JTextArea text, Object oldTag,
+    int[] range)
+  {
+    Object newTag;                // tag for new highlight, if any
+
+    if (oldTag != null)           // remove old highlight, if there is one
+      text.getHighlighter().removeHighlight(oldTag);
+    newTag = null;                // assume that there is no new highlight
+    if ((range != null) && (range[0] < range[1])) // is there something?
+    {
+      try                         // positions are checked by text area
+      {
+        newTag = text.getHighlighter().addHighlight(range[0], range[1],
+          syncPainter);           // highlight without changing selection
+        scrollToPosition(text, range[0]); // scroll to start of highlight
+      }
+      catch (BadLocationException ble) { /* ignore positions we can't show */ }
+    }
+    return(newTag);               // give caller our new highlight tag
+
+  } // end of showLinkedHighlight() method
+
+
+/*
+  stopFollowing() method
+
+  Stop following a file, and change the menu item back.  Everything shown
+  while following becomes one step in the document's edit history.
+*/
+  static void stopFollowing()
+  {
+    followTimer.stop();
+    stopWatching();
+    try { if (followChannel != null) followChannel.close(); }
+    catch (IOException ioe) { /* ignore errors while closing */ }
+    followChannel = null;
+    if (followDocument != null)   // null if following never started
+    {
+      if (followDocument.byteHistory.suspendFlag)
+        followDocument.byteHistory.resume("Follow File");
+      if (followDocument.charHistory.suspendFlag)
+        followDocument.charHistory.resume("Follow File");
+    }
+    followAgainFlag = false;
+    followDocument = null;
+    followToolItem.setText("Follow File...");
+    followToolItem.setEnabled(followBusyFlag == false); // after last read
+
+  } // end of stopFollowing() method
+
+
+/*
+  stopWatching() method
+
+  Close the watch service for the folder of a followed file, if any, which ends
+  the thread waiting for changes.
+*/
+  static void stopWatching()
+  {
+    try { if (followWatcher != null) followWatcher.close(); }
+    catch (IOException ioe) { /* ignore errors while closing */ }
+    followWatcher = null;
+  }
+
+
+/*
+  updateRecentMenu() method
+
+  Replace the menu items for recently read files.  Each item's text is the full
+  path name of a file.
+*/
+  static void updateRecentMenu()
+  {
+    HexByteChar2User action;      // listener for new menu items
+    int i;                        // index variable
+    JMenuItem item;               // one menu item for a file
+    java.util.Vector<String> recent; // path names for recent files
+
+    action = new HexByteChar2User(); // listeners don't have any state
+    recent = HexByteChar2Session.recentFiles();
+    recentMenu.removeAll();
+    for (i = 0; i < recent.size(); i ++)
+    {
+      item = new JMenuItem(recent.get(i));
+      item.addActionListener(action);
+      item.setFont(recentMenu.getFont());
+      recentMenu.add(item);
+    }
+    recentMenu.setEnabled(recent.size() > 0);
+  }
+
+
+/*
+  userButton() method
+
+  This method is called by our action listener actionPerformed() to process
+  buttons, in the context of the main HexByteChar2 class.
+*/
+  static void userButton(ActionEvent event)
+  {
+    String encoding;              // user's encoding, if converting
+    String label;                 // short description for edit history
+
+    Object source = event.getSource(); // where the event came from
+    byteHistory.commit("Edit", null); // typing since last button is one step
+    charHistory.commit("Edit", null);
+    if (source == analyzeToolItem) // "Analyze Bytes" menu item
+    {
+      doAnalyzeTool();
+    }
+    else if (source == checkToolItem) // "Check Encoding" menu item
+    {
+      doCheckTool();
+    }
+    else if (source == clearByteButton) // "Clear" button for data bytes
+    {
+      clearTextArea(byteField);   // clear this text area
+    }
+    else if (source == clearCharButton) // "Clear" button for text chars
+    {
+      clearTextArea(charField);
+    }
+    else if (source == closeToolItem) // "Close Tab" menu item
+    {
+      doCloseTab();
+    }
+    else if (source == convertByteButton) // "Convert" button for data bytes
+    {
+      convertBytesToText();       // convert data bytes to text chars
+    }
+    else if (source == convertCharButton) // "Convert" button for text chars
+    {
+      convertTextToBytes();       // convert text chars to data bytes
+    }
+    else if (source == copyByteButton) // "Copy" button for data bytes
+    {
+      clipboardCopy(byteField);   // copy from this text area
+    }
+    else if (source == copyCharButton) // "Copy" button for text chars
+    {
+      clipboardCopy(charField);
+    }
+    else if (source == dumpToolItem) // "Save as Hex Dump" menu item
+    {
+      doDumpTool();
+    }
+    else if (source == exitButton) // "Exit" button
+    {
+      saveSession();              // remember settings for next time
+      System.exit(0);             // immediate exit from GUI with no status
+    }
+    else if (source == followTimer) // time to check followed file
+    {
+      doFollowTimer();            // not recorded until following stops
+    }
+    else if (source == followToolItem) // "Follow File" menu item
+    {
+      doFollowTool();
+    }
+    else if (source == hashToolItem) // "Checksums" menu item
+    {
+      doHashTool();
+    }
+    else if (source == pasteByteButton) // "Paste" button for data bytes
+    {
+      clipboardPaste(byteField);  // paste to this text area
+    }
+    else if (source == pasteCharButton) // "Paste" button for text chars
+    {
+      clipboardPaste(charField);
+    }
+    else if (source == inspectToolItem) // "Inspect Bytes" menu item
+    {
+      if ((inspector == null) || (inspector.isDisplayable() == false))
+        inspector = new HexByteChar2Inspector(mainFrame);
+      else
+        inspector.toFront();      // only one inspector window
+    }
+    else if (source == layoutToolItem) // "Layout View" menu item
+    {
+      doLayoutTool();
+    }
+    else if (source == newToolItem) // "New Tab" menu item
+    {
+      doNewTab();
+    }
+    else if (source == patchToolItem) // "Patch File" menu item
+    {
+      doPatchTool();
+    }
+    else if (source == readByteButton) // "Read" button for data bytes
+    {
+      doReadButton();
+    }
+    else if ((source instanceof JMenuItem)
+      && recentMenu.isMenuComponent((JMenuItem) source)) // recent file
+    {
+      readFile(new File(((JMenuItem) source).getText()));
+    }
+    else if (source == searchToolItem) // "Search Folder" menu item
+    {
+      doSearchTool();
+    }
+    else if (source == stringsToolItem) // "Find Strings" menu item
+    {
+      doStringsTool();
+    }
+    else if (source == templateToolItem) // "Parse with Template" menu item
+    {
+      new HexByteChar2TemplateDialog(mainFrame);
+    }
+    else if (source == unicodeToolItem) // "Check Unicode Text" menu item
+    {
+      doUnicodeTool();
+    }
+    else if (source == toolsByteButton) // "Tools" button for data bytes
+    {
+      toolMenu.show(toolsByteButton, 0, toolsByteButton.getHeight());
+    }
+    else if (source == writeByteButton) // "Write" button for data bytes
+    {
+      doWriteButton();
+    }
+    else if (source == zorgByteButton) // "Zorg" button for data bytes
+    {
+      doZorgButton();             // but the question is, which Zorg or Zorgs?
+    }
+    else if ((source == byteField) || (source == charField)) // keyboard
+    {
+      doUndoRedo((JTextArea) source, event.getActionCommand().equals("redo"));
+    }
+    else                          // fault in program logic, not by user
+    {
+      System.err.println("Error in userButton(): unknown ActionEvent: "
+        + event);                 // should never happen, so write on console
+    }
+
+    /* Anything changed by this button is one step in the edit history.  Save
+    the encoding for conversions, so it can be selected again after undo. */
+
+    encoding = null;              // most buttons don't depend on encoding
+    label = "Edit";
+    if ((source instanceof JMenuItem)
+      && recentMenu.isMenuComponent((JMenuItem) source))
+      label = "Read File";
+    else if (source instanceof AbstractButton)
+      label = ((AbstractButton) source).getText();
+    if ((source == convertByteButton) || (source == convertCharButton))
+      encoding = (String) encodeDialog.getSelectedItem();
+    byteHistory.commit(label, encoding);
+    charHistory.commit(label, encoding);
+
+  } // end of userButton() method
+
+
+/*
+  userCaret() method
+
+  The caret (selection) has moved in one of our text areas.  The inspector
+  window (if any) shows numbers for the selected data bytes.  If both sides are
+  linked from the last conversion, highlight the matching bytes or characters
+  on the other side.  Finding the match is a binary search plus a short scan.
+*/
+  static void userCaret(CaretEvent event)
+  {
+    int end, start;               // selected positions in source text area
+    int first, last;              // range of selected data bytes
+    int[] range;                  // matching positions on the other side
+    Object source;                // where the event came from
+
+    if ((inspector != null) && inspector.isDisplayable()
+      && (event.getSource() == byteField)) // show numbers for data bytes
+    {
+      inspector.update();
+    }
+    if ((syncHexMap == null) || (syncTextMap == null)) // are sides linked?
+      return;                     // no, nothing to highlight
+    end = Math.max(event.getDot(), event.getMark());
+    source = event.getSource();
+    start = Math.min(event.getDot(), event.getMark());
+    if (source == byteField)      // selection in hex data bytes
+    {
+      range = null;               // assume nothing will be highlighted
+      if (start < end)            // is there a real selection?
+      {
+        first = syncHexMap.bytesEndedBy(start); // first byte partly selected
+        last = syncHexMap.bytesStartedBefore(end); // after last byte selected
+        if (first < last)
+          range = syncTextMap.charRange(first, last);
+      }
+      charHighlight = showLinkedHighlight(charField, charHighlight, range);
+    }
+    else if (source == charField) // selection in text characters
+    {
+      range = null;
+      if (start < end)
+      {
+        range = syncTextMap.byteRange(start, end); // data bytes for text
+        if (range != null)
+          range = syncHexMap.textRange(range[0], range[1]);
+      }
+      byteHighlight = showLinkedHighlight(byteField, byteHighlight, range);
+    }
+  } // end of userCaret() method
+
+
+/*
+  userDocument() method
+
+  The contents of one of our text areas has changed.  Any links between data
+  bytes and text characters are no longer valid, and neither are data bytes
+  saved from the hex text.  The change is added to the edit history.  Changes
+  to a document that isn't selected go to that document's own state.
+*/
+  static void userDocument(DocumentEvent event)
+  {
+    HexByteChar2Document owner;   // document with this text area
+
+    owner = (HexByteChar2Document) event.getDocument().getProperty(
+      HexByteChar2Document.class);
+    if ((owner != null) && (owner != currentDocument)) // not selected?
+    {
+      owner.changed(event);
+      return;
+    }
+    if (event.getDocument() == byteField.getDocument()) // hex data changed?
+    {
+      byteData = null;            // parse hex text again when next needed
+      byteHistory.update(event);  // remember change for undo and redo
+      byteMap = null;
+      byteSource = null;          // hex text no longer the same as file
+      if (errorHighlights.size() > 0) // bad data bytes no longer valid
+        showErrorHighlights(null);
+    }
+    else                          // text characters changed
+      charHistory.update(event);
+
+    if ((syncHexMap == null) && (syncTextMap == null)
+      && (byteHighlight == null) && (charHighlight == null))
+    {
+      return;                     // nothing is linked, do nothing quickly
+    }
+    syncHexMap = null;            // forget links from last conversion
+    syncTextMap = null;
+    byteHighlight = showLinkedHighlight(byteField, byteHighlight, null);
+    charHighlight = showLinkedHighlight(charField, charHighlight, null);
+
+  } // end of userDocument() method
+
+
+/*
+  userTab() method
+
+  The user has selected another tab.  Swap in that tab's document.
+*/
+  static void userTab(ChangeEvent event)
+  {
+    Component panel;              // component for selected tab
+
+    panel = documentTabs.getSelectedComponent();
+    if (panel instanceof JComponent)
+      selectDocument((HexByteChar2Document) ((JComponent) panel)
+        .getClientProperty(HexByteChar2Document.class));
+    if ((inspector != null) && inspector.isDisplayable())
+      inspector.update();         // show bytes from new document
+  }
+
+
+/*
+  writeBuffers() method
+
+  Write the contents of several byte buffers with gathering writes, until all
+  bytes are written.  The buffers are then cleared for more data.
+*/
+  static void writeBuffers(FileChannel output, ByteBuffer[] buffers,
+    int count) throws IOException
+  {
+    int i;                        // index variable
+    long remaining;               // number of bytes not yet written
+
+    remaining = 0;
+    for (i = 0; i < count; i ++)  // switch from filling to draining
+    {
+      buffers[i].flip();
+      remaining += buffers[i].remaining();
+    }
+    while (remaining > 0)         // may take more than one write
+      remaining -= output.write(buffers, 0, count);
+    for (i = 0; i < count; i ++)  // ready to fill again
+      buffers[i].clear();
+
+  } // end of writeBuffers() method
+
+
+/*
+  writeHexDump() method
+
+  Write data bytes as hex text, in the same layout as hexDataFromBytes(),
+  without creating a string for the whole result.  A normal input file is
+  mapped into memory a piece at a time.  Other input streams (decompressed) are
+  read in blocks.  Hex text is formatted into a few direct byte buffers, which
+  are written together with one gathering write.  The input stream is closed.
+  Return the number of data bytes from the input.
+*/
+  static long writeHexDump(InputStream inputStream, File outputFile)
+    throws IOException
+  {
+    ByteBuffer buffer;            // direct buffer being filled
+    ByteBuffer[] buffers;         // all direct buffers for writing
+    byte[] byteGap, groupGap;     // separators as UTF-8 bytes
+    int count;                    // number of input bytes for this buffer
+    int current;                  // index of buffer being filled
+    byte[] digits;                // hex digits as bytes
+    byte[] formatted;             // hex text before copying to direct buffer
+    long fileSize;                // number of bytes in input file
+    int i, k;                     // index variables
+    FileChannel input;            // input file channel, or null for stream
+    long inputIndex;              // index of next input byte in file
+    MappedByteBuffer mapped;      // part of input file mapped into memory
+    int maxGap;                   // longest separator in bytes
+    long nextGroup, nextLine;     // index of byte that starts next group, line
+    FileChannel output;           // output file channel
+    byte[] raw;                   // data bytes copied from mapped file
+    int used;                     // number of bytes in <formatted>
+    int value;                    // one binary data byte as an integer
+
+    byteGap = byteGapString.getBytes("UTF-8");
+    groupGap = groupGapString.getBytes("UTF-8");
+    digits = new String(HEX_DIGITS).getBytes("US-ASCII");
+    maxGap = Math.max(1, Math.max(byteGap.length, groupGap.length));
+    buffers = new ByteBuffer[DUMP_BUFFERS];
+    for (i = 0; i < buffers.length; i ++)
+      buffers[i] = ByteBuffer.allocateDirect(DUMP_BUFFER_SIZE);
+    formatted = new byte[DUMP_BUFFER_SIZE];
+    raw = new byte[DUMP_BUFFER_SIZE / 2];
+    current = 0;
+    buffer = buffers[current];
+
+    input = (inputStream instanceof FileInputStream)
+      ? ((FileInputStream) inputStream).getChannel() : null;
+    mapped = null;
+    output = null;
+    try
+    {
+      output = new FileOutputStream(outputFile).getChannel();
+      fileSize = (input != null) ? input.size() : Long.MAX_VALUE;
+      inputIndex = 0;
+      nextGroup = byteGroupSize;
+      nextLine = byteLineSize;
+      while (inputIndex < fileSize)
+      {
+        if (input != null)        // map next part of normal file
+          mapped = input.map(FileChannel.MapMode.READ_ONLY, inputIndex,
+            Math.min(DUMP_MAP_SIZE, (fileSize - inputIndex)));
+        while ((mapped == null) || mapped.hasRemaining())
+        {
+          /* Each data byte needs at most two digits and one separator, so we
+          know how many data bytes fit in this buffer without checking each
+          time.  Java arrays are faster than put() and get() for each byte,
+          so data bytes are copied in and hex text is copied out in bulk. */
+
+          count = Math.min(raw.length, (buffer.remaining() / (maxGap + 2)));
+          if (mapped != null)
+            count = Math.min(count, mapped.remaining());
+          if (count == 0)         // this buffer is full
+          {
+            if (++ current == buffers.length) // all buffers are full
+            {
+              writeBuffers(output, buffers, current);
+              current = 0;
+            }
+            buffer = buffers[current];
+            continue;
+          }
+          if (mapped != null)     // copy from mapped file
+            mapped.get(raw, 0, count);
+          else if ((count = readFully(inputStream, raw, count)) == 0)
+          {
+            fileSize = inputIndex; // end of input stream
+            break;
+          }
+          used = 0;
+          for (i = 0; i < count; i ++)
+          {
+            if (inputIndex == 0) { /* do nothing: no space at beginning */ }
+            else if (inputIndex == nextLine) // start a new line
+            {
+              formatted[used ++] = '\n';
+              nextGroup += byteGroupSize;
+              nextLine += byteLineSize;
+            }
+            else if (inputIndex == nextGroup) // start a new group
+            {
+              for (k = 0; k < groupGap.length; k ++)
+                formatted[used ++] = groupGap[k];
+              nextGroup += byteGroupSize;
+            }
+            else if (byteGap.length == 1) // usually a space between bytes
+              formatted[used ++] = byteGap[0];
+            else
+            {
+              for (k = 0; k < byteGap.length; k ++)
+                formatted[used ++] = byteGap[k];
+            }
+            value = raw[i] & BYTE_MASK; // get one binary data byte
+            formatted[used ++] = digits[value >> 4]; // high-order digit
+            formatted[used ++] = digits[value & 0x0F]; // low-order hex digit
+            inputIndex ++;
+          }
+          buffer.put(formatted, 0, used);
+        }
+      }
+      writeBuffers(output, buffers, (current + 1)); // whatever is left
+      return(inputIndex);
+    }
+    finally                       // close files after errors, too
+    {
+      if (output != null) output.close();
+      inputStream.close();
+    }
+  } // end of writeHexDump() method
+
+} // end of HexByteChar2 class
+
+// ------------------------------------------------------------------------- //
+
+/*
+  HexByteChar2User class
+
+  This class listens to input from the user and passes back event parameters to
+  a static method in the main class.
+*/
+
+class HexByteChar2User extends WindowAdapter implements ActionListener,
+  CaretListener, ChangeListener, DocumentListener, Runnable
+{
+  String runner;                  // method name for run(), or null
+
+  /* empty constructor */
+
+  public HexByteChar2User() { runner = null; }
+
+  /* constructor for separate threads */
+
+  public HexByteChar2User(String runner) { this.runner = runner; }
+
+  /* button listener, dialog boxes, etc */
+
+  public void actionPerformed(ActionEvent event)
+  {
+    HexByteChar2.userButton(event);
+  }
+
+  /* caret listener for text areas */
+
+  public void caretUpdate(CaretEvent event)
+  {
+    HexByteChar2.userCaret(event);
+  }
+
+  /* change listener for selected tab */
+
+  public void stateChanged(ChangeEvent event)
+  {
+    HexByteChar2.userTab(event);
+  }
+
+  /* separate thread for long tasks, and showing results */
+
+  public void run()
+  {
+    if ("doAnalyzeRunner".equals(runner))
+      HexByteChar2.doAnalyzeRunner();
+    else if ("doCheckProgress".equals(runner))
+      HexByteChar2.doCheckProgress();
+    else if ("doCheckRunner".equals(runner))
+      HexByteChar2.doCheckRunner();
+    else if ("doDumpRunner".equals(runner))
+      HexByteChar2.doDumpRunner();
+    else if ("doFollowRunner".equals(runner))
+      HexByteChar2.doFollowRunner();
+    else if ("doFollowTimer".equals(runner))
+      HexByteChar2.doFollowTimer();
+    else if ("doFollowWatcher".equals(runner))
+      HexByteChar2.doFollowWatcher();
+    else if ("doHashRunner".equals(runner))
+      HexByteChar2.doHashRunner();
+    else if ("doSearchRunner".equals(runner))
+      HexByteChar2.doSearchRunner();
+    else if ("doStringsRunner".equals(runner))
+      HexByteChar2.doStringsRunner();
+    else if ("doUnicodeRunner".equals(runner))
+      HexByteChar2.doUnicodeRunner();
+  }
+
+  /* document listener for text areas */
+
+  public void changedUpdate(DocumentEvent event)
+  {
+    HexByteChar2.userDocument(event);
+  }
+
+  public void insertUpdate(DocumentEvent event)
+  {
+    HexByteChar2.userDocument(event);
+  }
+
+  public void removeUpdate(DocumentEvent event)
+  {
+    HexByteChar2.userDocument(event);
+  }
+
+  /* window listener for main window, before the frame exits the program */
+
+  public void windowClosing(WindowEvent event)
+  {
+    HexByteChar2.saveSession();   // remember settings for next time
+  }
+
+} // end of HexByteChar2User class
+
+// ------------------------------------------------------------------------- //
+
+/*
+  HexByteChar2HexMap class
+
+  This class remembers where data bytes are found in hexadecimal text.  Only the
+  position of every 64th data byte is saved, in a primitive integer array, so
+  the index stays small even for very big files.  Positions in between are found
+  by scanning the short piece of hex text after the nearest checkpoint.  Digits
+  and separators follow the same rules as hexDataToBytes().  An index is only
+  valid until the text area changes.
+*/
+
+class HexByteChar2HexMap
+{
+  /* constants */
+
+  static final int SAMPLE_SIZE = 64; // number of data bytes per checkpoint
+
+  /* instance variables */
+
+  int byteCount;                  // number of data bytes found in hex text
+  Document document;              // text area document with our hex text
+  int sampleCount;                // number of checkpoints in <samples>
+  int[] samples;                  // text position of every 64th data byte
+  int segmentCount;               // number of data bytes in cached segment
+  int[] segmentEnds;              // text position after each byte's digits
+  int segmentIndex;               // which segment is cached, or -1 for none
+  int[] segmentStarts;            // text position of each byte's first digit
+  int textEnd;                    // text position after end of our hex text
+
+  /* constructor */
+
+  public HexByteChar2HexMap(Document document, String text, int start)
+  {
+    int digitCount;               // number of digits found in current byte
+    int i;                        // index variable
+    int length;                   // number of characters in hex text
+    int[] larger;                 // bigger array when checkpoints overflow
+
+    this.document = document;     // save caller's parameters
+    byteCount = digitCount = sampleCount = 0; // nothing found yet
+    length = text.length();       // number of hex digits or spaces, etc
+    samples = new int[(length / (SAMPLE_SIZE * 3)) + 16]; // typical hex text
+    segmentEnds = new int[SAMPLE_SIZE];
+    segmentIndex = -1;            // no segment has been scanned
+    segmentStarts = new int[SAMPLE_SIZE];
+    textEnd = start + length;     // where our hex text ends
+
+    for (i = 0; i < length; i ++) // scan all hex text once
+    {
+      if (isHexDigit(text.charAt(i))) // any hex digit, either case
+      {
+        if (digitCount == 0)      // first digit starts a new data byte
+        {
+          if ((byteCount % SAMPLE_SIZE) == 0) // time for a checkpoint?
+          {
+            if (sampleCount >= samples.length) // need a bigger array?
+            {
+              larger = new int[samples.length * 2];
+              System.arraycopy(samples, 0, larger, 0, sampleCount);
+              samples = larger;
+            }
+            samples[sampleCount ++] = start + i;
+          }
+          byteCount ++;           // one more data byte found
+          digitCount = 1;
+        }
+        else                      // second digit completes this data byte
+          digitCount = 0;
+      }
+      else                        // punctuation ends any single digit
+        digitCount = 0;
+    }
+  } // end of constructor
+
+  /* Return the text position after the last digit of a data byte. */
+
+  int byteEnd(int index)
+  {
+    if (index < 0) return(samples.length > 0 ? samples[0] : textEnd);
+    if (index >= byteCount) return(textEnd);
+    loadSegment(index / SAMPLE_SIZE);
+    return(segmentEnds[index % SAMPLE_SIZE]);
+  }
+
+  /* Return the number of data bytes that end at or before a text position. */
+
+  int bytesEndedBy(int position)
+  {
+    int i;                        // index variable
+    int k;                        // index of nearest checkpoint
+
+    k = findSegment(position);
+    if (k < 0) return(0);         // position is before first data byte
+    loadSegment(k);
+    for (i = 0; i < segmentCount; i ++)
+      if (segmentEnds[i] > position) break;
+    return((k * SAMPLE_SIZE) + i);
+  }
+
+  /* Return the number of data bytes that start before a text position. */
+
+  int bytesStartedBefore(int position)
+  {
+    int i;                        // index variable
+    int k;                        // index of nearest checkpoint
+
+    k = findSegment(position);
+    if (k < 0) return(0);
+    loadSegment(k);
+    for (i = 0; i < segmentCount; i ++)
+      if (segmentStarts[i] >= position) break;
+    return((k * SAMPLE_SIZE) + i);
+  }
+
+  /* Return the text position of the first digit of a data byte. */
+
+  int byteStart(int index)
+  {
+    if (index < 0) return(samples.length > 0 ? samples[0] : textEnd);
+    if (index >= byteCount) return(textEnd);
+    loadSegment(index / SAMPLE_SIZE);
+    return(segmentStarts[index % SAMPLE_SIZE]);
+  }
+
+  /* Binary search for the last checkpoint before a text position.  Return -1
+  if the position is at or before the first data byte. */
+
+  int findSegment(int position)
+  {
+    int high, low, middle;        // binary search indexes
+
+    low = -1;                     // checkpoint known to be before position
+    high = sampleCount;           // checkpoint known to be at or after
+    while ((high - low) > 1)
+    {
+      middle = (low + high) >>> 1;
+      if (samples[middle] < position) low = middle;
+      else high = middle;
+    }
+    return(low);
+  }
+
+  /* Return true if a character is a hexadecimal digit. */
+
+  static boolean isHexDigit(char ch)
+  {
+    return(((ch >= '0') && (ch <= '9')) || ((ch >= 'A') && (ch <= 'F'))
+      || ((ch >= 'a') && (ch <= 'f')));
+  }
+
+  /* Scan the hex text for one segment of data bytes after a checkpoint, and
+  remember where each data byte starts and ends. */
+
+  void loadSegment(int k)
+  {
+    int digitCount;               // number of digits found in current byte
+    int from, to;                 // text positions for this segment
+    int i, j;                     // index variables
+    Segment text;                 // characters from text area, not copied
+
+    if (k == segmentIndex) return; // already have this segment
+    from = samples[k];
+    to = (k + 1 < sampleCount) ? samples[k + 1] : textEnd;
+    segmentCount = Math.min(SAMPLE_SIZE, (byteCount - (k * SAMPLE_SIZE)));
+    segmentIndex = k;
+    text = new Segment();
+    try                           // text area checks positions
+    {
+      document.getText(from, (to - from), text);
+    }
+    catch (BadLocationException ble)
+    {
+      for (i = 0; i < segmentCount; i ++) // bad index, give coarse answer
+      {
+        segmentEnds[i] = to;
+        segmentStarts[i] = from;
+      }
+      return;
+    }
+
+    digitCount = 0;               // checkpoint is always first digit of byte
+    i = -1;                       // index of current data byte in segment
+    for (j = 0; j < text.count; j ++)
+    {
+      if (isHexDigit(text.array[text.offset + j]))
+      {
+        if (digitCount == 0)      // first digit starts a new data byte
+        {
+          if ((++ i) >= segmentCount) break; // next segment starts here
+          segmentStarts[i] = from + j;
+          digitCount = 1;
+        }
+        else                      // second digit completes this data byte
+          digitCount = 0;
+        segmentEnds[i] = from + j + 1; // after last digit found so far
+      }
+      else
+        digitCount = 0;
+    }
+  } // end of loadSegment() method
+
+  /* Return the text positions for a range of data bytes, or <null> if the
+  range is empty. */
+
+  int[] textRange(int first, int last)
+  {
+    int[] result;                 // start and end positions in hex text
+
+    if ((first >= last) || (first >= byteCount) || (last <= 0))
+      return(null);
+    result = new int[2];
+    result[0] = byteStart(Math.max(0, first));
+    result[1] = byteEnd(Math.min(byteCount, last) - 1);
+    return(result);
+  }
+
+} // end of HexByteChar2HexMap class
+
+// ------------------------------------------------------------------------- //
+
+/*
+  HexByteChar2TextMap class
+
+  This class remembers which text characters were decoded from which data
+  bytes.  While decoding, the input is fed to the decoder 64 bytes at a time,
+  and the number of bytes consumed and characters produced are saved as a
+  checkpoint after each step.  Checkpoints are exact, because a decoder only
+  consumes complete byte sequences.  Between checkpoints, a short piece of data
+  is decoded again one byte at a time to find individual characters.
+
+  Stateful encodings (ISO-2022-JP, UTF-16 with a byte-order mark, etc) can't
+  always be restarted at a checkpoint.  We notice when a piece decodes to the
+  wrong number of characters, and then give the whole piece as our answer.
+*/
+
+class HexByteChar2TextMap
+{
+  /* constants */
+
+  static final int SAMPLE_SIZE = 64; // number of data bytes per decode step
+
+  /* instance variables */
+
+  int byteCount;                  // number of data bytes
+  int charBase;                   // text position of first character
+  int charCount;                  // number of text characters decoded
+  Charset charset;                // character set encoding, or <null> if raw
+  byte[] data;                    // caller's data bytes, not copied
+  int[] sampleBytes;              // data bytes consumed at each checkpoint
+  int[] sampleChars;              // characters produced at each checkpoint
+  int sampleCount;                // number of checkpoints saved
+  int segmentIndex;               // which segment is cached, or -1 for none
+  int[] unitByteEnds, unitByteStarts; // data bytes for each decode unit
+  int[] unitCharEnds, unitCharStarts; // characters for each decode unit
+  int unitCount;                  // number of decode units in cached segment
+
+  /* constructor */
+
+  public HexByteChar2TextMap(byte[] data, Charset charset, int charBase)
+  {
+    this.byteCount = data.length; // save caller's parameters
+    this.charBase = charBase;
+    this.charCount = 0;           // nothing decoded yet
+    this.charset = charset;
+    this.data = data;
+    this.sampleCount = 0;
+    this.segmentIndex = -1;
+  }
+
+  /* Return the absolute text positions for a range of absolute character
+  positions, as a range of data bytes, or <null> if the range is empty. */
+
+  int[] byteRange(int start, int end)
+  {
+    int first, last;              // character offsets in decoded text
+    int[] result;                 // range of data bytes
+
+    first = Math.max(0, (start - charBase));
+    last = Math.min(charCount, (end - charBase));
+    if (first >= last) return(null);
+    result = new int[2];
+    if (charset == null)          // raw data bytes are one-to-one
+    {
+      result[0] = first;
+      result[1] = last;
+    }
+    else
+    {
+      result[0] = findUnit(first, true, true);
+      result[1] = findUnit((last - 1), true, false);
+    }
+    return(result);
+  }
+
+  /* Return the absolute text positions for a range of data bytes, or <null>
+  if the range is empty. */
+
+  int[] charRange(int first, int last)
+  {
+    int[] result;                 // range of text positions
+
+    first = Math.max(0, first);
+    last = Math.min(byteCount, last);
+    if (first >= last) return(null);
+    result = new int[2];
+    if (charset == null)          // raw data bytes are one-to-one
+    {
+      result[0] = charBase + first;
+      result[1] = charBase + last;
+    }
+    else
+    {
+      result[0] = charBase + findUnit(first, false, true);
+      result[1] = charBase + findUnit((last - 1), false, false);
+    }
+    return(result);
+  }
+
+  /* Decode all data bytes as text characters, while saving checkpoints.  The
+  replacement for bad input is the same as the String class. */
+
+  String decode()
+  {
+    CoderResult coder;            // result from one decode step
+    CharsetDecoder decoder;       // converts data bytes to characters
+    ByteBuffer input;             // wraps caller's data bytes
+    int limit;                    // end of input for current decode step
+    CharBuffer output;            // decoded text characters
+
+    if (charset == null)          // raw data bytes are one-to-one
+    {
+      charCount = byteCount;
+      return(HexByteChar2.rawBytesToString(data));
+    }
+
+    decoder = newDecoder();
+    input = ByteBuffer.wrap(data);
+    output = CharBuffer.allocate((int) Math.min((Integer.MAX_VALUE - 16),
+      (byteCount * (double) decoder.averageCharsPerByte())) + 16);
+    sampleBytes = new int[(byteCount / SAMPLE_SIZE) + 3];
+    sampleChars = new int[sampleBytes.length];
+    sampleBytes[0] = sampleChars[0] = 0; // first checkpoint is the start
+    sampleCount = 1;
+    limit = 0;
+    do
+    {
+      limit = Math.min((limit + SAMPLE_SIZE), byteCount); // one more step
+      input.limit(limit);
+      do                          // repeat if output buffer is too small
+      {
+        coder = decoder.decode(input, output, (limit == byteCount));
+        if (coder.isOverflow()) output = growBuffer(output);
+      } while (coder.isOverflow());
+      if (input.position() > sampleBytes[sampleCount - 1]) // any progress?
+      {
+        sampleBytes[sampleCount] = input.position();
+        sampleChars[sampleCount ++] = output.position();
+      }
+    } while (limit < byteCount);
+    while (decoder.flush(output).isOverflow()) // some decoders have more
+      output = growBuffer(output);
+    charCount = output.position();
+
+    if (sampleBytes[sampleCount - 1] < byteCount) // last checkpoint is the end
+      sampleCount ++;
+    sampleBytes[sampleCount - 1] = byteCount;
+    sampleChars[sampleCount - 1] = charCount;
+    output.flip();                // prepare to read decoded characters
+    return(output.toString());
+
+  } // end of decode() method
+
+  /* Find a decode unit for a data byte or a character offset, and return the
+  start or end of the other kind.  Decoding one byte at a time is only done for
+  the segment between two checkpoints, so searches are quick. */
+
+  int findUnit(int offset, boolean charFlag, boolean startFlag)
+  {
+    int high, low, middle;        // binary search indexes
+    int i;                        // index variable
+    int[] samples;                // checkpoints for the kind we are given
+
+    samples = charFlag ? sampleChars : sampleBytes;
+    low = 0;                      // last checkpoint at or before offset
+    high = sampleCount - 1;       // final checkpoint is always after
+    while ((high - low) > 1)
+    {
+      middle = (low + high) >>> 1;
+      if (samples[middle] <= offset) low = middle;
+      else high = middle;
+    }
+    loadSegment(low);
+    for (i = 0; i < unitCount; i ++)
+    {
+      if (charFlag && (offset >= unitCharStarts[i])
+        && (offset < unitCharEnds[i]))
+      {
+        return(startFlag ? unitByteStarts[i] : unitByteEnds[i]);
+      }
+      else if ((charFlag == false) && (offset >= unitByteStarts[i])
+        && (offset < unitByteEnds[i]))
+      {
+        return(startFlag ? unitCharStarts[i] : unitCharEnds[i]);
+      }
+    }
+    if (charFlag)                 // not found, give end of segment
+      return(sampleBytes[low + 1]);
+    return(sampleChars[low + 1]);
+
+  } // end of findUnit() method
+
+  /* Copy a character buffer into a bigger buffer. */
+
+  static CharBuffer growBuffer(CharBuffer old)
+  {
+    CharBuffer result;            // new and bigger buffer
+
+    result = CharBuffer.allocate((int) Math.min((Integer.MAX_VALUE - 16),
+      (old.capacity() * 3L / 2)) + 16);
+    old.flip();                   // read what has been written so far
+    result.put(old);
+    return(result);
+  }
+
+  /* Decode the data bytes between two checkpoints, one byte at a time, and
+  remember which bytes produced which characters. */
+
+  void loadSegment(int k)
+  {
+    int byteEnd, byteStart;       // data bytes between checkpoints
+    int charStart;                // first character for this segment
+    CoderResult coder;            // result from one decode step
+    CharsetDecoder decoder;       // converts data bytes to characters
+    ByteBuffer input;             // wraps caller's data bytes
+    int lastBytes, lastChars;     // end of previous decode unit
+    int limit;                    // end of input for current decode step
+    CharBuffer output;            // decoded text characters
+    boolean validFlag;            // true if segment decodes as expected
+
+    if (k == segmentIndex) return; // already have this segment
+    byteEnd = sampleBytes[k + 1];
+    byteStart = sampleBytes[k];
+    charStart = sampleChars[k];
+    segmentIndex = k;
+    unitByteEnds = new int[byteEnd - byteStart + 1];
+    unitByteStarts = new int[unitByteEnds.length];
+    unitCharEnds = new int[unitByteEnds.length];
+    unitCharStarts = new int[unitByteEnds.length];
+    unitCount = 0;
+
+    decoder = newDecoder();       // start fresh at this checkpoint
+    input = ByteBuffer.wrap(data);
+    input.position(byteStart);
+    output = CharBuffer.allocate(sampleChars[k + 1] - charStart + 16);
+    lastBytes = byteStart;
+    lastChars = 0;
+    validFlag = true;             // assume this segment will be good
+    for (limit = byteStart + 1; validFlag && (limit <= byteEnd); limit ++)
+    {
+      input.limit(limit);         // add one more byte to the input
+      coder = decoder.decode(input, output, (limit == byteCount));
+      if ((limit == byteCount) && coder.isUnderflow())
+        coder = decoder.flush(output); // end of all data bytes
+      if (coder.isOverflow())     // more characters than expected
+        validFlag = false;
+      else if (input.position() > lastBytes) // one more unit is complete
+      {
+        unitByteStarts[unitCount] = lastBytes;
+        unitByteEnds[unitCount] = lastBytes = input.position();
+        unitCharStarts[unitCount] = charStart + lastChars;
+        unitCharEnds[unitCount ++] = charStart + (lastChars =
+          output.position());
+      }
+    }
+    if ((validFlag == false) || (lastBytes != byteEnd)
+      || ((charStart + lastChars) != sampleChars[k + 1]))
+    {
+      unitByteStarts[0] = byteStart; // doesn't restart, use whole segment
+      unitByteEnds[0] = byteEnd;
+      unitCharStarts[0] = charStart;
+      unitCharEnds[0] = sampleChars[k + 1];
+      unitCount = 1;
+    }
+  } // end of loadSegment() method
+
+  /* Create a decoder that replaces bad input like the String class does. */
+
+  CharsetDecoder newDecoder()
+  {
+    return(charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE));
+  }
+
+} // end of HexByteChar2TextMap class
+
+// ------------------------------------------------------------------------- //
+
+/*
+  HexByteChar2Chart class
+
+  This class draws a simple bar chart or line chart for a list of numbers.  We
+  don't need axes, legends, or any of the other features of a real chart.
+*/
+
+class HexByteChar2Chart extends JPanel
+{
+  /* constants */
+
+  static final long serialVersionUID = 1L; // version for serialized objects
+
+  /* instance variables */
+
+  boolean barFlag;                // true for bar chart, false for line chart
+  double maximum;                 // value for top of chart
+  String title;                   // short description inside chart
+  double[] values;                // caller's values, not copied
+
+  /* constructor */
+
+  public HexByteChar2Chart(String title, double[] values, double maximum,
+    boolean barFlag)
+  {
+    super();                      // initialize our superclass first (JPanel)
+    this.barFlag = barFlag;       // save caller's parameters
+    this.maximum = (maximum > 0.0) ? maximum : 1.0;
+    this.title = title;
+    this.values = values;
+    this.setBackground(Color.WHITE);
+    this.setBorder(BorderFactory.createLineBorder(Color.GRAY));
+    this.setPreferredSize(new Dimension(520, 150));
+  }
+
+  /* Draw the chart to fit our current size. */
+
+  protected void paintComponent(Graphics gr)
+  {
+    int height, width;            // usable size inside border, in pixels
+    int i;                        // index variable
+    int lastX, lastY;             // previous point on line chart
+    int x, y;                     // current point on chart
+    int x2;                       // right side of current bar
+
+    super.paintComponent(gr);     // clear background
+    height = this.getHeight() - 4;
+    width = this.getWidth() - 4;
+    if ((height < 1) || (width < 1) || (values.length == 0)) return;
+    gr.setColor(Color.BLUE);
+    lastX = lastY = -1;
+    for (i = 0; i < values.length; i ++)
+    {
+      x = 2 + (int) (((long) width * i) / values.length);
+      y = 2 + height - (int) Math.round(height * Math.min(1.0,
+        (values[i] / maximum)));
+      if (barFlag)                // bar chart fills to the bottom
+      {
+        x2 = 2 + (int) (((long) width * (i + 1)) / values.length);
+        gr.fillRect(x, y, Math.max(1, (x2 - x)), (2 + height - y));
+      }
+      else if (lastX < 0)         // first point on line chart
+        gr.fillRect(x, y, 1, 1);
+      else
+        gr.drawLine(lastX, lastY, x, y);
+      lastX = x;
+      lastY = y;
+    }
+    gr.setColor(Color.BLACK);     // title goes on top of chart
+    gr.drawString(title, 8, (4 + gr.getFontMetrics().getAscent()));
+
+  } // end of paintComponent() method
+
+} // end of HexByteChar2Chart class
+
+// ------------------------------------------------------------------------- //
+
+/*
+  HexByteChar2Stats class
+
+  This class counts byte values and line endings for part of a data array.
+  Each thread has its own primitive counters, so nothing is shared or locked
+  while counting, and the results are merged at the end.  Entropy is
+  calculated for fixed windows of data bytes, whose boundaries never cross
+  between threads.
+*/
+
+class HexByteChar2Stats implements Runnable
+{
+  /* constants */
+
+  static final int MAX_WINDOWS = 1024; // most points on an entropy chart
+  static final int MIN_THREAD = 0x100000; // fewest bytes worth a thread
+
+  /* instance variables */
+
+  long byteCount;                 // number of data bytes counted
+  long[] counts;                  // number of times each byte value appears
+  long crlfCount;                 // number of CR followed by LF
+  byte[] data;                    // caller's data bytes, not copied
+  int end;                        // index after last data byte to count
+  double[] entropy;               // entropy for each window, shared array
+  long lineFeedCount;             // number of LF not after CR
+  long lowCount;                  // number of bytes from 0x00 to 0x7F
+  long returnCount;               // number of CR not before LF
+  int start;                      // index of first data byte to count
+  int windowSize;                 // number of data bytes in each window
+
+  /* constructor */
+
+  public HexByteChar2Stats(byte[] data, int start, int end, int windowSize,
+    double[] entropy)
+  {
+    this.byteCount = end - start; // save caller's parameters
+    this.counts = new long[256];
+    this.crlfCount = this.lineFeedCount = this.lowCount = this.returnCount = 0;
+    this.data = data;
+    this.end = end;
+    this.entropy = entropy;
+    this.start = start;
+    this.windowSize = windowSize;
+  }
+
+  /* Count all data bytes with as many threads as there are processors, and
+  return the merged results. */
+
+  static HexByteChar2Stats analyze(byte[] data)
+  {
+    int i, k;                     // index variables
+    int length;                   // number of data bytes
+    HexByteChar2Stats result;     // merged results from all threads
+    int threadCount;              // number of worker threads to use
+    int windowCount;              // number of entropy windows
+    int windowSize;               // number of data bytes in each window
+    HexByteChar2Stats[] workers;  // counters for each thread
+
+    length = data.length;
+    windowSize = Math.max(256, ((length + MAX_WINDOWS - 1) / MAX_WINDOWS));
+    windowCount = (length + windowSize - 1) / windowSize;
+    threadCount = Math.max(1, Math.min(Runtime.getRuntime()
+      .availableProcessors(), (length / MIN_THREAD)));
+    threadCount = Math.min(threadCount, windowCount);
+    result = new HexByteChar2Stats(data, 0, length, windowSize,
+      new double[windowCount]);
+    workers = new HexByteChar2Stats[threadCount];
+
+    for (i = 0; i < threadCount; i ++) // divide on window boundaries
+    {
+      workers[i] = new HexByteChar2Stats(data,
+        (int) Math.min(length, ((long) windowCount * i / threadCount)
+        * windowSize), (int) Math.min(length, ((long) windowCount * (i + 1)
+        / threadCount) * windowSize), windowSize, result.entropy);
+    }
+    HexByteChar2.runParallel(workers); // shared worker threads
+    for (i = 0; i < threadCount; i ++) // merge results from all workers
+    {
+      for (k = 0; k < 256; k ++)
+        result.counts[k] += workers[i].counts[k];
+      result.crlfCount += workers[i].crlfCount;
+      result.lineFeedCount += workers[i].lineFeedCount;
+      result.lowCount += workers[i].lowCount;
+      result.returnCount += workers[i].returnCount;
+    }
+    return(result);
+
+  } // end of analyze() method
+
+  /* Return the Shannon entropy in bits per byte for a histogram. */
+
+  static double entropy(long[] counts, long total)
+  {
+    int i;                        // index variable
+    double p;                     // probability of one byte value
+    double result;                // sum of entropy for each byte value
+
+    result = 0.0;
+    if (total > 0)
+    {
+      for (i = 0; i < counts.length; i ++)
+      {
+        if (counts[i] > 0)
+        {
+          p = (double) counts[i] / total;
+          result -= p * Math.log(p);
+        }
+      }
+    }
+    return(result / Math.log(2.0)); // convert from natural logarithm
+
+  } // end of entropy() method
+
+  /* Count our part of the data bytes.  This is the inner loop, so keep it
+  simple. */
+
+  public void run()
+  {
+    int i, k;                     // index variables
+    int value;                    // one data byte as an integer
+    int[] window;                 // counts for current window only
+    long[] windowCounts;          // same counts as <long> for entropy()
+    int windowEnd;                // index after last byte in current window
+
+    window = new int[256];
+    windowCounts = new long[256];
+    for (i = start; i < end; i = windowEnd)
+    {
+      windowEnd = Math.min(end, (i + windowSize));
+      for (k = 0; k < 256; k ++) window[k] = 0;
+      for (k = i; k < windowEnd; k ++)
+      {
+        value = data[k] & 0xFF;
+        window[value] ++;
+        if ((value == 0x0A) && (k > 0) && (data[k - 1] == 0x0D))
+          crlfCount ++;           // line feed after carriage return
+      }
+      for (k = 0; k < 256; k ++)  // merge window into our counters
+      {
+        counts[k] += windowCounts[k] = window[k];
+        if (k < 0x80) lowCount += window[k];
+      }
+      entropy[i / windowSize] = entropy(windowCounts, (windowEnd - i));
+    }
+    lineFeedCount = counts[0x0A] - crlfCount; // LF not after CR
+    returnCount = counts[0x0D] - crlfCount; // CR not before LF
+
+  } // end of run() method
+
+} // end of HexByteChar2Stats class
+
+// ------------------------------------------------------------------------- //
+
+/*
+  HexByteChar2RangeList class
+
+  This class shows a list of results from one of our tools, where each result
+  is a range of data bytes.  Clicking on a result selects those data bytes in
+  the hex text.  The dialog box is not modal, so the user can keep working.
+*/
+
+class HexByteChar2RangeList extends JDialog implements ListSelectionListener
+{
+  /* constants */
+
+  static final long serialVersionUID = 1L; // version for serialized objects
+
+  /* instance variables */
+
+  JTextArea area;                 // text area for positions, or null
+  HexByteChar2Document document;  // document that this window belongs to
+  long[] ends;                    // index after last data byte for each result
+  File[] files;                   // file for each result, or null
+  JList<String> list;             // list of results shown to user
+  long[] starts;                  // index of first data byte for each result
+
+  /* constructors */
+
+  public HexByteChar2RangeList(Frame owner, String title, String[] labels,
+    long[] starts, long[] ends, int count)
+  {
+    this(owner, title, labels, starts, ends, count, null, null);
+  }
+
+  public HexByteChar2RangeList(Frame owner, String title, String[] labels,
+    long[] starts, long[] ends, int count, File[] files)
+  {
+    this(owner, title, labels, starts, ends, count, files, null);
+  }
+
+  public HexByteChar2RangeList(Frame owner, String title, String[] labels,
+    long[] starts, long[] ends, int count, JTextArea area)
+  {
+    this(owner, title, labels, starts, ends, count, null, area);
+  }
+
+  public HexByteChar2RangeList(Frame owner, String title, String[] labels,
+    long[] starts, long[] ends, int count, File[] files, JTextArea area)
+  {
+    super(owner, title, false);   // initialize our superclass first (JDialog)
+    this.area = area;             // save caller's parameters
+    this.ends = ends;
+    this.files = files;
+    this.starts = starts;
+    document = HexByteChar2.currentDocument; // results are for this document
+
+    list = new JList<String>(labels);
+    list.setFont(new Font("Monospaced", Font.PLAIN,
+      HexByteChar2.byteField.getFont().getSize()));
+    list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+    list.addListSelectionListener(this);
+    this.getContentPane().add(new JScrollPane(list));
+    this.setDefaultCloseOperation(JDialog.DISPOSE_ON_CLOSE);
+    this.setSize(700, 400);
+    this.setLocationRelativeTo(owner);
+    this.setVisible(true);
+  }
+
+  /* The user has clicked on a result, or moved with the arrow keys. */
+
+  public void valueChanged(ListSelectionEvent event)
+  {
+    int i;                        // index of selected result
+
+    if (event.getValueIsAdjusting()) return; // wait until user is done
+    i = list.getSelectedIndex();
+    if (i < 0) return;            // nothing selected
+    if (HexByteChar2.showDocument(document) == false)
+      return;                     // document was closed
+    if (area != null)             // positions are for characters in text
+    {
+      if (ends[i] > area.getDocument().getLength())
+        return;                   // text has changed since
+      area.select((int) starts[i], (int) ends[i]); // select and scroll
+      area.requestFocusInWindow(); // selection is hidden without focus
+      return;
+    }
+    if ((files != null) && (files[i].equals(HexByteChar2.byteSource)
+      == false))                  // result is in another file
+    {
+      HexByteChar2.readFile(files[i]);
+      if (files[i].equals(HexByteChar2.byteSource) == false)
+        return;                   // file wasn't read, user was told
+    }
+    if ((files != null) && (HexByteChar2.byteSourceKey.endsWith(" raw")
+      == false))                  // offsets are in the compressed file
+    {
+      JOptionPane.showMessageDialog(this, (files[i].getName()
+        + " was decompressed.\nOffsets are for the file as stored."));
+      return;
+    }
+    HexByteChar2.selectDataBytes((int) Math.min(Integer.MAX_VALUE,
+      starts[i]), (int) Math.min(Integer.MAX_VALUE, ends[i]));
+  }
+
+} // end of HexByteChar2RangeList class
+
+// ------------------------------------------------------------------------- //
+
+/*
+  HexByteChar2Strings class
+
+  This class finds runs of readable text in binary data bytes, like the UNIX
+  "strings" command.  Data is given in pieces, which may come from a file, so
+  nothing is kept except the current run for each encoding.  One pass checks
+  UTF-8 (including plain ASCII) and UTF-16 in both byte orders and at both even
+  and odd offsets.  The number of results is limited.
+
+  UTF-16 only accepts characters below U+0800 (Latin, Greek, Cyrillic, Hebrew,
+  Arabic, etc), because any two ASCII bytes would otherwise look like a CJK
+  ideograph.  Search in a selected encoding to find other UTF-16 text.  Units
+  above Latin-1 must also have the same high byte as the others in their run
+  (one script), or pairs of binary bytes like 04 30 would be Cyrillic text.
+*/
+
+class HexByteChar2Strings
+{
+  /* constants */
+
+  static final String[] KIND_NAMES = {"UTF-8", "UTF-16LE", "UTF-16LE",
+    "UTF-16BE", "UTF-16BE"};      // names for each of our scanners
+  static final int MAX_PREVIEW = 60; // most characters saved for each result
+  static final int MAX_RESULTS = 20000; // most results saved
+  static final int SCANNERS = 5;  // UTF-8, then UTF-16 (LE, BE) x (even, odd)
+
+  /* instance variables */
+
+  int[] chars;                    // number of characters in each result
+  int count;                      // number of results saved
+  long[] ends;                    // index after last data byte for results
+  String[] kinds;                 // encoding name for each result
+  int minimum;                    // minimum number of characters in a run
+  boolean overflowFlag;           // true if some results weren't saved
+  boolean[] pairFlags;            // true if result is from a UTF-16 scanner
+  int previous;                   // previous data byte, or -1 at start
+  String[] previews;              // first few characters of each result
+  int[] runChars;                 // number of characters in current runs
+  int[] runHighs;                 // high byte of UTF-16 runs, or zero
+  long[] runEnds;                 // index after last byte in current runs
+  long[] runStarts;               // index of first byte in current runs
+  StringBuffer[] runTexts;        // first few characters of current runs
+  boolean runWideFlag;            // true if UTF-8 run has non-ASCII chars
+  long[] starts;                  // index of first data byte for results
+  int utf8Minimum;                // smallest legal value for UTF-8 sequence
+  int utf8Pending;                // continuation bytes still expected
+  long utf8Start;                 // index of first byte in UTF-8 sequence
+  int utf8Value;                  // code point for UTF-8 sequence so far
+
+  /* constructor */
+
+  public HexByteChar2Strings(int minimum)
+  {
+    int i;                        // index variable
+
+    this.minimum = minimum;       // save caller's parameters
+    chars = new int[256];         // results grow as needed
+    count = 0;
+    ends = new long[chars.length];
+    kinds = new String[chars.length];
+    overflowFlag = false;
+    pairFlags = new boolean[chars.length];
+    previews = new String[chars.length];
+    previous = -1;
+    runChars = new int[SCANNERS];
+    runHighs = new int[SCANNERS];
+    runEnds = new long[SCANNERS];
+    runStarts = new long[SCANNERS];
+    runTexts = new StringBuffer[SCANNERS];
+    for (i = 0; i < SCANNERS; i ++)
+      runTexts[i] = new StringBuffer();
+    runWideFlag = false;
+    starts = new long[chars.length];
+    utf8Pending = 0;
+  }
+
+  /* Add one character to the current run for one scanner. */
+
+  void accept(int scanner, long start, long end, int value)
+  {
+    if (runChars[scanner] == 0)   // first character of a new run?
+      runStarts[scanner] = start;
+    runChars[scanner] ++;
+    runEnds[scanner] = end;
+    if (runTexts[scanner].length() < MAX_PREVIEW)
+      runTexts[scanner].appendCodePoint(value);
+  }
+
+  /* Save one result, if there is room. */
+
+  void add(String kind, long start, long end, int charCount, String preview)
+  {
+    int size;                     // new size for result arrays
+
+    if (count >= chars.length)    // are our arrays full?
+    {
+      if (count >= MAX_RESULTS)
+      {
+        overflowFlag = true;      // remember that some are missing
+        return;
+      }
+      size = Math.min(MAX_RESULTS, (chars.length * 2));
+      chars = growArray(chars, size);
+      ends = growArray(ends, size);
+      kinds = growArray(kinds, size);
+      pairFlags = growArray(pairFlags, size);
+      previews = growArray(previews, size);
+      starts = growArray(starts, size);
+    }
+    chars[count] = charCount;
+    ends[count] = end;
+    kinds[count] = kind;
+    pairFlags[count] = (kind == KIND_NAMES[1]) || (kind == KIND_NAMES[3]);
+    previews[count] = preview;
+    starts[count ++] = start;
+
+  } // end of add() method
+
+  /* End the current run for one scanner, and save it if long enough. */
+
+  void endRun(int scanner)
+  {
+    String kind;                  // encoding name for this result
+
+    if (runChars[scanner] >= minimum)
+    {
+      kind = KIND_NAMES[scanner];
+      if ((scanner == 0) && (runWideFlag == false))
+        kind = "ASCII";           // UTF-8 with only plain ASCII characters
+      add(kind, runStarts[scanner], runEnds[scanner], runChars[scanner],
+        runTexts[scanner].toString());
+    }
+    runChars[scanner] = 0;
+    runHighs[scanner] = 0;
+    runTexts[scanner].setLength(0);
+    if (scanner == 0) runWideFlag = false;
+  }
+
+  /* End all runs after the last data byte has been given. */
+
+  void finish()
+  {
+    int i;                        // index variable
+
+    for (i = 0; i < SCANNERS; i ++)
+      endRun(i);
+    utf8Pending = 0;
+  }
+
+  /* Copy arrays into bigger arrays. */
+
+  static boolean[] growArray(boolean[] old, int size)
+  {
+    boolean[] result = new boolean[size];
+    System.arraycopy(old, 0, result, 0, old.length);
+    return(result);
+  }
+
+  static int[] growArray(int[] old, int size)
+  {
+    int[] result = new int[size];
+    System.arraycopy(old, 0, result, 0, old.length);
+    return(result);
+  }
+
+  static long[] growArray(long[] old, int size)
+  {
+    long[] result = new long[size];
+    System.arraycopy(old, 0, result, 0, old.length);
+    return(result);
+  }
+
+  static String[] growArray(String[] old, int size)
+  {
+    String[] result = new String[size];
+    System.arraycopy(old, 0, result, 0, old.length);
+    return(result);
+  }
+
+  /* Return true if a Unicode code point is a readable character. */
+
+  static boolean isPrintable(int value)
+  {
+    int type;                     // Unicode general category
+
+    if (value == 0x09) return(true); // tab is common in text
+    if ((value < 0x20) || ((value >= 0x7F) && (value < 0xA0))) return(false);
+    if (value < 0x7F) return(true); // plain ASCII is the most common
+    if (value == 0xFFFD) return(false); // replacement for bad input
+    if (value > 0xFFFF) return(value <= 0x10FFFF); // assume defined
+    type = Character.getType((char) value);
+    return((type != Character.CONTROL) && (type != Character.FORMAT)
+      && (type != Character.PRIVATE_USE) && (type != Character.SURROGATE)
+      && (type != Character.UNASSIGNED));
+  }
+
+  /* Return a text label for each result, as shown to the user. */
+
+  String[] labels()
+  {
+    int i;                        // index variable
+    String offset;                // hex offset for one result
+    String[] result;              // labels for all results
+
+    result = new String[count];
+    for (i = 0; i < count; i ++)
+    {
+      offset = Long.toHexString(starts[i]).toUpperCase();
+      while (offset.length() < 8) offset = "0" + offset;
+      result[i] = offset + "  " + kinds[i] + "  " + chars[i] + "  \""
+        + previews[i] + ((chars[i] > MAX_PREVIEW) ? "...\"" : "\"");
+    }
+    return(result);
+  }
+
+  /* Scan a piece of the data bytes.  Pieces must be given in order, with the
+  index of the first byte in this piece. */
+
+  void scan(byte[] buffer, int offset, int length, long base)
+  {
+    int i;                        // index variable
+    long index;                   // index of current data byte
+    int scanner;                  // which UTF-16 scanner for this byte
+    int value;                    // one data byte as an integer
+
+    for (i = 0; i < length; i ++)
+    {
+      index = base + i;
+      value = buffer[offset + i] & 0xFF;
+
+      /* UTF-8 and plain ASCII.  A bad sequence ends the run where the
+      sequence started, and the current byte is checked again. */
+
+      if (utf8Pending > 0)        // continuing a multi-byte sequence?
+      {
+        if ((value & 0xC0) == 0x80) // continuation byte
+        {
+          utf8Value = (utf8Value << 6) | (value & 0x3F);
+          if ((-- utf8Pending) == 0) // is this sequence complete?
+          {
+            if ((utf8Value >= utf8Minimum) && ((utf8Value < 0xD800)
+              || (utf8Value > 0xDFFF)) && isPrintable(utf8Value))
+            {
+              accept(0, utf8Start, (index + 1), utf8Value);
+              runWideFlag = true;
+            }
+            else
+              endRun(0);
+          }
+          value = -1;             // this byte has been used
+        }
+        else                      // not a continuation byte
+        {
+          utf8Pending = 0;
+          endRun(0);
+        }
+      }
+      if (value < 0)
+        { /* byte was part of a UTF-8 sequence */ }
+      else if (((value >= 0x20) && (value <= 0x7E)) || (value == 0x09))
+        accept(0, index, (index + 1), value);
+      else if ((value >= 0xC2) && (value <= 0xDF)) // start two bytes
+      {
+        utf8Minimum = 0x80;
+        utf8Pending = 1;
+        utf8Start = index;
+        utf8Value = value & 0x1F;
+      }
+      else if ((value >= 0xE0) && (value <= 0xEF)) // start three bytes
+      {
+        utf8Minimum = 0x800;
+        utf8Pending = 2;
+        utf8Start = index;
+        utf8Value = value & 0x0F;
+      }
+      else if ((value >= 0xF0) && (value <= 0xF4)) // start four bytes
+      {
+        utf8Minimum = 0x10000;
+        utf8Pending = 3;
+        utf8Start = index;
+        utf8Value = value & 0x07;
+      }
+      else                        // control character or illegal byte
+        endRun(0);
+
+      /* UTF-16 in both byte orders.  The code unit ends at this byte, and
+      started at the previous byte, which may be an even or odd index. */
+
+      value = buffer[offset + i] & 0xFF;
+      if (previous >= 0)
+      {
+        scanner = 1 + (int) ((index - 1) & 1); // little-endian scanners
+        unit16(scanner, (index - 1), ((value << 8) | previous));
+        unit16((scanner + 2), (index - 1), ((previous << 8) | value));
+      }
+      previous = value;
+    }
+
+  } // end of scan() method
+
+  /* Scan all data bytes in the user's selected encoding.  This is a second
+  pass, so that the decoder can do its own thing. */
+
+  void scanCharset(byte[] data, Charset charset)
+  {
+    int ch;                       // one character or code point
+    int first;                    // offset of first character in run
+    int i;                        // index variable
+    int next;                     // offset of next character
+    int[] range;                  // data bytes for one run
+    String text;                  // all data bytes decoded as text
+    HexByteChar2TextMap textMap;  // which text characters come from each byte
+
+    textMap = new HexByteChar2TextMap(data, charset, 0);
+    text = textMap.decode();
+    first = -1;                   // no run has started
+    for (i = 0; i <= text.length(); i = next)
+    {
+      next = i + 1;               // assume one char per character
+      ch = -1;                    // end of text ends any run
+      if (i < text.length())
+      {
+        ch = text.charAt(i);
+        if ((ch >= 0xD800) && (ch <= 0xDBFF) && (next < text.length())
+          && (text.charAt(next) >= 0xDC00) && (text.charAt(next) <= 0xDFFF))
+        {
+          ch = 0x10000 + ((ch - 0xD800) << 10) + (text.charAt(next ++)
+            - 0xDC00);            // surrogate pair
+        }
+      }
+      if ((ch >= 0) && isPrintable(ch))
+      {
+        if (first < 0) first = i; // start a new run
+      }
+      else if (first >= 0)        // end of current run
+      {
+        if ((i - first) >= minimum)
+        {
+          range = textMap.byteRange(first, i);
+          if (range != null)
+            add(charset.name(), range[0], range[1], (i - first),
+              text.substring(first, Math.min(i, (first + MAX_PREVIEW))));
+        }
+        first = -1;
+      }
+    }
+  } // end of scanCharset() method
+
+  /* Sort results by their first data byte, and remove UTF-16 results that are
+  the same text found again at the next byte in the other byte order. */
+
+  void sort()
+  {
+    boolean[] dropFlags;          // true if sorted result is removed
+    int i;                        // index variable
+    int j;                        // index of original result
+    long[] keys;                  // first data byte and original index
+    int kept;                     // number of results kept
+    int last16;                   // last UTF-16 result kept, or -1
+    int[] newChars;               // sorted copies of result arrays
+    long[] newEnds, newStarts;
+    String[] newKinds, newPreviews;
+    int[] order;                  // original index for each sorted result
+
+    keys = new long[count];
+    for (i = 0; i < count; i ++)  // results are limited to less than 2^20
+      keys[i] = (starts[i] << 20) | i;
+    java.util.Arrays.sort(keys);
+    dropFlags = new boolean[count];
+    last16 = -1;
+    order = new int[count];
+    for (i = 0; i < count; i ++)
+    {
+      j = order[i] = (int) (keys[i] & 0xFFFFF);
+      if (pairFlags[j] == false)  // only UTF-16 scanners find duplicates
+        continue;
+      if ((last16 >= 0) && (starts[j] < ends[order[last16]]))
+      {
+        if (chars[j] <= chars[order[last16]]) // overlaps a longer result
+        {
+          dropFlags[i] = true;
+          continue;
+        }
+        dropFlags[last16] = true; // this result is longer, drop the other
+      }
+      last16 = i;
+    }
+
+    kept = 0;
+    newChars = new int[count];
+    newEnds = new long[count];
+    newKinds = new String[count];
+    newPreviews = new String[count];
+    newStarts = new long[count];
+    for (i = 0; i < count; i ++)
+    {
+      if (dropFlags[i]) continue;
+      j = order[i];
+      newChars[kept] = chars[j];
+      newEnds[kept] = ends[j];
+      newKinds[kept] = kinds[j];
+      newPreviews[kept] = previews[j];
+      newStarts[kept ++] = starts[j];
+    }
+    chars = newChars;
+    count = kept;
+    ends = newEnds;
+    kinds = newKinds;
+    pairFlags = new boolean[count]; // sorted results don't need these
+    previews = newPreviews;
+    starts = newStarts;
+
+  } // end of sort() method
+
+  /* Check one UTF-16 code unit for one scanner. */
+
+  void unit16(int scanner, long start, int value)
+  {
+    int high;                     // high byte of UTF-16 unit
+
+    high = value >> 8;
+    if ((value >= 0x0800) || (isPrintable(value) == false))
+    {
+      endRun(scanner);
+      return;
+    }
+    if ((high != 0) && (runHighs[scanner] != 0)
+      && (high != runHighs[scanner])) // another script, start a new run
+    {
+      endRun(scanner);
+    }
+    if (high != 0) runHighs[scanner] = high;
+    accept(scanner, start, (start + 2), value);
+  }
+
+} // end of HexByteChar2Strings class
+
+// ------------------------------------------------------------------------- //
+
+/*
+  HexByteChar2History class
+
+  This class keeps an edit history for one text area, for undo and redo.  The
+  text is described by a "piece table": a list of pieces, where each piece is a
+  start and length in a buffer of inserted text.  Buffers are never changed, so
+  each step in the history saves only its list of pieces, not another copy of
+  the text.  Small insertions (typing) go into one shared buffer that is only
+  appended.  Moving between steps is constant time, although the text area
+  must still be given the restored text.
+
+  Text that is too big for our limit is not tracked.  Tracking starts again
+  when the text area becomes empty, which happens during setText().  When steps
+  are dropped, typing that no step uses any more is removed from the shared
+  buffer, so a long session doesn't fill our limit with old keystrokes.
+*/
+
+class HexByteChar2History
+{
+  /* constants */
+
+  static final int MAX_CHARS = 0x2000000; // most characters kept in buffers
+  static final int MAX_STATES = 100; // most steps kept in history
+  static final int MAX_TYPED = 1000; // bigger insertions aren't "typing"
+  static final int MIN_COMPACT = 0x10000; // smallest typing buffer compacted
+
+  /* instance variables */
+
+  Object[] buffers;               // inserted text: <typed> and then Strings
+  int bufferCount;                // number of entries used in <buffers>
+  boolean dirtyFlag;              // true if text changed since current step
+  int[] pieceBuffers;             // buffer index for each piece of text
+  int pieceCount;                 // number of pieces in current text
+  int[] pieceLengths;             // number of characters in each piece
+  int[] pieceStarts;              // start of each piece in its buffer
+  int position;                   // index of current step in history
+  int[][] stateBuffers;           // saved pieces for each step in history
+  int stateCount;                 // number of steps in history
+  String[] stateEncodings;        // encoding for conversions, or null
+  String[] stateLabels;           // short description of each step
+  int[][] stateLengths, stateStarts; // saved pieces for each step
+  boolean suspendFlag;            // true while changes aren't recorded
+  JTextArea text;                 // text area that we are watching
+  boolean trackFlag;              // false if text is too big to track
+  StringBuffer typed;             // small insertions, only appended
+
+  /* constructor */
+
+  public HexByteChar2History(JTextArea text)
+  {
+    this.text = text;             // save caller's parameters
+    pieceBuffers = new int[16];   // arrays grow as needed
+    pieceLengths = new int[pieceBuffers.length];
+    pieceStarts = new int[pieceBuffers.length];
+    stateBuffers = new int[MAX_STATES + 1][];
+    stateEncodings = new String[stateBuffers.length];
+    stateLabels = new String[stateBuffers.length];
+    stateLengths = new int[stateBuffers.length][];
+    stateStarts = new int[stateBuffers.length][];
+    suspendFlag = false;
+    reset(text.getText());        // first step is the current text
+  }
+
+  /* Add a new buffer of inserted text, reusing an empty slot if possible. */
+
+  int addBuffer(String insert)
+  {
+    int i;                        // index variable
+    Object[] larger;              // bigger array when buffers overflow
+
+    for (i = 1; i < bufferCount; i ++)
+      if (buffers[i] == null) break;
+    if (i == buffers.length)
+    {
+      larger = new Object[buffers.length * 2];
+      System.arraycopy(buffers, 0, larger, 0, bufferCount);
+      buffers = larger;
+    }
+    buffers[i] = insert;
+    bufferCount = Math.max(bufferCount, (i + 1));
+    return(i);
+  }
+
+  /* Save the current text as a new step in the history, if it has changed.
+  Any steps that could have been redone are lost. */
+
+  void commit(String label, String encoding)
+  {
+    if ((dirtyFlag == false) || (trackFlag == false))
+    {
+      dirtyFlag = false;
+      return;
+    }
+    stateCount = position + 1;    // forget anything after current step
+    stateBuffers[stateCount] = copyArray(pieceBuffers, pieceCount);
+    stateEncodings[stateCount] = encoding;
+    stateLabels[stateCount] = label;
+    stateLengths[stateCount] = copyArray(pieceLengths, pieceCount);
+    stateStarts[stateCount] = copyArray(pieceStarts, pieceCount);
+    position = stateCount ++;
+    dirtyFlag = false;
+    trim();                       // drop oldest steps if there are too many
+  }
+
+  /* Remove typing from the shared buffer that isn't used by the current text
+  or any step, if that is more than half of the buffer.  Pieces are moved to
+  the same text in the new buffer.  Return the size of the typing buffer. */
+
+  int compactTyped()
+  {
+    int[] ends, starts;           // used ranges of typing buffer, merged
+    int i, k;                     // index variables
+    int merged;                   // number of used ranges after merging
+    int[] moved;                  // new start for each used range
+    long[] ranges;                // typing pieces as (start << 32 | end)
+    int rangeCount;               // number of typing pieces
+    StringBuffer smaller;         // new typing buffer
+    int used;                     // number of characters in used ranges
+
+    if (typed.length() < MIN_COMPACT) return(typed.length());
+    rangeCount = 0;
+    for (i = 0; i < pieceCount; i ++)
+      if (pieceBuffers[i] == 0) rangeCount ++;
+    for (k = 0; k < stateCount; k ++)
+      for (i = 0; i < stateBuffers[k].length; i ++)
+        if (stateBuffers[k][i] == 0) rangeCount ++;
+    ranges = new long[rangeCount];
+    rangeCount = 0;
+    for (i = 0; i < pieceCount; i ++)
+      if (pieceBuffers[i] == 0)
+        ranges[rangeCount ++] = ((long) pieceStarts[i] << 32)
+          | (pieceStarts[i] + pieceLengths[i]);
+    for (k = 0; k < stateCount; k ++)
+      for (i = 0; i < stateBuffers[k].length; i ++)
+        if (stateBuffers[k][i] == 0)
+          ranges[rangeCount ++] = ((long) stateStarts[k][i] << 32)
+            | (stateStarts[k][i] + stateLengths[k][i]);
+    java.util.Arrays.sort(ranges);
+
+    /* Merge overlapping ranges, and see if enough would be saved. */
+
+    ends = new int[rangeCount];
+    starts = new int[rangeCount];
+    merged = used = 0;
+    for (i = 0; i < rangeCount; i ++)
+    {
+      if ((merged > 0) && ((int) (ranges[i] >>> 32) <= ends[merged - 1]))
+        ends[merged - 1] = Math.max(ends[merged - 1], (int) ranges[i]);
+      else
+      {
+        starts[merged] = (int) (ranges[i] >>> 32);
+        ends[merged ++] = (int) ranges[i];
+      }
+    }
+    for (i = 0; i < merged; i ++)
+      used += ends[i] - starts[i];
+    if (used > (typed.length() / 2)) return(typed.length());
+
+    moved = new int[merged];
+    smaller = new StringBuffer(Math.max(16, (used * 2)));
+    for (i = 0; i < merged; i ++)
+    {
+      moved[i] = smaller.length();
+      smaller.append(typed.substring(starts[i], ends[i]));
+    }
+    for (i = 0; i < pieceCount; i ++)
+      if (pieceBuffers[i] == 0)
+        pieceStarts[i] = movePosition(pieceStarts[i], starts, moved, merged);
+    for (k = 0; k < stateCount; k ++)
+      for (i = 0; i < stateBuffers[k].length; i ++)
+        if (stateBuffers[k][i] == 0)
+          stateStarts[k][i] = movePosition(stateStarts[k][i], starts, moved,
+            merged);
+    typed = smaller;
+    buffers[0] = typed;
+    return(typed.length());
+
+  } // end of compactTyped() method
+
+  /* Return the new position in the typing buffer for an old position, given
+  the sorted starts of the used ranges and where each range was moved. */
+
+  static int movePosition(int old, int[] starts, int[] moved, int count)
+  {
+    int i;                        // index of range containing <old>
+
+    i = java.util.Arrays.binarySearch(starts, 0, count, old);
+    if (i < 0) i = -i - 2;        // range that starts before <old>
+    return(moved[i] + (old - starts[i]));
+  }
+
+  /* Copy an integer array into a new array of the given length. */
+
+  static int[] copyArray(int[] old, int length)
+  {
+    int[] result = new int[length];
+    System.arraycopy(old, 0, result, 0, Math.min(length, old.length));
+    return(result);
+  }
+
+  /* Return the encoding for the current step, if it was a conversion. */
+
+  String currentEncoding()
+  {
+    return(trackFlag ? stateEncodings[position] : null);
+  }
+
+  /* Insert a new piece before piece <i>. */
+
+  void insertPiece(int i, int buffer, int start, int length)
+  {
+    if (pieceCount == pieceBuffers.length) // need bigger arrays?
+    {
+      pieceBuffers = growArray(pieceBuffers);
+      pieceLengths = growArray(pieceLengths);
+      pieceStarts = growArray(pieceStarts);
+    }
+    System.arraycopy(pieceBuffers, i, pieceBuffers, (i + 1), (pieceCount - i));
+    System.arraycopy(pieceLengths, i, pieceLengths, (i + 1), (pieceCount - i));
+    System.arraycopy(pieceStarts, i, pieceStarts, (i + 1), (pieceCount - i));
+    pieceBuffers[i] = buffer;
+    pieceLengths[i] = length;
+    pieceStarts[i] = start;
+    pieceCount ++;
+  }
+
+  static int[] growArray(int[] old)
+  {
+    int[] result = new int[old.length * 2];
+    System.arraycopy(old, 0, result, 0, old.length);
+    return(result);
+  }
+
+  /* Move forward one step in the history.  Return false if there is nothing
+  to redo. */
+
+  boolean redo()
+  {
+    commit("Edit", null);         // typing after undo makes a new step
+    if ((trackFlag == false) || ((position + 1) >= stateCount))
+      return(false);
+    position ++;
+    restore();
+    return(true);
+  }
+
+  /* Forget all history and start again with the given text. */
+
+  void reset(String current)
+  {
+    buffers = new Object[16];
+    typed = new StringBuffer();   // first buffer is always for typing
+    buffers[0] = typed;
+    bufferCount = 1;
+    dirtyFlag = false;
+    pieceCount = stateCount = 0;
+    position = -1;                // no current step yet
+    trackFlag = (current.length() <= MAX_CHARS);
+    if (trackFlag == false) return; // too big to keep a history
+    if (current.length() > 0)
+      insertPiece(0, addBuffer(current), 0, current.length());
+    dirtyFlag = true;             // save current text as first step
+    commit("Start", null);
+  }
+
+  /* Put the text for the current step into the text area. */
+
+  void restore()
+  {
+    int[] buffers, lengths, starts; // pieces for current step
+    int count;                    // number of pieces
+    char[] result;                // restored text
+    int i;                        // index variable
+    boolean suspended;            // true if already suspended by caller
+    int total;                    // number of characters in restored text
+
+    buffers = stateBuffers[position];
+    lengths = stateLengths[position];
+    starts = stateStarts[position];
+    count = buffers.length;
+    total = 0;
+    for (i = 0; i < count; i ++)
+      total += lengths[i];
+    result = new char[total];
+    total = 0;
+    for (i = 0; i < count; i ++)  // copy each piece from its buffer
+    {
+      if (this.buffers[buffers[i]] instanceof String)
+        ((String) this.buffers[buffers[i]]).getChars(starts[i],
+          (starts[i] + lengths[i]), result, total);
+      else
+        ((StringBuffer) this.buffers[buffers[i]]).getChars(starts[i],
+          (starts[i] + lengths[i]), result, total);
+      total += lengths[i];
+    }
+
+    suspended = suspendFlag;
+    suspendFlag = true;           // don't record our own changes
+    text.setText(new String(result));
+    text.select(0, 0);            // scroll home, default is end of text
+    suspendFlag = suspended;
+    pieceBuffers = copyArray(buffers, Math.max(16, count));
+    pieceCount = count;
+    pieceLengths = copyArray(lengths, pieceBuffers.length);
+    pieceStarts = copyArray(starts, pieceBuffers.length);
+    dirtyFlag = false;
+
+  } // end of restore() method
+
+  /* Start recording changes again, after the caller set <suspendFlag> for
+  changes that are too many to record (such as following a file).  The whole
+  text becomes one new step, after any steps that are already saved. */
+
+  void resume(String label)
+  {
+    String current;               // text that wasn't recorded
+
+    suspendFlag = false;
+    current = text.getText();
+    if (trackFlag == false)       // not keeping a history for this text
+    {
+      if (current.length() == 0) reset("");
+      return;
+    }
+    if (current.length() > MAX_CHARS) // too big to keep a history?
+    {
+      reset("");                  // forget history, then stop tracking
+      trackFlag = false;
+      return;
+    }
+    pieceCount = 0;               // replace all pieces with current text
+    if (current.length() > 0)
+      insertPiece(0, addBuffer(current), 0, current.length());
+    dirtyFlag = true;
+    commit(label, null);
+  }
+
+  /* Make sure that a piece starts at a text offset, splitting a piece if
+  necessary.  Return the index of the piece that starts there. */
+
+  int split(int offset)
+  {
+    int i;                        // index variable
+    int inside;                   // characters before offset in piece
+    int total;                    // text offset at start of piece
+
+    total = 0;
+    for (i = 0; i < pieceCount; i ++)
+    {
+      if (total == offset) return(i);
+      if (offset < (total + pieceLengths[i])) // offset is inside piece
+      {
+        inside = offset - total;
+        insertPiece((i + 1), pieceBuffers[i], (pieceStarts[i] + inside),
+          (pieceLengths[i] - inside));
+        pieceLengths[i] = inside;
+        return(i + 1);
+      }
+      total += pieceLengths[i];
+    }
+    return(pieceCount);           // offset is at end of text
+  }
+
+  /* Drop the oldest steps if there are too many, or if buffers hold too much
+  text.  Forget any buffers that are no longer used by some step. */
+
+  void trim()
+  {
+    int i, k;                     // index variables
+    long total;                   // number of characters in used buffers
+    boolean[] used;               // true if buffer is used by some step
+
+    while (true)
+    {
+      used = new boolean[bufferCount];
+      used[0] = true;             // typing buffer is always kept
+      for (i = 0; i < pieceCount; i ++)
+        used[pieceBuffers[i]] = true;
+      for (k = 0; k < stateCount; k ++)
+        for (i = 0; i < stateBuffers[k].length; i ++)
+          used[stateBuffers[k][i]] = true;
+      total = compactTyped();     // also removes unused typing
+      for (i = 1; i < bufferCount; i ++)
+      {
+        if (used[i] == false) buffers[i] = null; // no longer needed
+        else total += ((String) buffers[i]).length();
+      }
+      if ((position == 0) || ((stateCount <= MAX_STATES)
+        && (total <= MAX_CHARS)))
+      {
+        break;                    // can't drop current step, or don't need to
+      }
+
+      for (i = 1; i < stateCount; i ++) // drop the oldest step
+      {
+        stateBuffers[i - 1] = stateBuffers[i];
+        stateEncodings[i - 1] = stateEncodings[i];
+        stateLabels[i - 1] = stateLabels[i];
+        stateLengths[i - 1] = stateLengths[i];
+        stateStarts[i - 1] = stateStarts[i];
+      }
+      position --;
+      stateBuffers[-- stateCount] = null;
+      stateLengths[stateCount] = stateStarts[stateCount] = null;
+    }
+  } // end of trim() method
+
+  /* Move back one step in the history.  Return false if there is nothing to
+  undo. */
+
+  boolean undo()
+  {
+    commit("Edit", null);         // typing since last step is one step
+    if ((trackFlag == false) || (position == 0))
+      return(false);
+    position --;
+    restore();
+    return(true);
+  }
+
+  /* Our text area has changed.  Update the current list of pieces. */
+
+  void update(DocumentEvent event)
+  {
+    int first;                    // index of first piece to change
+    String insert;                // text that was inserted
+    int last;                     // index after last piece removed
+    int length;                   // number of characters changed
+    int offset;                   // where in text the change happened
+    int start;                    // start of insertion in its buffer
+
+    if (suspendFlag) return;      // changes aren't being recorded
+    dirtyFlag = true;
+    length = event.getLength();
+    offset = event.getOffset();
+    if (event.getType() == DocumentEvent.EventType.INSERT)
+    {
+      if (trackFlag == false) return;
+      if (length > MAX_CHARS)     // too big to keep a history?
+      {
+        reset("");                // forget history, then stop tracking
+        trackFlag = false;
+        return;
+      }
+      try { insert = event.getDocument().getText(offset, length); }
+      catch (BadLocationException ble) { reset(text.getText()); return; }
+      first = split(offset);
+      if (length <= MAX_TYPED)    // small insertions go in typing buffer
+      {
+        start = typed.length();
+        typed.append(insert);
+        if ((first > 0) && (pieceBuffers[first - 1] == 0)
+          && ((pieceStarts[first - 1] + pieceLengths[first - 1]) == start))
+        {
+          pieceLengths[first - 1] += length; // continue previous typing
+        }
+        else
+          insertPiece(first, 0, start, length);
+      }
+      else                        // big insertions get their own buffer
+        insertPiece(first, addBuffer(insert), 0, length);
+    }
+    else if (event.getType() == DocumentEvent.EventType.REMOVE)
+    {
+      if (trackFlag == false)     // start tracking when text is empty
+      {
+        if (event.getDocument().getLength() == 0)
+          reset("");
+        return;
+      }
+      first = split(offset);
+      last = split(offset + length);
+      System.arraycopy(pieceBuffers, last, pieceBuffers, first,
+        (pieceCount - last));
+      System.arraycopy(pieceLengths, last, pieceLengths, first,
+        (pieceCount - last));
+      System.arraycopy(pieceStarts, last, pieceStarts, first,
+        (pieceCount - last));
+      pieceCount -= last - first;
+    }
+  } // end of update() method
+
+} // end of HexByteChar2History class
+
+// ------------------------------------------------------------------------- //
+
+/*
+  HexByteChar2Crc32c class
+
+  CRC-32C (Castagnoli) checksum, as used by iSCSI, SCTP, ext4, and others.  The
+  polynomial is different from the standard CRC-32 in java.util.zip, and the
+  calculation is table-driven eight bytes at a time ("slicing by eight").
+*/
+
+class HexByteChar2Crc32c implements java.util.zip.Checksum
+{
+  static final int POLYNOMIAL = 0x82F63B78; // reflected Castagnoli polynomial
+  static int[][] tables = null;   // created when first needed
+
+  int crc;                        // current value, before final inversion
+
+  public HexByteChar2Crc32c()
+  {
+    if (tables == null)           // create tables only once
+      makeTables();
+    reset();
+  }
+
+  public long getValue()
+  {
+    return((~ crc) & 0xFFFFFFFFL);
+  }
+
+  static synchronized void makeTables()
+  {
+    int i, k;                     // index variables
+    int[][] result;               // tables for eight byte positions
+    int value;                    // one table entry
+
+    if (tables != null)           // did another thread get here first?
+      return;
+    result = new int[8][256];
+    for (i = 0; i < 256; i ++)
+    {
+      value = i;
+      for (k = 0; k < 8; k ++)
+        value = ((value & 1) != 0) ? ((value >>> 1) ^ POLYNOMIAL)
+          : (value >>> 1);
+      result[0][i] = value;
+    }
+    for (i = 0; i < 256; i ++)
+      for (k = 1; k < 8; k ++)
+        result[k][i] = (result[k - 1][i] >>> 8)
+          ^ result[0][result[k - 1][i] & 0xFF];
+    tables = result;
+  }
+
+  public void reset()
+  {
+    crc = 0xFFFFFFFF;
+  }
+
+  public void update(int value)
+  {
+    crc = (crc >>> 8) ^ tables[0][(crc ^ value) & 0xFF];
+  }
+
+  public void update(byte[] buffer, int offset, int length)
+  {
+    int end;                      // index after last byte in buffer
+    int i;                        // index variable
+    int[] t0, t1, t2, t3, t4, t5, t6, t7; // local copies of tables
+    int value;                    // working copy of <crc>
+
+    t0 = tables[0]; t1 = tables[1]; t2 = tables[2]; t3 = tables[3];
+    t4 = tables[4]; t5 = tables[5]; t6 = tables[6]; t7 = tables[7];
+    value = crc;
+    i = offset;
+    end = offset + length;
+    while ((end - i) >= 8)        // eight bytes at a time
+    {
+      value ^= (buffer[i] & 0xFF) | ((buffer[i + 1] & 0xFF) << 8)
+        | ((buffer[i + 2] & 0xFF) << 16) | (buffer[i + 3] << 24);
+      value = t7[value & 0xFF] ^ t6[(value >>> 8) & 0xFF]
+        ^ t5[(value >>> 16) & 0xFF] ^ t4[value >>> 24]
+        ^ t3[buffer[i + 4] & 0xFF] ^ t2[buffer[i + 5] & 0xFF]
+        ^ t1[buffer[i + 6] & 0xFF] ^ t0[buffer[i + 7] & 0xFF];
+      i += 8;
+    }
+    while (i < end)               // any remaining bytes
+      value = (value >>> 8) ^ t0[(value ^ buffer[i ++]) & 0xFF];
+    crc = value;
+  }
+
+} // end of HexByteChar2Crc32c class
+
+// ------------------------------------------------------------------------- //
+
+/*
+  HexByteChar2Hashes class
+
+  Calculate several checksums and message digests for the same data bytes.
+  Each block of data is given to all checksums at the same time, on the shared
+  worker threads when there are enough bytes and processors, so the data is
+  only read once (from disk or memory).  The total time is about the time for the
+  slowest checksum, not the sum of all checksums.  More blocks may be added
+  later, and results may be taken at any time without ending the calculation.
+*/
+
+class HexByteChar2Hashes implements Runnable
+{
+  static final int BLOCK_SIZE = 0x400000; // bytes per block for reading files
+  static final String[] NAMES = {"CRC32", "CRC32C", "Adler32", "MD5", "SHA-1",
+    "SHA-256"};                   // in order of <checksums> and <digests>
+  static final int THREAD_MINIMUM = 0x10000; // fewer bytes not worth threads
+
+  long byteCount;                 // total number of bytes given so far
+  java.util.zip.Checksum[] checksums; // CRC32, CRC32C, Adler32
+  java.security.MessageDigest[] digests; // MD5, SHA-1, SHA-256
+  int nextEngine;                 // index of next checksum for threads
+  byte[] runBuffer;               // shared data bytes for threads
+  int runLength;                  // number of bytes in <runBuffer>
+  int runOffset;                  // index of first byte in <runBuffer>
+
+  public HexByteChar2Hashes()
+  {
+    int i;                        // index variable
+
+    byteCount = 0;
+    checksums = new java.util.zip.Checksum[3];
+    checksums[0] = new java.util.zip.CRC32();
+    checksums[1] = new HexByteChar2Crc32c();
+    checksums[2] = new java.util.zip.Adler32();
+    digests = new java.security.MessageDigest[NAMES.length - checksums.length];
+    for (i = 0; i < digests.length; i ++)
+    {
+      try { digests[i] = java.security.MessageDigest.getInstance(
+        NAMES[checksums.length + i]); }
+      catch (java.security.NoSuchAlgorithmException nsae)
+        { digests[i] = null; }    // not available in this Java run-time
+    }
+  }
+
+  /* Give the next unclaimed checksum to the calling thread, or -1 if none. */
+
+  synchronized int claimEngine()
+  {
+    if (nextEngine >= NAMES.length)
+      return(-1);
+    return(nextEngine ++);
+  }
+
+  /* Return checksums as hexadecimal strings, in the same order as <NAMES>. */
+
+  String[] results()
+  {
+    byte[] digest;                // result from one message digest
+    int i, k;                     // index variables
+    String[] result;              // hexadecimal strings
+    StringBuffer buffer;          // faster than String for multiple appends
+    long value;                   // result from one checksum
+
+    result = new String[NAMES.length];
+    for (i = 0; i < checksums.length; i ++)
+    {
+      value = checksums[i].getValue();
+      result[i] = Long.toHexString(0x100000000L | value).substring(1)
+        .toUpperCase();
+    }
+    for (i = 0; i < digests.length; i ++)
+    {
+      if (digests[i] == null)
+      {
+        result[checksums.length + i] = "(not available)";
+        continue;
+      }
+      try                         // clone so that more data may be added
+      {
+        digest = ((java.security.MessageDigest) digests[i].clone()).digest();
+      }
+      catch (CloneNotSupportedException cnse)
+      {
+        result[checksums.length + i] = "(not available)";
+        continue;
+      }
+      buffer = new StringBuffer();
+      for (k = 0; k < digest.length; k ++)
+      {
+        buffer.append(Character.forDigit(((digest[k] >> 4) & 0x0F), 16));
+        buffer.append(Character.forDigit((digest[k] & 0x0F), 16));
+      }
+      result[checksums.length + i] = buffer.toString().toUpperCase();
+    }
+    return(result);
+  }
+
+  /* Each thread takes checksums until there are none left for this block. */
+
+  public void run()
+  {
+    int engine;                   // index of one checksum
+
+    while ((engine = claimEngine()) >= 0)
+      updateEngine(engine, runBuffer, runOffset, runLength);
+  }
+
+  /* Give a block of data bytes to all checksums. */
+
+  void update(byte[] buffer, int offset, int length)
+  {
+    int i;                        // index variable
+    Runnable[] tasks;             // one for each worker thread
+
+    byteCount += length;
+    if ((length < THREAD_MINIMUM)
+      || (Runtime.getRuntime().availableProcessors() < 2))
+    {
+      for (i = 0; i < NAMES.length; i ++) // one checksum after another
+        updateEngine(i, buffer, offset, length);
+      return;
+    }
+    runBuffer = buffer;           // all threads read the same bytes
+    runLength = length;
+    runOffset = offset;
+    nextEngine = 0;
+    tasks = new Runnable[Math.min(NAMES.length,
+      Runtime.getRuntime().availableProcessors())];
+    java.util.Arrays.fill(tasks, this); // each takes checksums until none left
+    HexByteChar2.runParallel(tasks); // this thread also calculates checksums
+    runBuffer = null;             // don't keep a reference to caller's data
+  }
+
+  /* Give a block of data bytes to one checksum. */
+
+  void updateEngine(int engine, byte[] buffer, int offset, int length)
+  {
+    if (engine < checksums.length)
+      checksums[engine].update(buffer, offset, length);
+    else if (digests[engine - checksums.length] != null)
+      digests[engine - checksums.length].update(buffer, offset, length);
+  }
+
+} // end of HexByteChar2Hashes class
+
+// ------------------------------------------------------------------------- //
+
+/*
+  HexByteChar2Server class
+
+  A small local web server for conversions, using the same methods as the
+  graphical interface.  Request and response bodies are streamed in blocks, so
+  large inputs don't need to fit in memory.  Character set encoders and
+  decoders are expensive to create, and are kept in a pool for each character
+  set after a request is finished with them.
+
+  Each request gets a new instance of this class, to hold the state for that
+  request.  Requests are run by a fixed pool of threads.
+*/
+
+class HexByteChar2Server implements HttpHandler
+{
+  static final int BUFFER_SIZE = 0x10000; // bytes or chars per stream block
+  static final int DEFAULT_PORT = 8239; // default port number for web server
+  static final int POOL_LIMIT = 32; // most idle encoders or decoders per name
+  static final String SERVER_HOST = "127.0.0.1"; // only local connections
+  static final int THREAD_MINIMUM = 8; // fewest threads for requests
+
+  static java.util.Hashtable<String, java.util.Vector<CharsetDecoder>>
+    decoderPool = new java.util.Hashtable<String,
+    java.util.Vector<CharsetDecoder>>(); // idle decoders by character set
+  static java.util.Hashtable<String, java.util.Vector<CharsetEncoder>>
+    encoderPool = new java.util.Hashtable<String,
+    java.util.Vector<CharsetEncoder>>(); // idle encoders by character set
+
+  HttpExchange exchange;          // one request and response, or null
+  boolean headerFlag;             // true if response headers have been sent
+  OutputStream output;            // response body, after headers are sent
+  String responseType;            // content type for response body
+
+  public HexByteChar2Server(HttpExchange exchange)
+  {
+    this.exchange = exchange;
+    headerFlag = false;
+    output = null;
+    responseType = "application/octet-stream";
+  }
+
+  /* Get a decoder from the pool, or create a new one.  Bad input is replaced,
+  the same as the graphical interface. */
+
+  static CharsetDecoder borrowDecoder(Charset charset)
+  {
+    java.util.Vector<CharsetDecoder> list; // idle decoders for this charset
+
+    synchronized (decoderPool)
+    {
+      list = decoderPool.get(charset.name());
+      if ((list != null) && (list.size() > 0))
+        return(list.remove(list.size() - 1));
+    }
+    return(charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE));
+  }
+
+  /* Get an encoder from the pool, or create a new one. */
+
+  static CharsetEncoder borrowEncoder(Charset charset)
+  {
+    java.util.Vector<CharsetEncoder> list; // idle encoders for this charset
+
+    synchronized (encoderPool)
+    {
+      list = encoderPool.get(charset.name());
+      if ((list != null) && (list.size() > 0))
+        return(list.remove(list.size() - 1));
+    }
+    return(charset.newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE));
+  }
+
+  /* Find a character set by name, with the special names from the graphical
+  interface.  Return <null> for raw data bytes.  A missing name is UTF-8. */
+
+  static Charset charsetForName(String name)
+    throws UnsupportedEncodingException
+  {
+    if ((name == null) || (name.length() == 0))
+      return(HexByteChar2.charsetForName("UTF-8"));
+    else if (name.equals("local") || name.equals(HexByteChar2.LOCAL_ENCODING))
+      return(HexByteChar2.localCharset());
+    else if (name.equals("raw") || name.equals(HexByteChar2.RAW_ENCODING))
+      return(null);
+    return(HexByteChar2.charsetForName(name));
+  }
+
+  /* List character set names in the same order as the graphical interface. */
+
+  void doCharsets() throws IOException
+  {
+    StringBuffer buffer;          // faster than String for multiple appends
+    int i;                        // index variable
+    Object[] list;                // character set names from local system
+    byte[] result;                // response body
+
+    buffer = new StringBuffer();
+    buffer.append(HexByteChar2.LOCAL_ENCODING + "\n");
+    buffer.append(HexByteChar2.RAW_ENCODING + "\n");
+    list = Charset.availableCharsets().keySet().toArray();
+    for (i = 0; i < list.length; i ++)
+      buffer.append((String) list[i] + "\n");
+    result = buffer.toString().getBytes("UTF-8");
+    responseType = "text/plain; charset=UTF-8";
+    write(result, result.length);
+    finish();
+  }
+
+  /* Convert hex text to data bytes.  A block ends before an odd hex digit at
+  the end, which is kept for the next block, so that two digits in different
+  blocks become the same data byte. */
+
+  void doHexDecode(boolean ignoreFlag) throws IOException
+  {
+    char[] buffer;                // one block of hex text
+    byte[] dataBytes;             // data bytes from one block of hex text
+    int digits;                   // number of hex digits at end of block
+    int end;                      // number of chars to convert from buffer
+    boolean endFlag;              // true at end of request body
+    int i;                        // index variable
+    Reader input;                 // request body as characters
+    int length;                   // number of chars in <buffer>
+    int start;                    // number of chars kept from last block
+
+    buffer = new char[BUFFER_SIZE];
+    endFlag = false;
+    input = new InputStreamReader(exchange.getRequestBody(), "UTF-8");
+    start = 0;
+    while (endFlag == false)
+    {
+      length = input.read(buffer, start, (buffer.length - start));
+      if (length < 0)             // end of input: convert everything left
+      {
+        endFlag = true;
+        end = length = start;
+      }
+      else
+      {
+        length += start;
+        digits = 0;               // count hex digits at end of block
+        while ((digits < length)
+          && HexByteChar2HexMap.isHexDigit(buffer[length - digits - 1]))
+        {
+          digits ++;
+        }
+        end = length - (digits % 2); // keep any odd digit for next block
+      }
+      dataBytes = HexByteChar2.hexDataToBytes(new String(buffer, 0, end),
+        ignoreFlag);
+      if (dataBytes == null)      // bad character in hex text
+      {
+        sendError(400, "Data bytes may have hexadecimal digits (0-9 A-F a-f) and basic punctuation as separators.");
+        return;
+      }
+      write(dataBytes, dataBytes.length);
+      for (i = end; i < length; i ++) // move kept digit to start of buffer
+        buffer[i - end] = buffer[i];
+      start = length - end;
+    }
+    finish();
+  }
+
+  /* Convert data bytes to hex text, using the same method as the graphical
+  interface.  Blocks are whole lines, so the result is the same as for all
+  bytes together. */
+
+  void doHexEncode() throws IOException
+  {
+    byte[] block;                 // data bytes or hex text for one block
+    byte[] buffer;                // one block of data bytes
+    boolean firstFlag;            // true for first block of result
+    InputStream input;            // request body
+    int length;                   // number of bytes in <buffer>
+
+    buffer = new byte[Math.max(1, (BUFFER_SIZE / HexByteChar2.byteLineSize))
+      * HexByteChar2.byteLineSize];
+    firstFlag = true;
+    input = exchange.getRequestBody();
+    responseType = "text/plain; charset=UTF-8";
+    while ((length = HexByteChar2.readFully(input, buffer)) > 0)
+    {
+      if (length < buffer.length) // last block is usually smaller
+      {
+        block = new byte[length];
+        System.arraycopy(buffer, 0, block, 0, length);
+      }
+      else
+        block = buffer;
+      if (firstFlag == false)     // blocks are separated by a newline
+        write(new byte[] {'\n'}, 1);
+      block = HexByteChar2.hexDataFromBytes(block).getBytes("UTF-8");
+      write(block, block.length);
+      firstFlag = false;
+    }
+    finish();
+  }
+
+  /* Decode data bytes from one character set and encode them in another.
+  <null> is for raw data bytes, where each byte is one character from 0x00 to
+  0xFF, the same as rawBytesToString() and rawStringToBytes(). */
+
+  void doTranscode(Charset from, Charset to) throws IOException
+  {
+    ByteBuffer bytesIn;           // data bytes from request, not yet decoded
+    ByteBuffer bytesOut;          // encoded data bytes, not yet written
+    CharBuffer chars;             // decoded characters, not yet encoded
+    CharsetDecoder decoder;       // decoder from pool, or null for raw
+    CharsetEncoder encoder;       // encoder from pool, or null for raw
+    boolean endFlag;              // true at end of request body
+    boolean flushFlag;            // true when decoder is being flushed
+    InputStream input;            // request body
+    int length;                   // number of bytes read from request
+    CoderResult result;           // result from decoder
+
+    bytesIn = ByteBuffer.allocate(BUFFER_SIZE);
+    bytesIn.flip();               // buffer is empty and ready for reading
+    bytesOut = ByteBuffer.allocate(BUFFER_SIZE);
+    chars = CharBuffer.allocate(BUFFER_SIZE);
+    decoder = (from == null) ? null : borrowDecoder(from);
+    encoder = (to == null) ? null : borrowEncoder(to);
+    endFlag = flushFlag = false;
+    input = exchange.getRequestBody();
+    responseType = (to == null) ? "application/octet-stream"
+      : ("text/plain; charset=" + to.name());
+    try
+    {
+      while (endFlag == false)
+      {
+        bytesIn.compact();        // read more bytes after any left over
+        length = input.read(bytesIn.array(), bytesIn.position(),
+          bytesIn.remaining());
+        if (length < 0)           // end of request body
+          endFlag = true;
+        else
+          bytesIn.position(bytesIn.position() + length);
+        bytesIn.flip();
+
+        do                        // decode as many chars as fit in buffer
+        {
+          if (decoder == null)    // raw data bytes
+          {
+            while (bytesIn.hasRemaining() && chars.hasRemaining())
+              chars.put((char) (bytesIn.get() & 0xFF));
+            result = bytesIn.hasRemaining() ? CoderResult.OVERFLOW
+              : CoderResult.UNDERFLOW;
+            flushFlag = endFlag;
+          }
+          else if (flushFlag)     // still flushing from last time
+            result = decoder.flush(chars);
+          else
+          {
+            result = decoder.decode(bytesIn, chars, endFlag);
+            if (endFlag && result.isUnderflow()) // no more input
+            {
+              flushFlag = true;
+              result = decoder.flush(chars);
+            }
+          }
+          chars.flip();
+          encodeChars(encoder, chars, bytesOut, (flushFlag
+            && result.isUnderflow()));
+          chars.compact();
+        } while (result.isOverflow());
+      }
+      write(bytesOut.array(), bytesOut.position()); // last encoded bytes
+      finish();
+    }
+    finally                       // return codecs, even after an error
+    {
+      if (decoder != null) returnDecoder(decoder);
+      if (encoder != null) returnEncoder(encoder);
+    }
+  }
+
+  /* Encode characters and write the bytes when the output buffer is full.  At
+  the end of input, flush the encoder. */
+
+  void encodeChars(CharsetEncoder encoder, CharBuffer chars,
+    ByteBuffer bytes, boolean endFlag) throws IOException
+  {
+    CoderResult result;           // result from encoder
+
+    if (encoder == null)          // raw data bytes
+    {
+      while (chars.hasRemaining())
+      {
+        if (bytes.hasRemaining() == false)
+        {
+          write(bytes.array(), bytes.position());
+          bytes.clear();
+        }
+        bytes.put((byte) chars.get());
+      }
+      return;
+    }
+    while ((result = encoder.encode(chars, bytes, endFlag)).isOverflow())
+    {
+      write(bytes.array(), bytes.position());
+      bytes.clear();
+    }
+    if (endFlag)                  // no more characters after these
+    {
+      while (encoder.flush(bytes).isOverflow())
+      {
+        write(bytes.array(), bytes.position());
+        bytes.clear();
+      }
+    }
+  }
+
+  /* Finish a response.  Headers are sent now if there was no body. */
+
+  void finish() throws IOException
+  {
+    if (headerFlag == false)      // empty response body
+      write(new byte[0], 0);
+    output.close();
+  }
+
+  /* Called by the web server for each request. */
+
+  public void handle(HttpExchange exchange) throws IOException
+  {
+    new HexByteChar2Server(exchange).respond();
+  }
+
+  /* Parse a query string into names and values.  Missing values are empty. */
+
+  static java.util.Hashtable<String, String> parseQuery(String query)
+    throws UnsupportedEncodingException
+  {
+    int i, k;                     // index variables
+    String[] pairs;               // "name=value" pairs from query
+    java.util.Hashtable<String, String> result; // names and values
+
+    result = new java.util.Hashtable<String, String>();
+    if (query == null)            // there may be no query string
+      return(result);
+    pairs = query.split("&");
+    for (i = 0; i < pairs.length; i ++)
+    {
+      k = pairs[i].indexOf('=');
+      if (k < 0)
+        result.put(java.net.URLDecoder.decode(pairs[i], "UTF-8"), "");
+      else
+        result.put(java.net.URLDecoder.decode(pairs[i].substring(0, k),
+          "UTF-8"), java.net.URLDecoder.decode(pairs[i].substring(k + 1),
+          "UTF-8"));
+    }
+    return(result);
+  }
+
+  /* Choose a method for the request.  Errors before the response starts are
+  sent to the client.  Errors after the response starts throw an exception,
+  so the web server drops the connection and the client sees a bad body. */
+
+  void respond() throws IOException
+  {
+    String method;                // "GET" or "POST"
+    String path;                  // path from request URI
+    java.util.Hashtable<String, String> query; // names and values from query
+
+    method = exchange.getRequestMethod();
+    path = exchange.getRequestURI().getPath();
+    try
+    {
+      query = parseQuery(exchange.getRequestURI().getRawQuery());
+      if (path.equals("/charsets"))
+        doCharsets();
+      else if ((path.equals("/hex/decode") || path.equals("/hex/encode")
+        || path.startsWith("/text/")) && (method.equals("POST") == false))
+      {
+        sendError(405, "Use POST with data as the request body.");
+      }
+      else if (path.equals("/hex/decode"))
+        doHexDecode(query.containsKey("ignore"));
+      else if (path.equals("/hex/encode"))
+        doHexEncode();
+      else if (path.equals("/text/decode"))
+        doTranscode(charsetForName(query.get("charset")),
+          charsetForName("UTF-8"));
+      else if (path.equals("/text/encode"))
+        doTranscode(charsetForName("UTF-8"),
+          charsetForName(query.get("charset")));
+      else if (path.equals("/text/transcode"))
+        doTranscode(charsetForName(query.get("from")),
+          charsetForName(query.get("to")));
+      else
+        sendError(404, "Unknown path: " + path);
+    }
+    catch (UnsupportedEncodingException uee)
+    {
+      sendError(400, ("Unknown or unsupported character set encoding: "
+        + uee.getMessage()));
+    }
+    catch (IllegalArgumentException iae) // bad escapes in query string
+    {
+      sendError(400, ("Bad request: " + iae.getMessage()));
+    }
+  }
+
+  /* Return a decoder to the pool, if the pool isn't full. */
+
+  static void returnDecoder(CharsetDecoder decoder)
+  {
+    java.util.Vector<CharsetDecoder> list; // idle decoders for this charset
+
+    decoder.reset();              // ready for next request
+    synchronized (decoderPool)
+    {
+      list = decoderPool.get(decoder.charset().name());
+      if (list == null)
+      {
+        list = new java.util.Vector<CharsetDecoder>();
+        decoderPool.put(decoder.charset().name(), list);
+      }
+      if (list.size() < POOL_LIMIT)
+        list.add(decoder);
+    }
+  }
+
+  /* Return an encoder to the pool, if the pool isn't full. */
+
+  static void returnEncoder(CharsetEncoder encoder)
+  {
+    java.util.Vector<CharsetEncoder> list; // idle encoders for this charset
+
+    encoder.reset();              // ready for next request
+    synchronized (encoderPool)
+    {
+      list = encoderPool.get(encoder.charset().name());
+      if (list == null)
+      {
+        list = new java.util.Vector<CharsetEncoder>();
+        encoderPool.put(encoder.charset().name(), list);
+      }
+      if (list.size() < POOL_LIMIT)
+        list.add(encoder);
+    }
+  }
+
+  /* Send an error as plain text, if the response hasn't already started. */
+
+  void sendError(int code, String message) throws IOException
+  {
+    byte[] body;                  // error message as UTF-8 bytes
+
+    if (headerFlag)               // too late, drop the connection
+      throw new IOException(message);
+    body = (message + "\n").getBytes("UTF-8");
+    exchange.getResponseHeaders().set("Content-Type",
+      "text/plain; charset=UTF-8");
+    exchange.sendResponseHeaders(code, body.length);
+    exchange.getResponseBody().write(body);
+    exchange.close();
+  }
+
+  /* Start the web server on the given port.  Return the server, so that the
+  caller may stop it. */
+
+  static HttpServer start(int port) throws IOException
+  {
+    HttpServer server;            // web server from Java run-time
+
+    /* Small responses are delayed by up to 40 ms when the server waits for an
+    acknowledgement before sending the last part (Nagle's algorithm).  This
+    must be set before the first server is created. */
+
+    if (System.getProperty("sun.net.httpserver.nodelay") == null)
+      System.setProperty("sun.net.httpserver.nodelay", "true");
+    server = HttpServer.create(new java.net.InetSocketAddress(
+      java.net.InetAddress.getByName(SERVER_HOST), port), 0);
+    server.createContext("/", new HexByteChar2Server(null));
+    server.setExecutor(java.util.concurrent.Executors.newFixedThreadPool(
+      Math.max(THREAD_MINIMUM, (Runtime.getRuntime().availableProcessors()
+      * 2))));
+    server.start();
+    return(server);
+  }
+
+  /* Write part of the response body.  Headers are sent before the first
+  block, with a chunked body of unknown length. */
+
+  void write(byte[] buffer, int length) throws IOException
+  {
+    if (headerFlag == false)
+    {
+      exchange.getResponseHeaders().set("Content-Type", responseType);
+      exchange.sendResponseHeaders(200, ((length == 0) ? -1 : 0));
+      headerFlag = true;
+      output = exchange.getResponseBody();
+    }
+    if (length > 0)
+      output.write(buffer, 0, length);
+  }
+
+} // end of HexByteChar2Server class
+
+// ------------------------------------------------------------------------- //
+
+/*
+  HexByteChar2LoadTest class
+
+  Run the local web server with several client threads for a few seconds, and
+  report the number of requests per second and the latency.  Clients cycle
+  through the conversions with the same random data, and check that each
+  response has the expected length.
+*/
+
+class HexByteChar2LoadTest implements Runnable
+{
+  static final int CLIENTS = 8;   // number of client threads
+  static final int DATA_SIZE = 4096; // data bytes per request
+
+  static byte[] data;             // random data bytes for all requests
+  static long deadline;           // clock time when clients stop
+  static int port;                // port number for web server
+
+  int errors;                     // number of failed requests
+  int requests;                   // number of finished requests
+  long[] times;                   // latency in nanoseconds for each request
+
+  public HexByteChar2LoadTest()
+  {
+    errors = requests = 0;
+    times = new long[1000];
+  }
+
+  /* Start the web server on a free port, run the clients, and print results.
+  Return an exit status for the caller. */
+
+  static int loadTest(int seconds)
+  {
+    HexByteChar2LoadTest[] clients; // one object per client thread
+    int errors;                   // total number of failed requests
+    int i, k;                     // index variables
+    long elapsed;                 // actual run time in nanoseconds
+    HttpServer server;            // local web server
+    Thread[] threads;             // one thread per client
+    long[] times;                 // all latencies together
+    int total;                    // total number of requests
+
+    try { server = HexByteChar2Server.start(0); } // any free port
+    catch (IOException ioe)
+    {
+      System.err.println("Can't start web server: " + ioe.getMessage());
+      return(HexByteChar2.EXIT_FAILURE);
+    }
+    port = server.getAddress().getPort();
+    data = new byte[DATA_SIZE];
+    new java.util.Random(1).nextBytes(data);
+
+    clients = new HexByteChar2LoadTest[CLIENTS];
+    threads = new Thread[CLIENTS];
+    elapsed = System.nanoTime();
+    deadline = System.currentTimeMillis() + (seconds * 1000L);
+    for (i = 0; i < CLIENTS; i ++)
+    {
+      clients[i] = new HexByteChar2LoadTest();
+      threads[i] = new Thread(clients[i], "HexByteChar2LoadTest");
+      threads[i].start();
+    }
+    for (i = 0; i < CLIENTS; i ++)
+    {
+      try { threads[i].join(); }
+      catch (InterruptedException ie) { i --; } // wait again for same thread
+    }
+    elapsed = System.nanoTime() - elapsed;
+    server.stop(0);
+
+    errors = total = 0;
+    for (i = 0; i < CLIENTS; i ++)
+    {
+      errors += clients[i].errors;
+      total += clients[i].requests;
+    }
+    times = new long[total];
+    total = 0;
+    for (i = 0; i < CLIENTS; i ++)
+      for (k = 0; k < clients[i].requests; k ++)
+        times[total ++] = clients[i].times[k];
+    java.util.Arrays.sort(times);
+
+    System.out.println(CLIENTS + " clients, " + DATA_SIZE
+      + " data bytes per request, port " + port);
+    System.out.println("Requests: " + total + ", errors: " + errors);
+    if (total > 0)
+    {
+      System.out.println("Requests per second: " + HexByteChar2.formatDecimal(
+        (total * 1e9 / elapsed), 1));
+      System.out.println("Latency (ms): p50 " + HexByteChar2.formatDecimal(
+        (times[total / 2] / 1e6), 3) + ", p99 " + HexByteChar2.formatDecimal(
+        (times[(int) ((total - 1) * 0.99)] / 1e6), 3) + ", max "
+        + HexByteChar2.formatDecimal((times[total - 1] / 1e6), 3));
+    }
+    return((errors > 0) ? HexByteChar2.EXIT_FAILURE
+      : HexByteChar2.EXIT_UNKNOWN);
+  }
+
+  /* Send one request and read the response.  Return the length of the
+  response body, or -1 if the request failed. */
+
+  static int post(String path, byte[] body) throws IOException
+  {
+    byte[] buffer;                // for reading response body
+    java.net.HttpURLConnection connection; // one request to web server
+    InputStream input;            // response body
+    int length;                   // number of bytes from one read
+    OutputStream output;          // request body
+    int total;                    // total length of response body
+
+    connection = (java.net.HttpURLConnection) new java.net.URL("http://"
+      + HexByteChar2Server.SERVER_HOST + ":" + port + path).openConnection();
+    connection.setDoOutput(true);
+    connection.setRequestMethod("POST");
+    connection.setFixedLengthStreamingMode(body.length);
+    output = connection.getOutputStream();
+    output.write(body);
+    output.close();
+    if (connection.getResponseCode() != 200)
+    {
+      connection.getErrorStream().close(); // allow connection to be reused
+      return(-1);
+    }
+    buffer = new byte[HexByteChar2Server.BUFFER_SIZE];
+    input = connection.getInputStream();
+    total = 0;
+    while ((length = input.read(buffer)) > 0)
+      total += length;
+    input.close();                // keep-alive for next request
+    return(total);
+  }
+
+  /* Each client thread sends requests until the deadline. */
+
+  public void run()
+  {
+    int expected;                 // expected length of response body
+    byte[] hexText;               // hex text for the random data
+    long[] larger;                // more room for latencies
+    int length;                   // actual length of response body
+    long start;                   // clock time for this request
+
+    try
+    {
+      hexText = HexByteChar2.hexDataFromBytes(data).getBytes("UTF-8");
+      while (System.currentTimeMillis() < deadline)
+      {
+        start = System.nanoTime();
+        switch (requests % 3)
+        {
+          case 0:
+            length = post("/hex/encode", data);
+            expected = hexText.length;
+            break;
+          case 1:
+            length = post("/hex/decode", hexText);
+            expected = data.length;
+            break;
+          default:
+            length = post("/text/transcode?from=ISO-8859-1&to=UTF-16BE",
+              data);
+            expected = data.length * 2;
+            break;
+        }
+        if (length != expected)
+          errors ++;
+        if (requests >= times.length) // need more room for latencies
+        {
+          larger = new long[times.length * 2];
+          System.arraycopy(times, 0, larger, 0, times.length);
+          times = larger;
+        }
+        times[requests ++] = System.nanoTime() - start;
+      }
+    }
+    catch (IOException ioe)
+    {
+      System.err.println("Load test client failed: " + ioe.getMessage());
+      errors ++;
+    }
+  }
+
+} // end of HexByteChar2LoadTest class
+
+// ------------------------------------------------------------------------- //
+
+/*
+  HexByteChar2Prefetch class
+
+  Read an input stream in a separate thread, one block ahead of the caller, so
+  that slow input (such as decompression) overlaps with whatever the caller
+  does with the data bytes.  There are two blocks: while the caller takes data
+  from one, the thread fills the other.  Errors in the thread are given to the
+  caller on the next read.
+*/
+
+class HexByteChar2Prefetch extends InputStream implements Runnable
+{
+  static final int BLOCK_SIZE = 0x40000; // bytes in each block
+
+  byte[][] blocks;                // two blocks of data bytes
+  boolean closeFlag;              // true when caller has closed this stream
+  IOException error;              // error from reading thread, or null
+  boolean[] fullFlags;            // true when a block is ready for caller
+  int[] lengths;                  // number of bytes in each block
+  int readBlock;                  // index of block caller is reading
+  int readPosition;               // index of next byte in <readBlock>
+  InputStream source;             // where data bytes come from, used and
+                                  // ... closed only by the reading thread
+  Thread thread;                  // reading thread
+  java.util.zip.ZipFile zipFile;  // zip file to close at the end, or null
+
+  public HexByteChar2Prefetch(InputStream source,
+    java.util.zip.ZipFile zipFile)
+  {
+    blocks = new byte[2][BLOCK_SIZE];
+    closeFlag = false;
+    error = null;
+    fullFlags = new boolean[2];
+    lengths = new int[2];
+    readBlock = readPosition = 0;
+    this.source = source;
+    this.zipFile = zipFile;
+    thread = new Thread(this, "HexByteChar2Prefetch");
+    thread.start();
+  }
+
+  /* Stop the reading thread, and wait while it closes the source.  Closing the
+  source here could pull an inflater out from under a read in progress. */
+
+  public void close() throws IOException
+  {
+    synchronized (this)
+    {
+      closeFlag = true;
+      notifyAll();                // wake up reading thread if waiting
+    }
+    while (thread.isAlive())      // at most one block still being read
+    {
+      try { thread.join(); } catch (InterruptedException ie) { /* ignore */ }
+    }
+  }
+
+  /* Fill each block in turn, until the end of input or until the caller
+  closes this stream.  Only the reading thread calls this. */
+
+  void fillBlocks()
+  {
+    int fill;                     // index of block being filled
+    int length;                   // number of bytes in block
+
+    fill = 0;
+    while (true)
+    {
+      synchronized (this)
+      {
+        while (fullFlags[fill] && (closeFlag == false)) // caller isn't done
+        {
+          try { wait(); } catch (InterruptedException ie) { /* ignore */ }
+        }
+        if (closeFlag)            // caller doesn't want any more
+          return;
+      }
+      try
+      {
+        length = HexByteChar2.readFully(source, blocks[fill]);
+      }
+      catch (IOException ioe)
+      {
+        synchronized (this)
+        {
+          error = ioe;
+          notifyAll();
+        }
+        return;
+      }
+      synchronized (this)
+      {
+        lengths[fill] = length;   // zero means end of input
+        fullFlags[fill] = true;
+        notifyAll();
+      }
+      if (length == 0)            // nothing more to read
+        return;
+      fill = 1 - fill;
+    }
+  }
+
+  /* Read one data byte, or -1 at the end of input. */
+
+  public int read() throws IOException
+  {
+    byte[] one;                   // buffer for one byte
+
+    one = new byte[1];
+    return((read(one, 0, 1) > 0) ? (one[0] & 0xFF) : -1);
+  }
+
+  /* Copy data bytes from the current block, waiting for the reading thread if
+  the block isn't ready.  Return -1 at the end of input. */
+
+  public synchronized int read(byte[] buffer, int offset, int length)
+    throws IOException
+  {
+    int count;                    // number of bytes copied
+
+    while ((fullFlags[readBlock] == false) && (error == null) && !closeFlag)
+    {
+      try { wait(); } catch (InterruptedException ie) { /* ignore */ }
+    }
+    if (closeFlag)
+      throw new IOException("Stream closed");
+    else if (fullFlags[readBlock] == false) // only an error, no data
+      throw error;
+    else if (lengths[readBlock] == 0) // end of input
+      return(-1);
+    count = Math.min(length, (lengths[readBlock] - readPosition));
+    System.arraycopy(blocks[readBlock], readPosition, buffer, offset, count);
+    readPosition += count;
+    if (readPosition == lengths[readBlock]) // this block is finished
+    {
+      fullFlags[readBlock] = false; // give block back to reading thread
+      readBlock = 1 - readBlock;
+      readPosition = 0;
+      notifyAll();
+    }
+    return(count);
+  }
+
+  /* The reading thread fills blocks, then closes the source. */
+
+  public void run()
+  {
+    try { fillBlocks(); }
+    finally
+    {
+      try
+      {
+        source.close();
+        if (zipFile != null) zipFile.close();
+      }
+      catch (IOException ioe) { /* nothing more to read, so ignore */ }
+    }
+  }
+
+} // end of HexByteChar2Prefetch class
+
+// ------------------------------------------------------------------------- //
+
+/*
+  HexByteChar2Template class
+
+  One field in a binary template, which describes the layout of data bytes.  A
+  template is compiled once from text, with one field per line:
+
+      name  type[count]  charset
+
+  Types are u8, i8, u16le, u16be, i16le, i16be, u32le, u32be, i32le, i32be,
+  u64le, u64be, i64le, i64be, f32le, f32be, f64le, f64be, bytes, string, and
+  record.  A count is a number, the name of an earlier integer field, or "*"
+  for the rest of the data.  Strings have a count in bytes and an optional
+  character set name.  A record groups the fields after it until "end".
+
+  Compiling finds the fixed size of each field when it doesn't depend on data,
+  so that repeated records of a fixed size can be found by multiplying.
+*/
+
+class HexByteChar2Template
+{
+  /* constants */
+
+  static final int BYTES = 1;     // kinds of fields
+  static final int FLOAT = 2;
+  static final int INTEGER = 3;
+  static final int RECORD = 4;
+  static final int STRING = 5;
+  static final long REST = -1;    // count for "*", the rest of the data
+
+  /* instance variables */
+
+  boolean arrayFlag;              // true if declared with a [count]
+  boolean bigFlag;                // true if big-endian (most significant first)
+  Charset charset;                // for strings, or null for raw data bytes
+  HexByteChar2Template[] children; // fields in a record, or null
+  long count;                     // number of elements, or REST
+  int fixedSize;                  // total bytes for all elements, or -1 if
+                                  // ... that depends on the data
+  int kind;                       // BYTES, FLOAT, INTEGER, RECORD, STRING
+  String name;                    // name of field, as written
+  int refDepth;                   // number of records up for count reference
+  int refIndex;                   // field index for count reference, or -1
+  boolean signedFlag;             // true if integer is signed
+  String typeName;                // type of field, as written
+  int width;                      // bytes per element, or -1 for records
+                                  // ... whose size depends on the data
+
+  /* constructor */
+
+  public HexByteChar2Template(String name, String typeName)
+  {
+    this.name = name;             // save caller's parameters
+    this.typeName = typeName;
+    arrayFlag = bigFlag = signedFlag = false;
+    charset = null;
+    children = null;
+    count = 1;
+    fixedSize = -1;
+    refDepth = 0;
+    refIndex = -1;
+  }
+
+  /* Compile the text of a template.  Errors throw IllegalArgumentException
+  with the line number. */
+
+  static HexByteChar2Template compile(String text)
+  {
+    String countText;             // count inside brackets, or null
+    HexByteChar2Template field;   // field for current line
+    int i, k;                     // index variables
+    String[] lines;               // lines of template text
+    java.util.Vector<HexByteChar2Template> records; // enclosing records,
+                                  // ... innermost last
+    java.util.Vector<java.util.Vector<HexByteChar2Template>> lists;
+                                  // fields for each enclosing record
+    HexByteChar2Template root;    // the whole template, as a record
+    String type;                  // type name without count
+    String[] words;               // words on one line
+
+    lines = text.split("\n");
+    root = new HexByteChar2Template("template", "record");
+    root.kind = RECORD;
+    records = new java.util.Vector<HexByteChar2Template>();
+    records.add(root);
+    lists = new java.util.Vector<java.util.Vector<HexByteChar2Template>>();
+    lists.add(new java.util.Vector<HexByteChar2Template>());
+    for (i = 0; i < lines.length; i ++)
+    {
+      k = lines[i].indexOf('#'); // remove comments
+      words = ((k < 0) ? lines[i] : lines[i].substring(0, k)).trim()
+        .split("\\s+");
+      if (words[0].length() == 0) // blank line
+        continue;
+      if (words[0].equals("end")) // end of a record
+      {
+        if (records.size() < 2)
+          throw new IllegalArgumentException("Line " + (i + 1)
+            + ": \"end\" without a record.");
+        finishRecord(records.remove(records.size() - 1),
+          lists.remove(lists.size() - 1));
+        continue;
+      }
+      if ((words.length < 2) || (words.length > 3))
+        throw new IllegalArgumentException("Line " + (i + 1)
+          + ": expected a name, a type, and maybe a character set.");
+
+      /* Split the type and count, as in "u16le[4]". */
+
+      countText = null;
+      type = words[1];
+      k = type.indexOf('[');
+      if (k >= 0)
+      {
+        if (type.endsWith("]") == false)
+          throw new IllegalArgumentException("Line " + (i + 1)
+            + ": missing \"]\" after count.");
+        countText = type.substring(k + 1, (type.length() - 1)).trim();
+        type = type.substring(0, k);
+      }
+      field = new HexByteChar2Template(words[0], type);
+      if (setType(field, type) == false)
+        throw new IllegalArgumentException("Line " + (i + 1)
+          + ": unknown type \"" + type + "\".");
+      if ((countText == null) && ((field.kind == BYTES)
+        || (field.kind == STRING)))
+      {
+        throw new IllegalArgumentException("Line " + (i + 1) + ": "
+          + type + " needs a count in bytes, such as " + type + "[4].");
+      }
+      if (countText != null)      // number, reference, or rest
+        setCount(field, countText, lists, (i + 1));
+      if ((words.length == 3) && (field.kind != STRING))
+        throw new IllegalArgumentException("Line " + (i + 1)
+          + ": only strings have a character set.");
+      if (field.kind == STRING)
+      {
+        try
+        {
+          field.charset = HexByteChar2Server.charsetForName((words.length
+            == 3) ? words[2] : "UTF-8");
+        }
+        catch (UnsupportedEncodingException uee)
+        {
+          throw new IllegalArgumentException("Line " + (i + 1)
+            + ": unknown character set \"" + words[2] + "\".");
+        }
+      }
+      lists.get(lists.size() - 1).add(field);
+      if (field.kind == RECORD)   // following fields belong to this record
+      {
+        records.add(field);
+        lists.add(new java.util.Vector<HexByteChar2Template>());
+      }
+    }
+    if (records.size() > 1)
+      throw new IllegalArgumentException("Record \""
+        + records.get(records.size() - 1).name
+        + "\" has no \"end\".");
+    finishRecord(root, lists.get(0));
+    if (root.children.length == 0)
+      throw new IllegalArgumentException("Template has no fields.");
+    return(root);
+  }
+
+  /* Save the fields of a record, and find its size if that is fixed. */
+
+  static void finishRecord(HexByteChar2Template record,
+    java.util.Vector<HexByteChar2Template> list)
+  {
+    int i;                        // index variable
+    long size;                    // total size of fixed fields
+
+    record.children = list.toArray(new HexByteChar2Template[list.size()]);
+    size = 0;
+    for (i = 0; i < record.children.length; i ++)
+    {
+      if (record.children[i].fixedSize < 0) // depends on the data
+      {
+        size = -1;
+        break;
+      }
+      size += record.children[i].fixedSize;
+    }
+    record.width = ((size < 0) || (size > Integer.MAX_VALUE)) ? -1
+      : (int) size;
+    setFixedSize(record);
+  }
+
+  /* Set the count from a number, a reference to an earlier integer field, or
+  "*" for the rest of the data. */
+
+  static void setCount(HexByteChar2Template field, String text,
+    java.util.Vector<java.util.Vector<HexByteChar2Template>> lists, int line)
+  {
+    HexByteChar2Template earlier; // earlier field in same or outer record
+    int i, k;                     // index variables
+    java.util.Vector<HexByteChar2Template> list; // fields in one record
+
+    field.arrayFlag = true;
+    if (text.equals("*"))
+    {
+      field.count = REST;
+      setFixedSize(field);
+      return;
+    }
+    try
+    {
+      field.count = Long.parseLong(text);
+      if ((field.count < 0) || (field.count > Integer.MAX_VALUE))
+        throw new IllegalArgumentException("Line " + line
+          + ": count must be from 0 to " + Integer.MAX_VALUE + ".");
+      setFixedSize(field);
+      return;
+    }
+    catch (NumberFormatException nfe) { /* must be a field name */ }
+    for (i = lists.size() - 1; i >= 0; i --) // innermost record first
+    {
+      list = lists.get(i);
+      for (k = list.size() - 1; k >= 0; k --)
+      {
+        earlier = list.get(k);
+        if (earlier.name.equals(text) && (earlier.kind == INTEGER)
+          && (earlier.arrayFlag == false))
+        {
+          field.refDepth = lists.size() - 1 - i;
+          field.refIndex = k;
+          setFixedSize(field);
+          return;
+        }
+      }
+    }
+    throw new IllegalArgumentException("Line " + line + ": count \"" + text
+      + "\" is not a number or an earlier integer field.");
+  }
+
+  /* Set the total size when the count and width are both known. */
+
+  static void setFixedSize(HexByteChar2Template field)
+  {
+    field.fixedSize = -1;         // assume size depends on the data
+    if ((field.refIndex < 0) && (field.count != REST) && (field.width >= 0)
+      && ((field.count * field.width) <= Integer.MAX_VALUE))
+    {
+      field.fixedSize = (int) (field.count * field.width);
+    }
+  }
+
+  /* Set the kind, width, byte order, and sign from a type name. */
+
+  static boolean setType(HexByteChar2Template field, String type)
+  {
+    String order;                 // "le" or "be" at end of type name
+
+    if (type.equals("bytes") || type.equals("string") || type.equals("u8")
+      || type.equals("i8"))
+    {
+      field.kind = type.equals("bytes") ? BYTES : type.equals("string")
+        ? STRING : INTEGER;
+      field.signedFlag = type.equals("i8");
+      field.width = 1;
+    }
+    else if (type.equals("record"))
+    {
+      field.kind = RECORD;
+      field.width = -1;           // not known until "end"
+    }
+    else if (type.matches("[uif](16|32|64)(le|be)"))
+    {
+      field.kind = (type.charAt(0) == 'f') ? FLOAT : INTEGER;
+      field.signedFlag = (type.charAt(0) == 'i');
+      field.width = Integer.parseInt(type.substring(1, (type.length() - 2)))
+        / 8;
+      order = type.substring(type.length() - 2);
+      field.bigFlag = order.equals("be");
+      if ((field.kind == FLOAT) && (field.width == 2)) // no 16-bit floats
+        return(false);
+    }
+    else                          // not a type we know
+      return(false);
+    setFixedSize(field);
+    return(true);
+  }
+
+} // end of HexByteChar2Template class
+
+// ------------------------------------------------------------------------- //
+
+/*
+  HexByteChar2Node class
+
+  One node in the tree of results from a binary template.  Nodes read data
+  bytes directly from a byte buffer (which may be a mapped file), and are only
+  created when the tree asks for them, so that millions of repeated records
+  cost almost nothing until they are shown.  A record whose size depends on the
+  data is laid out when its parent is, one record after another.
+*/
+
+class HexByteChar2Node implements javax.swing.tree.TreeNode
+{
+  /* instance variables */
+
+  HexByteChar2Node[] cache;       // child nodes already created, or null
+  long count;                     // number of elements in this field
+  ByteBuffer data;                // all data bytes, shared by all nodes
+  long end;                       // index after last data byte, or -1
+  long[] fieldCounts;             // number of elements for each child field
+  long[] fieldStarts;             // where each child field starts, plus end
+  HexByteChar2Template field;     // template for this node
+  int index;                      // element index, or -1 for whole field
+  HexByteChar2Node parent;        // parent node, or null for root
+  int position;                   // index of this node in parent's children
+  long[][] recordStarts;          // where each record starts for child fields
+                                  // ... whose size depends on the data
+  long[] recordList;              // where each record starts, for this array
+  boolean shortFlag;              // true if data ended before this field
+  boolean[] shortFlags;           // same, for each child field
+  long start;                     // index of first data byte
+  long[] values;                  // integer values of child fields
+
+  /* constructor */
+
+  public HexByteChar2Node(HexByteChar2Node parent, int position,
+    HexByteChar2Template field, ByteBuffer data, long start, long count,
+    int index)
+  {
+    this.count = count;           // save caller's parameters
+    this.data = data;
+    this.field = field;
+    this.index = index;
+    this.parent = parent;
+    this.position = position;
+    this.start = start;
+    cache = null;
+    end = -1;                     // not known until laid out
+    fieldStarts = null;
+    recordList = null;
+    shortFlag = false;
+  }
+
+  /* Create or find a child node. */
+
+  public javax.swing.tree.TreeNode getChildAt(int child)
+  {
+    HexByteChar2Node[] larger;    // bigger cache of child nodes
+    HexByteChar2Node node;        // new child node
+
+    if ((cache == null) || (child >= cache.length)) // grows as user scrolls
+    {
+      larger = new HexByteChar2Node[(int) Math.min(getChildCount(),
+        Math.max(16L, (child * 2L)))];
+      if (cache != null) System.arraycopy(cache, 0, larger, 0, cache.length);
+      cache = larger;
+    }
+    if (cache[child] != null)     // node already created
+      return(cache[child]);
+    if (isInstance())             // children are fields of a record
+    {
+      layout();
+      node = new HexByteChar2Node(this, child, field.children[child], data,
+        fieldStarts[child], fieldCounts[child], -1);
+      node.end = fieldStarts[child + 1];
+      node.recordList = recordStarts[child];
+      node.shortFlag = shortFlags[child];
+    }
+    else                          // children are elements of an array
+    {
+      node = new HexByteChar2Node(this, child, field, data, elementStart(
+        child), 1, child);
+      if (recordList != null)
+        node.end = recordList[child + 1];
+      else if (field.width >= 0)
+        node.end = node.start + field.width;
+    }
+    cache[child] = node;
+    return(node);
+  }
+
+  public boolean getAllowsChildren() { return(isLeaf() == false); }
+
+  public int getChildCount()
+  {
+    if (isInstance())
+      return(field.children.length);
+    else if (isArray())
+      return((int) Math.min(count, Integer.MAX_VALUE));
+    return(0);
+  }
+
+  public int getIndex(javax.swing.tree.TreeNode node)
+  {
+    return((((HexByteChar2Node) node).parent == this)
+      ? ((HexByteChar2Node) node).position : -1);
+  }
+
+  public javax.swing.tree.TreeNode getParent() { return(parent); }
+
+  public boolean isLeaf() { return((isInstance() || isArray()) == false); }
+
+  public java.util.Enumeration<javax.swing.tree.TreeNode> children()
+  {
+    int i;                        // index variable
+    java.util.Vector<javax.swing.tree.TreeNode> list; // all children, new
+
+    list = new java.util.Vector<javax.swing.tree.TreeNode>();
+    for (i = 0; i < getChildCount(); i ++)
+      list.add(getChildAt(i));
+    return(list.elements());
+  }
+
+  /* Where an element of an array starts. */
+
+  long elementStart(int element)
+  {
+    if (recordList != null)       // records of different sizes
+      return(recordList[element]);
+    return(start + ((long) element * field.width));
+  }
+
+  /* Find the enclosing record for a count reference, <depth> records up. */
+
+  HexByteChar2Node enclosing(int depth)
+  {
+    HexByteChar2Node node;        // current node while walking up
+
+    node = this;
+    while (depth > 0)
+    {
+      node = node.parent;
+      if (node.isInstance()) depth --;
+    }
+    return(node);
+  }
+
+  /* True if this node is an array of scalars or records. */
+
+  boolean isArray()
+  {
+    return(field.arrayFlag && (index < 0)
+      && (field.kind != HexByteChar2Template.BYTES)
+      && (field.kind != HexByteChar2Template.STRING));
+  }
+
+  /* True if this node is one record, with fields as children. */
+
+  boolean isInstance()
+  {
+    return((field.kind == HexByteChar2Template.RECORD)
+      && ((index >= 0) || (field.arrayFlag == false)));
+  }
+
+  /* Find where each field of a record starts, and read the integer values that
+  may be used as counts by later fields. */
+
+  void layout()
+  {
+    HexByteChar2Template child;   // template for one child field
+    long elements;                // number of elements in child field
+    int i;                        // index variable
+    long limit;                   // index after last data byte
+    long pos;                     // index of next data byte
+    long requested;               // number of elements from template
+    long size;                    // total size of child field
+
+    if (fieldStarts != null)      // already laid out
+      return;
+    limit = data.limit();
+    fieldCounts = new long[field.children.length];
+    fieldStarts = new long[field.children.length + 1];
+    recordStarts = new long[field.children.length][];
+    shortFlags = new boolean[field.children.length];
+    values = new long[field.children.length];
+    pos = start;
+    for (i = 0; i < field.children.length; i ++)
+    {
+      child = field.children[i];
+      fieldStarts[i] = pos;
+      if (child.refIndex >= 0)    // count from an earlier integer field
+        elements = Math.max(0, enclosing(child.refDepth).values[
+          child.refIndex]);
+      else
+        elements = child.count;   // number, or REST
+      requested = elements;
+
+      if ((child.kind == HexByteChar2Template.RECORD) && (child.width < 0))
+      {
+        /* Lay out records one after another, until the count or the end of
+        the data.  Records are found again when the tree asks for them. */
+
+        recordStarts[i] = measure(i, pos, elements, limit);
+        elements = recordStarts[i].length - 1;
+        size = recordStarts[i][(int) elements] - pos;
+        shortFlags[i] = (requested != HexByteChar2Template.REST)
+          && (elements < requested);
+        if (child.arrayFlag == false) // one record, not an array
+          recordStarts[i] = null;
+      }
+      else
+      {
+        if (elements == HexByteChar2Template.REST) // as many as fit
+          elements = (child.width == 0) ? 0 : ((limit - pos) / child.width);
+        if ((child.width > 0) && ((elements < 0) || (elements > ((limit
+          - pos) / child.width)))) // past end of data, and counts too big
+        {                         // ... to multiply without overflow
+          elements = (limit - pos) / child.width;
+          shortFlags[i] = true;
+        }
+        size = elements * child.width;
+      }
+      fieldCounts[i] = elements;
+      if ((child.kind == HexByteChar2Template.INTEGER)
+        && (child.arrayFlag == false) && (elements == 1))
+      {
+        values[i] = readInteger(data, pos, child);
+      }
+      pos += size;
+      if (shortFlags[i])          // later fields are also past the end
+        limit = pos;
+    }
+    fieldStarts[field.children.length] = pos;
+    end = pos;
+  }
+
+  /* Lay out records for child field <i> one after another.  Return where
+  each record starts, plus where the last one ends. */
+
+  long[] measure(int i, long pos, long elements, long limit)
+  {
+    int count;                    // number of records found
+    long[] exact;                 // result with the correct size
+    HexByteChar2Node record;      // one record, temporarily
+    long[] result;                // where each record starts
+
+    count = 0;
+    result = new long[16];
+    while (((elements == HexByteChar2Template.REST) || (count < elements))
+      && (pos < limit))
+    {
+      if ((count + 1) >= result.length) // need more room for starts
+        result = HexByteChar2Strings.growArray(result, (result.length * 2));
+      record = new HexByteChar2Node(this, i, field.children[i], data, pos, 1,
+        count);
+      record.layout();
+      if ((record.end > limit) || (record.end <= pos)) // bad or empty record
+        break;
+      result[count ++] = pos;
+      pos = record.end;
+    }
+    result[count] = pos;
+    exact = new long[count + 1];
+    System.arraycopy(result, 0, exact, 0, exact.length);
+    return(exact);
+  }
+
+  /* Read one integer field.  Unsigned 64-bit values above the largest long
+  are shown as negative numbers. */
+
+  static long readInteger(ByteBuffer data, long pos, HexByteChar2Template
+    field)
+  {
+    int i;                        // index variable
+    int offset;                   // index of first byte in buffer
+    long value;                   // integer value
+
+    offset = (int) pos;
+    value = 0;
+    for (i = 0; i < field.width; i ++)
+      value = (value << 8) | (data.get(offset + (field.bigFlag ? i
+        : (field.width - 1 - i))) & 0xFF);
+    if (field.signedFlag && (field.width < 8)) // extend sign bit
+      value = (value << (64 - (8 * field.width))) >> (64 - (8 * field.width));
+    return(value);
+  }
+
+  /* Text for the tree. */
+
+  public String toString()
+  {
+    byte[] bytes;                 // copy of a few data bytes for display
+    StringBuffer buffer;          // faster than String for multiple appends
+    int i;                        // index variable
+    String text;                  // decoded string
+    long value;                   // integer value
+
+    buffer = new StringBuffer();
+    buffer.append(field.name);
+    if (index >= 0) buffer.append("[" + index + "]");
+    if (parent == null)           // root node
+      buffer.append(" (" + data.limit() + " data bytes)");
+    else
+      buffer.append(" @" + start);
+    if (isInstance())
+    {
+      layout();
+      if (parent != null)
+        buffer.append(", " + (end - start) + " bytes");
+    }
+    else if (isArray())
+      buffer.append(": " + field.typeName + "[" + count + "]");
+    else if ((field.kind == HexByteChar2Template.BYTES)
+      || (field.kind == HexByteChar2Template.STRING))
+    {
+      bytes = new byte[(int) Math.min(count, ((field.kind
+        == HexByteChar2Template.BYTES) ? 32 : 400))];
+      for (i = 0; i < bytes.length; i ++)
+        bytes[i] = data.get((int) start + i);
+      buffer.append(": " + field.typeName + "[" + count + "] = ");
+      if (field.kind == HexByteChar2Template.BYTES)
+        buffer.append(HexByteChar2.hexDataFromBytes(bytes).replace('\n',
+          ' '));
+      else
+      {
+        if (field.charset == null) // raw data bytes
+          text = HexByteChar2.rawBytesToString(bytes);
+        else
+          text = field.charset.decode(ByteBuffer.wrap(bytes)).toString();
+        buffer.append("\"" + text.replace('\n', ' ').replace('\r', ' ')
+          + "\"");
+      }
+      if (bytes.length < count) buffer.append(" ...");
+    }
+    else if (count < 1)           // scalar past end of data
+      buffer.append(": " + field.typeName);
+    else if (field.kind == HexByteChar2Template.FLOAT)
+    {
+      value = readInteger(data, start, field);
+      buffer.append(": " + field.typeName + " = " + ((field.width == 4)
+        ? String.valueOf(Float.intBitsToFloat((int) value))
+        : String.valueOf(Double.longBitsToDouble(value))));
+    }
+    else                          // integer
+    {
+      value = readInteger(data, start, field);
+      buffer.append(": " + field.typeName + " = " + value + " (0x"
+        + Long.toHexString((field.width < 8) ? (value & ((1L << (8
+        * field.width)) - 1)) : value).toUpperCase() + ")");
+    }
+    if (shortFlag)
+      buffer.append(" (past end of data)");
+    return(buffer.toString());
+  }
+
+} // end of HexByteChar2Node class
+
+// ------------------------------------------------------------------------- //
+
+/*
+  HexByteChar2TemplateDialog class
+
+  This class shows a binary template and the tree of results.  Templates may be
+  applied to the hex data bytes, where clicking on a result selects those data
+  bytes, or to a file of any size up to 2 GB, which is mapped into memory and
+  not copied.  The dialog box is not modal, so the user can keep working.
+*/
+
+class HexByteChar2TemplateDialog extends JDialog implements ActionListener,
+  javax.swing.event.TreeSelectionListener
+{
+  /* constants */
+
+  static final long serialVersionUID = 1L; // version for serialized objects
+
+  /* instance variables */
+
+  HexByteChar2Document document;  // document that this window belongs to
+  JButton fileButton;             // "Parse File..." button
+  boolean linkFlag;               // true if tree is for hex data bytes
+  JButton parseButton;            // "Parse Data Bytes" button
+  JLabel statusLabel;             // result of last parse
+  JTextArea templateText;         // template from user
+  JTree tree;                     // tree of results
+
+  /* constructor */
+
+  public HexByteChar2TemplateDialog(Frame owner)
+  {
+    super(owner, "Parse with Template", false); // not modal
+    Font font;                    // monospaced font, same size as hex bytes
+
+    document = HexByteChar2.currentDocument; // parse this document's bytes
+    font = new Font("Monospaced", Font.PLAIN,
+      HexByteChar2.byteField.getFont().getSize());
+    linkFlag = false;
+
+    JPanel panel1 = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 5));
+    parseButton = new JButton("Parse Data Bytes");
+    parseButton.addActionListener(this);
+    parseButton.setToolTipText("Apply template to hex data bytes.");
+    panel1.add(parseButton);
+    fileButton = new JButton("Parse File...");
+    fileButton.addActionListener(this);
+    fileButton.setToolTipText("Apply template to a file, without reading it.");
+    panel1.add(fileButton);
+    statusLabel = new JLabel(" ");
+    panel1.add(statusLabel);
+    this.getContentPane().add(panel1, BorderLayout.NORTH);
+
+    templateText = new JTextArea(HexByteChar2.templateText);
+    templateText.setFont(font);
+    tree = new JTree(new javax.swing.tree.DefaultTreeModel(null));
+    tree.setFont(font);
+    tree.setLargeModel(true);     // don't lay out all rows, only visible
+    tree.setRowHeight(getFontMetrics(font).getHeight() + 2);
+    tree.addTreeSelectionListener(this);
+    JSplitPane split2 = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT,
+      new JScrollPane(templateText), new JScrollPane(tree));
+    split2.setDividerLocation(320);
+    this.getContentPane().add(split2, BorderLayout.CENTER);
+
+    this.setDefaultCloseOperation(JDialog.DISPOSE_ON_CLOSE);
+    this.setSize(900, 500);
+    this.setLocationRelativeTo(owner);
+    this.setVisible(true);
+  }
+
+  /* The user has clicked one of our buttons. */
+
+  public void actionPerformed(ActionEvent event)
+  {
+    ByteBuffer data;              // data bytes to parse
+    byte[] dataBytes;             // hex data bytes from main window
+    FileInputStream fileStream;   // file to map into memory
+    HexByteChar2Node root;        // tree of results
+    HexByteChar2Template template; // compiled template
+    long timer;                   // elapsed time in milliseconds
+    File userFile;                // Java File object to read
+
+    HexByteChar2.templateText = templateText.getText(); // remember template
+    try { template = HexByteChar2Template.compile(templateText.getText()); }
+    catch (IllegalArgumentException iae)
+    {
+      JOptionPane.showMessageDialog(this, iae.getMessage());
+      return;
+    }
+
+    if (event.getSource() == parseButton) // parse hex data bytes
+    {
+      if (HexByteChar2.showDocument(document) == false)
+      {
+        JOptionPane.showMessageDialog(this,
+          "The document for this window has been closed.");
+        return;
+      }
+      dataBytes = HexByteChar2.currentDataBytes();
+      if (dataBytes == null)      // was there an error, did we tell user?
+        return;
+      data = ByteBuffer.wrap(dataBytes);
+      linkFlag = true;
+    }
+    else                          // parse a file
+    {
+      HexByteChar2.fileChooser.resetChoosableFileFilters();
+      HexByteChar2.fileChooser.setDialogTitle("Parse File with Template...");
+      HexByteChar2.fileChooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
+      HexByteChar2.fileChooser.setMultiSelectionEnabled(false);
+      if (HexByteChar2.fileChooser.showOpenDialog(this)
+        != JFileChooser.APPROVE_OPTION)
+      {
+        return;                   // user cancelled file selection dialog box
+      }
+      userFile = HexByteChar2.fileChooser.getSelectedFile();
+      if (userFile.length() > Integer.MAX_VALUE)
+      {
+        JOptionPane.showMessageDialog(this, (userFile.getName()
+          + " is bigger than 2 GB, which is too big for templates."));
+        return;
+      }
+      try                         // not all I/O goes as planned
+      {
+        fileStream = new FileInputStream(userFile);
+        data = fileStream.getChannel().map(FileChannel.MapMode.READ_ONLY, 0,
+          fileStream.getChannel().size());
+        fileStream.close();       // mapping stays valid after closing
+      }
+      catch (IOException ioe)
+      {
+        JOptionPane.showMessageDialog(this, ("Can't read file "
+          + userFile.getName() + "\n" + ioe.getMessage()));
+        return;
+      }
+      linkFlag = false;
+    }
+
+    timer = System.currentTimeMillis();
+    root = new HexByteChar2Node(null, 0, template, data, 0, 1, -1);
+    root.layout();                // lay out top level, including all records
+    timer = System.currentTimeMillis() - timer;
+    tree.setModel(new javax.swing.tree.DefaultTreeModel(root));
+    statusLabel.setText(root.end + " of " + data.limit() + " bytes in "
+      + timer + " ms");
+  }
+
+  /* The user has clicked on a result.  Select the same hex data bytes. */
+
+  public void valueChanged(javax.swing.event.TreeSelectionEvent event)
+  {
+    HexByteChar2Node node;        // selected node
+
+    if ((linkFlag == false) || (tree.getSelectionPath() == null))
+      return;
+    node = (HexByteChar2Node) tree.getSelectionPath().getLastPathComponent();
+    if (node.isInstance()) node.layout(); // end of record may not be known
+    if ((node.end > node.start) && HexByteChar2.showDocument(document))
+      HexByteChar2.selectDataBytes((int) node.start, (int) node.end);
+  }
+
+} // end of HexByteChar2TemplateDialog class
+
+// ------------------------------------------------------------------------- //
+
+/*
+  HexByteChar2Validator class
+
+  This class finds every malformed or unmappable sequence of data bytes for one
+  character set encoding.  The decoder reports errors instead of replacing them
+  with U+FFFD, and we save the offset and length of each error before skipping
+  over it and decoding again from the next byte.  Data is given in pieces, so
+  files of any size can be checked with one small buffer.  Decoded characters
+  are thrown away.  The number of results saved is limited, but all errors are
+  counted.
+*/
+
+class HexByteChar2Validator
+{
+  /* constants */
+
+  static final int BLOCK_SIZE = 0x100000; // bytes read from file at one time
+  static final int MAX_PREVIEW = 8; // most bad data bytes saved for display
+  static final int MAX_RESULTS = 10000; // most results saved
+
+  /* instance variables */
+
+  CharBuffer chars;               // decoded characters, not kept
+  int count;                      // number of results saved
+  CharsetDecoder decoder;         // decoder that reports errors
+  long[] ends;                    // index after last bad byte for results
+  long position;                  // number of data bytes consumed so far
+  String[] previews;              // bad data bytes in hex for each result
+  long[] starts;                  // index of first bad byte for results
+  long total;                     // number of errors, saved or not
+  boolean[] unmappableFlags;      // true if legal but can't be mapped
+
+  /* constructor */
+
+  public HexByteChar2Validator(Charset charset)
+  {
+    chars = CharBuffer.allocate(0x10000);
+    count = 0;
+    decoder = charset.newDecoder();
+    decoder.onMalformedInput(CodingErrorAction.REPORT);
+    decoder.onUnmappableCharacter(CodingErrorAction.REPORT);
+    ends = new long[256];         // results grow as needed
+    position = 0;
+    previews = new String[ends.length];
+    starts = new long[ends.length];
+    total = 0;
+    unmappableFlags = new boolean[ends.length];
+  }
+
+  /* Save one error, if there is room, and skip over the bad data bytes. */
+
+  void add(ByteBuffer input, int length, boolean unmappableFlag)
+  {
+    int i;                        // index variable
+    StringBuffer preview;         // bad data bytes in hex
+
+    total ++;                     // all errors are counted
+    if (count < MAX_RESULTS)
+    {
+      if (count >= starts.length) // need more room for results
+      {
+        ends = HexByteChar2Strings.growArray(ends, (count * 2));
+        previews = HexByteChar2Strings.growArray(previews, (count * 2));
+        starts = HexByteChar2Strings.growArray(starts, (count * 2));
+        unmappableFlags = HexByteChar2Strings.growArray(unmappableFlags,
+          (count * 2));
+      }
+      preview = new StringBuffer();
+      for (i = 0; i < Math.min(length, MAX_PREVIEW); i ++)
+      {
+        if (i > 0) preview.append(' ');
+        preview.append(HexByteChar2.HEX_DIGITS[(input.get(input.position()
+          + i) >> 4) & 0x0F]);
+        preview.append(HexByteChar2.HEX_DIGITS[input.get(input.position()
+          + i) & 0x0F]);
+      }
+      if (length > MAX_PREVIEW) preview.append(" ...");
+      ends[count] = position + length;
+      previews[count] = preview.toString();
+      starts[count] = position;
+      unmappableFlags[count] = unmappableFlag;
+      count ++;
+    }
+    input.position(input.position() + length);
+    position += length;
+  }
+
+  /* Return a text label for one result, as shown to the user. */
+
+  String label(int i)
+  {
+    String offset;                // hex offset for one result
+
+    offset = Long.toHexString(starts[i]).toUpperCase();
+    while (offset.length() < 8) offset = "0" + offset;
+    return(offset + "  " + (unmappableFlags[i] ? "unmappable" : "malformed")
+      + "  " + (ends[i] - starts[i]) + "  " + previews[i]);
+  }
+
+  /* Return a text label for each result. */
+
+  String[] labels()
+  {
+    int i;                        // index variable
+    String[] result;              // labels for all results
+
+    result = new String[count];
+    for (i = 0; i < count; i ++)
+      result[i] = label(i);
+    return(result);
+  }
+
+  /* Decode one piece of the data bytes.  Pieces must be given in order.  Bytes
+  at the end that are not a complete sequence are left in the buffer, unless
+  this is the last piece, where they are an error. */
+
+  void scan(ByteBuffer input, boolean endFlag)
+  {
+    int before;                   // buffer position before decoding
+    CoderResult result;           // why the decoder stopped
+
+    while (true)
+    {
+      before = input.position();
+      result = decoder.decode(input, chars, endFlag);
+      position += input.position() - before;
+      if (result.isError())       // malformed or unmappable
+        add(input, result.length(), result.isUnmappable());
+      else if (result.isOverflow()) // output full, characters not needed
+        chars.clear();
+      else                        // need more input
+        break;
+    }
+    if (endFlag)                  // some decoders have characters waiting
+    {
+      while (decoder.flush(chars).isOverflow())
+        chars.clear();
+      chars.clear();
+    }
+  }
+
+  /* Read and decode all data bytes from a file. */
+
+  void scanChannel(ReadableByteChannel channel) throws IOException
+  {
+    ByteBuffer buffer;            // one block of data bytes from file
+
+    buffer = ByteBuffer.allocate(BLOCK_SIZE); // heap for fast decoder loops
+    while (channel.read(buffer) >= 0)
+    {
+      buffer.flip();
+      scan(buffer, false);
+      buffer.compact();           // keep incomplete sequence at end
+    }
+    buffer.flip();
+    scan(buffer, true);
+  }
+
+} // end of HexByteChar2Validator class
+
+// ------------------------------------------------------------------------- //
+
+/*
+  HexByteChar2Session class
+
+  This class saves settings between sessions, and keeps a cache of hex text and
+  converted text for recently read files.  Everything is in a folder under the
+  user's home directory.  Settings are a standard properties file.  Each cache
+  entry is one file, named by a digest of the source file's path name, size,
+  and date, plus the settings used for formatting.  A changed file therefore
+  gets a new entry, and the old entry is never found again.  Entries are
+  written by a background thread.  Reading an entry updates its date, and the
+  oldest entries are deleted when the total size is too big (LRU).
+
+  The cache is only an optimization.  Any error is ignored, and the caller
+  reads and formats the file normally.
+*/
+
+class HexByteChar2Session implements Runnable
+{
+  /* constants */
+
+  static final long CACHE_LIMIT = 0x80000000L; // most bytes in cache (2 GB)
+  static final String FOLDER_NAME = ".hexbytechar2"; // under home directory
+  static final int MAX_RECENT = 8; // most recently read files saved
+  static final String SETTINGS_NAME = "session.properties"; // settings file
+
+  /* class variables */
+
+  static File cacheFolder;        // folder for cache entries, or null
+  static java.util.Properties settings; // saved settings, keys and values
+
+  /* instance variables */
+
+  String encoding;                // character set for cache entry
+  File entry;                     // cache entry to be written
+  String text;                    // text for cache entry
+
+  /* constructor */
+
+  public HexByteChar2Session(File entry, String text, String encoding)
+  {
+    this.encoding = encoding;     // save caller's parameters
+    this.entry = entry;
+    this.text = text;
+  }
+
+  /* Return the cache entry for a source file and a description of how it was
+  formatted, or <null> if there is no cache. */
+
+  static File cacheEntry(File source, String key)
+  {
+    String name;                  // file name in hex
+
+    if (cacheFolder == null) return(null);
+    try
+    {
+      name = digestName(source.getCanonicalPath() + "\n" + source.length()
+        + "\n" + source.lastModified() + "\n" + key);
+    }
+    catch (IOException ioe) { return(null); }
+    return((name == null) ? null : new File(cacheFolder, name));
+  }
+
+  /* Return a file name made from the SHA-1 digest of some text, in hex, or
+  <null> if SHA-1 isn't available. */
+
+  static String digestName(String text)
+  {
+    java.security.MessageDigest digest; // makes file name from text
+    byte[] hash;                  // result from digest
+    int i;                        // index variable
+    StringBuffer name;            // file name in hex
+
+    try
+    {
+      digest = java.security.MessageDigest.getInstance("SHA-1");
+      hash = digest.digest(text.getBytes("UTF-8"));
+    }
+    catch (UnsupportedEncodingException uee) { return(null); }
+    catch (java.security.NoSuchAlgorithmException nsae) { return(null); }
+    name = new StringBuffer();
+    for (i = 0; i < hash.length; i ++)
+    {
+      name.append(HexByteChar2.HEX_DIGITS[(hash[i] >> 4) & 0x0F]);
+      name.append(HexByteChar2.HEX_DIGITS[hash[i] & 0x0F]);
+    }
+    return(name.toString());
+  }
+
+  /* Return a saved setting, or the caller's default value. */
+
+  static String get(String key, String value)
+  {
+    return(settings.getProperty(key, value));
+  }
+
+  /* Return a saved setting as an integer, or the caller's default value. */
+
+  static int getInt(String key, int value)
+  {
+    try { return(Integer.parseInt(settings.getProperty(key, "").trim())); }
+    catch (NumberFormatException nfe) { return(value); }
+  }
+
+  /* Load settings from the last session, and find the cache folder.  Nothing
+  is created until there is something to save. */
+
+  static void load()
+  {
+    FileInputStream input;        // settings file
+    String home;                  // user's home directory
+
+    cacheFolder = null;
+    settings = new java.util.Properties();
+    home = System.getProperty("user.home");
+    if (home == null) return;     // nowhere to save anything
+    cacheFolder = new File(new File(home, FOLDER_NAME), "cache");
+    try
+    {
+      input = new FileInputStream(new File(cacheFolder.getParentFile(),
+        SETTINGS_NAME));
+      settings.load(input);
+      input.close();
+    }
+    catch (IOException ioe) { /* first session, or file was deleted */ }
+    catch (IllegalArgumentException iae) { /* bad escape, ignore rest */ }
+  }
+
+  /* Return a cache entry as text, or <null> if it isn't in the cache. */
+
+  static String readCache(File source, String key, String encoding)
+  {
+    byte[] buffer;                // all bytes from cache entry
+    File entry;                   // cache entry for this file
+    FileInputStream input;        // reads cache entry
+
+    entry = cacheEntry(source, key);
+    if ((entry == null) || (entry.isFile() == false)
+      || (entry.length() > Integer.MAX_VALUE))
+    {
+      return(null);
+    }
+    try
+    {
+      buffer = new byte[(int) entry.length()];
+      input = new FileInputStream(entry);
+      if (HexByteChar2.readFully(input, buffer, buffer.length)
+        != buffer.length)
+      {
+        input.close();
+        return(null);             // entry was changed while reading
+      }
+      input.close();
+      entry.setLastModified(System.currentTimeMillis()); // recently used
+      return(new String(buffer, encoding));
+    }
+    catch (IOException ioe) { return(null); }
+    catch (OutOfMemoryError oome) { return(null); }
+  }
+
+  /* Return path names for recently read files, most recent first. */
+
+  static java.util.Vector<String> recentFiles()
+  {
+    int i;                        // index variable
+    String name;                  // one saved path name
+    java.util.Vector<String> result; // path names found
+
+    result = new java.util.Vector<String>();
+    for (i = 1; i <= MAX_RECENT; i ++)
+    {
+      name = settings.getProperty("recent." + i);
+      if ((name != null) && (name.length() > 0))
+        result.add(name);
+    }
+    return(result);
+  }
+
+  /* Put a file at the top of the recent list. */
+
+  static void rememberFile(File file)
+  {
+    int i;                        // index variable
+    String name;                  // full path name for file
+    java.util.Vector<String> recent; // path names for recent files
+
+    name = file.getAbsolutePath();
+    recent = recentFiles();
+    recent.remove(name);          // may be in list already
+    recent.add(0, name);
+    for (i = 1; i <= MAX_RECENT; i ++)
+      set(("recent." + i), ((i <= recent.size()) ? recent.get(i - 1)
+        : null));
+  }
+
+  /* Background thread to write one cache entry. */
+
+  public void run()
+  {
+    writeEntry(entry, text, encoding);
+  }
+
+  /* Save settings for the next session. */
+
+  static void save()
+  {
+    File folder;                  // our folder under home directory
+    FileOutputStream output;      // settings file
+
+    if (cacheFolder == null) return;
+    folder = cacheFolder.getParentFile();
+    try
+    {
+      folder.mkdirs();
+      output = new FileOutputStream(new File(folder, SETTINGS_NAME));
+      settings.store(output, HexByteChar2.PROGRAM_TITLE);
+      output.close();
+    }
+    catch (IOException ioe) { /* can't save, not worth telling the user */ }
+  }
+
+  /* Change a setting, or remove it if the value is <null>. */
+
+  static void set(String key, String value)
+  {
+    if (value == null)
+      settings.remove(key);
+    else
+      settings.setProperty(key, value);
+  }
+
+  /* Delete the least recently used entries until the cache is small enough. */
+
+  static void trimCache()
+  {
+    File[] entries;               // all files in cache folder
+    int i, k;                     // index variables
+    long[] times;                 // last use of each entry
+    long total;                   // total size of all entries
+    File tempFile;                // for sorting
+    long tempTime;                // for sorting
+
+    entries = cacheFolder.listFiles();
+    if (entries == null) return;
+    times = new long[entries.length];
+    total = 0;
+    for (i = 0; i < entries.length; i ++)
+    {
+      times[i] = entries[i].lastModified();
+      total += entries[i].length();
+    }
+    for (i = 1; i < entries.length; i ++) // insertion sort, oldest first
+    {
+      tempFile = entries[i];
+      tempTime = times[i];
+      for (k = i; (k > 0) && (times[k - 1] > tempTime); k --)
+      {
+        entries[k] = entries[k - 1];
+        times[k] = times[k - 1];
+      }
+      entries[k] = tempFile;
+      times[k] = tempTime;
+    }
+    for (i = 0; (i < entries.length) && (total > CACHE_LIMIT); i ++)
+    {
+      total -= entries[i].length();
+      entries[i].delete();
+    }
+  }
+
+  /* Start writing a cache entry on a background thread, if it isn't already
+  in the cache.  The caller's text is immutable, so it can be shared with a thread. */
+
+  static void writeCache(File source, String key, String encoding,
+    String text)
+  {
+    File entry;                   // cache entry for this file
+
+    entry = cacheEntry(source, key);
+    if ((entry == null) || entry.isFile() || (text.length()
+      > (CACHE_LIMIT / 4)))       // already cached, or too big to cache
+    {
+      return;
+    }
+    HexByteChar2.workerPool.execute(new HexByteChar2Session(entry, text,
+      encoding));                 // shared with other background tools
+  }
+
+  /* Write a cache entry to a temporary file, rename it, and then trim the
+  cache.  Only one entry is written at a time. */
+
+  static synchronized void writeEntry(File entry, String text,
+    String encoding)
+  {
+    int i;                        // index variable
+    Writer output;                // writes characters as bytes
+    File tempFile;                // cache entry while being written
+
+    tempFile = new File(entry.getPath() + ".tmp");
+    try
+    {
+      cacheFolder.mkdirs();
+      output = new OutputStreamWriter(new BufferedOutputStream(
+        new FileOutputStream(tempFile), 0x100000), encoding);
+      for (i = 0; i < text.length(); i += 0x100000) // no big copy of text
+        output.write(text, i, Math.min(0x100000, (text.length() - i)));
+      output.close();
+      entry.delete();             // in case another session wrote it
+      if (tempFile.renameTo(entry) == false)
+        tempFile.delete();
+    }
+    catch (IOException ioe) { tempFile.delete(); }
+    trimCache();
+  }
+
+} // end of HexByteChar2Session class
+
+// ------------------------------------------------------------------------- //
+
+/*
+  HexByteChar2Overlay class
+
+  This class edits a file of any size without reading or rewriting the whole
+  file.  The file is mapped read-only in pieces, and changed data bytes are kept
+  in a sorted list of ranges, which is small because edits are few.  Reading
+  gives the original bytes with any changes on top.  Saving writes only the
+  changed ranges back to the file, each at its own position.  Changes may also
+  be exported as a compact binary patch, and loaded again later:
+
+      8 bytes   "HBC2PAT1"
+      8 bytes   size of original file (big-endian, like all numbers)
+      then for each range:
+        8 bytes   position in file
+        4 bytes   number of data bytes
+        n bytes   new data bytes
+
+  Edits only replace bytes.  Inserting or deleting would change the position of
+  everything after, which is the full rewrite we are trying to avoid.
+*/
+
+class HexByteChar2Overlay
+{
+  /* constants */
+
+  static final long MAP_SIZE = 0x40000000L; // bytes in each mapped piece
+  static final String PATCH_MAGIC = "HBC2PAT1"; // first bytes of patch file
+
+  /* instance variables */
+
+  int count;                      // number of changed ranges
+  byte[][] datas;                 // new data bytes for each range
+  File file;                      // file being edited
+  long lastModified;              // date of file when mapped or saved
+  ByteBuffer[] maps;              // read-only pieces of file
+  long size;                      // size of file in bytes
+  long[] starts;                  // position of each range, sorted
+
+  /* constructor */
+
+  public HexByteChar2Overlay(File file) throws IOException
+  {
+    FileChannel channel;          // file to map into memory
+    int i;                        // index variable
+
+    this.file = file;             // save caller's parameters
+    channel = new FileInputStream(file).getChannel();
+    lastModified = file.lastModified();
+    size = channel.size();
+    maps = new ByteBuffer[(int) ((size + MAP_SIZE - 1) / MAP_SIZE)];
+    for (i = 0; i < maps.length; i ++)
+      maps[i] = channel.map(FileChannel.MapMode.READ_ONLY, (i * MAP_SIZE),
+        Math.min(MAP_SIZE, (size - (i * MAP_SIZE))));
+    channel.close();              // mapping stays valid after closing
+    count = 0;
+    datas = new byte[16][];       // ranges grow as needed
+    starts = new long[datas.length];
+  }
+
+  /* Return the total number of changed data bytes. */
+
+  long changedBytes()
+  {
+    int i;                        // index variable
+    long total;                   // sum of range lengths
+
+    total = 0;
+    for (i = 0; i < count; i ++)
+      total += datas[i].length;
+    return(total);
+  }
+
+  /* Change data bytes at a position in the file.  Ranges that overlap or touch
+  the new range are joined into one range, with the new bytes on top. */
+
+  void edit(long position, byte[] buffer, int offset, int length)
+  {
+    long end;                     // position after last new byte
+    int first, last;              // ranges joined with new range
+    int i;                        // index variable
+    byte[] joined;                // data bytes for joined range
+    byte[][] moreDatas;           // bigger list of ranges
+    long start;                   // position of joined range
+
+    if (length <= 0) return;      // nothing to change
+    end = position + length;
+    first = find(position);
+    if ((first < 0) || ((starts[first] + datas[first].length) < position))
+      first ++;                   // previous range doesn't touch new range
+    last = first - 1;
+    while (((last + 1) < count) && (starts[last + 1] <= end))
+      last ++;                    // include every range that touches
+
+    start = position;
+    if ((last >= first) && (starts[first] < start))
+      start = starts[first];
+    if ((last >= first) && ((starts[last] + datas[last].length) > end))
+      end = starts[last] + datas[last].length;
+    joined = new byte[(int) (end - start)];
+    for (i = first; i <= last; i ++)
+      System.arraycopy(datas[i], 0, joined, (int) (starts[i] - start),
+        datas[i].length);
+    System.arraycopy(buffer, offset, joined, (int) (position - start),
+      length);
+
+    if (last < first)             // new range, make room in the list
+    {
+      if (count >= starts.length)
+      {
+        moreDatas = new byte[count * 2][];
+        System.arraycopy(datas, 0, moreDatas, 0, count);
+        datas = moreDatas;
+        starts = HexByteChar2Strings.growArray(starts, (count * 2));
+      }
+      System.arraycopy(datas, first, datas, (first + 1), (count - first));
+      System.arraycopy(starts, first, starts, (first + 1), (count - first));
+      count ++;
+    }
+    else if (last > first)        // several ranges become one
+    {
+      System.arraycopy(datas, (last + 1), datas, (first + 1),
+        (count - last - 1));
+      System.arraycopy(starts, (last + 1), starts, (first + 1),
+        (count - last - 1));
+      count -= last - first;
+      for (i = count; i < (count + last - first); i ++)
+        datas[i] = null;          // don't keep old bytes in memory
+    }
+    datas[first] = joined;
+    starts[first] = start;
+  }
+
+  /* Binary search for the last range that starts at or before a position.
+  Return -1 if there is none. */
+
+  int find(long position)
+  {
+    int high, low, middle;        // binary search indexes
+
+    low = -1;                     // range known to start at or before
+    high = count;                 // range known to start after
+    while ((high - low) > 1)
+    {
+      middle = (low + high) >>> 1;
+      if (starts[middle] <= position) low = middle;
+      else high = middle;
+    }
+    return(low);
+  }
+
+  /* Read data bytes from the file, with any changes on top.  The caller must
+  stay inside the file. */
+
+  void read(long position, byte[] buffer, int offset, int length)
+  {
+    int done;                     // number of bytes copied so far
+    long from, to;                // part of a range inside caller's bytes
+    int i;                        // index variable
+    ByteBuffer piece;             // one mapped piece, own position
+    int size;                     // number of bytes from one piece
+
+    done = 0;
+    while (done < length)
+    {
+      piece = maps[(int) ((position + done) / MAP_SIZE)].duplicate();
+      piece.position((int) ((position + done) % MAP_SIZE));
+      size = Math.min((length - done), piece.remaining());
+      piece.get(buffer, (offset + done), size);
+      done += size;
+    }
+    i = Math.max(0, find(position));
+    while ((i < count) && (starts[i] < (position + length)))
+    {
+      from = Math.max(position, starts[i]);
+      to = Math.min((position + length), (starts[i] + datas[i].length));
+      if (from < to)
+        System.arraycopy(datas[i], (int) (from - starts[i]), buffer,
+          (int) (offset + from - position), (int) (to - from));
+      i ++;
+    }
+  }
+
+  /* Load changes from a patch file, on top of any changes we already have.
+  Nothing is changed unless the whole patch can be read. */
+
+  void readPatch(File patchFile) throws IOException
+  {
+    java.util.Vector<byte[]> changes; // new data bytes for each range
+    byte[] data;                  // new data bytes for one range
+    int i;                        // index variable
+    DataInputStream input;        // reads patch file
+    int length;                   // number of data bytes in one range
+    byte[] magic;                 // first bytes of patch file
+    long position;                // position of one range
+    java.util.Vector<Long> positions; // position of each range
+    long patchSize;               // file size given in patch
+
+    input = new DataInputStream(new BufferedInputStream(new FileInputStream(
+      patchFile)));
+    try
+    {
+      magic = new byte[PATCH_MAGIC.length()];
+      input.readFully(magic);
+      if (new String(magic, "ISO-8859-1").equals(PATCH_MAGIC) == false)
+        throw new IOException("Not a patch file from this program.");
+      patchSize = input.readLong();
+      if (patchSize != size)
+        throw new IOException("Patch is for a file with " + patchSize
+          + " bytes, not " + size + " bytes.");
+      changes = new java.util.Vector<byte[]>();
+      positions = new java.util.Vector<Long>();
+      while (true)
+      {
+        try { position = input.readLong(); }
+        catch (EOFException eofe) { break; } // normal end of patch
+        length = input.readInt();
+        if ((position < 0) || (position > size) || (length < 0)
+          || (length > (size - position)) || (length > patchFile.length()))
+        {                         // check before allocating data bytes
+          throw new IOException("Patch has a change outside the file.");
+        }
+        data = new byte[length];
+        input.readFully(data);
+        changes.add(data);
+        positions.add(Long.valueOf(position));
+      }
+    }
+    finally { input.close(); }
+    for (i = 0; i < changes.size(); i ++) // whole patch is good, so apply
+    {
+      data = changes.get(i);
+      edit(positions.get(i).longValue(), data, 0, data.length);
+    }
+  }
+
+  /* Write all changes into the file, and forget them.  Only the changed ranges
+  are written, so the time doesn't depend on the size of the file. */
+
+  void writeInPlace() throws IOException
+  {
+    ByteBuffer buffer;            // one range to write
+    FileChannel channel;          // file opened for writing
+    int i;                        // index variable
+    long position;                // where next byte is written
+    RandomAccessFile writer;      // file opened for writing
+
+    if ((file.length() != size) || (file.lastModified() != lastModified))
+      throw new IOException("File was changed by another program.");
+    writer = new RandomAccessFile(file, "rw");
+    channel = writer.getChannel();
+    try
+    {
+      for (i = 0; i < count; i ++)
+      {
+        buffer = ByteBuffer.wrap(datas[i]);
+        position = starts[i];
+        while (buffer.hasRemaining()) // positional writes, no seek needed
+          position += channel.write(buffer, position);
+      }
+      channel.force(false);       // changes are on disk before we forget
+    }
+    finally { writer.close(); }
+    for (i = 0; i < count; i ++)
+      datas[i] = null;
+    count = 0;                    // mapped file now has the changes
+    lastModified = file.lastModified();
+  }
+
+  /* Write all changes to a patch file.  The file being edited isn't changed. */
+
+  void writePatch(File patchFile) throws IOException
+  {
+    int i;                        // index variable
+    DataOutputStream output;      // writes patch file
+
+    output = new DataOutputStream(new BufferedOutputStream(
+      new FileOutputStream(patchFile)));
+    try
+    {
+      output.write(PATCH_MAGIC.getBytes("ISO-8859-1"));
+      output.writeLong(size);
+      for (i = 0; i < count; i ++)
+      {
+        output.writeLong(starts[i]);
+        output.writeInt(datas[i].length);
+        output.write(datas[i]);
+      }
+    }
+    finally { output.close(); }
+  }
+
+} // end of HexByteChar2Overlay class
+
+// ------------------------------------------------------------------------- //
+
+/*
+  HexByteChar2PatchDialog class
+
+  This class shows one page of a file being edited with HexByteChar2Overlay.
+  The user changes hex data bytes on the page, and the changes are kept when
+  moving to another page.  Changed bytes are highlighted.  Nothing is written
+  to the file until the user clicks "Save in File".
+*/
+
+class HexByteChar2PatchDialog extends JDialog implements ActionListener
+{
+  /* constants */
+
+  static final int LINE_SIZE = 16; // data bytes per line of hex text
+  static final int PAGE_SIZE = 4096; // data bytes per page
+  static final long serialVersionUID = 1L; // version for serialized objects
+
+  /* instance variables */
+
+  JButton applyButton, exportButton, goButton, loadButton, nextButton,
+    previousButton, saveButton; // buttons
+  JTextArea hexText;              // hex data bytes for one page
+  JTextField offsetField;         // position typed by user, in hex
+  JTextArea offsetText;           // position of each line, in hex
+  HexByteChar2Overlay overlay;    // file with changes on top
+  long page;                      // position of first byte on page
+  byte[] pageBytes;               // data bytes shown on page
+  Highlighter.HighlightPainter painter; // draws changed data bytes
+  JLabel statusLabel;             // number of changes, result of save
+
+  /* constructor */
+
+  public HexByteChar2PatchDialog(Frame owner, HexByteChar2Overlay overlay)
+  {
+    super(owner, ("Patch File: " + overlay.file.getName()), false);
+    Font font;                    // monospaced font, same size as hex bytes
+
+    font = new Font("Monospaced", Font.PLAIN,
+      HexByteChar2.byteField.getFont().getSize());
+    this.overlay = overlay;       // save caller's parameters
+    painter = new DefaultHighlighter.DefaultHighlightPainter(
+      new Color(HexByteChar2.SYNC_COLOR));
+
+    JPanel panel1 = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 5));
+    panel1.add(new JLabel("Offset (hex):"));
+    offsetField = new JTextField("0", 12);
+    offsetField.addActionListener(this);
+    panel1.add(offsetField);
+    goButton = new JButton("Go");
+    goButton.addActionListener(this);
+    panel1.add(goButton);
+    previousButton = new JButton("Previous Page");
+    previousButton.addActionListener(this);
+    panel1.add(previousButton);
+    nextButton = new JButton("Next Page");
+    nextButton.addActionListener(this);
+    panel1.add(nextButton);
+    this.getContentPane().add(panel1, BorderLayout.NORTH);
+
+    hexText = new JTextArea();
+    hexText.setFont(font);
+    offsetText = new JTextArea();
+    offsetText.setEditable(false);
+    offsetText.setFont(font);
+    JScrollPane scroll2 = new JScrollPane(hexText);
+    scroll2.setRowHeaderView(offsetText); // offsets scroll with hex text
+    this.getContentPane().add(scroll2, BorderLayout.CENTER);
+
+    JPanel panel3 = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 5));
+    applyButton = new JButton("Apply Edits");
+    applyButton.addActionListener(this);
+    applyButton.setToolTipText("Keep changes on this page, without saving.");
+    panel3.add(applyButton);
+    saveButton = new JButton("Save in File");
+    saveButton.addActionListener(this);
+    saveButton.setToolTipText("Write only the changed bytes into the file.");
+    panel3.add(saveButton);
+    exportButton = new JButton("Export Patch...");
+    exportButton.addActionListener(this);
+    exportButton.setToolTipText("Write changes to a patch file.");
+    panel3.add(exportButton);
+    loadButton = new JButton("Load Patch...");
+    loadButton.addActionListener(this);
+    loadButton.setToolTipText("Add changes from a patch file.");
+    panel3.add(loadButton);
+    statusLabel = new JLabel(" ");
+    panel3.add(statusLabel);
+    this.getContentPane().add(panel3, BorderLayout.SOUTH);
+
+    showPage(0);
+    this.setDefaultCloseOperation(JDialog.DISPOSE_ON_CLOSE);
+    this.setSize(800, 600);
+    this.setLocationRelativeTo(owner);
+    this.setVisible(true);
+  }
+
+  /* The user has clicked one of our buttons. */
+
+  public void actionPerformed(ActionEvent event)
+  {
+    File patchFile;               // patch file chosen by user
+    long position;                // offset typed by user
+    Object source;                // where the event came from
+    long timer;                   // elapsed time in milliseconds
+
+    source = event.getSource();
+    if (applyPage() == false)     // keep changes on current page first
+      return;
+    try                           // not all I/O goes as planned
+    {
+      if ((source == goButton) || (source == offsetField))
+      {
+        try { position = Long.parseLong(offsetField.getText().trim(), 16); }
+        catch (NumberFormatException nfe) { position = -1; }
+        if ((position < 0) || (position >= overlay.size))
+        {
+          JOptionPane.showMessageDialog(this, ("Offset must be hex from 0 to "
+            + Long.toHexString(overlay.size - 1).toUpperCase() + "."));
+          return;
+        }
+        showPage(position);
+      }
+      else if (source == loadButton)
+      {
+        patchFile = choosePatch(false);
+        if (patchFile == null) return;
+        overlay.readPatch(patchFile);
+        showPage(page);           // show loaded changes
+      }
+      else if (source == nextButton)
+      {
+        if ((page + PAGE_SIZE) < overlay.size)
+          showPage(page + PAGE_SIZE);
+      }
+      else if (source == previousButton)
+        showPage(Math.max(0, (page - PAGE_SIZE)));
+      else if (source == exportButton)
+      {
+        if (overlay.count == 0)
+        {
+          JOptionPane.showMessageDialog(this, "There are no changes.");
+          return;
+        }
+        patchFile = choosePatch(true);
+        if (patchFile == null) return;
+        overlay.writePatch(patchFile);
+        statusLabel.setText("Exported " + overlay.count + " changes.");
+      }
+      else if (source == saveButton)
+      {
+        if (overlay.count == 0)
+        {
+          JOptionPane.showMessageDialog(this, "There are no changes.");
+          return;
+        }
+        if (JOptionPane.showConfirmDialog(this, ("Write "
+          + overlay.changedBytes() + " changed bytes into "
+          + overlay.file.getName() + "?\nThis can't be undone."),
+          "Save in File", JOptionPane.YES_NO_OPTION)
+          != JOptionPane.YES_OPTION)
+        {
+          return;
+        }
+        timer = System.currentTimeMillis();
+        overlay.writeInPlace();
+        timer = System.currentTimeMillis() - timer;
+        showPage(page);           // nothing highlighted now
+        statusLabel.setText("Saved in " + timer + " ms.");
+      }
+    }
+    catch (IOException ioe)
+    {
+      JOptionPane.showMessageDialog(this, ioe.getMessage());
+    }
+  }
+
+  /* Keep any changes the user has made on the current page.  Return false if
+  the hex text has errors, or has the wrong number of bytes. */
+
+  boolean applyPage()
+  {
+    byte[] dataBytes;             // data bytes from hex text
+    int i, k;                     // index variables
+
+    dataBytes = HexByteChar2.hexDataToBytes(hexText.getText(), false);
+    if (dataBytes == null)        // was there an error, did we tell user?
+      return(false);
+    if (dataBytes.length != pageBytes.length)
+    {
+      JOptionPane.showMessageDialog(this, ("This page must have "
+        + pageBytes.length + " data bytes, not " + dataBytes.length
+        + ".\nPatches replace bytes, and can't insert or delete."));
+      return(false);
+    }
+    for (i = 0; i < dataBytes.length; i = k) // find each run of changes
+    {
+      for (k = i; (k < dataBytes.length) && (dataBytes[k] != pageBytes[k]);
+        k ++) { }
+      overlay.edit((page + i), dataBytes, i, (k - i));
+      if (k == i) k ++;           // this byte wasn't changed
+    }
+    if (samePage(dataBytes) == false) // only redraw if something changed
+    {
+      pageBytes = dataBytes;
+      showHighlights();
+    }
+    return(true);
+  }
+
+  /* Ask the user for a patch file to read or write.  Return <null> if the user
+  cancelled. */
+
+  File choosePatch(boolean saveFlag)
+  {
+    JFileChooser chooser;         // shared file chooser
+
+    chooser = HexByteChar2.fileChooser;
+    chooser.resetChoosableFileFilters();
+    chooser.setDialogTitle(saveFlag ? "Export Patch..." : "Load Patch...");
+    chooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
+    chooser.setMultiSelectionEnabled(false);
+    if ((saveFlag ? chooser.showSaveDialog(this) : chooser.showOpenDialog(
+      this)) != JFileChooser.APPROVE_OPTION)
+    {
+      return(null);
+    }
+    if (saveFlag && chooser.getSelectedFile().exists()
+      && (JOptionPane.showConfirmDialog(this, ("Replace existing file?\n"
+      + chooser.getSelectedFile().getName()), "File Already Exists",
+      JOptionPane.YES_NO_OPTION) != JOptionPane.YES_OPTION))
+    {
+      return(null);
+    }
+    return(chooser.getSelectedFile());
+  }
+
+  /* Return true if the caller's bytes are the same as the page bytes. */
+
+  boolean samePage(byte[] dataBytes)
+  {
+    return(HexByteChar2.samePrefix(dataBytes, pageBytes, pageBytes.length));
+  }
+
+  /* Highlight changed data bytes on the current page, and show the number of
+  changes. */
+
+  void showHighlights()
+  {
+    long from, to;                // part of a range on this page
+    Highlighter highlighter;      // highlights for hex text
+    int i;                        // index variable
+
+    highlighter = hexText.getHighlighter();
+    highlighter.removeAllHighlights();
+    i = Math.max(0, overlay.find(page));
+    while ((i < overlay.count) && (overlay.starts[i] < (page
+      + pageBytes.length)))
+    {
+      from = Math.max(page, overlay.starts[i]) - page;
+      to = Math.min((page + pageBytes.length), (overlay.starts[i]
+        + overlay.datas[i].length)) - page;
+      if (from < to)
+      {
+        try                       // three characters per byte, no gaps
+        {
+          highlighter.addHighlight((int) (from * 3), (int) ((to * 3) - 1),
+            painter);
+        }
+        catch (BadLocationException ble) { /* ignore positions we can't show */ }
+      }
+      i ++;
+    }
+    statusLabel.setText(overlay.count + " changes, " + overlay.changedBytes()
+      + " bytes");
+  }
+
+  /* Show the page with a given position, starting on a whole line. */
+
+  void showPage(long position)
+  {
+    char[] hex;                   // hex text for page
+    int i;                        // index variable
+    StringBuffer offsets;         // position of each line
+    String text;                  // one position in hex
+
+    page = position - (position % LINE_SIZE);
+    pageBytes = new byte[(int) Math.min(PAGE_SIZE, (overlay.size - page))];
+    overlay.read(page, pageBytes, 0, pageBytes.length);
+    hex = new char[pageBytes.length * 3]; // "XX " or "XX\n" for each byte
+    offsets = new StringBuffer();
+    for (i = 0; i < pageBytes.length; i ++)
+    {
+      hex[i * 3] = HexByteChar2.HEX_DIGITS[(pageBytes[i] >> 4) & 0x0F];
+      hex[(i * 3) + 1] = HexByteChar2.HEX_DIGITS[pageBytes[i] & 0x0F];
+      hex[(i * 3) + 2] = (((i + 1) % LINE_SIZE) == 0) ? '\n' : ' ';
+      if ((i % LINE_SIZE) == 0)
+      {
+        text = Long.toHexString(page + i).toUpperCase();
+        while (text.length() < 10) text = "0" + text;
+        offsets.append(((i > 0) ? "\n" : "") + text + " ");
+      }
+    }
+    hexText.setText(new String(hex, 0, Math.max(0, (hex.length - 1))));
+    hexText.select(0, 0);         // scroll home, default is end of text
+    offsetText.setText(offsets.toString());
+    offsetField.setText(Long.toHexString(page).toUpperCase());
+    showHighlights();
+  }
+
+} // end of HexByteChar2PatchDialog class
+
+// ------------------------------------------------------------------------- //
+
+/*
+  HexByteChar2Document class
+
+  This class keeps the state of one document: its text areas, edit histories,
+  data bytes parsed from hex text, links between bytes and text, selected
+  encoding, and results saved by tools.  Most of this program was written for
+  one document, with state in class variables.  Rather than change every
+  method, the selected document's state is loaded into those variables, and
+  saved back when another document is selected.  This is a swap, not a model
+  per document: a new class variable that belongs to one document must also be
+  added to load() and save() here.  Nothing else swaps documents: a document
+  that isn't selected (such as one following a file) changes its own fields
+  here, and tool windows remember their document and select its tab before
+  acting.  Checksums saved for a document are kept here, because a background
+  thread may finish after the user selects another document.
+
+  Some state is for the whole program, not one document.  The layout of hex
+  data bytes (bytes per group and line, separators) is set once for all tabs.
+  Background work for every document is done by the shared <workerPool> in the
+  main class, one task per tool, not by threads for each document.
+*/
+
+class HexByteChar2Document
+{
+  /* instance variables */
+
+  byte[] byteData;                // data bytes parsed from hex text, or null
+  JTextArea byteField;            // data bytes displayed in hexadecimal
+  Object byteHighlight;           // tag for linked highlight in hex data
+  HexByteChar2History byteHistory; // undo and redo for hex data bytes
+  HexByteChar2HexMap byteMap;     // where data bytes are in hex, or null
+  File byteSource;                // unchanged file in hex text, or null
+  String byteSourceKey;           // how that file was read and formatted
+  JTextArea charField;            // text characters displayed in Unicode
+  Object charHighlight;           // tag for linked highlight in text
+  HexByteChar2History charHistory; // undo and redo for text characters
+  Object encoding;                // selected character set encoding
+  java.util.Vector<Object> errorHighlights; // tags for bad data bytes
+  byte[] hashData;                // data bytes for saved checksums, or null
+  HexByteChar2Hashes hashState;   // checksums for <hashData>, or null
+  JComponent panel;               // component shown in this document's tab
+  HexByteChar2HexMap syncHexMap;  // hex data bytes from last conversion
+  HexByteChar2TextMap syncTextMap; // text characters from conversion
+
+  /* constructor */
+
+  public HexByteChar2Document(JComponent panel, JTextArea byteField,
+    JTextArea charField)
+  {
+    this.byteField = byteField;   // save caller's parameters
+    this.charField = charField;
+    this.panel = panel;
+    panel.putClientProperty(HexByteChar2Document.class, this); // find later
+    byteField.getDocument().putProperty(HexByteChar2Document.class, this);
+    charField.getDocument().putProperty(HexByteChar2Document.class, this);
+
+    byteData = null;              // nothing parsed or linked yet
+    byteHighlight = charHighlight = null;
+    byteHistory = new HexByteChar2History(byteField);
+    byteMap = null;
+    byteSource = null;
+    byteSourceKey = null;
+    charHistory = new HexByteChar2History(charField);
+    encoding = HexByteChar2.encodeDialog.getSelectedItem();
+    errorHighlights = new java.util.Vector<Object>();
+    hashData = null;
+    hashState = null;
+    syncHexMap = null;
+    syncTextMap = null;
+  }
+
+  /* One of our text areas has changed while another document is selected,
+  such as when following a file.  This is the same as userDocument() in the
+  main class, but for our own saved state. */
+
+  void changed(DocumentEvent event)
+  {
+    int i;                        // index variable
+
+    if (event.getDocument() == byteField.getDocument()) // hex data changed?
+    {
+      byteData = null;            // parse hex text again when next needed
+      byteHistory.update(event);  // remember change for undo and redo
+      byteMap = null;
+      byteSource = null;          // hex text no longer the same as file
+      for (i = 0; i < errorHighlights.size(); i ++)
+        byteField.getHighlighter().removeHighlight(errorHighlights.get(i));
+      errorHighlights.clear();
+    }
+    else                          // text characters changed
+      charHistory.update(event);
+    syncHexMap = null;            // forget links from last conversion
+    syncTextMap = null;
+    byteHighlight = HexByteChar2.showLinkedHighlight(byteField, byteHighlight,
+      null);
+    charHighlight = HexByteChar2.showLinkedHighlight(charField, charHighlight,
+      null);
+  }
+
+  /* Copy this document's state into the main class. */
+
+  void load()
+  {
+    HexByteChar2.byteData = byteData;
+    HexByteChar2.byteField = byteField;
+    HexByteChar2.byteHighlight = byteHighlight;
+    HexByteChar2.byteHistory = byteHistory;
+    HexByteChar2.byteMap = byteMap;
+    HexByteChar2.byteSource = byteSource;
+    HexByteChar2.byteSourceKey = byteSourceKey;
+    HexByteChar2.charField = charField;
+    HexByteChar2.charHighlight = charHighlight;
+    HexByteChar2.charHistory = charHistory;
+    HexByteChar2.encodeDialog.setSelectedItem(encoding);
+    HexByteChar2.errorHighlights = errorHighlights;
+    HexByteChar2.syncHexMap = syncHexMap;
+    HexByteChar2.syncTextMap = syncTextMap;
+  }
+
+  /* Copy the main class's state into this document. */
+
+  void save()
+  {
+    byteData = HexByteChar2.byteData;
+    byteField = HexByteChar2.byteField;
+    byteHighlight = HexByteChar2.byteHighlight;
+    byteHistory = HexByteChar2.byteHistory;
+    byteMap = HexByteChar2.byteMap;
+    byteSource = HexByteChar2.byteSource;
+    byteSourceKey = HexByteChar2.byteSourceKey;
+    charField = HexByteChar2.charField;
+    charHighlight = HexByteChar2.charHighlight;
+    charHistory = HexByteChar2.charHistory;
+    encoding = HexByteChar2.encodeDialog.getSelectedItem();
+    errorHighlights = HexByteChar2.errorHighlights;
+    syncHexMap = HexByteChar2.syncHexMap;
+    syncTextMap = HexByteChar2.syncTextMap;
+  }
+
+} // end of HexByteChar2Document class
+
+// ------------------------------------------------------------------------- //
+
+/*
+  HexByteChar2Inspector class
+
+  This class shows the selected data bytes as numbers: signed and unsigned
+  integers of 8 to 64 bits in both byte orders, floating point, variable-length
+  integers (LEB128, as used by protocol buffers and WebAssembly), bits, and
+  common timestamps.  With no selection, the bytes start at the caret.
+
+  The inspector is updated on every caret move, so it must not depend on the
+  size of the hex text.  Only a small window of text around the caret is read
+  from the document and parsed.  Pairs of hex digits can only be found by
+  counting from the start of a run of digits, which is nearly always in the
+  window; if not (with no separators between bytes), digits are counted from
+  the start of the line, modulo the layout of groups that formatted the text.
+  The last bytes and their description are cached, since many caret moves
+  (typing, selecting with the mouse) don't change the first bytes.
+*/
+
+class HexByteChar2Inspector extends JDialog
+{
+  /* constants */
+
+  static final int MAX_BYTES = 16; // most data bytes inspected
+  static final int WINDOW_AFTER = 256; // characters read after caret
+  static final int WINDOW_BEFORE = 4096; // characters read before caret
+  static final long serialVersionUID = 1L; // version for serialized objects
+
+  /* instance variables */
+
+  byte[] lastBytes;               // data bytes last shown, or null
+  JTextArea resultText;           // description of data bytes
+
+  /* constructor */
+
+  public HexByteChar2Inspector(Frame owner)
+  {
+    super(owner, "Inspect Bytes", false); // not modal
+
+    lastBytes = null;
+    resultText = new JTextArea();
+    resultText.setEditable(false); // user may select and copy results
+    resultText.setFont(new Font("Monospaced", Font.PLAIN,
+      HexByteChar2.byteField.getFont().getSize()));
+    this.getContentPane().add(new JScrollPane(resultText));
+    this.setDefaultCloseOperation(JDialog.DISPOSE_ON_CLOSE);
+    this.setSize(620, 600);
+    this.setLocationRelativeTo(owner);
+    update();
+    this.setVisible(true);
+  }
+
+  /* Append one line with a name and a value. */
+
+  static void append(StringBuffer buffer, String name, String value)
+  {
+    buffer.append((name + "                ").substring(0, 16));
+    buffer.append(value);
+    buffer.append('\n');
+  }
+
+  /* Return a description of the data bytes, one interpretation per line. */
+
+  static String describe(byte[] bytes)
+  {
+    StringBuffer buffer;          // faster than String for multiple appends
+    int i;                        // index variable
+    StringBuffer line;            // one line of hex or bits
+    long value;                   // one integer value
+
+    buffer = new StringBuffer();
+    if (bytes.length == 0)
+      return("No data bytes selected or after the caret.");
+    line = new StringBuffer();
+    for (i = 0; i < bytes.length; i ++)
+      line.append(((i > 0) ? " " : "") + HexByteChar2.HEX_DIGITS[(bytes[i]
+        >> 4) & 0x0F] + HexByteChar2.HEX_DIGITS[bytes[i] & 0x0F]);
+    append(buffer, "hex", line.toString());
+    line = new StringBuffer();
+    for (i = 0; i < Math.min(4, bytes.length); i ++)
+      line.append(((i > 0) ? " " : "") + Integer.toBinaryString((bytes[i]
+        & 0xFF) | 0x100).substring(1)); // keep leading zeros
+    append(buffer, "bits", line.toString());
+    buffer.append('\n');
+
+    for (i = 1; i <= 8; i *= 2)   // 8, 16, 32, 64 bits
+    {
+      if (bytes.length < i) break;
+      if (i == 1)
+      {
+        append(buffer, "int8", String.valueOf(bytes[0]));
+        append(buffer, "uint8", String.valueOf(bytes[0] & 0xFF));
+        continue;
+      }
+      value = readInteger(bytes, i, false);
+      append(buffer, ("int" + (i * 8) + " LE"), String.valueOf(signed(value,
+        i)));
+      append(buffer, ("uint" + (i * 8) + " LE"), unsigned(value));
+      value = readInteger(bytes, i, true);
+      append(buffer, ("int" + (i * 8) + " BE"), String.valueOf(signed(value,
+        i)));
+      append(buffer, ("uint" + (i * 8) + " BE"), unsigned(value));
+    }
+    if (bytes.length >= 4)
+    {
+      buffer.append('\n');
+      append(buffer, "float32 LE", String.valueOf(Float.intBitsToFloat(
+        (int) readInteger(bytes, 4, false))));
+      append(buffer, "float32 BE", String.valueOf(Float.intBitsToFloat(
+        (int) readInteger(bytes, 4, true))));
+    }
+    if (bytes.length >= 8)
+    {
+      append(buffer, "float64 LE", String.valueOf(Double.longBitsToDouble(
+        readInteger(bytes, 8, false))));
+      append(buffer, "float64 BE", String.valueOf(Double.longBitsToDouble(
+        readInteger(bytes, 8, true))));
+    }
+
+    buffer.append('\n');
+    describeVarint(buffer, bytes);
+
+    buffer.append('\n');
+    if (bytes.length >= 4)
+    {
+      append(buffer, "unix32 LE", timestamp(readInteger(bytes, 4, false)
+        * 1000L));
+      append(buffer, "unix32 BE", timestamp(readInteger(bytes, 4, true)
+        * 1000L));
+      append(buffer, "dos LE", dosTime((int) readInteger(bytes, 4, false)));
+    }
+    if (bytes.length >= 8)
+    {
+      append(buffer, "unix64 ms LE", timestamp(readInteger(bytes, 8,
+        false)));
+      append(buffer, "unix64 ms BE", timestamp(readInteger(bytes, 8, true)));
+      value = readInteger(bytes, 8, false); // 100 ns since 1601-01-01
+      append(buffer, "filetime LE", ((value < 0) ? "-" : timestamp((value
+        / 10000L) - 11644473600000L)));
+    }
+    return(buffer.toString());
+  }
+
+  /* Describe a variable-length integer at the start of the data bytes: seven
+  bits per byte, low bits first, with the high bit set on all but the last. */
+
+  static void describeVarint(StringBuffer buffer, byte[] bytes)
+  {
+    int i;                        // index variable
+    int shift;                    // bit position for next seven bits
+    long value;                   // unsigned value so far
+
+    shift = 0;
+    value = 0;
+    for (i = 0; (i < bytes.length) && (i < 10); i ++)
+    {
+      value |= ((long) (bytes[i] & 0x7F)) << shift;
+      shift += 7;
+      if ((bytes[i] & 0x80) == 0) // last byte of varint
+      {
+        append(buffer, "uleb128", (unsigned(value) + "  (" + (i + 1)
+          + " bytes)"));
+        append(buffer, "sleb128", String.valueOf((shift < 64)
+          ? ((value << (64 - shift)) >> (64 - shift)) : value));
+        append(buffer, "zigzag", String.valueOf((value >>> 1)
+          ^ (- (value & 1))));
+        return;
+      }
+    }
+    append(buffer, "uleb128", "(incomplete)");
+  }
+
+  /* Return an MS-DOS date and time, as in zip files: time in the low 16 bits,
+  date in the high 16 bits. */
+
+  static String dosTime(int value)
+  {
+    int day, hour, minute, month, second, year; // parts of date and time
+
+    day = (value >> 16) & 0x1F;
+    hour = (value >> 11) & 0x1F;
+    minute = (value >> 5) & 0x3F;
+    month = (value >> 21) & 0x0F;
+    second = (value & 0x1F) * 2;
+    year = ((value >> 25) & 0x7F) + 1980;
+    if ((day < 1) || (month < 1) || (month > 12) || (hour > 23)
+      || (minute > 59) || (second > 59))
+    {
+      return("-");                // not a valid date and time
+    }
+    return(year + "-" + twoDigits(month) + "-" + twoDigits(day) + " "
+      + twoDigits(hour) + ":" + twoDigits(minute) + ":" + twoDigits(second));
+  }
+
+  /* Read an integer of 1 to 8 bytes from the start of the data bytes. */
+
+  static long readInteger(byte[] bytes, int width, boolean bigFlag)
+  {
+    int i;                        // index variable
+    long value;                   // integer value
+
+    value = 0;
+    for (i = 0; i < width; i ++)
+      value = (value << 8) | (bytes[bigFlag ? i : (width - 1 - i)] & 0xFF);
+    return(value);
+  }
+
+  /* Return up to MAX_BYTES data bytes for the selection in the hex text, or
+  after the caret if there is no selection. */
+
+  static byte[] selectedBytes(JTextArea field)
+  {
+    int back;                     // start of run of digits before caret
+    byte[] bytes;                 // data bytes parsed from window
+    int caret;                    // caret position in window
+    Document document;            // hex text
+    int end, start;               // selected text positions
+    int from, to;                 // window of text positions
+    int group;                    // characters in each group after the first
+    int i;                        // index variable
+    int line;                     // characters from start of line to caret
+    byte[] result;                // data bytes, at most MAX_BYTES
+    Segment text;                 // characters from window, not copied
+
+    document = field.getDocument();
+    start = field.getSelectionStart();
+    end = field.getSelectionEnd();
+    from = Math.max(0, (start - WINDOW_BEFORE));
+    to = Math.min(document.getLength(), ((start < end) ? Math.min(end,
+      (start + WINDOW_AFTER)) : (start + WINDOW_AFTER)));
+    text = new Segment();
+    try { document.getText(from, (to - from), text); }
+    catch (BadLocationException ble) { return(new byte[0]); }
+
+    /* Find where the byte with the caret begins.  Digits pair up from the
+    start of each run of digits. */
+
+    caret = start - from;
+    for (back = caret; back > 0; back --)
+      if (HexByteChar2HexMap.isHexDigit(text.array[text.offset + back - 1])
+        == false) break;
+    if ((back == 0) && (from > 0)) // run starts before window, very rare
+    {
+      /* Lines always start with a data byte.  The first group has no
+      separator before it, and each group after that has one. */
+
+      line = start - document.getDefaultRootElement().getElement(document
+        .getDefaultRootElement().getElementIndex(start)).getStartOffset();
+      group = (2 * HexByteChar2.byteGroupSize)
+        + HexByteChar2.groupGapString.length();
+      if (line >= (2 * HexByteChar2.byteGroupSize)) // after first group?
+        line = ((line - (2 * HexByteChar2.byteGroupSize)) % group)
+          - HexByteChar2.groupGapString.length();
+      back = caret - Math.max(0, line); // same pairing as start of group
+    }
+    if (((caret - back) % 2) == 1) // caret is after first digit of a byte
+      caret --;
+
+    /* Parse the window, ignoring anything that isn't hex, and don't keep a
+    byte that may have been cut by the end of the window. */
+
+    bytes = HexByteChar2.hexDataToBytes(new String(text.array, (text.offset
+      + caret), (text.count - caret)), true);
+    i = bytes.length;
+    if ((to < end) || ((start >= end) && (to < document.getLength())))
+      i = Math.max(0, (i - 1));   // window ended before selection or text
+    i = Math.min(i, MAX_BYTES);
+    if (i < bytes.length)
+    {
+      result = new byte[i];
+      System.arraycopy(bytes, 0, result, 0, i);
+      bytes = result;
+    }
+    return(bytes);
+  }
+
+  /* Return a signed value from an integer of 1 to 8 bytes. */
+
+  static long signed(long value, int width)
+  {
+    return((width < 8) ? ((value << (64 - (8 * width))) >> (64 - (8
+      * width))) : value);
+  }
+
+  /* Return a date and time in UTC for milliseconds since 1970, or "-" if the
+  year isn't reasonable. */
+
+  static String timestamp(long millis)
+  {
+    java.text.SimpleDateFormat format; // date and time as text
+
+    if ((millis < -2208988800000L) || (millis > 4102444800000L))
+      return("-");                // before 1900 or after 2099
+    format = new java.text.SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+    format.setTimeZone(java.util.TimeZone.getTimeZone("UTC"));
+    return(format.format(new java.util.Date(millis)) + " UTC");
+  }
+
+  /* Return a number from 0 to 99 as two digits. */
+
+  static String twoDigits(int value)
+  {
+    return((value < 10) ? ("0" + value) : String.valueOf(value));
+  }
+
+  /* Return a 64-bit integer as unsigned decimal. */
+
+  static String unsigned(long value)
+  {
+    if (value >= 0) return(String.valueOf(value));
+    return(java.math.BigInteger.valueOf(value).add(java.math.BigInteger.ONE
+      .shiftLeft(64)).toString());
+  }
+
+  /* Show the selected data bytes, unless they are the same as last time. */
+
+  void update()
+  {
+    byte[] bytes;                 // selected data bytes
+
+    bytes = selectedBytes(HexByteChar2.byteField);
+    if ((lastBytes != null) && (lastBytes.length == bytes.length)
+      && HexByteChar2.samePrefix(lastBytes, bytes, bytes.length))
+    {
+      return;                     // same as before, nothing to do
+    }
+    lastBytes = bytes;
+    resultText.setText(describe(bytes));
+    resultText.select(0, 0);      // scroll home, default is end of text
+  }
+
+} // end of HexByteChar2Inspector class
+
+// ------------------------------------------------------------------------- //
+
+/*
+  HexByteChar2SelfTest class
+
+  Compare the conversion engines with simple reference versions over random
+  inputs: hex text from data bytes (all at once, appended, by lines, streamed,
+  dumped to a file), data bytes from hex text (with and without errors
+  ignored), the "Zorg" clean up, the index of data bytes in hex text, raw
+  bytes, decoding in steps for linked selections, reporting bad data bytes in
+  pieces, and array counts in binary templates (including counts too big for
+  the data).  Each round picks a random layout of bytes per line and per group,
+  and separators like the -b and -g options, sometimes the ones from the
+  command line.  Each round decodes with the next installed character set, so
+  all are tried.
+
+  The reference versions are written for clarity, not speed: one character at
+  a time, with division, and with the Java library doing the decoding in one
+  step.  Each round has its own seed, so a failure can be repeated alone.
+*/
+
+class HexByteChar2SelfTest
+{
+  static final String ALPHABET = "0123456789ABCDEFabcdef0123456789abcdef"
+    + " \t\n\r\u0000,.-:;()[]{}<>/\\|'\"!?#$%&*+=@^_`~\u007FGgXxZz\u00A0"
+    + "\u00E9\u0660\u3000\uFF10\uFF21\uD83D\uDE00"; // characters for hex text
+  static final String[] GAPS = {" ", " ", "", "  ", ",", ", ", "-", ":",
+    "\t", "\r\n", " | ", "0x", "h", "\u00B7", "\u3000"}; // separators
+  static final int QUICK_ROUNDS = 5000; // rounds with no time limit
+  static final int STREAM_ROUNDS = 64; // rounds between big stream inputs
+  static final HexByteChar2Template TEMPLATE = HexByteChar2Template.compile(
+    "n u64le\na u64le[n]\nb u32le"); // array with count from data
+
+  static Charset[] charsets;      // all installed character sets
+  static long checks;             // number of comparisons made
+  static String failure;          // first failure, or <null>
+  static long inputs;             // number of random inputs generated
+  static String userByteGap, userGroupGap; // separators from command line
+  static int userGroupSize, userLineSize; // bytes per group, line
+
+  /* Run rounds of random tests, starting with a given seed, until a number of
+  rounds or a number of seconds.  Stop at the first failure.  Return an exit
+  status for the caller. */
+
+  static int selfTest(long seed, long rounds, int seconds)
+  {
+    long deadline;                // clock time to stop, or zero
+    long elapsed;                 // actual run time in nanoseconds
+    long round;                   // number of rounds finished
+
+    charsets = Charset.availableCharsets().values().toArray(new Charset[0]);
+    checks = inputs = 0;
+    failure = null;
+    userByteGap = HexByteChar2.byteGapString;
+    userGroupGap = HexByteChar2.groupGapString;
+    userGroupSize = HexByteChar2.byteGroupSize;
+    userLineSize = HexByteChar2.byteLineSize;
+    deadline = (seconds > 0) ? (System.currentTimeMillis() + (seconds
+      * 1000L)) : 0;
+    System.out.println("Self-test starting with seed " + seed + ", "
+      + ((seconds > 0) ? (seconds + " seconds") : (rounds + " rounds"))
+      + ", " + charsets.length + " character sets");
+    elapsed = System.nanoTime();
+    for (round = 0; round < rounds; round ++)
+    {
+      if ((deadline > 0) && (System.currentTimeMillis() >= deadline))
+        break;
+      try { runRound(seed + round); }
+      catch (Throwable t)         // any exception is a failure, too
+      {
+        fail("exception", t.toString());
+      }
+      if (failure != null)
+      {
+        System.out.println("Self-test failed in round with seed " + (seed
+          + round) + " (repeat with -selftest(" + (seed + round) + ")):");
+        System.out.println(failure);
+        return(HexByteChar2.EXIT_FAILURE);
+      }
+    }
+    elapsed = System.nanoTime() - elapsed;
+    System.out.println("Self-test passed: " + round + " rounds, " + inputs
+      + " inputs, " + checks + " checks in " + HexByteChar2.formatDecimal(
+      (elapsed / 1e9), 1) + " seconds");
+    return(HexByteChar2.EXIT_UNKNOWN);
+  }
+
+  /* Compare two byte arrays, either of which may be <null>. */
+
+  static boolean equal(byte[] first, byte[] second)
+  {
+    if ((first == null) || (second == null)) return(first == second);
+    return(java.util.Arrays.equals(first, second));
+  }
+
+  /* Count one comparison, and remember the first one that fails.  The input
+  is only described for a failure, since most checks pass. */
+
+  static void check(String engine, boolean okay, Object input)
+  {
+    check(engine, okay, "", input);
+  }
+
+  static void check(String engine, boolean okay, String note, Object input)
+  {
+    checks ++;
+    if ((okay == false) && (failure == null))
+      fail(engine, (note + ((input instanceof byte[]) ? preview((byte[])
+        input) : preview((String) input))));
+  }
+
+  /* Remember a failure with the current layout. */
+
+  static void fail(String engine, String detail)
+  {
+    if (failure == null)
+      failure = "  engine: " + engine + "\n  layout: -n("
+        + HexByteChar2.byteGroupSize + "," + HexByteChar2.byteLineSize
+        + ") -b\"" + HexByteChar2.byteGapString + "\" -g\""
+        + HexByteChar2.groupGapString + "\"\n  " + detail;
+  }
+
+  /* Return a short description of data bytes for a failure. */
+
+  static String preview(byte[] data)
+  {
+    byte[] part;                  // first data bytes only
+
+    part = new byte[Math.min(data.length, 32)];
+    System.arraycopy(data, 0, part, 0, part.length);
+    return(data.length + " data bytes: " + refFromBytes(part, " ", " ",
+      part.length, part.length) + ((part.length < data.length) ? " ..."
+      : ""));
+  }
+
+  /* Return a short description of text for a failure. */
+
+  static String preview(String text)
+  {
+    int i;                        // index variable
+    StringBuffer result;          // escaped characters
+
+    result = new StringBuffer(text.length() + " characters: \"");
+    for (i = 0; i < Math.min(text.length(), 64); i ++)
+    {
+      if ((text.charAt(i) >= 0x20) && (text.charAt(i) < 0x7F))
+        result.append(text.charAt(i));
+      else
+        result.append("\\u" + Integer.toHexString(text.charAt(i) | 0x10000)
+          .substring(1));
+    }
+    result.append((text.length() > 64) ? "\" ..." : "\"");
+    return(result.toString());
+  }
+
+  /* Return random data bytes: uniform, a few interesting values, ASCII text,
+  or UTF-8 text.  Most are short, and a few cross the block boundaries of the
+  engines. */
+
+  static byte[] randomBytes(java.util.Random random, int size)
+  {
+    final int[] VALUES = {0x00, 0x0A, 0x0D, 0x20, 0x30, 0x41, 0x7F, 0x80,
+      0x9F, 0xBF, 0xC0, 0xC3, 0xE2, 0xED, 0xEF, 0xF0, 0xF4, 0xFE, 0xFF};
+    int i;                        // index variable
+    int kind;                     // which kind of data
+    byte[] result;                // our random data bytes
+    StringBuffer text;            // random text for UTF-8
+
+    inputs ++;
+    result = new byte[size];
+    kind = random.nextInt(4);
+    if (kind == 0)                // all byte values equally likely
+      random.nextBytes(result);
+    else if (kind == 1)           // values that are special somewhere
+      for (i = 0; i < size; i ++)
+        result[i] = (byte) VALUES[random.nextInt(VALUES.length)];
+    else if (kind == 2)           // printable ASCII
+      for (i = 0; i < size; i ++)
+        result[i] = (byte) (0x20 + random.nextInt(0x5F));
+    else                          // UTF-8, then cut to size
+    {
+      text = new StringBuffer();
+      while (text.length() < size)
+        text.appendCodePoint(random.nextBoolean() ? random.nextInt(0x800)
+          : random.nextInt(0x110000));
+      try { System.arraycopy(text.toString().getBytes("UTF-8"), 0, result, 0,
+        size); }
+      catch (UnsupportedEncodingException uee) { /* UTF-8 always exists */ }
+    }
+    return(result);
+  }
+
+  /* Return random hex text: good hex text with a few mistakes, or anything
+  from a mix of hex digits, punctuation, letters, and Unicode. */
+
+  static String randomHexText(java.util.Random random, String hex)
+  {
+    int i;                        // index variable
+    int rate;                     // how often a character is changed
+    StringBuffer result;          // our random text
+
+    inputs ++;
+    result = new StringBuffer();
+    if ((hex.length() > 0) && random.nextBoolean())
+    {
+      rate = 1 + random.nextInt(50);
+      for (i = 0; i < hex.length(); i ++)
+      {
+        if (random.nextInt(rate) != 0)
+          result.append(hex.charAt(i)); // most characters are kept
+        else if (random.nextBoolean()) // some are replaced
+          result.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        else if (random.nextBoolean()) // some get an extra character
+          result.append(hex.charAt(i)).append(ALPHABET.charAt(random.nextInt(
+            ALPHABET.length())));
+      }                           // and the rest are deleted
+    }
+    else
+    {
+      i = random.nextInt(random.nextBoolean() ? 100 : 3000);
+      while (i -- > 0)
+        result.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+    }
+    return(result.toString());
+  }
+
+  /* Reference: format data bytes as hex text.  This is the original (slow)
+  hexDataFromBytes() from before table lookups, with the layout as parameters. */
+
+  static String refFromBytes(byte[] input, String byteGapString,
+    String groupGapString, int byteGroupSize, int byteLineSize)
+  {
+    StringBuffer buffer;          // faster than String for multiple appends
+    int i;                        // index variable
+    int value;                    // one binary data byte as an integer
+
+    buffer = new StringBuffer();  // start with empty string buffer
+    for (i = 0; i < input.length; i ++) // for each input byte
+    {
+      if (i == 0) { /* do nothing: no space at beginning */ }
+      else if ((i % byteLineSize) == 0) buffer.append('\n'); // start line
+      else if ((i % byteGroupSize) == 0) buffer.append(groupGapString);
+      else buffer.append(byteGapString); // usually a space between bytes
+      value = input[i] & HexByteChar2.BYTE_MASK; // get one binary data byte
+      buffer.append(HexByteChar2.HEX_DIGITS[(value >> 4) & 0x0F]);
+      buffer.append(HexByteChar2.HEX_DIGITS[value & 0x0F]);
+    }
+    return(buffer.toString());    // give caller our converted string
+  }
+
+  /* Reference: find the first and last hex digit of each data byte.  Any other
+  character ends a byte, even a single digit. */
+
+  static int[] refPositions(String text)
+  {
+    int count;                    // number of data bytes found
+    int digits;                   // digits in current data byte
+    int i;                        // index variable
+    int[] result;                 // start and end of each data byte
+
+    count = digits = 0;
+    result = new int[text.length() + 2];
+    for (i = 0; i < text.length(); i ++)
+    {
+      if (Character.digit(text.charAt(i), 16) < 0
+        || (text.charAt(i) > 0x7F)) // not an ASCII hex digit
+      {
+        digits = 0;
+      }
+      else if (digits == 0)       // first digit starts a byte
+      {
+        result[count * 2] = i;
+        result[(count * 2) + 1] = i + 1;
+        count ++;
+        digits = 1;
+      }
+      else                        // second digit ends this byte
+      {
+        result[(count * 2) - 1] = i + 1;
+        digits = 0;
+      }
+    }
+    return(HexByteChar2History.copyArray(result, (count * 2)));
+  }
+
+  /* Reference: parse hex text as data bytes.  This is the original (slow)
+  hexDataToBytes() from before table lookups, without the pop-up message.
+  Return <null> for an error. */
+
+  static byte[] refToBytes(String input, boolean ignoreErrorsFlag)
+  {
+    char ch;                      // one character from input string
+    byte[] dataBytes;             // encoded (binary) data bytes
+    int dataLength;               // number of data bytes in <dataBytes>
+    int digitCount;               // number of digits found in current byte
+    int i;                        // index variable
+    int inputLength;              // number of characters in <input>
+    byte[] result;                // cleaned up result with correct length
+    int value;                    // one binary data byte as an integer
+
+    dataLength = 0;               // no binary data bytes found
+    digitCount = 0;               // no digits found in current byte
+    inputLength = input.length(); // number of hex digits or spaces, etc
+    dataBytes = new byte[inputLength]; // always more than what we need
+    value = 0;                    // no initial value for this data byte
+    for (i = 0; i < inputLength; i ++)
+    {
+      ch = input.charAt(i);       // get one hex digit, punctuation, other
+      if ((ch >= '0') && (ch <= '9')) // decimal digit?
+      {
+        value = (value << 4) + (ch - '0'); // shift old left, add new digit
+        digitCount ++;            // at least one digit found
+      }
+      else if ((ch >= 'A') && (ch <= 'F')) // uppercase hex digit?
+      {
+        value = (value << 4) + (ch - 'A' + 10);
+        digitCount ++;
+      }
+      else if ((ch >= 'a') && (ch <= 'f')) // lowercase hex digit?
+      {
+        value = (value << 4) + (ch - 'a' + 10);
+        digitCount ++;
+      }
+      else if (ignoreErrorsFlag   // if we ignore all other characters
+        || ((ch >= 0x00) && (ch <= 0x2F)) // ASCII Unicode punctuation
+        || ((ch >= 0x3A) && (ch <= 0x40))
+        || ((ch >= 0x5B) && (ch <= 0x60))
+        || ((ch >= 0x7B) && (ch <= 0x7F))) // safe up to 0xBF
+      {
+        if (digitCount > 0) digitCount = 2; // accept a single digit
+      }
+      else                        // draw the line at obviously bad input
+        return(null);             // don't bother doing anything more
+
+      if (digitCount >= 2)        // new binary byte every two hex digits
+      {
+        dataBytes[dataLength ++] = (byte) value; // save one data byte
+        digitCount = value = 0;   // no half data for next digit
+      }
+    }
+    if (digitCount > 0)           // could be a trailing single digit
+    {
+      dataBytes[dataLength ++] = (byte) value;
+    }
+
+    result = new byte[dataLength]; // truncate array to correct length
+    for (i = 0; i < dataLength; i ++)
+      result[i] = dataBytes[i];
+    return(result);               // give caller correct byte array
+  }
+
+  /* Run one round of tests, with all random choices from one seed. */
+
+  static void runRound(long seed) throws IOException
+  {
+    ByteBuffer buffer;            // data bytes given to validator in pieces
+    Charset charset;              // character set for this round
+    HexByteChar2Validator checker, pieces; // bad data bytes, whole or pieces
+    byte[] data;                  // random data bytes
+    javax.swing.text.PlainDocument document; // hex text for index
+    String expected;              // result from reference version
+    byte[] first, rest;           // data bytes split in two parts
+    int from, to;                 // range of random data bytes
+    String hex;                   // hex text from engine
+    HexByteChar2HexMap hexMap;    // index of data bytes in hex text
+    int i, k;                     // index variables
+    byte[] parsed;                // data bytes from engine
+    StringWriter output;          // lines from layout engine
+    int[] positions;              // start and end of each data byte
+    java.util.Random random;      // all random choices for this round
+    HexByteChar2Node root, node;  // template applied to data bytes
+    boolean safeFlag;             // true if separators can't look like data
+    String text;                  // random hex text
+    String zorg;                  // hex text after "Zorg" clean up
+
+    random = new java.util.Random(seed);
+    if (random.nextInt(8) == 0)   // sometimes, layout from command line
+    {
+      HexByteChar2.byteGapString = userByteGap;
+      HexByteChar2.byteGroupSize = userGroupSize;
+      HexByteChar2.byteLineSize = userLineSize;
+      HexByteChar2.groupGapString = userGroupGap;
+    }
+    else if (random.nextInt(8) == 0) // sometimes, wrapped lines
+    {
+      HexByteChar2.byteGapString = GAPS[random.nextInt(GAPS.length)];
+      HexByteChar2.byteGroupSize = HexByteChar2.byteLineSize = 1440;
+      HexByteChar2.groupGapString = GAPS[random.nextInt(GAPS.length)];
+    }
+    else                          // like -n(#,#) with -b and -g options
+    {
+      HexByteChar2.byteGapString = GAPS[random.nextInt(GAPS.length)];
+      HexByteChar2.byteGroupSize = 1 + random.nextInt(16);
+      HexByteChar2.byteLineSize = HexByteChar2.byteGroupSize * (1
+        + random.nextInt(8));
+      HexByteChar2.groupGapString = GAPS[random.nextInt(GAPS.length)];
+    }
+    safeFlag = true;              // same rule as rememberDataBytes()
+    text = HexByteChar2.byteGapString + HexByteChar2.groupGapString;
+    for (i = 0; i < text.length(); i ++)
+      if ((text.charAt(i) > 0x7F) || Character.isLetterOrDigit(text.charAt(
+        i))) safeFlag = false;
+
+    /* Hex text from data bytes, all at once and appended in two parts. */
+
+    data = randomBytes(random, ((random.nextInt(16) == 0) ? random.nextInt(
+      0x8000) : random.nextInt(200)));
+    hex = HexByteChar2.hexDataFromBytes(data);
+    expected = refFromBytes(data, HexByteChar2.byteGapString,
+      HexByteChar2.groupGapString, HexByteChar2.byteGroupSize,
+      HexByteChar2.byteLineSize);
+    check("hexDataFromBytes", hex.equals(expected), data);
+    output = new StringWriter();
+    HexByteChar2Layout.classic().export(data, output);
+    check("Layout classic", hex.equals(output.toString()), data);
+    k = random.nextInt(data.length + 1);
+    first = new byte[k];
+    rest = new byte[data.length - k];
+    System.arraycopy(data, 0, first, 0, first.length);
+    System.arraycopy(data, k, rest, 0, rest.length);
+    check("hexDataFromBytes appended", expected.equals(
+      HexByteChar2.hexDataFromBytes(first) + HexByteChar2.hexDataFromBytes(
+      rest, rest.length, k)), ("split at " + k + ", "), data);
+
+    /* Round trip, when separators can't be mistaken for data. */
+
+    if (safeFlag)
+    {
+      check("hexDataToBytes round trip", equal(data,
+        HexByteChar2.hexDataToBytes(hex, false)), data);
+    }
+
+    /* Data bytes from random hex text, and where each byte is. */
+
+    text = randomHexText(random, hex);
+    parsed = HexByteChar2.hexDataToBytes(text, true);
+    check("hexDataToBytes ignore errors", equal(parsed, refToBytes(text,
+      true)), text);
+    check("hexDataToBytes", equal(HexByteChar2.hexDataToBytes(text, false),
+      refToBytes(text, false)), text);
+    zorg = HexByteChar2.hexDataFromBytes(parsed);
+    if (safeFlag)                 // clean up twice is same as once
+    {
+      check("Zorg", zorg.equals(HexByteChar2.hexDataFromBytes(
+        HexByteChar2.hexDataToBytes(zorg, true))), text);
+    }
+
+    document = new javax.swing.text.PlainDocument();
+    k = random.nextInt(5);        // hex text may start after other text
+    try { document.insertString(0, ("=====".substring(0, k) + text), null); }
+    catch (BadLocationException ble) { throw new IOException(ble.toString()); }
+    hexMap = new HexByteChar2HexMap(document, text, k);
+    positions = refPositions(text);
+    check("HexMap count", (hexMap.byteCount == (positions.length / 2)),
+      text);
+    for (from = 0; from < Math.min(hexMap.byteCount, 256); from ++)
+    {                             // all data bytes, or a random sample
+      i = (hexMap.byteCount <= 256) ? from : random.nextInt(
+        hexMap.byteCount);
+      if ((hexMap.byteStart(i) != (k + positions[i * 2]))
+        || (hexMap.byteEnd(i) != (k + positions[(i * 2) + 1])))
+      {
+        break;                    // first data byte in wrong place
+      }
+    }
+    check("HexMap byteStart byteEnd", (from == Math.min(hexMap.byteCount,
+      256)), ("byte " + i + ", "), text);
+    for (i = 0; i < 8; i ++)
+    {
+      from = random.nextInt(text.length() + 1);
+      for (to = 0; (to < positions.length) && (positions[to + 1] <= from);
+        to += 2) { }
+      check("HexMap bytesEndedBy", (hexMap.bytesEndedBy(k + from) == (to
+        / 2)), ("position " + from + ", "), text);
+      for (to = 0; (to < positions.length) && (positions[to] < from);
+        to += 2) { }
+      check("HexMap bytesStartedBefore", (hexMap.bytesStartedBefore(k
+        + from) == (to / 2)), ("position " + from + ", "), text);
+    }
+
+    /* Raw bytes as characters. */
+
+    check("rawBytesToString", HexByteChar2.rawBytesToString(data).equals(
+      new String(data, "ISO-8859-1")), data);
+    check("rawStringToBytes", equal(data, HexByteChar2.rawStringToBytes(
+      HexByteChar2.rawBytesToString(data))), data);
+
+    /* Decode with the next character set: in steps for linked selections,
+    and in pieces for reporting bad data bytes. */
+
+    charset = charsets[(int) (Math.abs(seed) % charsets.length)];
+    if (random.nextBoolean() && charset.canEncode())
+    {
+      data = new String(randomBytes(random, random.nextInt(300)),
+        "UTF-8").getBytes(charset.name()); // mostly valid text
+    }
+    expected = charset.newDecoder().onMalformedInput(CodingErrorAction
+      .REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE).decode(
+      ByteBuffer.wrap(data)).toString();
+    check(("TextMap " + charset.name()), expected.equals(
+      new HexByteChar2TextMap(data, charset, 0).decode()), data);
+
+    checker = new HexByteChar2Validator(charset);
+    checker.scan(ByteBuffer.wrap(data), true);
+    pieces = new HexByteChar2Validator(charset);
+    buffer = ByteBuffer.allocate(data.length + 16);
+    for (from = 0; from < data.length; from = to)
+    {
+      to = Math.min(data.length, (from + 1 + random.nextInt(64)));
+      buffer.put(data, from, (to - from));
+      buffer.flip();
+      pieces.scan(buffer, false);
+      buffer.compact();           // keep incomplete sequence at end
+    }
+    buffer.flip();
+    pieces.scan(buffer, true);
+    check(("Validator " + charset.name()), (charset.name().endsWith(
+      "AutoDetect")               // guesses differently from less input
+      || ((checker.total == pieces.total)
+      && java.util.Arrays.equals(checker.starts, pieces.starts)
+      && java.util.Arrays.equals(checker.ends, pieces.ends)
+      && java.util.Arrays.equals(checker.unmappableFlags,
+      pieces.unmappableFlags))), data);
+
+    /* A template array with a count from the data, sometimes so big that
+    multiplying by the element size overflows. */
+
+    data = randomBytes(random, (8 + random.nextInt(64)));
+    i = random.nextInt(4);
+    if (i > 0)                    // random bytes are the other case
+    {
+      ByteBuffer.wrap(data).order(java.nio.ByteOrder.LITTLE_ENDIAN).putLong(
+        0, ((i == 1) ? 0x2000000000000001L : ((i == 2) ? Long.MAX_VALUE
+        : random.nextInt(12))));
+    }
+    root = new HexByteChar2Node(null, 0, TEMPLATE, ByteBuffer.wrap(data), 0,
+      1, -1);
+    root.layout();
+    node = (HexByteChar2Node) root.getChildAt(1);
+    check("Template count", (node.getChildCount() == Math.min(Math.max(0,
+      ByteBuffer.wrap(data).order(java.nio.ByteOrder.LITTLE_ENDIAN).getLong(
+      0)), ((data.length - 8) / 8))), data);
+    for (k = 0; k < node.getChildCount(); k ++)
+      node.getChildAt(k).toString(); // throws if past end of data
+    root.getChildAt(2).toString();
+
+    /* Now and then, big inputs through the streaming engines. */
+
+    if ((seed % STREAM_ROUNDS) == 0)
+      runStreams(random);
+  }
+
+  /* Compare the streaming engines with hexDataFromBytes(), for data bytes
+  bigger than one block. */
+
+  static void runStreams(java.util.Random random) throws IOException
+  {
+    byte[] data;                  // random data bytes
+    byte[] expected;              // hex text as UTF-8 bytes
+    File file;                    // temporary file for data bytes
+    String hex;                   // hex text from engine
+    File output;                  // temporary file for hex dump
+    FileOutputStream stream;      // for writing data bytes to file
+
+    data = randomBytes(random, (HexByteChar2Prefetch.BLOCK_SIZE
+      + random.nextInt(HexByteChar2Prefetch.BLOCK_SIZE)));
+    hex = HexByteChar2.hexDataFromBytes(data);
+    check("readHexStream", hex.equals(HexByteChar2.readHexStream(
+      new ByteArrayInputStream(data))), data);
+
+    expected = hex.getBytes("UTF-8");
+    file = File.createTempFile("HexByteChar2", ".bin");
+    output = File.createTempFile("HexByteChar2", ".txt");
+    try
+    {
+      stream = new FileOutputStream(file);
+      try { stream.write(data); }
+      finally { stream.close(); }
+      check("writeHexDump mapped", ((HexByteChar2.writeHexDump(
+        new FileInputStream(file), output) == data.length) && equal(expected,
+        readAll(output))), data);
+      check("writeHexDump stream", ((HexByteChar2.writeHexDump(
+        new BufferedInputStream(new FileInputStream(file)), output)
+        == data.length) && equal(expected, readAll(output))), data);
+    }
+    finally
+    {
+      file.delete();
+      output.delete();
+    }
+  }
+
+  /* Read all bytes from a small file. */
+
+  static byte[] readAll(File file) throws IOException
+  {
+    byte[] buffer;                // all bytes from file
+    FileInputStream input;        // file input stream
+
+    buffer = new byte[(int) file.length()];
+    input = new FileInputStream(file);
+    try { HexByteChar2.readFully(input, buffer); }
+    finally { input.close(); }
+    return(buffer);
+  }
+
+} // end of HexByteChar2SelfTest class
+
+// ------------------------------------------------------------------------- //
+
+/*
+  HexByteChar2Layout class
+
+  Format data bytes one line at a time: an optional offset column, hex data
+  bytes with the usual separators between bytes and groups, and an optional
+  gutter with the characters decoded from each line.  Any line can be made
+  without the lines before it, so a view only formats the rows it shows.  With
+  no offsets and no gutter, the lines joined by newlines are exactly the same
+  as hexDataFromBytes() with the same layout.
+
+  The gutter decodes each line separately, so a character that starts on the
+  line before shows as a bad sequence ("."), the same as other hex viewers.
+  Each data byte has one cell in the gutter: the character that starts there,
+  a space for the rest of a multi-byte character, or "." for controls and bad
+  sequences.
+*/
+
+class HexByteChar2Layout
+{
+  /* instance variables */
+
+  String byteGap, groupGap;       // separators between bytes, groups
+  Charset charset;                // encoding for gutter, or <null> if raw
+  int groupSize, lineSize;        // data bytes per group, per line
+  boolean gutterFlag;             // true if characters follow hex bytes
+  int offsetDigits;               // hex digits in offsets, or zero for none
+
+  /* constructor */
+
+  public HexByteChar2Layout(int groupSize, int lineSize, String byteGap,
+    String groupGap)
+  {
+    this.byteGap = byteGap;       // save caller's parameters
+    this.charset = null;
+    this.groupGap = groupGap;
+    this.groupSize = groupSize;
+    this.gutterFlag = false;
+    this.lineSize = lineSize;
+    this.offsetDigits = 0;
+  }
+
+  /* Return the layout of the hex data bytes in the main window. */
+
+  static HexByteChar2Layout classic()
+  {
+    return(new HexByteChar2Layout(HexByteChar2.byteGroupSize,
+      HexByteChar2.byteLineSize, HexByteChar2.byteGapString,
+      HexByteChar2.groupGapString));
+  }
+
+  /* Write all lines, separated by newlines.  The output is not closed. */
+
+  void export(byte[] data, Writer output) throws IOException
+  {
+    int row;                      // index variable for lines
+
+    for (row = 0; row < rows(data.length); row ++)
+    {
+      if (row > 0) output.write('\n');
+      output.write(line(data, row));
+    }
+  }
+
+  /* Return the gutter for some data bytes, one cell per byte. */
+
+  String gutter(byte[] data, int from, int to)
+  {
+    CharBuffer chars;             // characters from one decode step
+    CoderResult coder;            // result from one decode step
+    CharsetDecoder decoder;       // converts data bytes to characters
+    ByteBuffer input;             // data bytes for this line
+    int k;                        // index variable
+    StringBuffer result;          // one cell for each data byte
+    int start;                    // first data byte of current character
+
+    result = new StringBuffer();
+    if (charset == null)          // raw data bytes are one-to-one
+    {
+      for (k = from; k < to; k ++)
+        result.append(printable((char) (data[k] & 0xFF)));
+      return(result.toString());
+    }
+    chars = CharBuffer.allocate(16);
+    decoder = charset.newDecoder().onMalformedInput(CodingErrorAction
+      .REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+    input = ByteBuffer.wrap(data, from, (to - from));
+    start = from;
+    for (k = from + 1; k <= to; k ++) // one more data byte each step
+    {
+      input.limit(k);
+      coder = decoder.decode(input, chars, (k == to));
+      if (k == to) decoder.flush(chars);
+      if ((chars.position() > 0) || coder.isOverflow())
+      {
+        chars.flip();             // characters that started at <start>
+        while (result.length() < (start - from)) // rest of last character
+          result.append(' ');
+        if (Character.isHighSurrogate(chars.get(0)) && (chars.limit() > 1))
+          result.append(chars.get(0)).append(chars.get(1));
+        else
+          result.append(printable(chars.get(0)));
+        chars.clear();
+        start = input.position();
+      }
+    }
+    while (result.length() < (to - from)) // bytes with no characters left
+      result.append(' ');
+    return(result.toString());
+
+  } // end of gutter() method
+
+  /* Return one line of formatted data bytes, without a newline. */
+
+  String line(byte[] data, int row)
+  {
+    int first, last;              // index of first and last byte on line
+    int i;                        // index variable
+    StringBuffer result;          // formatted line
+    String text;                  // offset in hex
+
+    first = row * lineSize;
+    last = Math.min(data.length, (first + lineSize));
+    result = new StringBuffer();
+    if (offsetDigits > 0)
+    {
+      text = Integer.toHexString(first).toUpperCase();
+      for (i = text.length(); i < offsetDigits; i ++)
+        result.append('0');
+      result.append(text).append("  ");
+    }
+    for (i = first; i < last; i ++)
+    {
+      if (i == first) { /* no separator at start of line */ }
+      else if (((i - first) % groupSize) == 0) result.append(groupGap);
+      else result.append(byteGap);
+      result.append(HexByteChar2.HEX_DIGITS[(data[i] >> 4) & 0x0F]);
+      result.append(HexByteChar2.HEX_DIGITS[data[i] & 0x0F]);
+    }
+    if (gutterFlag)               // pad short line so gutters line up
+    {
+      for (i = last; i < (first + lineSize); i ++)
+        result.append((((i - first) % groupSize) == 0) ? groupGap : byteGap)
+          .append("  ");
+      result.append("  ").append(gutter(data, first, last));
+    }
+    return(result.toString());
+
+  } // end of line() method
+
+  /* Return a character for the gutter, or "." if it isn't printable. */
+
+  static String printable(char ch)
+  {
+    if ((ch < 0x20) || ((ch >= 0x7F) && (ch < 0xA0)) || (ch == 0xFFFD)
+      || Character.isISOControl(ch) || Character.isSurrogate(ch)
+      || (Character.getType(ch) == Character.UNASSIGNED))
+    {
+      return(".");
+    }
+    return(String.valueOf(ch));
+  }
+
+  /* Return the number of lines for some data bytes. */
+
+  int rows(int length)
+  {
+    return((length + lineSize - 1) / lineSize);
+  }
+
+} // end of HexByteChar2Layout class
+
+// ------------------------------------------------------------------------- //
+
+/*
+  HexByteChar2LayoutView class
+
+  Draw formatted lines of data bytes, only for the rows that are visible.  We
+  have our own scroll bar in rows, not pixels, since a JScrollPane measures in
+  pixels with an integer and can't reach the end of big data.  Clicking a line
+  selects those data bytes in the hex text, if it hasn't changed.
+*/
+
+class HexByteChar2LayoutView extends JPanel implements AdjustmentListener,
+  MouseListener, MouseWheelListener
+{
+  /* constants */
+
+  static final long serialVersionUID = 1L; // version for serialized objects
 
+  /* instance variables */
 
-/*
-  doZorgButton() method
+  byte[] data;                    // data bytes from hex text, not copied
+  HexByteChar2Document document;  // document with those data bytes
+  HexByteChar2Layout layout;      // how lines are formatted
+  JScrollBar scrollBar;           // first visible row
 
-  Clean up the hex data bytes.  Convert to binary bytes while ignoring errors.
-  Convert back again to hex.  Compare to see if something has changed.  Nothing
-  is accomplished most of the time, and this button is usually disabled.
+  /* constructor */
 
-  Named after the character "Jean-Baptiste Emanuel Zorg" (or just "Zorg") in
-  the movie "The Fifth Element" (1997), played by Gary Oldman, who didn't like
-  his own performance but is otherwise terrific in the role.
+  public HexByteChar2LayoutView(byte[] data, HexByteChar2Layout layout)
+  {
+    super();                      // initialize our superclass first (JPanel)
+    this.data = data;             // save caller's parameters
+    this.layout = layout;
+    document = HexByteChar2.currentDocument;
+    scrollBar = new JScrollBar(JScrollBar.VERTICAL, 0, 1, 0,
+      Math.max(1, layout.rows(data.length)));
+    scrollBar.addAdjustmentListener(this);
+    this.addMouseListener(this);
+    this.addMouseWheelListener(this);
+    this.setBackground(Color.WHITE);
+    this.setFont(new Font("Monospaced", Font.PLAIN,
+      HexByteChar2.byteField.getFont().getSize()));
+  }
+
+  /* The scroll bar has moved. */
+
+  public void adjustmentValueChanged(AdjustmentEvent event)
+  {
+    this.repaint();
+  }
+
+  /* Select the data bytes on a line in the hex text. */
+
+  public void mouseClicked(MouseEvent event)
+  {
+    int row;                      // row that was clicked
+
+    row = scrollBar.getValue() + ((event.getY() - 2) / rowHeight());
+    if ((row < layout.rows(data.length)) && HexByteChar2.showDocument(document)
+      && (HexByteChar2.byteData == data)) // hex text hasn't changed since
+      HexByteChar2.selectDataBytes((row * layout.lineSize), Math.min(
+        data.length, ((row + 1) * layout.lineSize)));
+  }
+
+  public void mouseEntered(MouseEvent event) { }
+  public void mouseExited(MouseEvent event) { }
+  public void mousePressed(MouseEvent event) { }
+  public void mouseReleased(MouseEvent event) { }
+
+  /* Scroll three rows for each click of the mouse wheel. */
+
+  public void mouseWheelMoved(MouseWheelEvent event)
+  {
+    scrollBar.setValue(scrollBar.getValue() + (event.getWheelRotation()
+      * 3));
+  }
+
+  /* Draw the visible rows.  Each line is formatted as it is drawn. */
+
+  protected void paintComponent(Graphics gr)
+  {
+    int ascent;                   // font ascent in pixels
+    int first;                    // first visible row
+    int height;                   // row height in pixels
+    int i;                        // index variable
+    int rows;                     // number of rows that fit
+
+    super.paintComponent(gr);     // clear background
+    ascent = gr.getFontMetrics().getAscent();
+    first = scrollBar.getValue();
+    height = rowHeight();
+    rows = Math.max(1, ((this.getHeight() - 4) / height));
+    if (scrollBar.getVisibleAmount() != rows) // window has changed size
+    {
+      scrollBar.setVisibleAmount(rows);
+      scrollBar.setBlockIncrement(rows);
+    }
+    gr.setColor(Color.BLACK);
+    for (i = 0; (i <= rows) && ((first + i) < layout.rows(data.length));
+      i ++)
+    {
+      gr.drawString(layout.line(data, (first + i)), 4, (2 + (i * height)
+        + ascent));
+    }
+  }
+
+  /* Return the height of one row in pixels. */
+
+  int rowHeight()
+  {
+    return(Math.max(1, this.getFontMetrics(this.getFont()).getHeight()));
+  }
+
+} // end of HexByteChar2LayoutView class
+
+// ------------------------------------------------------------------------- //
+
+/*
+  HexByteChar2LayoutDialog class
+
+  A window with offsets, hex data bytes, and characters side by side, for all
+  data bytes in the hex text when the window was opened.  Options choose the
+  columns.  Lines are the same size as the hex text when that is a reasonable
+  width, otherwise 16 data bytes.  Export writes what is shown, or the classic
+  hex text exactly as the main window formats it.
 */
-  static void doZorgButton()
+
+class HexByteChar2LayoutDialog extends JDialog implements ActionListener
+{
+  /* constants */
+
+  static final long serialVersionUID = 1L; // version for serialized objects
+  static final int VIEW_SIZE = 16; // data bytes per line, if hex text is wide
+
+  /* instance variables */
+
+  JButton classicButton, exportButton; // buttons
+  JCheckBox gutterCheckbox, offsetCheckbox; // options for columns
+  HexByteChar2LayoutView view;    // visible rows of formatted data bytes
+
+  /* constructor */
+
+  public HexByteChar2LayoutDialog(Frame owner, byte[] data, Charset charset,
+    String code)
   {
-    byte[] dataBytes;             // encoded (binary) data bytes
-    String newHex;                // updated hex data bytes
-    String oldHex;                // original hex data bytes
+    super(owner, "Layout View", false);
+    HexByteChar2Layout layout;    // layout for the view
 
-    oldHex = byteField.getText(); // get all current hex data bytes
-    dataBytes = hexDataToBytes(oldHex, true); // force convert to real bytes
-    newHex = hexDataFromBytes(dataBytes); // convert back to hex data bytes
-    if (newHex.equals(oldHex))    // has anything really changed?
-      JOptionPane.showMessageDialog(mainFrame,
-        "Zorg accomplishes nothing despite great efforts.");
+    if (HexByteChar2.byteLineSize <= 64) // user has chosen bytes per line
+      layout = HexByteChar2Layout.classic();
     else
+      layout = new HexByteChar2Layout((VIEW_SIZE / 2), VIEW_SIZE,
+        HexByteChar2.byteGapString, HexByteChar2.groupGapString);
+    layout.charset = charset;
+    layout.gutterFlag = true;
+    layout.offsetDigits = Math.max(8, Integer.toHexString(Math.max(0,
+      (data.length - 1))).length());
+
+    JPanel panel1 = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 5));
+    offsetCheckbox = new JCheckBox("Offsets", true);
+    offsetCheckbox.addActionListener(this);
+    panel1.add(offsetCheckbox);
+    gutterCheckbox = new JCheckBox(("Characters (" + code + ")"), true);
+    gutterCheckbox.addActionListener(this);
+    panel1.add(gutterCheckbox);
+    exportButton = new JButton("Export View...");
+    exportButton.addActionListener(this);
+    exportButton.setToolTipText("Write all lines as shown to a text file.");
+    panel1.add(exportButton);
+    classicButton = new JButton("Export Classic...");
+    classicButton.addActionListener(this);
+    classicButton.setToolTipText(
+      "Write hex text exactly as the main window would.");
+    panel1.add(classicButton);
+    this.getContentPane().add(panel1, BorderLayout.NORTH);
+
+    view = new HexByteChar2LayoutView(data, layout);
+    this.getContentPane().add(view, BorderLayout.CENTER);
+    this.getContentPane().add(view.scrollBar, BorderLayout.EAST);
+
+    this.setDefaultCloseOperation(JDialog.DISPOSE_ON_CLOSE);
+    this.setSize(900, 600);
+    this.setLocationRelativeTo(owner);
+    this.setVisible(true);
+  }
+
+  /* The user has clicked one of our buttons or check boxes. */
+
+  public void actionPerformed(ActionEvent event)
+  {
+    JFileChooser chooser;         // shared file chooser
+    HexByteChar2Layout layout;    // layout for export
+    Writer output;                // UTF-8 text file
+    Object source;                // where the event came from
+
+    source = event.getSource();
+    if (source == gutterCheckbox)
     {
-      byteField.setText(newHex);  // replace all previous hex data bytes
-      byteField.select(0, 0);     // scroll home, default is end of text
+      view.layout.gutterFlag = gutterCheckbox.isSelected();
+      view.repaint();
     }
-    byteField.requestFocusInWindow(); // give keyboard focus to result
+    else if (source == offsetCheckbox)
+    {
+      view.layout.offsetDigits = offsetCheckbox.isSelected() ? Math.max(8,
+        Integer.toHexString(Math.max(0, (view.data.length - 1))).length())
+        : 0;
+      view.repaint();
+    }
+    else if ((source == classicButton) || (source == exportButton))
+    {
+      layout = (source == classicButton) ? HexByteChar2Layout.classic()
+        : view.layout;
+      chooser = HexByteChar2.fileChooser;
+      chooser.resetChoosableFileFilters();
+      chooser.setDialogTitle((source == classicButton) ? "Export Classic..."
+        : "Export View...");
+      chooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
+      chooser.setMultiSelectionEnabled(false);
+      if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION)
+        return;
+      if (chooser.getSelectedFile().exists()
+        && (JOptionPane.showConfirmDialog(this, ("Replace existing file?\n"
+        + chooser.getSelectedFile().getName()), "File Already Exists",
+        JOptionPane.YES_NO_OPTION) != JOptionPane.YES_OPTION))
+      {
+        return;
+      }
+      try
+      {
+        output = new BufferedWriter(new OutputStreamWriter(
+          new FileOutputStream(chooser.getSelectedFile()), "UTF-8"), 0x10000);
+        try { layout.export(view.data, output); }
+        finally { output.close(); }
+      }
+      catch (IOException ioe)
+      {
+        JOptionPane.showMessageDialog(this, ("Can't write file:\n"
+          + ioe.getMessage()));
+      }
+    }
+  }
 
-  } // end of doZorgButton() method
+} // end of HexByteChar2LayoutDialog class
 
+// ------------------------------------------------------------------------- //
 
 /*
-  hexDataFromBytes() method
+  HexByteChar2Index class
+
+  An inverted index of 4-byte sequences (n-grams) for all files in a folder, so
+  that searches for data bytes or text don't read every file again.  Each file
+  is divided into blocks of 64 KB.  For each 4-byte value, the index lists the
+  blocks where that value starts.  A search looks up every 4-byte value in the
+  query, keeps only the blocks where all of them can be found, and checks those
+  blocks in the real file (mapped into memory) to find exact offsets.  The index
+  only narrows the search, so results are always exact.
+
+  One object is one segment: a file with its own table of files and posting
+  lists.  When files are added or changed, a new segment is written for just
+  those files, and older entries for the same path are ignored.  Deleted files
+  are ignored when their entries are found.  When there are too many segments,
+  or too many old entries, everything is indexed again into one segment.
+  Segments are kept in the ".hexbytechar2" folder under the user's home
+  directory, in a folder named by a digest of the indexed folder's path.
+
+  Segment file: magic, header length, header (block size, file table with path,
+  size, date, first block, then number of blocks), a table with the start of
+  each bucket (top 16 bits of a 4-byte value), and the posting lists.  Each
+  entry in a bucket is the low 16 bits of the value, the number of blocks, and
+  the block numbers as differences, all as variable-length integers.  Postings
+  are sorted in runs of limited size, so memory doesn't depend on the number of
+  files.
+*/
 
-  Convert real binary bytes to hexadecimal characters representing those bytes.
-  We insert a space to separate bytes, with an occasional newline character (to
-  help word wrap in JTextArea).  No errors are detected by this method.
+class HexByteChar2Index
+{
+  /* constants */
 
-  The number of bytes between newline characters may be almost anything up to
-  about 128 KB, after which the speed of JTextArea starts to deteriorate.  The
-  difference can be hours to display instead of seconds!  The current number
-  was chosen to be a multiple of common sizes and will disguise some newlines.
-*/
-  static String hexDataFromBytes(byte[] input)
+  static final int BLOCK_SIZE = 0x10000; // data bytes per indexed block
+  static final int BUCKETS = 0x10000; // buckets by top 16 bits of n-gram
+  static final int GRAM_SIZE = 4; // data bytes per n-gram
+  static final int MAX_RESULTS = 10000; // most search results found
+  static final int MAX_SEGMENTS = 8; // segments before indexing everything
+  static final String INDEX_MAGIC = "HBC2IDX1"; // first bytes of segment
+  static final int RUN_SIZE = 0x400000; // postings sorted in memory at once
+
+  /* class variables */
+
+  static long candidateCount;     // blocks checked by the last search
+  static long indexedBytes;       // data bytes indexed by the last update
+  static int indexedCount;        // files indexed by the last update
+  static int reusedCount;         // files already indexed, not changed
+
+  /* instance variables */
+
+  long[] bucketStarts;            // start of each bucket, plus end
+  FileChannel channel;            // segment file, open for reading
+  int fileCount;                  // number of files in segment
+  int[] firstBlocks;              // first block number for each file
+  File folder;                    // folder that was indexed
+  boolean[] liveFlags;            // true if file hasn't changed since
+  String[] paths;                 // relative path names, with "/"
+  long postingStart;              // position of first posting list
+  File segment;                   // segment file
+  long[] sizes, times;            // file size, date when indexed
+
+  /* constructor: open an existing segment */
+
+  public HexByteChar2Index(File folder, File segment) throws IOException
   {
-    StringBuffer buffer;          // faster than String for multiple appends
+    DataInputStream input;        // segment header
     int i;                        // index variable
-    int value;                    // one binary data byte as an integer
+    byte[] magic;                 // first bytes of segment
 
-    buffer = new StringBuffer();  // start with empty string buffer
-    for (i = 0; i < input.length; i ++) // for each input byte
+    this.folder = folder;         // save caller's parameters
+    this.segment = segment;
+    input = new DataInputStream(new BufferedInputStream(new FileInputStream(
+      segment), 0x10000));
+    try
     {
-      if (i == 0) { /* do nothing: no space at beginning */ }
-      else if ((i % byteLineSize) == 0) buffer.append('\n'); // start line
-      else if ((i % byteGroupSize) == 0) buffer.append(groupGapString);
-      else buffer.append(byteGapString); // usually a space between bytes
-      value = input[i] & BYTE_MASK; // get one binary data byte
-      buffer.append(HEX_DIGITS[(value >> 4) & 0x0F]); // high-order digit
-      buffer.append(HEX_DIGITS[value & 0x0F]); // low-order hex digit
+      magic = new byte[INDEX_MAGIC.length()];
+      input.readFully(magic);
+      if (new String(magic, "US-ASCII").equals(INDEX_MAGIC) == false)
+        throw new IOException(segment.getName() + " is not an index segment.");
+      postingStart = magic.length + 4 + input.readInt() + (8L * (BUCKETS
+        + 1));
+      if (input.readInt() != BLOCK_SIZE)
+        throw new IOException(segment.getName() + " has wrong block size.");
+      fileCount = input.readInt();
+      firstBlocks = new int[fileCount + 1];
+      liveFlags = new boolean[fileCount];
+      paths = new String[fileCount];
+      sizes = new long[fileCount];
+      times = new long[fileCount];
+      for (i = 0; i < fileCount; i ++)
+      {
+        paths[i] = input.readUTF();
+        sizes[i] = input.readLong();
+        times[i] = input.readLong();
+        firstBlocks[i] = input.readInt();
+      }
+      firstBlocks[fileCount] = input.readInt(); // total number of blocks
+      bucketStarts = new long[BUCKETS + 1];
+      for (i = 0; i <= BUCKETS; i ++)
+        bucketStarts[i] = input.readLong();
     }
-    return(buffer.toString());    // give caller our converted string
+    finally { input.close(); }
+    channel = new FileInputStream(segment).getChannel();
+  }
 
-  } // end of hexDataFromBytes() method
+  /* Add the distinct n-grams for one block to the postings, which are sorted
+  and written to a temporary file when there are too many. */
 
+  static long[] addBlock(byte[] data, int length, int block, int[] seen,
+    int[] stamps, long[] run, int[] used, java.util.Vector<File> runs)
+    throws IOException
+  {
+    int gram;                     // one n-gram as an integer
+    int i;                        // index variable
+    int slot;                     // position in open-addressing table
 
-/*
-  hexDataToBytes() method
+    for (i = 0; i <= (length - GRAM_SIZE); i ++)
+    {
+      gram = ((data[i] & 0xFF) << 24) | ((data[i + 1] & 0xFF) << 16)
+        | ((data[i + 2] & 0xFF) << 8) | (data[i + 3] & 0xFF);
+      slot = (gram * 0x9E3779B1) >>> 15; // hash for table of 2^17 entries
+      while ((stamps[slot] == (block + 1)) && (seen[slot] != gram))
+        slot = (slot + 1) & (seen.length - 1);
+      if (stamps[slot] == (block + 1)) continue; // already in this block
+      stamps[slot] = block + 1;
+      seen[slot] = gram;
+      if (used[0] == run.length)  // run is full, sort and save it
+      {
+        runs.add(writeRun(run, used[0]));
+        used[0] = 0;
+      }
+      run[used[0] ++] = (((long) (gram ^ 0x80000000)) << 32) | block;
+                                  // unsigned order when sorted as signed
+    }
+    return(run);
+  }
 
-  Convert hexadecimal characters representing data bytes to real binary bytes.
-  Return <null> if the input has errors.  (A pop-up message will be produced.)
-*/
-  static byte[] hexDataToBytes(String input, boolean ignoreErrorsFlag)
+  /* Find the blocks for an n-gram in this segment, in increasing order. */
+
+  int[] blocks(int gram) throws IOException
   {
-    char ch;                      // one character from input string
-    byte[] dataBytes;             // encoded (binary) data bytes
-    int dataLength;               // number of data bytes in <dataBytes>
-    int digitCount;               // number of digits found in current byte
+    int bucket;                   // top 16 bits of n-gram
+    ByteBuffer buffer;            // one bucket of posting lists
+    int count;                    // number of blocks in posting list
     int i;                        // index variable
-    int inputLength;              // number of characters in <input>
-    byte[] result;                // cleaned up result with correct length
-    int value;                    // one binary data byte as an integer
+    int low;                      // low 16 bits of n-gram in entry
+    int[] result;                 // block numbers
+
+    bucket = gram >>> 16;
+    buffer = ByteBuffer.allocate((int) (bucketStarts[bucket + 1]
+      - bucketStarts[bucket]));
+    while (buffer.hasRemaining())
+      if (channel.read(buffer, (postingStart + bucketStarts[bucket]
+        + buffer.position())) < 0) break;
+    buffer.flip();
+    while (buffer.hasRemaining())
+    {
+      low = readVarint(buffer);
+      count = readVarint(buffer);
+      if (low != (gram & 0xFFFF)) // not our n-gram, skip posting list
+      {
+        for (i = 0; i < count; i ++) readVarint(buffer);
+        continue;
+      }
+      result = new int[count];
+      for (i = 0; i < count; i ++)
+        result[i] = ((i > 0) ? result[i - 1] : 0) + readVarint(buffer);
+      return(result);
+    }
+    return(new int[0]);
+  }
 
-    dataLength = 0;               // no binary data bytes found
-    digitCount = 0;               // no digits found in current byte
-    inputLength = input.length(); // number of hex digits or spaces, etc
-    dataBytes = new byte[inputLength]; // always more than what we need
-    value = 0;                    // no initial value for this data byte
-    for (i = 0; i < inputLength; i ++)
+  /* Close all segments. */
+
+  static void close(java.util.Vector<HexByteChar2Index> segments)
+  {
+    int i;                        // index variable
+
+    for (i = 0; i < segments.size(); i ++)
     {
-      ch = input.charAt(i);       // get one hex digit, punctuation, other
-      if ((ch >= '0') && (ch <= '9')) // decimal digit?
+      try { (segments.get(i)).channel.close(); }
+      catch (IOException ioe) { /* nothing more to do */ }
+    }
+  }
+
+  /* Return true if a block number is in a sorted list, or one of the <gap>
+  blocks after it is (an n-gram later in a long query may start several blocks
+  after the first n-gram). */
+
+  static boolean contains(int[] blocks, int block, int gap)
+  {
+    int k;                        // result from binary search
+
+    k = java.util.Arrays.binarySearch(blocks, block);
+    if (k < 0) k = -k - 1;        // first block after, if any
+    return((k < blocks.length) && (blocks[k] <= (block + gap)));
+  }
+
+  /* Index files given by relative path names into a new segment. */
+
+  static void create(File folder, File segment,
+    java.util.Vector<String> names)
+    throws IOException
+  {
+    int block;                    // block number in segment
+    byte[] buffer;                // one block, plus start of next block
+    int[] firstBlocks;            // first block of each file
+    DataOutputStream header;      // segment header before buckets
+    ByteArrayOutputStream headerBytes; // header as bytes
+    int i;                        // index variable
+    FileInputStream input;        // file being indexed
+    int length;                   // data bytes in <buffer>
+    File name;                    // file being indexed
+    int read;                     // data bytes from one read
+    long[] run;                   // postings not yet sorted
+    java.util.Vector<File> runs;  // sorted postings in temporary files
+    int[] seen, stamps;           // n-grams found in current block
+    long[] sizes, times;          // file sizes and dates
+    int[] used;                   // number of postings in <run>
+
+    buffer = new byte[BLOCK_SIZE + GRAM_SIZE - 1];
+    firstBlocks = new int[names.size()];
+    run = new long[RUN_SIZE];
+    runs = new java.util.Vector<File>();
+    seen = new int[0x20000];
+    sizes = new long[names.size()];
+    stamps = new int[seen.length];
+    times = new long[names.size()];
+    used = new int[1];
+    block = 0;
+    try
+    {
+      for (i = 0; i < names.size(); i ++)
       {
-        value = (value << 4) + (ch - '0'); // shift old left, add new digit
-        digitCount ++;            // at least one digit found
+        name = new File(folder, names.get(i));
+        firstBlocks[i] = block;
+        sizes[i] = name.length(); // size and date before reading
+        times[i] = name.lastModified();
+        input = new FileInputStream(name);
+        try
+        {
+          length = 0;
+          while (true)
+          {
+            while ((length < buffer.length) && ((read = input.read(buffer,
+              length, (buffer.length - length))) > 0)) length += read;
+            if (length == 0) break; // empty file or end of file
+            addBlock(buffer, length, block, seen, stamps, run, used, runs);
+            block ++;
+            indexedBytes += Math.min(length, BLOCK_SIZE);
+            if (length <= BLOCK_SIZE) break; // this was the last block
+            System.arraycopy(buffer, BLOCK_SIZE, buffer, 0, (length
+              - BLOCK_SIZE));     // start of next block was already read
+            length -= BLOCK_SIZE;
+          }
+        }
+        finally { input.close(); }
+        indexedCount ++;
       }
-      else if ((ch >= 'A') && (ch <= 'F')) // uppercase hex digit?
+
+      headerBytes = new ByteArrayOutputStream();
+      header = new DataOutputStream(headerBytes);
+      header.writeInt(BLOCK_SIZE);
+      header.writeInt(names.size());
+      for (i = 0; i < names.size(); i ++)
       {
-        value = (value << 4) + (ch - 'A' + 10);
-        digitCount ++;
+        header.writeUTF(names.get(i));
+        header.writeLong(sizes[i]);
+        header.writeLong(times[i]);
+        header.writeInt(firstBlocks[i]);
       }
-      else if ((ch >= 'a') && (ch <= 'f')) // lowercase hex digit?
+      header.writeInt(block);     // total number of blocks
+      header.close();
+      writeSegment(segment, headerBytes.toByteArray(), run, used[0], runs);
+    }
+    finally                       // delete temporary files after errors, too
+    {
+      for (i = 0; i < runs.size(); i ++)
+        (runs.get(i)).delete();
+    }
+  }
+
+  /* Return the folder for the index of a folder, or <null> if there is no
+  home directory. */
+
+  static File indexFolder(File folder) throws IOException
+  {
+    String home;                  // user's home directory
+    String name;                  // digest of folder's path
+
+    home = System.getProperty("user.home");
+    name = HexByteChar2Session.digestName(folder.getCanonicalPath());
+    if ((home == null) || (name == null)) return(null);
+    return(new File(new File(new File(home, HexByteChar2Session
+      .FOLDER_NAME), "index"), name));
+  }
+
+  /* Add relative path names for all files under a folder, in sorted order. */
+
+  static void listFiles(File folder, String prefix,
+    java.util.Vector<String> names)
+  {
+    File[] files;                 // files and subfolders in this folder
+    int i;                        // index variable
+
+    files = folder.listFiles();
+    if (files == null) return;    // not a folder, or can't be read
+    java.util.Arrays.sort(files);
+    for (i = 0; i < files.length; i ++)
+    {
+      if (files[i].isDirectory())
+        listFiles(files[i], (prefix + files[i].getName() + "/"), names);
+      else if (files[i].isFile() && files[i].canRead())
+        names.add(prefix + files[i].getName());
+    }
+  }
+
+  /* Read a variable-length integer: seven bits per byte, low bits first. */
+
+  static int readVarint(ByteBuffer buffer)
+  {
+    int b;                        // one byte from buffer
+    int shift;                    // bit position for next seven bits
+    int value;                    // integer so far
+
+    shift = value = 0;
+    do
+    {
+      b = buffer.get();
+      value |= (b & 0x7F) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return(value);
+  }
+
+  /* Search all live files for data bytes.  Return results as pairs in a
+  vector: file, then offset (Long). */
+
+  static java.util.Vector<Object> search(
+    java.util.Vector<HexByteChar2Index> segments, byte[] query)
+    throws IOException
+  {
+    int[] blocks;                 // candidate blocks for first n-gram
+    int count;                    // number of candidates kept
+    int file;                     // file number in segment
+    int first;                    // first candidate in current file
+    int gap;                      // blocks allowed after candidate
+    long[] grams;                 // n-grams in query, after first, by offset
+    int i, j, k;                  // index variables
+    int[] other;                  // blocks for another n-gram
+    java.util.Vector<Object> results; // files and offsets found
+    HexByteChar2Index segment;    // one segment
+
+    candidateCount = 0;
+    results = new java.util.Vector<Object>();
+    for (k = 0; k < segments.size(); k ++)
+    {
+      segment = segments.get(k);
+      if (query.length < GRAM_SIZE) // too short for index, check everything
       {
-        value = (value << 4) + (ch - 'a' + 10);
-        digitCount ++;
+        for (file = 0; file < segment.fileCount; file ++)
+        {
+          if (segment.liveFlags[file] == false) continue;
+          blocks = new int[segment.firstBlocks[file + 1]
+            - segment.firstBlocks[file]];
+          for (i = 0; i < blocks.length; i ++)
+            blocks[i] = segment.firstBlocks[file] + i;
+          segment.verify(file, blocks, 0, blocks.length, query, results);
+        }
+        continue;
       }
-      else if (ignoreErrorsFlag   // if we ignore all other characters
-        || ((ch >= 0x00) && (ch <= 0x2F)) // ASCII Unicode punctuation
-        || ((ch >= 0x3A) && (ch <= 0x40))
-        || ((ch >= 0x5B) && (ch <= 0x60))
-        || ((ch >= 0x7B) && (ch <= 0x7F))) // safe up to 0xBF
+
+      /* Candidates are blocks where the first n-gram starts, and the n-gram
+      at offset <i> starts in the same block or up to (i / BLOCK_SIZE) + 1
+      blocks later.  When an n-gram appears more than once in the query, its
+      smallest offset gives the strictest test. */
+
+      blocks = segment.blocks(gram(query, 0));
+      grams = new long[query.length - GRAM_SIZE];
+      for (i = 1; i <= (query.length - GRAM_SIZE); i ++)
+        grams[i - 1] = (((long) (gram(query, i) ^ 0x80000000)) << 32) | i;
+      java.util.Arrays.sort(grams); // by n-gram, then by offset
+      for (i = 0; (i < grams.length) && (blocks.length > 0); i ++)
       {
-        if (digitCount > 0) digitCount = 2; // accept a single digit
+        if ((i > 0) && ((grams[i] >>> 32) == (grams[i - 1] >>> 32)))
+          continue;               // same n-gram at a larger offset
+        other = segment.blocks(((int) (grams[i] >>> 32)) ^ 0x80000000);
+        gap = (((int) grams[i]) / BLOCK_SIZE) + 1;
+        count = 0;
+        for (j = 0; j < blocks.length; j ++)
+          if (contains(other, blocks[j], gap))
+            blocks[count ++] = blocks[j];
+        blocks = HexByteChar2History.copyArray(blocks, count);
       }
-      else                        // draw the line at obviously bad input
+
+      /* Check candidate blocks in the real files, opening each file once for
+      all of its blocks. */
+
+      file = 0;
+      for (i = 0; (i < blocks.length) && (results.size() < (2
+        * MAX_RESULTS)); i = j)
       {
-        JOptionPane.showMessageDialog(mainFrame,
-          ("Data bytes may have hexadecimal digits (0-9 A-F a-f)\nand basic punctuation as separators."));
-        return(null);             // don't bother doing anything more
+        while (segment.firstBlocks[file + 1] <= blocks[i]) file ++;
+        first = i;
+        for (j = i + 1; (j < blocks.length)
+          && (blocks[j] < segment.firstBlocks[file + 1]); j ++) { }
+        if (segment.liveFlags[file] == false) continue;
+        candidateCount += j - first;
+        segment.verify(file, blocks, first, j, query, results);
+      }
+    }
+    return(results);
+  }
+
+  /* Return the n-gram at an offset in some data bytes. */
+
+  static int gram(byte[] data, int offset)
+  {
+    return(((data[offset] & 0xFF) << 24) | ((data[offset + 1] & 0xFF) << 16)
+      | ((data[offset + 2] & 0xFF) << 8) | (data[offset + 3] & 0xFF));
+  }
+
+  /* Bring the index for a folder up to date, and return all segments with the
+  live files marked.  Only new and changed files are read. */
+
+  static java.util.Vector<HexByteChar2Index> update(File folder)
+    throws IOException
+  {
+    int dead, live;               // number of old and current file entries
+    File entry;                   // one file in folder
+    String[] files;               // segment file names
+    int i, k;                     // index variables
+    File index;                   // folder with segments
+    int[] location;               // newest segment and file for a path
+    java.util.Vector<String> names; // relative path names in folder
+    java.util.Hashtable<String, int[]> newest; // path to newest location
+    int next;                     // number for next segment
+    java.util.Vector<String> redo; // files to be indexed
+    HexByteChar2Index segment;    // one segment
+    java.util.Vector<HexByteChar2Index> segments; // all segments, oldest first
+
+    indexedBytes = indexedCount = reusedCount = 0;
+    if (folder.isDirectory() == false)
+      throw new IOException(folder.getPath() + " is not a folder.");
+    index = indexFolder(folder);
+    if (index == null)
+      throw new IOException("There is no home folder for the index.");
+    index.mkdirs();
+
+    segments = new java.util.Vector<HexByteChar2Index>();
+    files = index.list();
+    if (files == null)            // not created, or can't be read
+      throw new IOException("Can't read index folder " + index.getPath());
+    java.util.Arrays.sort(files); // numbers have the same number of digits
+    next = 1;
+    for (i = 0; i < files.length; i ++)
+    {
+      if ((files[i].startsWith("segment-") == false)
+        || (files[i].endsWith(".idx") == false)) continue;
+      try
+      {
+        segments.add(new HexByteChar2Index(folder, new File(index,
+          files[i])));
+        next = Integer.parseInt(files[i].substring(8, (files[i].length()
+          - 4))) + 1;
+      }
+      catch (IOException ioe)     // partly written or from another version
+      {
+        new File(index, files[i]).delete();
+      }
+      catch (NumberFormatException nfe) { /* not our name, ignore */ }
+    }
+
+    /* Find which files are new or changed since they were indexed. */
+
+    newest = new java.util.Hashtable<String, int[]>();
+    for (k = 0; k < segments.size(); k ++)
+    {
+      segment = segments.get(k);
+      for (i = 0; i < segment.fileCount; i ++)
+      {
+        location = new int[2];
+        location[0] = k;
+        location[1] = i;
+        newest.put(segment.paths[i], location);
+      }
+    }
+    names = new java.util.Vector<String>();
+    listFiles(folder, "", names);
+    redo = new java.util.Vector<String>();
+    for (i = 0; i < names.size(); i ++)
+    {
+      entry = new File(folder, names.get(i));
+      location = newest.get(names.get(i));
+      segment = (location == null) ? null : segments.get(location[0]);
+      if ((segment != null) && (segment.sizes[location[1]] == entry.length())
+        && (segment.times[location[1]] == entry.lastModified()))
+      {
+        segment.liveFlags[location[1]] = true;
+        reusedCount ++;
+      }
+      else
+        redo.add(names.get(i));
+    }
+    dead = live = 0;
+    for (k = 0; k < segments.size(); k ++)
+    {
+      segment = segments.get(k);
+      for (i = 0; i < segment.fileCount; i ++)
+        if (segment.liveFlags[i]) live ++; else dead ++;
+    }
+
+    /* Write a segment with only the changed files, or index everything again
+    when old entries are more than half. */
+
+    if ((redo.size() > 0) || (dead > 0))
+    {
+      if (((segments.size() + 1) > MAX_SEGMENTS) || (dead > live))
+      {
+        close(segments);
+        for (k = 0; k < segments.size(); k ++)
+          (segments.get(k)).segment.delete();
+        segments.clear();
+        redo = names;
+        reusedCount = 0;
       }
-
-      if (digitCount >= 2)        // new binary byte every two hex digits
+      if (redo.size() > 0)
       {
-        dataBytes[dataLength ++] = (byte) value; // save one data byte
-        digitCount = value = 0;   // no half data for next digit
+        entry = new File(index, ("segment-" + Integer.toString(next + 1000000)
+          .substring(1) + ".idx"));
+        create(folder, entry, redo);
+        segment = new HexByteChar2Index(folder, entry);
+        for (i = 0; i < segment.fileCount; i ++) // changed while indexing?
+          segment.liveFlags[i] = (segment.sizes[i] == new File(folder,
+            segment.paths[i]).length()) && (segment.times[i] == new File(
+            folder, segment.paths[i]).lastModified());
+        segments.add(segment);
       }
     }
-    if (digitCount > 0)           // could be a trailing single digit
-    {
-      dataBytes[dataLength ++] = (byte) value;
-    }
+    return(segments);
+  }
 
-    result = new byte[dataLength]; // truncate array to correct length
-    for (i = 0; i < dataLength; i ++)
-      result[i] = dataBytes[i];
-    return(result);               // give caller correct byte array
+  /* Find all copies of the query that start in some blocks of one file, given
+  by blocks[first] to blocks[last - 1].  Add each file and offset to the
+  results. */
 
-  } // end of hexDataToBytes() method
+  void verify(int file, int[] blocks, int first, int last, byte[] query,
+    java.util.Vector<Object> results) throws IOException
+  {
+    FileChannel data;             // file with data bytes
+    int i, j, k;                  // index variables
+    MappedByteBuffer mapped;      // part of file in memory
+    long size;                    // bytes mapped, including overlap
+    File source;                  // file being checked
+    long start;                   // file offset of block
+
+    source = new File(folder, paths[file]);
+    data = new FileInputStream(source).getChannel();
+    try
+    {
+      for (j = first; j < last; j ++)
+      {
+        start = (long) (blocks[j] - firstBlocks[file]) * BLOCK_SIZE;
+        size = Math.min((data.size() - start), (BLOCK_SIZE + query.length
+          - 1));
+        if (size < query.length) continue;
+        mapped = data.map(FileChannel.MapMode.READ_ONLY, start, size);
+        for (i = 0; i <= Math.min((BLOCK_SIZE - 1), (size - query.length));
+          i ++)
+        {
+          if (mapped.get(i) != query[0]) continue;
+          for (k = 1; (k < query.length) && (mapped.get(i + k) == query[k]);
+            k ++) { }
+          if (k == query.length)
+          {
+            results.add(source);
+            results.add(Long.valueOf(start + i));
+            if (results.size() >= (2 * MAX_RESULTS)) return;
+          }
+        }
+      }
+    }
+    finally { data.close(); }
+  }
 
+  /* Write a variable-length integer: seven bits per byte, low bits first. */
 
-/*
-  rawBytesToString() method
+  static void writeVarint(OutputStream output, int value) throws IOException
+  {
+    while ((value & ~0x7F) != 0)
+    {
+      output.write((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    output.write(value);
+  }
 
-  Convert an array of binary data bytes to a string, mapping values from 0x00
-  to 0xFF.  An old method in the String class does this, but is "deprecated"
-  and liable to generate warning messages.
+  /* Sort some postings and write them to a temporary file. */
 
-  This method is of questionable validity: 0x7F to 0x9F are control codes in
-  the Unicode standard, not printable characters.
-*/
-  static String rawBytesToString(byte[] input)
+  static File writeRun(long[] run, int used) throws IOException
   {
-    StringBuffer buffer;          // faster than String for multiple appends
+    File file;                    // temporary file
     int i;                        // index variable
+    DataOutputStream output;      // sorted postings
+
+    java.util.Arrays.sort(run, 0, used);
+    file = File.createTempFile("HexByteChar2", ".run");
+    file.deleteOnExit();          // in case we don't get to delete it
+    output = new DataOutputStream(new BufferedOutputStream(
+      new FileOutputStream(file), 0x10000));
+    try
+    {
+      for (i = 0; i < used; i ++)
+        output.writeLong(run[i]);
+    }
+    finally { output.close(); }
+    return(file);
+  }
 
-    buffer = new StringBuffer();  // allocate empty string buffer for result
-    for (i = 0; i < input.length; i ++) // for each input byte
-      buffer.append((char) (input[i] & BYTE_MASK)); // copy as a character
-    return(buffer.toString());    // give caller our converted string
-
-  } // end of rawBytesToString() method
+  /* Write a segment file: header, bucket table, and posting lists merged from
+  the sorted runs and the postings still in memory. */
 
+  static void writeSegment(File segment, byte[] header, long[] run, int used,
+    java.util.Vector<File> runs) throws IOException
+  {
+    int block, lastBlock;         // block numbers for differences
+    int bucket;                   // current bucket number
+    long[] bucketStarts;          // start of each bucket in posting lists
+    byte[] copy;                  // buffer for copying posting lists
+    int count;                    // blocks in current posting list
+    ByteArrayOutputStream entry;  // blocks for current n-gram
+    int gram, lastGram;           // current and previous n-gram
+    long[] heads;                 // next posting from each run
+    int i, k;                     // index variables
+    FileInputStream input;        // posting lists for copying
+    DataInputStream[] inputs;     // sorted runs
+    long key;                     // one posting: n-gram and block
+    int next;                     // position in <run> for postings in memory
+    DataOutputStream output;      // segment file
+    File postings;                // posting lists before bucket table
+    long written;                 // bytes of posting lists written
+    OutputStream out;             // buffered posting lists
+
+    java.util.Arrays.sort(run, 0, used);
+    inputs = new DataInputStream[runs.size()];
+    heads = new long[runs.size()];
+    bucketStarts = new long[BUCKETS + 1];
+    copy = new byte[0x10000];
+    entry = new ByteArrayOutputStream();
+    postings = File.createTempFile("HexByteChar2", ".post");
+    out = new BufferedOutputStream(new FileOutputStream(postings), 0x10000);
+    try
+    {
+      for (i = 0; i < inputs.length; i ++)
+      {
+        inputs[i] = new DataInputStream(new BufferedInputStream(
+          new FileInputStream(runs.get(i)), 0x10000));
+        heads[i] = inputs[i].readLong(); // runs are never empty
+      }
+      bucket = count = lastBlock = next = 0;
+      lastGram = -1;
+      written = 0;
+      while (true)
+      {
+        /* Take the smallest posting from the runs or from memory. */
+
+        k = -1;
+        for (i = 0; i < heads.length; i ++)
+          if ((inputs[i] != null) && ((k < 0) || (heads[i] < heads[k])))
+            k = i;
+        if ((next < used) && ((k < 0) || (run[next] < heads[k])))
+          key = run[next ++];
+        else if (k >= 0)
+        {
+          key = heads[k];
+          try { heads[k] = inputs[k].readLong(); }
+          catch (EOFException eofe)
+          {
+            inputs[k].close();
+            inputs[k] = null;
+          }
+        }
+        else
+          key = Long.MAX_VALUE;   // end of all postings
 
-/*
-  rawStringToBytes() method
+        gram = (key == Long.MAX_VALUE) ? -1 : (((int) (key >>> 32))
+          ^ 0x80000000);
+        block = (int) key;
+        if ((count > 0) && ((gram != lastGram) || (key == Long.MAX_VALUE)))
+        {
+          while (bucket <= (lastGram >>> 16)) // buckets start here
+            bucketStarts[bucket ++] = written;
+          writeVarint(out, (lastGram & 0xFFFF));
+          writeVarint(out, count);
+          written += varintSize(lastGram & 0xFFFF) + varintSize(count)
+            + entry.size();
+          entry.writeTo(out);
+          entry.reset();
+          count = 0;
+        }
+        if (key == Long.MAX_VALUE) break;
+        writeVarint(entry, (block - ((count > 0) ? lastBlock : 0)));
+        count ++;
+        lastBlock = block;
+        lastGram = gram;
+      }
+      while (bucket <= BUCKETS)   // empty buckets at the end
+        bucketStarts[bucket ++] = written;
+      out.close();
+      out = null;
+
+      output = new DataOutputStream(new BufferedOutputStream(
+        new FileOutputStream(segment), 0x10000));
+      try
+      {
+        output.write(INDEX_MAGIC.getBytes("US-ASCII"));
+        output.writeInt(header.length);
+        output.write(header);
+        for (i = 0; i <= BUCKETS; i ++)
+          output.writeLong(bucketStarts[i]);
+        input = new FileInputStream(postings);
+        try
+        {
+          while ((i = input.read(copy)) > 0)
+            output.write(copy, 0, i);
+        }
+        finally { input.close(); }
+      }
+      finally { output.close(); }
+    }
+    catch (IOException ioe)       // don't leave a partial segment
+    {
+      segment.delete();
+      throw ioe;
+    }
+    finally
+    {
+      for (i = 0; i < inputs.length; i ++)
+        if (inputs[i] != null) inputs[i].close();
+      if (out != null) out.close();
+      postings.delete();
+    }
+  }
 
-  Convert a string to an array of binary data bytes, mapping values from 0x00
-  to 0xFF.  An old method in the String class does this, but is "deprecated"
-  and liable to generate warning messages.
+  /* Return the number of bytes for a variable-length integer. */
 
-  This method is of questionable accuracy: characters pasted into a JTextArea
-  may have already been interpreted according to the local system's default
-  character set (encoding).
-*/
-  static byte[] rawStringToBytes(String input)
+  static int varintSize(int value)
   {
-    int i;                        // index variable
-    int length;                   // size of input string in characters
-    byte[] result;                // our converted result
+    int size;                     // bytes needed
 
-    length = input.length();      // number of characters in caller's string
-    result = new byte[length];    // same number of bytes in resulting array
-    for (i = 0; i < length; i ++) // for each input character
-      result[i] = (byte) (input.charAt(i) & BYTE_MASK); // copy as a byte
-    return(result);               // give caller our converted bytes
+    for (size = 1; (value & ~0x7F) != 0; size ++)
+      value >>>= 7;
+    return(size);
+  }
 
-  } // end of rawStringToBytes() method
+} // end of HexByteChar2Index class
 
+// ------------------------------------------------------------------------- //
 
 /*
-  showHelp() method
-
-  Show the help summary.  This is a UNIX standard and is expected for all
-  console applications, even very simple ones.
+  HexByteChar2Unicode class
+
+  Find characters in text that may not be what they seem: invisible (zero
+  width) characters, bidirectional controls that reorder text, compatibility
+  forms and other characters changed by Unicode normalization, and letters from
+  a different script in the middle of a word (such as a Cyrillic "a" in a Latin
+  word).  Each result has the data bytes for that character in the user's
+  encoding, and its offset in the encoded text.
+
+  The text is read once, one code point at a time.  Everything about a
+  character comes from two tables for the Basic Multilingual Plane, built the
+  first time they are needed: flags for each class of character, and a script
+  number for letters.  (Supplementary characters are classified directly.  They
+  are rare.)  Runs of characters that aren't flagged are encoded as one piece,
+  so offsets are correct even for encodings with state.
+
+  Scripts come from the Unicode script property of each letter.  Letters in
+  compatibility forms (fullwidth, mathematical) take the script of what they
+  normalize to.  Chinese, Japanese, and Korean are one script, since they are
+  normally mixed.  Letters common to all scripts have no script, and don't end
+  a word.
 */
-  static void showHelp()
-  {
-    System.err.println();
-    System.err.println(PROGRAM_TITLE);
-    System.err.println();
-    System.err.println("This is a graphical application. You may give options on the command line:");
-    System.err.println();
-    System.err.println("  -? = -help = show summary of command-line syntax");
-    System.err.println("  -e# = select name of character set encoding; example: -eUTF-8");
-    System.err.println("  -f# = font name for hex data bytes; example: -f\"Lucida Console\"");
-    System.err.println("  -n# = number of hex data bytes per line (1-999), no wrap; example: -n12");
-    System.err.println("  -n(#,#) = number of hex data bytes per group (2-99) and number of groups per");
-    System.err.println("      line (2-99), no wrap; example: -n(4,3)");
-    System.err.println("  -t# = font name for text characters; example: -tVerdana");
-    System.err.println("  -u# = font size for buttons, dialogs, etc; example: -u16");
-    System.err.println("  -w(#,#,#,#) = normal window position: left, top, width, height;");
-    System.err.println("      example: -w(50,50,700,500)");
-    System.err.println("  -x = maximize application window; default is normal window");
-    System.err.println();
-    System.err.println(COPYRIGHT_NOTICE);
-//  System.err.println();
 
-  } // end of showHelp() method
+class HexByteChar2Unicode
+{
+  /* constants */
 
+  static final int BIDI = 0x01;   // flag: bidirectional control character
+  static final int INVISIBLE = 0x02; // flag: zero width or format character
+  static final int LETTER = 0x04; // flag: letter with a script
+  static final int MARK = 0x08;   // flag: combining mark, may compose
+  static final int MAX_RESULTS = 10000; // most results saved
+  static final int MAX_SEGMENT = 32; // most chars checked for composition
+  static final int NFC = 0x10;    // flag: changed by NFC (and NFKC)
+  static final int NFD = 0x20;    // flag: changed by NFD (decomposes)
+  static final int NFKC = 0x40;   // flag: changed by NFKC only
+
+  static final String[] KIND_NAMES = {"", "bidi control", "invisible",
+    "NFC", "combining mark, NFC composes", "NFKC", "mixed script"};
+                                  // descriptions for each kind of result
+  static final int KIND_BIDI = 1, KIND_COMPOSE = 4, KIND_INVISIBLE = 2,
+    KIND_NFC = 3, KIND_NFKC = 5, KIND_SCRIPT = 6; // kinds of results
 
-/*
-  userButton() method
+  /* class variables */
 
-  This method is called by our action listener actionPerformed() to process
-  buttons, in the context of the main HexByteChar2 class.
-*/
-  static void userButton(ActionEvent event)
+  static volatile byte[] flags;   // flags for each BMP character, or null
+  static java.util.Hashtable<String, Integer> scriptIds; // name to number
+  static java.util.Vector<String> scriptNames; // script number to name
+  static byte[] scripts;          // script number for each BMP character
+
+  /* instance variables */
+
+  long byteCount;                 // data bytes in encoded text so far
+  ByteBuffer bytes;               // encoded data bytes, reused
+  String[] byteTexts;             // data bytes in hex for each result
+  long[] byteStarts;              // offset of data bytes for each result
+  Charset charset;                // user's encoding, or null for raw bytes
+  CharsetEncoder checker;         // tests for unmappable characters
+  int[] codePoints;               // character for each result
+  int composeCount;               // marks that compose with NFC
+  int count;                      // number of results saved
+  CharsetEncoder encoder;         // encodes text in order, with state
+  int[] ends;                     // text index after each result
+  int invisibleCount, bidiCount;  // characters found in each class
+  int[] kinds;                    // kind of each result
+  int mixedCount;                 // letters in a word of another script
+  int nfcCount, nfdCount, nfkcCount; // characters changed by normalization
+  String[] notes;                 // more description for each result
+  int[] scriptCounts;             // letters found in each script
+  int[] starts;                   // text index of each result
+  long total;                     // number of results, saved or not
+
+  /* constructor */
+
+  public HexByteChar2Unicode(Charset charset)
   {
-    Object source = event.getSource(); // where the event came from
-    if (source == clearByteButton) // "Clear" button for data bytes
+    this.charset = charset;       // save caller's parameters
+    if (flags == null) makeTables(); // first time only, in caller's thread
+    bidiCount = composeCount = count = invisibleCount = mixedCount = 0;
+    byteCount = total = 0;
+    bytes = ByteBuffer.allocate(0x10000);
+    byteStarts = new long[256];   // results grow as needed
+    byteTexts = new String[byteStarts.length];
+    if (charset != null)
     {
-      clearTextArea(byteField);   // clear this text area
+      checker = charset.newEncoder();
+      encoder = charset.newEncoder();
+      encoder.onMalformedInput(CodingErrorAction.REPLACE);
+      encoder.onUnmappableCharacter(CodingErrorAction.REPLACE);
     }
-    else if (source == clearCharButton) // "Clear" button for text chars
+    codePoints = new int[byteStarts.length];
+    ends = new int[byteStarts.length];
+    kinds = new int[byteStarts.length];
+    nfcCount = nfdCount = nfkcCount = 0;
+    notes = new String[byteStarts.length];
+    scriptCounts = new int[256];
+    starts = new int[byteStarts.length];
+  }
+
+  /* Save one result, if there is room.  The character's data bytes are
+  encoded after all characters before it. */
+
+  void add(String text, int start, int end, int value, int kind, String note)
+  {
+    total ++;                     // all results are counted
+    if (count >= MAX_RESULTS) return;
+    if (count >= starts.length)   // need more room for results
     {
-      clearTextArea(charField);
+      byteStarts = HexByteChar2Strings.growArray(byteStarts, (count * 2));
+      byteTexts = HexByteChar2Strings.growArray(byteTexts, (count * 2));
+      codePoints = HexByteChar2Strings.growArray(codePoints, (count * 2));
+      ends = HexByteChar2Strings.growArray(ends, (count * 2));
+      kinds = HexByteChar2Strings.growArray(kinds, (count * 2));
+      notes = HexByteChar2Strings.growArray(notes, (count * 2));
+      starts = HexByteChar2Strings.growArray(starts, (count * 2));
     }
-    else if (source == convertByteButton) // "Convert" button for data bytes
+    byteStarts[count] = byteCount;
+    byteTexts[count] = encode(text, start, end, true);
+    codePoints[count] = value;
+    ends[count] = end;
+    kinds[count] = kind;
+    notes[count] = note;
+    starts[count] = start;
+    count ++;
+  }
+
+  /* Return flags and script number for one character. */
+
+  static int classify(int value)
+  {
+    String compat;                // after NFKC normalization
+    int result;                   // flags and script number
+    Character.UnicodeScript script; // Unicode script for letter
+    String text;                  // character as a string
+    int type;                     // Unicode general category
+
+    if ((value >= 0xD800) && (value <= 0xDFFF)) // surrogates alone
+      return(0);
+    text = new String(Character.toChars(value));
+    type = Character.getType(value);
+    result = 0;
+    if ((value == 0x061C) || (value == 0x200E) || (value == 0x200F)
+      || ((value >= 0x202A) && (value <= 0x202E))
+      || ((value >= 0x2066) && (value <= 0x2069)))
     {
-      convertBytesToText();       // convert data bytes to text chars
+      result |= BIDI;             // marks, embeddings, overrides, isolates
     }
-    else if (source == convertCharButton) // "Convert" button for text chars
+    else if ((type == Character.FORMAT) || (value == 0x034F)
+      || (value == 0x115F) || (value == 0x1160) || (value == 0x3164)
+      || (value == 0xFFA0) || ((value >= 0x180B) && (value <= 0x180E))
+      || ((value >= 0xFE00) && (value <= 0xFE0F))
+      || ((value >= 0xE0100) && (value <= 0xE01EF)))
     {
-      convertTextToBytes();       // convert text chars to data bytes
+      result |= INVISIBLE;        // format, fillers, variation selectors
     }
-    else if (source == copyByteButton) // "Copy" button for data bytes
+    else if ((type == Character.NON_SPACING_MARK)
+      || (type == Character.COMBINING_SPACING_MARK)
+      || (type == Character.ENCLOSING_MARK))
     {
-      clipboardCopy(byteField);   // copy from this text area
+      result |= MARK;
     }
-    else if (source == copyCharButton) // "Copy" button for text chars
+    if (java.text.Normalizer.normalize(text, java.text.Normalizer.Form.NFC)
+      .equals(text) == false)
     {
-      clipboardCopy(charField);
+      result |= NFC;
     }
-    else if (source == exitButton) // "Exit" button
+    if (java.text.Normalizer.normalize(text, java.text.Normalizer.Form.NFD)
+      .equals(text) == false)
     {
-      System.exit(0);             // immediate exit from GUI with no status
+      result |= NFD;
     }
-    else if (source == pasteByteButton) // "Paste" button for data bytes
+    compat = java.text.Normalizer.normalize(text,
+      java.text.Normalizer.Form.NFKC);
+    if (((result & NFC) == 0) && (compat.equals(text) == false))
+      result |= NFKC;
+
+    /* Letters get a script number from their script, or from the script of
+    what they normalize to. */
+
+    if (Character.isLetter(value))
     {
-      clipboardPaste(byteField);  // paste to this text area
+      script = Character.UnicodeScript.of(((compat.length() > 0)
+        && Character.isLetter(compat.codePointAt(0))) ? compat.codePointAt(0)
+        : value);
+      if ((script == Character.UnicodeScript.HAN)
+        || (script == Character.UnicodeScript.HIRAGANA)
+        || (script == Character.UnicodeScript.KATAKANA)
+        || (script == Character.UnicodeScript.HANGUL)
+        || (script == Character.UnicodeScript.BOPOMOFO))
+      {
+        result |= scriptId("CJK") << 8;
+      }
+      else if ((script != Character.UnicodeScript.COMMON)
+        && (script != Character.UnicodeScript.INHERITED)
+        && (script != Character.UnicodeScript.UNKNOWN))
+      {
+        result |= scriptId(script.name()) << 8;
+      }                           // else script number zero: no script
+      result |= LETTER;
     }
-    else if (source == pasteCharButton) // "Paste" button for text chars
+    return(result);
+  }
+
+  /* Encode text from the end of the last piece to <end>.  Return the data
+  bytes from <start> to <end> in hex, if the caller wants them. */
+
+  String encode(String text, int start, int end, boolean hexFlag)
+  {
+    int i;                        // index variable
+    CharBuffer input;             // characters to encode
+    StringBuffer result;          // data bytes in hex
+
+    result = hexFlag ? new StringBuffer() : null;
+    if (charset == null)          // raw data bytes: one byte per character
     {
-      clipboardPaste(charField);
+      byteCount += end - start;
+      if (hexFlag) for (i = start; i < end; i ++)
+      {
+        if (i > start) result.append(' ');
+        result.append(HexByteChar2.HEX_DIGITS[(text.charAt(i) >> 4) & 0x0F]);
+        result.append(HexByteChar2.HEX_DIGITS[text.charAt(i) & 0x0F]);
+      }
+      return(hexFlag ? result.toString() : null);
     }
-    else if (source == readByteButton) // "Read" button for data bytes
+    if (hexFlag && (checker.canEncode(text.substring(start, end)) == false))
+      result.append("(not in " + charset.name() + ")");
+    input = CharBuffer.wrap(text, start, end);
+    do
     {
-      doReadButton();
-    }
-    else if (source == writeByteButton) // "Write" button for data bytes
+      bytes.clear();
+      encoder.encode(input, bytes, false); // keep state between pieces
+      byteCount += bytes.position();
+      if (hexFlag) for (i = 0; i < bytes.position(); i ++)
+      {
+        if (result.length() > 0) result.append(' ');
+        result.append(HexByteChar2.HEX_DIGITS[(bytes.get(i) >> 4) & 0x0F]);
+        result.append(HexByteChar2.HEX_DIGITS[bytes.get(i) & 0x0F]);
+      }
+    } while (input.hasRemaining() && (bytes.position() > 0));
+    return(hexFlag ? result.toString() : null);
+  }
+
+  /* Return a text label for one result, as shown to the user. */
+
+  String label(int i)
+  {
+    String offset;                // hex offset for one result
+    String value;                 // code point in hex
+
+    offset = Long.toHexString(byteStarts[i]).toUpperCase();
+    while (offset.length() < 8) offset = "0" + offset;
+    value = Integer.toHexString(codePoints[i]).toUpperCase();
+    while (value.length() < 4) value = "0" + value;
+    return(offset + "  U+" + value + "  " + KIND_NAMES[kinds[i]]
+      + ((notes[i] != null) ? (" " + notes[i]) : "") + "  " + byteTexts[i]);
+  }
+
+  /* Return a text label for each result. */
+
+  String[] labels()
+  {
+    int i;                        // index variable
+    String[] result;              // labels for all results
+
+    result = new String[count];
+    for (i = 0; i < count; i ++)
+      result[i] = label(i);
+    return(result);
+  }
+
+  /* Build the tables of flags and script numbers for the BMP.  This takes a
+  moment, once, so callers use a background thread.  <flags> is set last, and
+  is volatile, so other threads see complete tables or none. */
+
+  static synchronized void makeTables()
+  {
+    int i;                        // index variable
+    byte[] newFlags;              // flags, not shown until ready
+    int value;                    // flags and script number
+
+    if (flags != null) return;    // another thread just built them
+    scriptIds = new java.util.Hashtable<String, Integer>();
+    scriptNames = new java.util.Vector<String>();
+    scriptNames.add("");          // script number zero is none
+    newFlags = new byte[0x10000];
+    scripts = new byte[0x10000];
+    for (i = 0; i < 0x10000; i ++)
     {
-      doWriteButton();
+      value = classify(i);
+      newFlags[i] = (byte) value;
+      scripts[i] = (byte) (value >> 8);
     }
-    else if (source == zorgByteButton) // "Zorg" button for data bytes
+    flags = newFlags;             // tables are ready
+  }
+
+  /* Return code points in hex for normalized text, as a short note. */
+
+  static String normalNote(String text, java.text.Normalizer.Form form)
+  {
+    int i;                        // index variable
+    StringBuffer result;          // code points in hex
+    String value;                 // one code point in hex
+
+    text = java.text.Normalizer.normalize(text, form);
+    result = new StringBuffer("to");
+    for (i = 0; i < text.length(); i += Character.charCount(
+      text.codePointAt(i)))
     {
-      doZorgButton();             // but the question is, which Zorg or Zorgs?
+      value = Integer.toHexString(text.codePointAt(i)).toUpperCase();
+      while (value.length() < 4) value = "0" + value;
+      result.append(" U+" + value);
     }
-    else                          // fault in program logic, not by user
+    return(result.toString());
+  }
+
+  /* Scan all of the text in one pass. */
+
+  void scan(String text)
+  {
+    int flag;                     // flags for one character
+    int i;                        // index of current character
+    int kind;                     // kind of result, or zero
+    int next;                     // index of next character
+    String note;                  // more description for result
+    int pending;                  // index of first character not encoded
+    int script;                   // script number for current character
+    int starter;                  // index of last character that isn't a mark
+    int value;                    // current character as a code point
+    int wordScript;               // first script in current word, or zero
+
+    pending = starter = wordScript = 0;
+    for (i = 0; i < text.length(); i = next)
     {
-      System.err.println("Error in userButton(): unknown ActionEvent: "
-        + event);                 // should never happen, so write on console
-    }
-  } // end of userButton() method
+      value = text.codePointAt(i);
+      next = i + Character.charCount(value);
+      if (value < 0x10000)        // table lookup for most characters
+      {
+        flag = flags[value];
+        script = scripts[value] & 0xFF;
+      }
+      else                        // supplementary characters are rare
+      {
+        flag = classify(value);
+        script = (flag >> 8) & 0xFF;
+      }
+      if (flag == 0)              // not a letter, nothing special
+      {
+        starter = i;
+        wordScript = 0;
+        continue;
+      }
 
-} // end of HexByteChar2 class
+      kind = 0;
+      note = null;
+      if ((flag & NFD) != 0) nfdCount ++;
+      if ((flag & (NFC | NFKC)) != 0) nfkcCount ++;
+      if ((flag & BIDI) != 0)
+      {
+        bidiCount ++;
+        kind = KIND_BIDI;
+      }
+      else if ((flag & INVISIBLE) != 0)
+      {
+        invisibleCount ++;
+        kind = KIND_INVISIBLE;
+      }
+      else if ((flag & NFC) != 0)
+      {
+        nfcCount ++;
+        kind = KIND_NFC;
+        note = normalNote(text.substring(i, next),
+          java.text.Normalizer.Form.NFC);
+      }
+      else if ((flag & MARK) != 0)
+      {
+        /* A combining mark changes the NFC text if it composes with the
+        characters before it, back to the last character that isn't a mark. */
 
-// ------------------------------------------------------------------------- //
+        if (((i - starter) < MAX_SEGMENT) && (java.text.Normalizer.normalize(
+          text.substring(starter, next), java.text.Normalizer.Form.NFC)
+          .length() < (java.text.Normalizer.normalize(text.substring(starter,
+          i), java.text.Normalizer.Form.NFC).length() + (next - i))))
+        {
+          composeCount ++;
+          nfcCount ++;
+          nfkcCount ++;
+          kind = KIND_COMPOSE;
+        }
+      }
+      else if ((flag & NFKC) != 0)
+      {
+        kind = KIND_NFKC;
+        note = normalNote(text.substring(i, next),
+          java.text.Normalizer.Form.NFKC);
+      }
 
-/*
-  HexByteChar2User class
+      /* Letters are counted by script, and checked against the first script
+      in the word.  Marks stay in the current word. */
 
-  This class listens to input from the user and passes back event parameters to
-  a static method in the main class.
-*/
+      if ((flag & MARK) == 0)
+      {
+        starter = i;
+        if (script == 0)
+        {
+          if ((flag & LETTER) == 0) // not a letter, word ends
+            wordScript = 0;
+        }
+        else
+        {
+          scriptCounts[script] ++;
+          if (wordScript == 0)
+            wordScript = script;
+          else if (script != wordScript)
+          {
+            mixedCount ++;
+            if (kind == 0)        // not already reported
+            {
+              kind = KIND_SCRIPT;
+              note = "(" + scriptName(script) + " in " + scriptName(
+                wordScript) + " word)";
+            }
+          }
+        }
+      }
 
-class HexByteChar2User implements ActionListener
-{
-  /* empty constructor */
+      /* Encode all characters before a result, so that its offset is known. */
+
+      if (kind != 0)
+      {
+        encode(text, pending, i, false);
+        add(text, i, next, value, kind, note);
+        pending = next;
+      }
+    }
+  }
 
-  public HexByteChar2User() { }
+  /* Return a script number for a name, adding the name if it's new. */
 
-  /* button listener, dialog boxes, etc */
+  static int scriptId(String name)
+  {
+    Integer id;                   // saved script number
+
+    id = scriptIds.get(name);
+    if (id != null) return(id.intValue());
+    if (scriptNames.size() > 0xFF) return(0xFF); // too many, shouldn't happen
+    id = Integer.valueOf(scriptNames.size());
+    scriptIds.put(name, id);
+    scriptNames.add(name);
+    return(id.intValue());
+  }
 
-  public void actionPerformed(ActionEvent event)
+  /* Return a script name for the user: "Cyrillic" not "CYRILLIC". */
+
+  static String scriptName(int id)
   {
-    HexByteChar2.userButton(event);
+    String name;                  // Unicode script name
+
+    name = (id < scriptNames.size()) ? scriptNames.get(id) : "Other";
+    if (name.equals("CJK")) return(name);
+    name = name.replace('_', ' ').toLowerCase();
+    return((name.length() > 0) ? (Character.toUpperCase(name.charAt(0))
+      + name.substring(1)) : name);
   }
 
-} // end of HexByteChar2User class
+  /* Return a summary of everything found, several lines. */
+
+  String summary()
+  {
+    int i;                        // index variable
+    StringBuffer result;          // lines of summary
+    String scriptList;            // letters found in each script
+
+    result = new StringBuffer();
+    result.append(total + " characters flagged: " + invisibleCount
+      + " invisible, " + bidiCount + " bidi controls, " + mixedCount
+      + " mixed script.\n");
+    result.append("Normalization changes: NFC " + nfcCount + " (" + composeCount
+      + " combining marks), NFD " + nfdCount + ", NFKC " + nfkcCount + ".\n");
+    scriptList = "";
+    for (i = 1; i < scriptCounts.length; i ++)
+      if (scriptCounts[i] > 0)
+        scriptList += ((scriptList.length() > 0) ? ", " : "")
+          + scriptName(i) + " " + scriptCounts[i];
+    result.append("Letters by script: " + ((scriptList.length() > 0)
+      ? scriptList : "none") + ".\n");
+    result.append("Offsets are for "
+      + ((charset != null) ? charset.name() : "raw data bytes") + ", "
+      + byteCount + " data bytes up to the last flagged character.");
+    return(result.toString());
+  }
+
+} // end of HexByteChar2Unicode class
 
 /* Copyright (c) 2022 by Keith Fenske.  Apache License or GNU GPL. */